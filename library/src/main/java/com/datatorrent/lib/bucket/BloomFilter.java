@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>
+ * A bloom filter of event keys which is backed by a long array and can be check-pointed.
+ * </p>
+ *
+ * <p>
+ * The bit positions of a key are derived from a hash of the key by double hashing. Hence keys with equal hashes are
+ * indistinguishable to the filter, which only adds to its false positive rate. {@link #add(Object)} uses
+ * {@link Object#hashCode()} of the key, so keys without a value based hash code, like byte[], must be added with
+ * {@link #addHash(int)} and a hash of their content instead.
+ * </p>
+ */
+public class BloomFilter
+{
+  private long[] bits;
+  private int numBits;
+  private int numHashFunctions;
+
+  @SuppressWarnings("unused")
+  private BloomFilter()
+  {
+  }
+
+  /**
+   * @param expectedInsertions   number of keys that are expected to be added.
+   * @param falsePositiveRate    desired false positive rate when expected number of keys are added.
+   */
+  public BloomFilter(int expectedInsertions, double falsePositiveRate)
+  {
+    Preconditions.checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "false positive rate");
+    int insertions = Math.max(1, expectedInsertions);
+    long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    numBits = (int) Math.min(Math.max(64, optimalBits), Integer.MAX_VALUE - 63);
+    numHashFunctions = Math.max(1, (int) Math.round((double) numBits / insertions * Math.log(2)));
+    bits = new long[(numBits + 63) >>> 6];
+  }
+
+  private BloomFilter(long[] bits, int numBits, int numHashFunctions)
+  {
+    this.bits = bits;
+    this.numBits = numBits;
+    this.numHashFunctions = numHashFunctions;
+  }
+
+  public void add(@Nonnull Object key)
+  {
+    addHash(key.hashCode());
+  }
+
+  /**
+   * Adds a key by its hash.
+   *
+   * @param keyHash hash of the key which is equal for equal keys.
+   */
+  public void addHash(int keyHash)
+  {
+    int hash1 = mix(keyHash);
+    int hash2 = mix(hash1 ^ 0x9e3779b9);
+    for (int i = 0; i < numHashFunctions; i++) {
+      int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Finds whether the key might have been added to the filter.
+   *
+   * @param key key
+   * @return false if the key was definitely not added; true otherwise.
+   */
+  public boolean mightContain(@Nonnull Object key)
+  {
+    return mightContainHash(key.hashCode());
+  }
+
+  /**
+   * Finds whether a key with the hash might have been added to the filter.
+   *
+   * @param keyHash hash of the key which is equal for equal keys.
+   * @return false if the key was definitely not added; true otherwise.
+   */
+  public boolean mightContainHash(int keyHash)
+  {
+    int hash1 = mix(keyHash);
+    int hash2 = mix(hash1 ^ 0x9e3779b9);
+    for (int i = 0; i < numHashFunctions; i++) {
+      int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds all the keys of the other filter to this filter. Both the filters must have the same size.
+   *
+   * @param other filter which is merged.
+   */
+  public void merge(@Nonnull BloomFilter other)
+  {
+    Preconditions.checkArgument(numBits == other.numBits && numHashFunctions == other.numHashFunctions, "incompatible filters");
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] |= other.bits[i];
+    }
+  }
+
+  /**
+   * Creates an empty filter which has the same size as this filter.
+   */
+  @Nonnull
+  public BloomFilter emptyCopy()
+  {
+    return new BloomFilter(new long[bits.length], numBits, numHashFunctions);
+  }
+
+  private static int mix(int hash)
+  {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BloomFilter)) {
+      return false;
+    }
+    BloomFilter that = (BloomFilter) o;
+    return numBits == that.numBits && numHashFunctions == that.numHashFunctions && Arrays.equals(bits, that.bits);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    int result = numBits;
+    result = 31 * result + numHashFunctions;
+    result = 31 * result + Arrays.hashCode(bits);
+    return result;
+  }
+}
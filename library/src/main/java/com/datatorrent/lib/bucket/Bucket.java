@@ -48,13 +48,13 @@ import com.google.common.collect.Maps;
 public class Bucket<T extends Bucketable>
 {
   public final long bucketKey;
-  private Map<Object, T> unwrittenEvents;
-  private transient Map<Object, T> writtenEvents;
+  protected Map<Object, T> unwrittenEvents;
+  //Replaced by a loader thread while the operator thread reads it.
+  protected transient volatile Map<Object, T> writtenEvents;
   private transient long lastUpdateTime;
-  private transient boolean isDataOnDiskLoaded;
+  protected transient boolean isDataOnDiskLoaded;
 
-  @SuppressWarnings("unused")
-  private Bucket()
+  protected Bucket()
   {
     bucketKey = -1L;
   }
@@ -66,8 +66,15 @@ public class Bucket<T extends Bucketable>
     this.lastUpdateTime = System.currentTimeMillis();
   }
 
-  void setWrittenEvents(@Nonnull Map<Object, T> writtenEvents)
+  /**
+   * Sets the events loaded from the store. Events which were written to the bucket before it was loaded are retained
+   * since they may not have been persisted yet.
+   */
+  synchronized void setWrittenEvents(@Nonnull Map<Object, T> writtenEvents)
   {
+    if (this.writtenEvents != null) {
+      writtenEvents.putAll(this.writtenEvents);
+    }
     this.writtenEvents = writtenEvents;
     isDataOnDiskLoaded = true;
   }
@@ -77,7 +84,7 @@ public class Bucket<T extends Bucketable>
     this.unwrittenEvents = unwrittenEvents;
   }
 
-  void transferDataFromMemoryToStore()
+  synchronized void transferDataFromMemoryToStore()
   {
     if (writtenEvents == null) {
       writtenEvents = unwrittenEvents;
@@ -89,6 +96,16 @@ public class Bucket<T extends Bucketable>
     unwrittenEvents = null;
   }
 
+  /**
+   * Releases the events loaded from the store after the bucket was deleted or off-loaded. The bucket is not loaded
+   * anymore and has to be loaded again to be used.
+   */
+  synchronized void release()
+  {
+    writtenEvents = null;
+    isDataOnDiskLoaded = false;
+  }
+
   void updateAccessTime()
   {
     lastUpdateTime = System.currentTimeMillis();
@@ -112,7 +129,7 @@ public class Bucket<T extends Bucketable>
     return Collections.unmodifiableMap(unwrittenEvents);
   }
 
-  long lastUpdateTime()
+  public long lastUpdateTime()
   {
     return lastUpdateTime;
   }
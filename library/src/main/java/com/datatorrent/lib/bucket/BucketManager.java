@@ -46,7 +46,9 @@ import com.datatorrent.lib.counters.BasicCounters;
  * </li>
  * <li>
  * The operator could then add new events to a bucket by invoking {@link #newEvent(long, Bucketable)}. These events are
- * maintained in a check-pointed state.
+ * maintained in a check-pointed state.<br/>
+ * Instead of loading a bucket, the operator can first try {@link #tryNewEvent(long, Bucketable)} which adds the event
+ * without loading the bucket when the manager can tell that the bucket does not have it.
  * </li>
  * <li>
  * To ensure that at any given point of time all the load requests are completed, the operator can trigger {@link #blockUntilAllRequestsServiced()}.
@@ -54,6 +56,10 @@ import com.datatorrent.lib.counters.BasicCounters;
  * <li>
  * The operator triggers {@link #endWindow(long)} which tells the manager to persist un-written data.
  * </li>
+ * <li>
+ * The operator triggers {@link #checkpointed(long)} and {@link #committed(long)} when the engine informs it that a
+ * window is check-pointed or committed.
+ * </li>
  * </ol>
  * </p>
  *
@@ -121,6 +127,23 @@ public interface BucketManager<T extends Bucketable>
    */
   void newEvent(long bucketKey, T event);
 
+  /**
+   * Adds the event to the un-written section of the bucket corresponding to the bucket key if the manager can tell
+   * without loading the bucket that the event is not in the bucket.
+   *
+   * @param bucketKey key of the bucket.
+   * @param event     new event.
+   * @return true if the event was definitely new and is added; false if the bucket needs to be loaded to find out.
+   */
+  boolean tryNewEvent(long bucketKey, T event);
+
+  /**
+   * Does begin window operations.
+   *
+   * @param window window number.
+   */
+  void beginWindow(long window);
+
   /**
    * Does end window operations which includes tracking the committed window and
    * persisting all un-written events in the store.
@@ -129,6 +152,20 @@ public interface BucketManager<T extends Bucketable>
    */
   void endWindow(long window);
 
+  /**
+   * Informs the manager that a window is check-pointed.
+   *
+   * @param window window number.
+   */
+  void checkpointed(long window);
+
+  /**
+   * Informs the manager that a window is committed.
+   *
+   * @param window window number.
+   */
+  void committed(long window);
+
   /**
    * Blocks the calling thread until all the load requests of this window have been serviced.
    *
@@ -173,7 +210,8 @@ public interface BucketManager<T extends Bucketable>
 
     /**
      * Invoked when a bucket is removed from memory.<br/>
-     * If the listener has cached a bucket it should use this callback to remove it from the cache.
+     * If the listener has cached a bucket it should use this callback to remove it from the cache. The bucket is
+     * released at the end of the window after which it is not loaded anymore.
      *
      * @param bucketKey key of the bucket which was off-loaded.
      */
@@ -185,6 +223,6 @@ public interface BucketManager<T extends Bucketable>
   {
 
     BUCKETS_IN_MEMORY, EVICTED_BUCKETS, DELETED_BUCKETS, EVENTS_COMMITTED_LAST_WINDOW,
-    EVENTS_IN_MEMORY
+    EVENTS_IN_MEMORY, BUCKETS_SPARED_FROM_EVICTION, EVICTION_POLICY_USAGE
   }
 }
@@ -17,13 +17,23 @@ package com.datatorrent.lib.bucket;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
-import java.util.Comparator;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.SortedMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nonnull;
 import javax.validation.constraints.Min;
@@ -33,11 +43,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Sets;
 
+import com.datatorrent.api.CheckpointListener;
+
 import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.lib.counters.BasicCounters;
 
 /**
@@ -59,6 +72,17 @@ import com.datatorrent.lib.counters.BasicCounters;
  * When this limit is reached, the lru bucket is off-loaded irrespective of its last accessed time.
  * </li>
  * <li>
+ * {@link #noOfLoaders}: number of threads which load buckets. Buckets at different indices are loaded concurrently
+ * while the requests for the same index are served one after the other in the order they were made. A request for a
+ * bucket which is already waiting to be loaded is ignored. Deleting and off-loading buckets as well as the
+ * {@link Listener} callbacks are done by one loader at a time.
+ * </li>
+ * <li>
+ * {@link #evictionPolicy}: decides when and which buckets are off-loaded. By default this is a
+ * {@link ClockEvictionPolicy} with the above limits. A {@link ByteBudgetEvictionPolicy} limits the estimated bytes of
+ * the buckets instead.
+ * </li>
+ * <li>
  * {@link #millisPreventingBucketEviction}: duration in milliseconds which could prevent a bucket from being
  * offloaded.
  * </li>
@@ -67,6 +91,26 @@ import com.datatorrent.lib.counters.BasicCounters;
  * keep the event key. This reduces memory usage and is useful for operators like De-duplicator which are interested only
  * in the event key.
  * </li>
+ * <li>
+ * {@link #keyCodec}: when this is set and {@link #writeEventKeysOnly} is true, the manager creates
+ * {@link OffHeapKeyBucket}s which keep the keys of written events outside the java heap.
+ * </li>
+ * <li>
+ * {@link #saveAsynchronously}: when this is true, the un-written events of a window are handed to a background
+ * writer at the end of the window instead of being persisted by the operator thread. The store must be an
+ * {@link BucketStore.AsyncBucketStore}. At most one window is being persisted at any time; the end of the next
+ * window waits for it. Until the writer completes, the events of the window are kept in the check-pointed state and
+ * the committed window does not move past it. The loader is paused between the end of a window and the beginning of
+ * the next one so that the check-pointed state is not modified while it is being saved.
+ * </li>
+ * <li>
+ * {@link #expectedEventsPerBucket}: when this is greater than 0, the manager keeps a check-pointed {@link BloomFilter}
+ * of the event keys at every bucket index, sized for this many events with {@link #bloomFilterFalsePositiveRate}.
+ * {@link #tryNewEvent(long, Bucketable)} then adds the events which are definitely not in a bucket without loading it.
+ * When there is a {@link #keyCodec}, the filters hash the encoded keys so that keys are equal by their encoding.
+ * The filter of an index is cleared when the bucket at that index is deleted. This has to be set before the operator is
+ * launched for the first time since events which were persisted before are not in the filters.
+ * </li>
  * </ol>
  * </p>
  *
@@ -78,6 +122,8 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   public static int DEF_NUM_BUCKETS = 1000;
   public static int DEF_NUM_BUCKETS_MEM = 120;
   public static long DEF_MILLIS_PREVENTING_EVICTION = 10 * 60000;
+  public static double DEF_BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
+  public static int DEF_NUM_LOADERS = 1;
   private static long RESERVED_BUCKET_KEY = -2;
   //Check-pointed
   @Min(1)
@@ -89,24 +135,57 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   @Min(0)
   protected long millisPreventingBucketEviction;
   protected boolean writeEventKeysOnly;
+  protected KeyCodec<?> keyCodec;
+  protected boolean saveAsynchronously;
+  @Min(1)
+  protected int noOfLoaders;
+  protected EvictionPolicy evictionPolicy;
+  @Min(0)
+  protected int expectedEventsPerBucket;
+  protected double bloomFilterFalsePositiveRate;
   @Nonnull
   protected BucketStore<T> bucketStore;
   @Nonnull
   protected final Map<Integer, Bucket<T>> dirtyBuckets;
+  //Windows whose events were handed to the background writer but are not recorded in the store yet.
+  @Nonnull
+  protected final SortedMap<Long, UnsavedWindow<T>> unsavedWindows;
   protected long committedWindow;
+  //bucket index -> keys of all the events at that index which are in the store or in memory.
+  @Nonnull
+  protected final Map<Integer, BloomFilter> bloomFilters;
   //Not check-pointed
   //Indexed by bucketKey keys.
   protected transient Bucket<T>[] buckets;
-  @Nonnull
-  protected transient Set<Integer> evictionCandidates;
   protected transient Listener<T> listener;
   @Nonnull
   private transient final BlockingQueue<Long> eventQueue;
   private transient volatile boolean running;
   @Nonnull
   private transient final Lock lock;
+  //Loaders hold the read lock while they change the buckets in memory. The operator thread holds the write lock to
+  //pause them.
+  @Nonnull
+  private transient final ReentrantReadWriteLock loaderLock;
+  //Serializes deleting, off-loading and installing buckets.
+  @Nonnull
+  private transient final Lock installLock;
+  //Guards the bucket slots and the bloom filters. Loaders hold it only while they change buckets in memory.
   @Nonnull
-  private transient final MinMaxPriorityQueue<Bucket<T>> bucketHeap;
+  private transient final Lock filterLock;
+  //bucket index -> keys requested at that index which are not loaded yet. An index is present while it is being loaded.
+  @Nonnull
+  private transient final Map<Integer, LinkedHashSet<Long>> pendingLoads;
+  //Buckets deleted or off-loaded by the loaders. The operator thread may still be reading them, so it releases them.
+  @Nonnull
+  private transient final Queue<Bucket<T>> offLoadedBuckets;
+  //Encodes the event keys for the bloom filters when there is a key codec. Guarded by the filter lock.
+  private transient ByteBuffer keyScratch;
+  private transient ExecutorService loaders;
+  private transient volatile Throwable loadFailure;
+  private transient ExecutorService bucketWriter;
+  private transient Future<Map<Integer, Long>> pendingSave;
+  private transient long pendingSaveWindow;
 
   protected transient boolean count;
   protected transient MutableLong numBucketsInMemory;
@@ -114,35 +193,30 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   protected transient MutableLong numDeletedBuckets;
   protected transient MutableLong numEventsCommittedLastWindow;
   protected transient MutableLong numEventsInMemory;
+  protected transient MutableLong numBucketsSparedFromEviction;
+  protected transient MutableLong evictionPolicyUsage;
 
   public BucketManagerImpl()
   {
     eventQueue = new LinkedBlockingQueue<Long>();
-    evictionCandidates = Sets.newHashSet();
     dirtyBuckets = Maps.newConcurrentMap();
-    bucketHeap = MinMaxPriorityQueue.orderedBy(new Comparator<Bucket<T>>()
-    {
-      @Override
-      public int compare(Bucket<T> bucket1, Bucket<T> bucket2)
-      {
-        if (bucket1.lastUpdateTime() < bucket2.lastUpdateTime()) {
-          return -1;
-        }
-        if (bucket1.lastUpdateTime() > bucket2.lastUpdateTime()) {
-          return 1;
-        }
-        return 0;
-      }
-
-    }).create();
+    unsavedWindows = Maps.newTreeMap();
+    bloomFilters = Maps.newHashMap();
     lock = new Lock();
+    loaderLock = new ReentrantReadWriteLock();
+    installLock = new Lock();
+    filterLock = new Lock();
+    pendingLoads = Maps.newHashMap();
+    offLoadedBuckets = new ConcurrentLinkedQueue<Bucket<T>>();
     committedWindow = -1;
 
     noOfBuckets = DEF_NUM_BUCKETS;
     noOfBucketsInMemory = DEF_NUM_BUCKETS_MEM;
     maxNoOfBucketsInMemory = DEF_NUM_BUCKETS_MEM + 100;
     millisPreventingBucketEviction = DEF_MILLIS_PREVENTING_EVICTION;
+    noOfLoaders = DEF_NUM_LOADERS;
     writeEventKeysOnly = true;
+    bloomFilterFalsePositiveRate = DEF_BLOOM_FILTER_FALSE_POSITIVE_RATE;
   }
 
   /**
@@ -189,6 +263,65 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     this.writeEventKeysOnly = writeEventKeysOnly;
   }
 
+  /**
+   * Sets the codec of event keys. When set and only event keys are written, the keys of written events are kept in
+   * direct memory by {@link OffHeapKeyBucket}s.
+   *
+   * @param keyCodec codec of the event keys; null to keep events on the heap.
+   */
+  public void setKeyCodec(KeyCodec<?> keyCodec)
+  {
+    this.keyCodec = keyCodec;
+  }
+
+  /**
+   * Set true for persisting the un-written events of a window by a background writer; false otherwise.
+   *
+   * @param saveAsynchronously
+   */
+  public void setSaveAsynchronously(boolean saveAsynchronously)
+  {
+    this.saveAsynchronously = saveAsynchronously;
+  }
+
+  /**
+   * Sets the number of events a bucket is expected to have. When this is greater than 0, bloom filters of the event
+   * keys are maintained for every bucket index.
+   *
+   * @param expectedEventsPerBucket expected number of events in a bucket; 0 to not use bloom filters.
+   */
+  public void setExpectedEventsPerBucket(int expectedEventsPerBucket)
+  {
+    this.expectedEventsPerBucket = expectedEventsPerBucket;
+  }
+
+  /**
+   * Sets the false positive rate of the bloom filters when a bucket has the expected number of events.
+   */
+  public void setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate)
+  {
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+  }
+
+  /**
+   * Sets the number of threads which load buckets concurrently.
+   */
+  public void setNoOfLoaders(int noOfLoaders)
+  {
+    this.noOfLoaders = noOfLoaders;
+  }
+
+  /**
+   * Sets the policy which decides when and which buckets are off-loaded.
+   *
+   * @param evictionPolicy eviction policy; null for a {@link ClockEvictionPolicy} with the limits on the number of
+   *                       buckets in memory.
+   */
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy)
+  {
+    this.evictionPolicy = evictionPolicy;
+  }
+
   @Override
   public void setBucketCounters(@Nonnull BasicCounters<MutableLong> bucketCounters)
   {
@@ -198,6 +331,8 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
       numDeletedBuckets = bucketCounters.findCounter(CounterKeys.DELETED_BUCKETS);
       numEventsCommittedLastWindow = bucketCounters.findCounter(CounterKeys.EVENTS_COMMITTED_LAST_WINDOW);
       numEventsInMemory = bucketCounters.findCounter(CounterKeys.EVENTS_IN_MEMORY);
+      numBucketsSparedFromEviction = bucketCounters.findCounter(CounterKeys.BUCKETS_SPARED_FROM_EVICTION);
+      evictionPolicyUsage = bucketCounters.findCounter(CounterKeys.EVICTION_POLICY_USAGE);
       count = true;
     }
     catch (IllegalAccessException e) {
@@ -212,6 +347,12 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   public void shutdownService()
   {
     running = false;
+    if (loaders != null) {
+      loaders.shutdown();
+    }
+    if (bucketWriter != null) {
+      bucketWriter.shutdown();
+    }
     bucketStore.teardown();
   }
 
@@ -221,96 +362,220 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     return Math.abs(event.getEventKey().hashCode()) / noOfBuckets;
   }
 
+  /**
+   * Dispatches the load requests to the loaders. A request for an index which is being loaded is queued behind the
+   * current load of that index and is served by the same loader.
+   */
   @Override
   public void run()
   {
     running = true;
     try {
       while (running) {
+        if (loadFailure != null) {
+          throw loadFailure;
+        }
         Long request = eventQueue.poll(1, TimeUnit.SECONDS);
         if (request != null) {
           long requestedKey = request;
           if (RESERVED_BUCKET_KEY == requestedKey) {
+            awaitPendingLoads();
             synchronized (lock) {
               lock.notify();
             }
           }
           else {
             int bucketIdx = (int) (requestedKey % noOfBuckets);
-            long numEventsRemoved = 0;
-            if (buckets[bucketIdx] != null && buckets[bucketIdx].bucketKey != requestedKey) {
-              //Delete the old bucket in memory at that index.
-              Bucket<T> oldBucket = buckets[bucketIdx];
-
-              dirtyBuckets.remove(bucketIdx);
-              evictionCandidates.remove(bucketIdx);
-              buckets[bucketIdx] = null;
-
-              listener.bucketOffLoaded(oldBucket.bucketKey);
-              bucketStore.deleteBucket(bucketIdx);
-              if (count) {
-                numDeletedBuckets.increment();
-                numBucketsInMemory.decrement();
-                numEventsRemoved += oldBucket.countOfUnwrittenEvents() + oldBucket.countOfWrittenEvents();
+            synchronized (pendingLoads) {
+              LinkedHashSet<Long> requestedKeys = pendingLoads.get(bucketIdx);
+              if (requestedKeys != null) {
+                requestedKeys.add(requestedKey);
+                continue;
               }
-              logger.debug("deleted bucket {} {}", oldBucket.bucketKey, bucketIdx);
+              requestedKeys = Sets.newLinkedHashSet();
+              requestedKeys.add(requestedKey);
+              pendingLoads.put(bucketIdx, requestedKeys);
             }
+            loaders.submit(new BucketLoader(bucketIdx));
+          }
+        }
+      }
+    }
+    catch (Throwable cause) {
+      running = false;
+      DTThrowable.rethrow(cause);
+    }
+  }
 
-            Map<Object, T> bucketDataInStore = bucketStore.fetchBucket(bucketIdx);
+  private void awaitPendingLoads() throws Throwable
+  {
+    synchronized (pendingLoads) {
+      while (!pendingLoads.isEmpty()) {
+        if (loadFailure != null) {
+          throw loadFailure;
+        }
+        pendingLoads.wait(1000);
+      }
+    }
+  }
 
-            //Delete the least recently used bucket in memory if the noOfBucketsInMemory threshold is reached.
-            if (evictionCandidates.size() + 1 > noOfBucketsInMemory) {
+  /**
+   * Loads the requested buckets at an index one after the other.
+   */
+  private class BucketLoader implements Runnable
+  {
+    private final int bucketIdx;
 
-              for (int anIndex : evictionCandidates) {
-                bucketHeap.add(buckets[anIndex]);
-              }
-              int overFlow = evictionCandidates.size() + 1 - noOfBucketsInMemory;
-              while (overFlow-- >= 0) {
-                Bucket<T> lruBucket = bucketHeap.poll();
-                if (lruBucket == null) {
-                  break;
-                }
-                int lruIdx = (int) (lruBucket.bucketKey % noOfBuckets);
-
-                if (dirtyBuckets.containsKey(lruIdx)) {
-                  break;
-                }
-                if (((System.currentTimeMillis() - lruBucket.lastUpdateTime()) < millisPreventingBucketEviction)
-                  && ((evictionCandidates.size() + 1) <= maxNoOfBucketsInMemory)) {
-                  break;
-                }
-                evictionCandidates.remove(lruIdx);
-                buckets[lruIdx] = null;
-                listener.bucketOffLoaded(lruBucket.bucketKey);
-                if (count) {
-                  numEvictedBuckets.increment();
-                  numBucketsInMemory.decrement();
-                  numEventsRemoved += lruBucket.countOfUnwrittenEvents() + lruBucket.countOfWrittenEvents();
-                }
-                logger.debug("evicted bucket {} {}", lruBucket.bucketKey, lruIdx);
-              }
-            }
+    BucketLoader(int bucketIdx)
+    {
+      this.bucketIdx = bucketIdx;
+    }
 
-            Bucket<T> bucket = buckets[bucketIdx];
-            if (bucket == null || bucket.bucketKey != requestedKey) {
-              bucket = new Bucket<T>(requestedKey);
-              buckets[bucketIdx] = bucket;
-            }
-            bucket.setWrittenEvents(bucketDataInStore);
-            evictionCandidates.add(bucketIdx);
-            listener.bucketLoaded(bucket);
-            if (count) {
-              numBucketsInMemory.increment();
-              numEventsInMemory.add(bucketDataInStore.size() - numEventsRemoved);
+    @Override
+    public void run()
+    {
+      try {
+        while (true) {
+          long requestedKey;
+          synchronized (pendingLoads) {
+            LinkedHashSet<Long> requestedKeys = pendingLoads.get(bucketIdx);
+            if (requestedKeys.isEmpty()) {
+              pendingLoads.remove(bucketIdx);
+              pendingLoads.notifyAll();
+              return;
             }
-            bucketHeap.clear();
+            Iterator<Long> iterator = requestedKeys.iterator();
+            requestedKey = iterator.next();
+            iterator.remove();
           }
+          loadBucket(requestedKey);
         }
       }
+      catch (Throwable cause) {
+        logger.error("loading bucket at {}", bucketIdx, cause);
+        loadFailure = cause;
+        running = false;
+      }
     }
-    catch (Throwable cause) {
-      running = false;
-      DTThrowable.rethrow(cause);
+
+  }
+
+  /**
+   * Loads the bucket data from the store and off-loads buckets if needed. Invoked by a loader thread. Fetching the data
+   * from the store is done concurrently with other loaders and while the loaders are suspended; only changing the
+   * buckets in memory waits for them.
+   */
+  private void loadBucket(long requestedKey) throws Exception
+  {
+    int bucketIdx = (int) (requestedKey % noOfBuckets);
+    loaderLock.readLock().lock();
+    try {
+      synchronized (installLock) {
+        deleteBucketIfReplaced(bucketIdx, requestedKey);
+      }
+    }
+    finally {
+      loaderLock.readLock().unlock();
+    }
+
+    Map<Object, T> bucketDataInStore = bucketStore.fetchBucket(bucketIdx);
+
+    loaderLock.readLock().lock();
+    try {
+      synchronized (installLock) {
+        synchronized (filterLock) {
+          installBucket(bucketIdx, requestedKey, bucketDataInStore);
+        }
+      }
+    }
+    finally {
+      loaderLock.readLock().unlock();
+    }
+  }
+
+  private void deleteBucketIfReplaced(int bucketIdx, long requestedKey) throws IOException
+  {
+    if (buckets[bucketIdx] != null && buckets[bucketIdx].bucketKey != requestedKey) {
+      //Delete the old bucket in memory at that index.
+      Bucket<T> oldBucket = buckets[bucketIdx];
+
+      synchronized (filterLock) {
+        //The filter is cleared before the bucket is removed so that the events added after the removal are in it.
+        clearBloomFilter(bucketIdx);
+        dirtyBuckets.remove(bucketIdx);
+        evictionPolicy.bucketRemoved(bucketIdx);
+        buckets[bucketIdx] = null;
+      }
+      offLoadedBuckets.add(oldBucket);
+
+      listener.bucketOffLoaded(oldBucket.bucketKey);
+      bucketStore.deleteBucket(bucketIdx);
+      if (count) {
+        numDeletedBuckets.increment();
+        numBucketsInMemory.decrement();
+        numEventsInMemory.add(-(oldBucket.countOfUnwrittenEvents() + oldBucket.countOfWrittenEvents()));
+      }
+      logger.debug("deleted bucket {} {}", oldBucket.bucketKey, bucketIdx);
+    }
+  }
+
+  private void installBucket(int bucketIdx, long requestedKey, Map<Object, T> bucketDataInStore)
+  {
+    long numEventsRemoved = 0;
+    //Off-load buckets while the eviction policy finds pressure on memory. Every tracked bucket is visited at most once.
+    int candidates = evictionPolicy.size();
+    EvictionPolicy.Pressure pressure;
+    while (candidates-- > 0 && (pressure = evictionPolicy.getPressure(bucketDataInStore.size())) != EvictionPolicy.Pressure.NONE) {
+      int lruIdx = evictionPolicy.nextCandidate();
+      if (lruIdx < 0) {
+        break;
+      }
+      Bucket<T> lruBucket = buckets[lruIdx];
+      if (lruBucket == null) {
+        evictionPolicy.bucketRemoved(lruIdx);
+        continue;
+      }
+      if (lruIdx == bucketIdx || dirtyBuckets.containsKey(lruIdx) || isUnsaved(lruIdx) || isBeingLoaded(lruIdx)) {
+        continue;
+      }
+      if (pressure == EvictionPolicy.Pressure.SOFT
+        && (System.currentTimeMillis() - lruBucket.lastUpdateTime()) < millisPreventingBucketEviction) {
+        if (count) {
+          numBucketsSparedFromEviction.increment();
+        }
+        continue;
+      }
+      evictionPolicy.bucketRemoved(lruIdx);
+      buckets[lruIdx] = null;
+      offLoadedBuckets.add(lruBucket);
+      listener.bucketOffLoaded(lruBucket.bucketKey);
+      if (count) {
+        numEvictedBuckets.increment();
+        numBucketsInMemory.decrement();
+        numEventsRemoved += lruBucket.countOfUnwrittenEvents() + lruBucket.countOfWrittenEvents();
+      }
+      logger.debug("evicted bucket {} {}", lruBucket.bucketKey, lruIdx);
+    }
+
+    Bucket<T> bucket = buckets[bucketIdx];
+    if (bucket == null || bucket.bucketKey != requestedKey) {
+      bucket = createBucket(requestedKey);
+      buckets[bucketIdx] = bucket;
+    }
+    bucket.setWrittenEvents(bucketDataInStore);
+    evictionPolicy.bucketAdded(bucketIdx, bucket);
+    listener.bucketLoaded(bucket);
+    if (count) {
+      numBucketsInMemory.increment();
+      numEventsInMemory.add(bucketDataInStore.size() - numEventsRemoved);
+      evictionPolicyUsage.setValue(evictionPolicy.getUsage());
+    }
+  }
+
+  private boolean isBeingLoaded(int bucketIdx)
+  {
+    synchronized (pendingLoads) {
+      return pendingLoads.containsKey(bucketIdx);
     }
   }
 
@@ -334,6 +599,9 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     bucketStore.setup();
     logger.debug("bucket properties {}, {}, {}, {}", noOfBuckets, noOfBucketsInMemory, maxNoOfBucketsInMemory, millisPreventingBucketEviction);
     this.listener = Preconditions.checkNotNull(listener, "storageHandler");
+    if (evictionPolicy == null) {
+      evictionPolicy = new ClockEvictionPolicy(noOfBucketsInMemory, maxNoOfBucketsInMemory);
+    }
     @SuppressWarnings("unchecked")
     Bucket<T>[] freshBuckets = (Bucket<T>[]) Array.newInstance(Bucket.class, noOfBuckets);
     buckets = freshBuckets;
@@ -341,6 +609,16 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     for (Map.Entry<Integer, Bucket<T>> bucketEntry : dirtyBuckets.entrySet()) {
       buckets[bucketEntry.getKey()] = bucketEntry.getValue();
     }
+    if (saveAsynchronously) {
+      Preconditions.checkState(bucketStore instanceof BucketStore.AsyncBucketStore, "asynchronous save needs an AsyncBucketStore");
+      bucketWriter = Executors.newSingleThreadExecutor(new NameableThreadFactory("BucketWriterService"));
+      //Persist the windows which were check-pointed before their data was saved, before any bucket is loaded.
+      for (long window : Lists.newArrayList(unsavedWindows.keySet())) {
+        submitSave(window);
+        completePendingSave();
+      }
+    }
+    loaders = Executors.newFixedThreadPool(noOfLoaders, new NameableThreadFactory("BucketLoader"));
     Thread eventServiceThread = new Thread(this, "BucketLoaderService");
     eventServiceThread.start();
   }
@@ -368,7 +646,7 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     Bucket<T> bucket = buckets[bucketIdx];
 
     if (bucket == null || bucket.bucketKey != bucketKey) {
-      bucket = new Bucket<T>(bucketKey);
+      bucket = createBucket(bucketKey);
       buckets[bucketIdx] = bucket;
       dirtyBuckets.put(bucketIdx, bucket);
     }
@@ -377,31 +655,214 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     }
 
     bucket.addNewEvent(event.getEventKey(), writeEventKeysOnly ? null : event);
+    addToBloomFilter(bucketIdx, event.getEventKey());
     if (count) {
       numEventsInMemory.increment();
     }
   }
 
+  /**
+   * {@inheritDoc}<br/>
+   * The event is added when the bloom filter of the bucket index does not have its key. This is not attempted when a
+   * different bucket is at the index or a bucket is being loaded at the index since that could replace the bucket.
+   * Loaders of other indices only wait for this while they change the buckets in memory, not while they fetch data.
+   */
+  @Override
+  public boolean tryNewEvent(long bucketKey, T event)
+  {
+    if (expectedEventsPerBucket <= 0) {
+      return false;
+    }
+    int bucketIdx = (int) (bucketKey % noOfBuckets);
+    synchronized (filterLock) {
+      Bucket<T> bucket = buckets[bucketIdx];
+      if ((bucket != null && bucket.bucketKey != bucketKey) || isBeingLoaded(bucketIdx)) {
+        return false;
+      }
+      BloomFilter bloomFilter = bloomFilters.get(bucketIdx);
+      if (bloomFilter != null && bloomFilter.mightContainHash(bloomFilterHash(event.getEventKey()))) {
+        return false;
+      }
+      newEvent(bucketKey, event);
+      if (bucket == null) {
+        //the bucket which is created for the event can be off-loaded like a loaded bucket.
+        evictionPolicy.bucketAdded(bucketIdx, buckets[bucketIdx]);
+        if (count) {
+          numBucketsInMemory.increment();
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Adds the event key to the bloom filter of the bucket index when bloom filters are used.
+   *
+   * @param bucketIdx index of the bucket.
+   * @param eventKey  event key.
+   */
+  protected void addToBloomFilter(int bucketIdx, Object eventKey)
+  {
+    if (expectedEventsPerBucket <= 0) {
+      return;
+    }
+    synchronized (filterLock) {
+      BloomFilter bloomFilter = bloomFilters.get(bucketIdx);
+      if (bloomFilter == null) {
+        bloomFilter = new BloomFilter(expectedEventsPerBucket, bloomFilterFalsePositiveRate);
+        bloomFilters.put(bucketIdx, bloomFilter);
+      }
+      bloomFilter.addHash(bloomFilterHash(eventKey));
+    }
+  }
+
+  /**
+   * Hash of the event key for the bloom filters. When there is a {@link #keyCodec} this is the hash of the encoded key
+   * since keys are equal by their encoding, for e.g. byte[] keys; otherwise it is the hash code of the key.
+   * Called while holding the filter lock.
+   *
+   * @param eventKey event key.
+   * @return hash of the key.
+   */
+  @SuppressWarnings("unchecked")
+  private int bloomFilterHash(Object eventKey)
+  {
+    if (keyCodec == null) {
+      return eventKey.hashCode();
+    }
+    if (keyScratch == null) {
+      keyScratch = ByteBuffer.allocate(64);
+    }
+    while (true) {
+      keyScratch.clear();
+      if (((KeyCodec<Object>) keyCodec).encode(eventKey, keyScratch)) {
+        return OffHeapKeySet.hash(keyScratch, keyScratch.position());
+      }
+      keyScratch = ByteBuffer.allocate(keyScratch.capacity() << 1);
+    }
+  }
+
+  private void clearBloomFilter(int bucketIdx)
+  {
+    synchronized (filterLock) {
+      bloomFilters.remove(bucketIdx);
+    }
+  }
+
+  /**
+   * Creates a new bucket. Sub-classes can override this to provide a different {@link Bucket} implementation.
+   *
+   * @param bucketKey key of the bucket.
+   * @return new bucket.
+   */
+  protected Bucket<T> createBucket(long bucketKey)
+  {
+    if (keyCodec != null && writeEventKeysOnly) {
+      return new OffHeapKeyBucket<T>(bucketKey, keyCodec);
+    }
+    return new Bucket<T>(bucketKey);
+  }
+
+  @Override
+  public void beginWindow(long window)
+  {
+    if (loaderLock.isWriteLockedByCurrentThread()) {
+      if (pendingSave != null && pendingSave.isDone()) {
+        completePendingSave();
+      }
+      loaderLock.writeLock().unlock();
+    }
+  }
+
   @Override
   public void endWindow(long window)
   {
-    saveData(window, window);
+    suspendLoader();
+    try {
+      saveData(window, window);
+    }
+    finally {
+      resumeLoaderIfSynchronous();
+    }
+  }
+
+  /**
+   * Prevents the loader from modifying the state of the manager. When saving asynchronously the loader stays
+   * suspended till {@link #beginWindow(long)} so that the state is not modified while it is check-pointed.<br/>
+   * The buckets which were off-loaded during the window are released here.
+   */
+  protected void suspendLoader()
+  {
+    if (!loaderLock.isWriteLockedByCurrentThread()) {
+      loaderLock.writeLock().lock();
+    }
+    Bucket<T> offLoadedBucket;
+    while ((offLoadedBucket = offLoadedBuckets.poll()) != null) {
+      offLoadedBucket.release();
+    }
+  }
+
+  protected void resumeLoaderIfSynchronous()
+  {
+    if (!saveAsynchronously && loaderLock.isWriteLockedByCurrentThread()) {
+      loaderLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void checkpointed(long window)
+  {
+    if (bucketStore instanceof CheckpointListener) {
+      ((CheckpointListener) bucketStore).checkpointed(window);
+    }
+  }
+
+  @Override
+  public void committed(long window)
+  {
+    if (saveAsynchronously) {
+      long lastSavedWindow = unsavedWindows.isEmpty() ? window : Math.min(window, unsavedWindows.firstKey() - 1);
+      if (lastSavedWindow > committedWindow) {
+        committedWindow = lastSavedWindow;
+      }
+    }
+    if (bucketStore instanceof CheckpointListener) {
+      ((CheckpointListener) bucketStore).committed(window);
+    }
   }
 
   protected void saveData(long window, long id)
   {
     Map<Integer, Map<Object, T>> dataToStore = Maps.newHashMap();
+    Map<Integer, Long> bucketKeys = Maps.newHashMap();
     long eventsCount = 0;
     for (Map.Entry<Integer, Bucket<T>> entry : dirtyBuckets.entrySet()) {
       Bucket<T> bucket = entry.getValue();
-      dataToStore.put(entry.getKey(), bucket.getUnwrittenEvents());
+      if (saveAsynchronously) {
+        //the bucket keeps using the map of un-written events after the transfer so the writer is given a copy.
+        dataToStore.put(entry.getKey(), Maps.newHashMap(bucket.getUnwrittenEvents()));
+        bucketKeys.put(entry.getKey(), bucket.bucketKey);
+      }
+      else {
+        dataToStore.put(entry.getKey(), bucket.getUnwrittenEvents());
+      }
       eventsCount += bucket.countOfUnwrittenEvents();
       bucket.transferDataFromMemoryToStore();
-      evictionCandidates.add(entry.getKey());
+      evictionPolicy.bucketAdded(entry.getKey(), bucket);
     }
     if (count) {
       numEventsCommittedLastWindow.setValue(eventsCount);
     }
+    if (saveAsynchronously) {
+      //only one window is saved at a time.
+      completePendingSave();
+      if (!dataToStore.isEmpty()) {
+        unsavedWindows.put(window, new UnsavedWindow<T>(id, bucketKeys, dataToStore));
+        submitSave(window);
+      }
+      dirtyBuckets.clear();
+      return;
+    }
     try {
       if (!dataToStore.isEmpty()) {
         long start = System.currentTimeMillis();
@@ -417,6 +878,69 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     committedWindow = window;
   }
 
+  private void submitSave(final long window)
+  {
+    final UnsavedWindow<T> unsavedWindow = unsavedWindows.get(window);
+    pendingSaveWindow = window;
+    pendingSave = bucketWriter.submit(new Callable<Map<Integer, Long>>()
+    {
+      @Override
+      public Map<Integer, Long> call() throws Exception
+      {
+        long start = System.currentTimeMillis();
+        logger.debug("start async store {}", window);
+        Map<Integer, Long> positions = ((BucketStore.AsyncBucketStore<T>) bucketStore).writeBucketData(window, unsavedWindow.data);
+        logger.debug("end async store {} took {}", window, System.currentTimeMillis() - start);
+        return positions;
+      }
+
+    });
+  }
+
+  /**
+   * Waits for the background writer to persist the pending window and records it in the store.
+   */
+  private void completePendingSave()
+  {
+    if (pendingSave == null) {
+      return;
+    }
+    Map<Integer, Long> positions;
+    try {
+      positions = pendingSave.get();
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    pendingSave = null;
+    UnsavedWindow<T> unsavedWindow = unsavedWindows.remove(pendingSaveWindow);
+
+    //Ignore the data of the buckets which were deleted, and maybe replaced, by the loader while the window was being
+    //saved. Buckets with unsaved data are not evicted, so a missing bucket was deleted by a loader which is still
+    //fetching its replacement. The store discards the saved data when no bucket is left.
+    for (Iterator<Integer> iterator = positions.keySet().iterator(); iterator.hasNext(); ) {
+      int bucketIdx = iterator.next();
+      Bucket<T> bucket = buckets[bucketIdx];
+      if (bucket == null || bucket.bucketKey != unsavedWindow.bucketKeys.get(bucketIdx)) {
+        iterator.remove();
+      }
+    }
+    ((BucketStore.AsyncBucketStore<T>) bucketStore).bucketDataWritten(pendingSaveWindow, unsavedWindow.timestamp, unsavedWindow.data, positions);
+  }
+
+  private boolean isUnsaved(int bucketIdx)
+  {
+    for (UnsavedWindow<T> unsavedWindow : unsavedWindows.values()) {
+      if (unsavedWindow.data.containsKey(bucketIdx)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public void blockUntilAllRequestsServiced() throws InterruptedException
   {
@@ -439,6 +963,19 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     for (BucketManager<T> manager : oldManagers) {
       BucketManagerImpl<T> managerImpl = (BucketManagerImpl<T>) manager;
 
+      //The events of a bucket index can go to any new manager, so every new manager gets the union of the filters.
+      for (Map.Entry<Integer, BloomFilter> filterEntry : managerImpl.bloomFilters.entrySet()) {
+        for (BucketManager<T> newManager : Sets.newHashSet(partitionKeysToManagers.values())) {
+          Map<Integer, BloomFilter> newFilters = ((BucketManagerImpl<T>) newManager).bloomFilters;
+          BloomFilter destFilter = newFilters.get(filterEntry.getKey());
+          if (destFilter == null) {
+            destFilter = filterEntry.getValue().emptyCopy();
+            newFilters.put(filterEntry.getKey(), destFilter);
+          }
+          destFilter.merge(filterEntry.getValue());
+        }
+      }
+
       for (Map.Entry<Integer, Bucket<T>> bucketEntry : managerImpl.dirtyBuckets.entrySet()) {
         Bucket<T> sourceBucket = bucketEntry.getValue();
         int sourceBucketIdx = bucketEntry.getKey();
@@ -449,12 +986,32 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
 
           Bucket<T> destBucket = newManagerImpl.dirtyBuckets.get(sourceBucketIdx);
           if (destBucket == null) {
-            destBucket = new Bucket<T>(sourceBucket.bucketKey);
+            destBucket = newManagerImpl.createBucket(sourceBucket.bucketKey);
             newManagerImpl.dirtyBuckets.put(sourceBucketIdx, destBucket);
           }
           destBucket.addNewEvent(eventEntry.getKey(), eventEntry.getValue());
         }
       }
+
+      //Events which were not saved yet are made un-written events of the new managers.
+      for (UnsavedWindow<T> unsavedWindow : managerImpl.unsavedWindows.values()) {
+        for (Map.Entry<Integer, Map<Object, T>> bucketEntry : unsavedWindow.data.entrySet()) {
+          int sourceBucketIdx = bucketEntry.getKey();
+          long sourceBucketKey = unsavedWindow.bucketKeys.get(sourceBucketIdx);
+
+          for (Map.Entry<Object, T> eventEntry : bucketEntry.getValue().entrySet()) {
+            int partition = eventEntry.getKey().hashCode() & partitionMask;
+            BucketManagerImpl<T> newManagerImpl = (BucketManagerImpl<T>) partitionKeysToManagers.get(partition);
+
+            Bucket<T> destBucket = newManagerImpl.dirtyBuckets.get(sourceBucketIdx);
+            if (destBucket == null) {
+              destBucket = newManagerImpl.createBucket(sourceBucketKey);
+              newManagerImpl.dirtyBuckets.put(sourceBucketIdx, destBucket);
+            }
+            destBucket.addNewEvent(eventEntry.getKey(), eventEntry.getValue());
+          }
+        }
+      }
     }
   }
 
@@ -469,6 +1026,12 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   protected void copyPropertiesTo(BucketManagerImpl<T> other)
   {
     other.writeEventKeysOnly = writeEventKeysOnly;
+    other.keyCodec = keyCodec;
+    other.saveAsynchronously = saveAsynchronously;
+    other.noOfLoaders = noOfLoaders;
+    other.evictionPolicy = evictionPolicy == null ? null : evictionPolicy.cloneWithProperties();
+    other.expectedEventsPerBucket = expectedEventsPerBucket;
+    other.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
     other.noOfBuckets = noOfBuckets;
     other.noOfBucketsInMemory = noOfBucketsInMemory;
     other.maxNoOfBucketsInMemory = maxNoOfBucketsInMemory;
@@ -482,6 +1045,30 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
   {
   }
 
+  /**
+   * Events of a window which are being persisted by the background writer.
+   *
+   * @param <T> event type
+   */
+  protected static class UnsavedWindow<T extends Bucketable>
+  {
+    long timestamp;
+    Map<Integer, Long> bucketKeys;
+    Map<Integer, Map<Object, T>> data;
+
+    @SuppressWarnings("unused")
+    private UnsavedWindow()
+    {
+    }
+
+    UnsavedWindow(long timestamp, Map<Integer, Long> bucketKeys, Map<Integer, Map<Object, T>> data)
+    {
+      this.timestamp = timestamp;
+      this.bucketKeys = bucketKeys;
+      this.data = data;
+    }
+  }
+
   @Override
   public boolean equals(Object o)
   {
@@ -513,6 +1100,15 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     if (writeEventKeysOnly != that.writeEventKeysOnly) {
       return false;
     }
+    if (saveAsynchronously != that.saveAsynchronously) {
+      return false;
+    }
+    if (noOfLoaders != that.noOfLoaders) {
+      return false;
+    }
+    if (expectedEventsPerBucket != that.expectedEventsPerBucket) {
+      return false;
+    }
     if (!bucketStore.equals(that.bucketStore)) {
       return false;
     }
@@ -528,6 +1124,9 @@ public class BucketManagerImpl<T extends Bucketable> implements BucketManager<T>
     result = 31 * result + maxNoOfBucketsInMemory;
     result = 31 * result + (int) (millisPreventingBucketEviction ^ (millisPreventingBucketEviction >>> 32));
     result = 31 * result + (writeEventKeysOnly ? 1 : 0);
+    result = 31 * result + (saveAsynchronously ? 1 : 0);
+    result = 31 * result + noOfLoaders;
+    result = 31 * result + expectedEventsPerBucket;
     result = 31 * result + (bucketStore.hashCode());
     result = 31 * result + (dirtyBuckets.hashCode());
     result = 31 * result + (int) (committedWindow ^ (committedWindow >>> 32));
@@ -82,4 +82,35 @@ public interface BucketStore<T extends Bucketable>
   {
     void deleteExpiredBuckets(long time) throws IOException;
   }
+
+  /**
+   * A store which separates persisting bucket data from updating its own state. This allows the data to be
+   * persisted by a thread other than the operator thread while the check-pointed state is only modified by the
+   * operator thread.
+   */
+  public interface AsyncBucketStore<T extends Bucketable> extends BucketStore<T>
+  {
+    /**
+     * Persists the un-written bucket data collected in the given window. This must not modify the check-pointed
+     * state of the store.
+     *
+     * @param window window for which data is saved.
+     * @param data   bucket events to be persisted.
+     * @return position of the data of every bucket in the persistent store.
+     */
+    @Nonnull
+    Map<Integer, Long> writeBucketData(long window, Map<Integer, Map<Object, T>> data) throws IOException;
+
+    /**
+     * Updates the state of the store after {@link #writeBucketData(long, Map)} completes. This is invoked by the
+     * operator thread.
+     *
+     * @param window    window for which data was saved.
+     * @param timestamp timestamp corresponding to which data was saved.
+     * @param data      bucket events that were persisted.
+     * @param positions positions returned by {@link #writeBucketData(long, Map)}; buckets missing from it are ignored
+     *                  and the persisted data is discarded when it is empty.
+     */
+    void bucketDataWritten(long window, long timestamp, Map<Integer, Map<Object, T>> data, Map<Integer, Long> positions);
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+
+/**
+ * <p>
+ * A {@link ClockEvictionPolicy} which limits the estimated bytes of the buckets in memory instead of their number.
+ * </p>
+ *
+ * <p>
+ * The size of a bucket is estimated as {@link #bytesPerBucket} + number of events * {@link #bytesPerEvent}. The
+ * estimate of a bucket is refreshed whenever the manager adds it again (eg. after its events are persisted) and when
+ * the hand of the clock passes it. {@link #softLimit} and {@link #hardLimit} are in bytes.
+ * </p>
+ */
+public class ByteBudgetEvictionPolicy extends ClockEvictionPolicy
+{
+  public static long DEF_BYTES_PER_BUCKET = 1024;
+  @Min(0)
+  protected long bytesPerEvent;
+  @Min(0)
+  protected long bytesPerBucket;
+
+  @SuppressWarnings("unused")
+  private ByteBudgetEvictionPolicy()
+  {
+    super();
+  }
+
+  /**
+   * @param softLimitBytes bytes at which recently used buckets are spared.
+   * @param hardLimitBytes bytes at which buckets are off-loaded irrespective of their last access time.
+   * @param bytesPerEvent  estimated bytes of an event in a bucket, including the key and the map entry.
+   */
+  public ByteBudgetEvictionPolicy(long softLimitBytes, long hardLimitBytes, long bytesPerEvent)
+  {
+    super(softLimitBytes, hardLimitBytes);
+    this.bytesPerEvent = bytesPerEvent;
+    this.bytesPerBucket = DEF_BYTES_PER_BUCKET;
+  }
+
+  @Nonnull
+  @Override
+  public synchronized Pressure getPressure(long incomingEvents)
+  {
+    long usage = totalEstimate + bytesPerBucket + incomingEvents * bytesPerEvent;
+    if (usage > hardLimit) {
+      return Pressure.HARD;
+    }
+    if (usage > softLimit) {
+      return Pressure.SOFT;
+    }
+    return Pressure.NONE;
+  }
+
+  @Override
+  public synchronized long getUsage()
+  {
+    return totalEstimate;
+  }
+
+  @Nonnull
+  @Override
+  public ByteBudgetEvictionPolicy cloneWithProperties()
+  {
+    ByteBudgetEvictionPolicy clone = new ByteBudgetEvictionPolicy(softLimit, hardLimit, bytesPerEvent);
+    clone.bytesPerBucket = bytesPerBucket;
+    return clone;
+  }
+
+  @Override
+  protected long estimate(Bucket<?> bucket)
+  {
+    return bytesPerBucket + (bucket.countOfWrittenEvents() + bucket.countOfUnwrittenEvents()) * bytesPerEvent;
+  }
+
+  public void setBytesPerEvent(long bytesPerEvent)
+  {
+    this.bytesPerEvent = bytesPerEvent;
+  }
+
+  /**
+   * Sets the estimated fixed overhead of a bucket in bytes.
+   */
+  public void setBytesPerBucket(long bytesPerBucket)
+  {
+    this.bytesPerBucket = bytesPerBucket;
+  }
+
+}
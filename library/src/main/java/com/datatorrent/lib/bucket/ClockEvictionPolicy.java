@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.validation.constraints.Min;
+
+/**
+ * <p>
+ * An {@link EvictionPolicy} which limits the number of buckets in memory and picks candidates with the CLOCK
+ * (second chance) algorithm.
+ * </p>
+ *
+ * <p>
+ * Tracked buckets are kept in a ring in the order they were added. The hand of the clock is the head of the ring.
+ * A bucket which was accessed since the hand last passed it gets a second chance and is moved to the tail; otherwise
+ * it is the candidate. This approximates least recently used order in O(1) amortized time per candidate, instead of
+ * ordering all the buckets by their access time for every load.
+ * </p>
+ *
+ * <ul>
+ * <li>{@link #softLimit}: when it is reached buckets which were used recently are spared.</li>
+ * <li>{@link #hardLimit}: when it is reached buckets are off-loaded irrespective of their last access time.</li>
+ * </ul>
+ */
+public class ClockEvictionPolicy implements EvictionPolicy
+{
+  @Min(1)
+  protected long softLimit;
+  @Min(1)
+  protected long hardLimit;
+  //bucket index -> entry. The iteration order is the order of the ring.
+  protected transient final LinkedHashMap<Integer, Entry> ring;
+  //sum of the estimates of the tracked buckets.
+  protected transient long totalEstimate;
+
+  protected ClockEvictionPolicy()
+  {
+    ring = new LinkedHashMap<Integer, Entry>();
+  }
+
+  /**
+   * @param softLimit number of buckets at which recently used buckets are spared.
+   * @param hardLimit number of buckets at which buckets are off-loaded irrespective of their last access time.
+   */
+  public ClockEvictionPolicy(long softLimit, long hardLimit)
+  {
+    this();
+    this.softLimit = softLimit;
+    this.hardLimit = hardLimit;
+  }
+
+  @Override
+  public synchronized void bucketAdded(int bucketIdx, @Nonnull Bucket<?> bucket)
+  {
+    Entry entry = ring.get(bucketIdx);
+    if (entry == null || entry.bucket != bucket) {
+      bucketRemoved(bucketIdx);
+      entry = new Entry(bucket);
+      ring.put(bucketIdx, entry);
+    }
+    updateEstimate(entry);
+  }
+
+  @Override
+  public synchronized void bucketRemoved(int bucketIdx)
+  {
+    Entry entry = ring.remove(bucketIdx);
+    if (entry != null) {
+      totalEstimate -= entry.estimate;
+    }
+  }
+
+  @Nonnull
+  @Override
+  public synchronized Pressure getPressure(long incomingEvents)
+  {
+    long usage = ring.size() + 1;
+    if (usage > hardLimit) {
+      return Pressure.HARD;
+    }
+    if (usage > softLimit) {
+      return Pressure.SOFT;
+    }
+    return Pressure.NONE;
+  }
+
+  @Override
+  public synchronized int nextCandidate()
+  {
+    //after one sweep every bucket has lost its second chance, so the loop ends within ring.size() + 1 steps.
+    while (!ring.isEmpty()) {
+      Iterator<Map.Entry<Integer, Entry>> iterator = ring.entrySet().iterator();
+      Map.Entry<Integer, Entry> head = iterator.next();
+      int bucketIdx = head.getKey();
+      Entry entry = head.getValue();
+      iterator.remove();
+      ring.put(bucketIdx, entry);
+
+      updateEstimate(entry);
+      long accessTime = entry.bucket.lastUpdateTime();
+      if (accessTime > entry.referenceTime) {
+        entry.referenceTime = accessTime;
+      }
+      else {
+        return bucketIdx;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return ring.size();
+  }
+
+  @Override
+  public synchronized long getUsage()
+  {
+    return ring.size();
+  }
+
+  @Nonnull
+  @Override
+  public ClockEvictionPolicy cloneWithProperties()
+  {
+    return new ClockEvictionPolicy(softLimit, hardLimit);
+  }
+
+  private void updateEstimate(Entry entry)
+  {
+    long estimate = estimate(entry.bucket);
+    totalEstimate += estimate - entry.estimate;
+    entry.estimate = estimate;
+  }
+
+  /**
+   * Estimates the memory used by a bucket. This policy does not use the estimates.
+   *
+   * @param bucket bucket.
+   * @return estimated memory of the bucket.
+   */
+  protected long estimate(Bucket<?> bucket)
+  {
+    return 0;
+  }
+
+  public void setSoftLimit(long softLimit)
+  {
+    this.softLimit = softLimit;
+  }
+
+  public void setHardLimit(long hardLimit)
+  {
+    this.hardLimit = hardLimit;
+  }
+
+  /**
+   * A tracked bucket.
+   */
+  protected static class Entry
+  {
+    final Bucket<?> bucket;
+    long referenceTime;
+    long estimate;
+
+    Entry(Bucket<?> bucket)
+    {
+      this.bucket = bucket;
+      this.referenceTime = bucket.lastUpdateTime();
+    }
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import javax.annotation.Nonnull;
+
+/**
+ * <p>
+ * Decides when and which buckets are off-loaded from memory by {@link BucketManagerImpl}.
+ * </p>
+ *
+ * <p>
+ * The policy tracks the buckets which can be off-loaded. Before a bucket is loaded, the manager asks for the
+ * {@link Pressure} on memory and, while there is pressure, asks for the next candidate which it off-loads unless the
+ * bucket has un-persisted events or is spared because it was used recently and the pressure is only
+ * {@link Pressure#SOFT}.<br/>
+ * The methods can be invoked by both the operator and the loader threads so implementations need to be thread-safe.
+ * Properties of a policy are check-pointed but the tracked buckets are not.
+ * </p>
+ */
+public interface EvictionPolicy
+{
+  /**
+   * Starts tracking a bucket or updates the tracked information of a bucket which is already tracked.
+   *
+   * @param bucketIdx index of the bucket.
+   * @param bucket    bucket.
+   */
+  void bucketAdded(int bucketIdx, @Nonnull Bucket<?> bucket);
+
+  /**
+   * Stops tracking the bucket at the index because it is removed from memory.
+   *
+   * @param bucketIdx index of the bucket.
+   */
+  void bucketRemoved(int bucketIdx);
+
+  /**
+   * Finds the pressure on memory when a bucket with the given number of events is going to be loaded.
+   *
+   * @param incomingEvents number of events of the bucket which is being loaded.
+   * @return pressure on memory.
+   */
+  @Nonnull
+  Pressure getPressure(long incomingEvents);
+
+  /**
+   * Provides the next bucket to off-load. The bucket remains tracked till {@link #bucketRemoved(int)} is called so
+   * when it is not off-loaded, it should be placed behind the other candidates.
+   *
+   * @return index of the bucket; -1 if no bucket is tracked.
+   */
+  int nextCandidate();
+
+  /**
+   * @return number of tracked buckets.
+   */
+  int size();
+
+  /**
+   * @return the quantity which is budgeted by the policy, eg. the number of buckets or estimated bytes.
+   */
+  long getUsage();
+
+  /**
+   * Constructs a new policy with only the properties and no tracked buckets.
+   *
+   * @return new policy.
+   */
+  @Nonnull
+  EvictionPolicy cloneWithProperties();
+
+  public static enum Pressure
+  {
+    /**
+     * No bucket needs to be off-loaded.
+     */
+    NONE,
+    /**
+     * Buckets which were used recently are not off-loaded.
+     */
+    SOFT,
+    /**
+     * Buckets are off-loaded irrespective of their last access time.
+     */
+    HARD
+  }
+}
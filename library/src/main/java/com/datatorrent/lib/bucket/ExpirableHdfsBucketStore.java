@@ -16,8 +16,8 @@
 package com.datatorrent.lib.bucket;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.fs.FileSystem;
@@ -25,51 +25,76 @@ import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
 /**
  * <p>ExpirableHdfsBucketStore class.</p>
+ * <p>
+ * Buckets expire with the window files that hold their data. A compacted segment merges the data of many windows and
+ * cannot be expired per window, so this store does not support {@link #setCompactWindowFiles(boolean) compaction}.</p>
  *
  * @since 0.9.5
  */
 public class ExpirableHdfsBucketStore<T extends Bucketable & Event> extends HdfsBucketStore<T> implements BucketStore.ExpirableBucketStore<T>
 {
 
+  /**
+   * Compaction is not supported by this store since expired data cannot be removed from a segment.
+   *
+   * @param compactWindowFiles must be false
+   * @throws IllegalArgumentException if compactWindowFiles is true
+   */
+  @Override
+  public void setCompactWindowFiles(boolean compactWindowFiles)
+  {
+    Preconditions.checkArgument(!compactWindowFiles, "compaction is not supported by an expirable store");
+    super.setCompactWindowFiles(compactWindowFiles);
+  }
+
+  @Override
+  public void setup()
+  {
+    Preconditions.checkState(!compactWindowFiles, "compaction is not supported by an expirable store");
+    super.setup();
+  }
+
   @Override
   public void deleteExpiredBuckets(long time) throws IOException
   {
-    Iterator<Long> iterator = windowToBuckets.keySet().iterator();
-    for (; iterator.hasNext(); ) {
-      long window = iterator.next();
-      long timestamp= windowToTimestamp.get(window);
-      if (timestamp < time) {
-        Collection<Integer> indices = windowToBuckets.get(window);
-        synchronized (indices) {
-          if (indices.size() > 0) {
-            Path dataFilePath = new Path(bucketRoot + PATH_SEPARATOR + window);
-            FileSystem fs = FileSystem.newInstance(dataFilePath.toUri(), configuration);
-            try {
-              if (fs.exists(dataFilePath)) {
-                logger.debug("start delete {}", window);
-                fs.delete(dataFilePath, true);
-                logger.debug("end delete {}", window);
-              }
-              for (int bucketIdx : indices) {
-                Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
-                if (offsetMap != null) {
-                  synchronized (offsetMap) {
-                    offsetMap.remove(window);
-                  }
-                }
-              }
-            }
-            finally {
-              fs.close();
+    List<Long> expiredWindows = Lists.newArrayList();
+    synchronized (lock) {
+      Iterator<Long> iterator = windowToBuckets.keySet().iterator();
+      for (; iterator.hasNext(); ) {
+        long window = iterator.next();
+        long timestamp = windowToTimestamp.get(window);
+        if (timestamp < time) {
+          for (int bucketIdx : windowToBuckets.get(window)) {
+            Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+            if (offsetMap != null) {
+              offsetMap.remove(window);
             }
           }
           windowToTimestamp.remove(window);
           iterator.remove();
+          expiredWindows.add(window);
         }
       }
     }
+    for (long window : expiredWindows) {
+      Path dataFilePath = new Path(bucketRoot + PATH_SEPARATOR + window);
+      FileSystem fs = FileSystem.newInstance(dataFilePath.toUri(), configuration);
+      try {
+        if (fs.exists(dataFilePath)) {
+          logger.debug("start delete {}", window);
+          fs.delete(dataFilePath, true);
+          logger.debug("end delete {}", window);
+        }
+      }
+      finally {
+        fs.close();
+      }
+    }
   }
 
   private static transient final Logger logger = LoggerFactory.getLogger(ExpirableHdfsBucketStore.class);
@@ -34,22 +34,36 @@ import org.slf4j.LoggerFactory;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.CheckpointListener;
 
 import com.datatorrent.common.util.NameableThreadFactory;
 
 /**
  * {@link BucketStore} which works with HDFS.<br/>
  * The path of buckets in hdfs is <code>{application-path}/buckets/{operatorId}/{windowId}</code>.
+ * <p>
+ * When {@link #compactWindowFiles} is true, a background compactor merges the files of committed windows into
+ * segment files, each of which holds the data of {@link #bucketsPerSegment} consecutive buckets. The path of a
+ * segment is <code>{application-path}/buckets/{operatorId}/segments/{segmentIdx}-{windowId}</code> where windowId is
+ * the committed window up to which the segment was compacted. A segment has the data of its buckets one after the
+ * other. The offset of every bucket in its segment is check-pointed with the store.<br/>
+ * Loading a bucket then needs one read of the segment and a read of the few window files which are not compacted
+ * yet. Compaction results are applied in the {@link #committed(long)} callback. The files which are replaced are
+ * deleted only when a window check-pointed after that is committed.
+ * </p>
  *
  * @param <T> type of bucket event
  * @since 0.9.4
  */
-public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
+public class HdfsBucketStore<T extends Bucketable> implements BucketStore.AsyncBucketStore<T>, CheckpointListener
 {
   public static transient String OPERATOR_ID = "operatorId";
   public static transient String STORE_ROOT = "storeRoot";
@@ -58,8 +72,11 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   public static transient int DEF_CORE_POOL_SIZE = 10;
   public static transient int DEF_HARD_LIMIT_POOL_SIZE = 50;
   public static transient int DEF_KEEP_ALIVE_SECONDS = 120;
+  public static transient int DEF_BUCKETS_PER_SEGMENT = 64;
+  public static transient int DEF_MIN_WINDOWS_TO_COMPACT = 10;
 
   static transient final String PATH_SEPARATOR = "/";
+  static transient final String SEGMENTS_DIR = "segments";
 
   //Check-pointed
   private boolean writeEventKeysOnly;
@@ -76,8 +93,25 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   protected int interpolatedPoolSize;
   @Nonnull
   private String bucketsDir;
+  protected boolean compactWindowFiles;
+  @Min(1)
+  protected int bucketsPerSegment;
+  @Min(1)
+  protected int minWindowsToCompact;
+  //bucket index -> offset of the bucket in its segment
+  protected Map<Integer, Long> segmentOffsets;
+  //segment index -> window up to which the segment is compacted
+  protected Map<Integer, Long> segmentVersions;
+  //files which are replaced but may be used by the last check-pointed state
+  protected List<String> filesPendingCheckpoint;
+  //check-pointed window -> files that can be deleted once a window greater than it is committed
+  protected TreeMap<Long, List<String>> filesToDelete;
 
   //Non check-pointed
+  //Guards the positions of the buckets and the segments which are used by the operator thread, the loaders and the
+  //expiry timer. No I/O is done while holding it.
+  @Nonnull
+  protected transient final Object lock;
   protected transient Multimap<Long, Integer> windowToBuckets;
   protected transient String bucketRoot;
   protected transient Configuration configuration;
@@ -87,15 +121,24 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   protected transient int partitionMask;
   protected transient int operatorId;
   protected transient ThreadPoolExecutor threadPoolExecutor;
+  protected transient ExecutorService compactor;
+  protected transient Future<List<SegmentCompaction>> compaction;
 
   public HdfsBucketStore()
   {
+    lock = new Object();
     windowToTimestamp = Maps.newHashMap();
     corePoolSize = DEF_CORE_POOL_SIZE;
     maximumPoolSize = -1;
     interpolatedPoolSize = -1;
     keepAliveSeconds = DEF_KEEP_ALIVE_SECONDS;
     bucketsDir = "buckets";
+    bucketsPerSegment = DEF_BUCKETS_PER_SEGMENT;
+    minWindowsToCompact = DEF_MIN_WINDOWS_TO_COMPACT;
+    segmentOffsets = Maps.newHashMap();
+    segmentVersions = Maps.newHashMap();
+    filesPendingCheckpoint = Lists.newArrayList();
+    filesToDelete = Maps.newTreeMap();
   }
 
   @SuppressWarnings("unchecked")
@@ -137,6 +180,32 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
     this.bucketsDir = bucketsDir;
   }
 
+  /**
+   * Set true for compacting the files of committed windows into segment files; false otherwise.
+   *
+   * @param compactWindowFiles
+   */
+  public void setCompactWindowFiles(boolean compactWindowFiles)
+  {
+    this.compactWindowFiles = compactWindowFiles;
+  }
+
+  /**
+   * Sets the number of consecutive buckets whose data is kept in one segment file.
+   */
+  public void setBucketsPerSegment(int bucketsPerSegment)
+  {
+    this.bucketsPerSegment = bucketsPerSegment;
+  }
+
+  /**
+   * Sets the minimum number of committed window files which trigger a compaction.
+   */
+  public void setMinWindowsToCompact(int minWindowsToCompact)
+  {
+    this.minWindowsToCompact = minWindowsToCompact;
+  }
+
   public void setConfiguration(int operatorId, String applicationPath, Set<Integer> partitionKeys, int partitionMask)
   {
     Preconditions.checkNotNull(applicationPath);
@@ -179,6 +248,9 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
       threadPoolExecutor = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveSeconds, TimeUnit.SECONDS, queue, threadFactory);
     }
     logger.debug("threadpool settings {} {} {}", threadPoolExecutor.getCorePoolSize(), threadPoolExecutor.getMaximumPoolSize(), keepAliveSeconds);
+    if (compactWindowFiles) {
+      compactor = Executors.newSingleThreadExecutor(new NameableThreadFactory("BucketCompactor"));
+    }
   }
 
   /**
@@ -189,6 +261,9 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   {
     //Not closing the filesystem.
     threadPoolExecutor.shutdown();
+    if (compactor != null) {
+      compactor.shutdownNow();
+    }
     configuration.clear();
   }
 
@@ -198,6 +273,17 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   @Override
   public void storeBucketData(long window, long timestamp, Map<Integer, Map<Object, T>> data) throws IOException
   {
+    bucketDataWritten(window, timestamp, data, writeBucketData(window, data));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Nonnull
+  @Override
+  public Map<Integer, Long> writeBucketData(long window, Map<Integer, Map<Object, T>> data) throws IOException
+  {
+    Map<Integer, Long> positions = Maps.newHashMap();
     Path dataFilePath = new Path(bucketRoot + PATH_SEPARATOR + window);
     FileSystem fs = FileSystem.newInstance(dataFilePath.toUri(), configuration);
     FSDataOutputStream dataStream = fs.create(dataFilePath);
@@ -208,40 +294,8 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
       for (int bucketIdx : data.keySet()) {
         Map<Object, T> bucketData = data.get(bucketIdx);
 
-        if (eventKeyClass == null) {
-          Map.Entry<Object, T> eventEntry = bucketData.entrySet().iterator().next();
-          eventKeyClass = eventEntry.getKey().getClass();
-          if (!writeEventKeysOnly) {
-            @SuppressWarnings("unchecked")
-            Class<T> lEventClass = (Class<T>) eventEntry.getValue().getClass();
-            eventClass = lEventClass;
-          }
-        }
-        //Write the size of data and then data
-        dataStream.writeInt(bucketData.size());
-        for (Map.Entry<Object, T> entry : bucketData.entrySet()) {
-          writeSerde.writeObject(output, entry.getKey());
-
-          if (!writeEventKeysOnly) {
-            int posLength = output.position();
-            output.writeInt(0); //temporary place holder
-            writeSerde.writeObject(output, entry.getValue());
-            int posValue = output.position();
-            int valueLength = posValue - posLength - 4;
-            output.setPosition(posLength);
-            output.writeInt(valueLength);
-            output.setPosition(posValue);
-          }
-        }
-        output.flush();
-        if (bucketPositions[bucketIdx] == null) {
-          bucketPositions[bucketIdx] = Maps.newHashMap();
-        }
-        windowToBuckets.put(window, bucketIdx);
-        windowToTimestamp.put(window, timestamp);
-        synchronized (bucketPositions[bucketIdx]) {
-          bucketPositions[bucketIdx].put(window, offset);
-        }
+        writeBucket(writeSerde, dataStream, output, bucketData);
+        positions.put(bucketIdx, offset);
         offset = dataStream.getPos();
       }
     }
@@ -250,6 +304,65 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
       dataStream.close();
       fs.close();
     }
+    return positions;
+  }
+
+  /**
+   * Writes the size of bucket data and then data.
+   */
+  private void writeBucket(Kryo serde, FSDataOutputStream dataStream, Output output, Map<Object, T> bucketData) throws IOException
+  {
+    dataStream.writeInt(bucketData.size());
+    for (Map.Entry<Object, T> entry : bucketData.entrySet()) {
+      serde.writeObject(output, entry.getKey());
+
+      if (!writeEventKeysOnly) {
+        int posLength = output.position();
+        output.writeInt(0); //temporary place holder
+        serde.writeObject(output, entry.getValue());
+        int posValue = output.position();
+        int valueLength = posValue - posLength - 4;
+        output.setPosition(posLength);
+        output.writeInt(valueLength);
+        output.setPosition(posValue);
+      }
+    }
+    output.flush();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void bucketDataWritten(long window, long timestamp, Map<Integer, Map<Object, T>> data, Map<Integer, Long> positions)
+  {
+    if (positions.isEmpty()) {
+      //no bucket refers to the file, e.g. all its buckets were replaced while it was being written.
+      filesPendingCheckpoint.add(getWindowPath(window).toString());
+      return;
+    }
+    for (Map.Entry<Integer, Long> positionEntry : positions.entrySet()) {
+      int bucketIdx = positionEntry.getKey();
+      Map<Object, T> bucketData = data.get(bucketIdx);
+
+      if (eventKeyClass == null && !bucketData.isEmpty()) {
+        Map.Entry<Object, T> eventEntry = bucketData.entrySet().iterator().next();
+        eventKeyClass = eventEntry.getKey().getClass();
+        if (!writeEventKeysOnly) {
+          @SuppressWarnings("unchecked")
+          Class<T> lEventClass = (Class<T>) eventEntry.getValue().getClass();
+          eventClass = lEventClass;
+        }
+      }
+      synchronized (lock) {
+        if (bucketPositions[bucketIdx] == null) {
+          bucketPositions[bucketIdx] = Maps.newHashMap();
+        }
+        windowToBuckets.put(window, bucketIdx);
+        windowToTimestamp.put(window, timestamp);
+        bucketPositions[bucketIdx].put(window, positionEntry.getValue());
+      }
+    }
   }
 
   /**
@@ -258,32 +371,34 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   @Override
   public void deleteBucket(int bucketIdx) throws IOException
   {
-    Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
-    if (offsetMap != null) {
-      for (Long window : offsetMap.keySet()) {
-        Collection<Integer> indices = windowToBuckets.get(window);
-        synchronized (indices) {
-          boolean elementRemoved = indices.remove(bucketIdx);
-          if (indices.isEmpty() && elementRemoved) {
-            Path dataFilePath = new Path(bucketRoot + PATH_SEPARATOR + window);
-            FileSystem fs = FileSystem.newInstance(dataFilePath.toUri(), configuration);
-            try {
-              if (fs.exists(dataFilePath)) {
-                logger.debug("start delete {}", window);
-                fs.delete(dataFilePath, true);
-                logger.debug("end delete {}", window);
-              }
-              windowToBuckets.removeAll(window);
-              windowToTimestamp.remove(window);
-            }
-            finally {
-              fs.close();
-            }
+    List<Long> unusedWindows = Lists.newArrayList();
+    synchronized (lock) {
+      Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+      if (offsetMap != null) {
+        for (Long window : offsetMap.keySet()) {
+          if (windowToBuckets.remove(window, bucketIdx) && !windowToBuckets.containsKey(window)) {
+            windowToTimestamp.remove(window);
+            unusedWindows.add(window);
           }
         }
       }
+      segmentOffsets.remove(bucketIdx);
+      bucketPositions[bucketIdx] = null;
+    }
+    for (long window : unusedWindows) {
+      Path dataFilePath = getWindowPath(window);
+      FileSystem fs = FileSystem.newInstance(dataFilePath.toUri(), configuration);
+      try {
+        if (fs.exists(dataFilePath)) {
+          logger.debug("start delete {}", window);
+          fs.delete(dataFilePath, true);
+          logger.debug("end delete {}", window);
+        }
+      }
+      finally {
+        fs.close();
+      }
     }
-    bucketPositions[bucketIdx] = null;
   }
 
   /**
@@ -295,30 +410,47 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
   {
     Map<Object, T> bucketData = Maps.newHashMap();
 
-    if (bucketPositions[bucketIdx] == null) {
-      return bucketData;
+    Map<Long, Long> windowOffsets;
+    Path segmentPath = null;
+    Long segmentOffset;
+    synchronized (lock) {
+      Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+      if (offsetMap == null) {
+        return bucketData;
+      }
+      windowOffsets = Maps.newHashMap(offsetMap);
+      segmentOffset = segmentOffsets.get(bucketIdx);
+      if (segmentOffset != null) {
+        int segmentIdx = bucketIdx / bucketsPerSegment;
+        segmentPath = getSegmentPath(segmentIdx, segmentVersions.get(segmentIdx));
+      }
     }
 
     logger.debug("start fetch bucket {}", bucketIdx);
 
     long startTime = System.currentTimeMillis();
     List<Future<Map<Object, T>>> futures = Lists.newArrayList();
-    Set<Long> windows = bucketPositions[bucketIdx].keySet();
-    int numWindows = windows.size();
-    if (maximumPoolSize == -1 && interpolatedPoolSize < numWindows && interpolatedPoolSize < hardLimitOnPoolSize) {
-      int diff = numWindows - interpolatedPoolSize;
-      if (interpolatedPoolSize + diff <= hardLimitOnPoolSize) {
-        interpolatedPoolSize += diff;
-      }
-      else {
-        interpolatedPoolSize = hardLimitOnPoolSize;
+    int numWindows = windowOffsets.size() + (segmentPath == null ? 0 : 1);
+    //buckets can be fetched by multiple loaders concurrently.
+    synchronized (threadPoolExecutor) {
+      if (maximumPoolSize == -1 && interpolatedPoolSize < numWindows && interpolatedPoolSize < hardLimitOnPoolSize) {
+        int diff = numWindows - interpolatedPoolSize;
+        if (interpolatedPoolSize + diff <= hardLimitOnPoolSize) {
+          interpolatedPoolSize += diff;
+        }
+        else {
+          interpolatedPoolSize = hardLimitOnPoolSize;
+        }
+        logger.debug("interpolated pool size {}", interpolatedPoolSize);
+        threadPoolExecutor.setMaximumPoolSize(interpolatedPoolSize);
       }
-      logger.debug("interpolated pool size {}", interpolatedPoolSize);
-      threadPoolExecutor.setMaximumPoolSize(interpolatedPoolSize);
     }
 
-    for (long window : windows) {
-      futures.add(threadPoolExecutor.submit(new BucketFetchCallable(bucketIdx, window)));
+    if (segmentPath != null) {
+      futures.add(threadPoolExecutor.submit(new BucketFetchCallable(segmentPath, segmentOffset)));
+    }
+    for (Map.Entry<Long, Long> windowEntry : windowOffsets.entrySet()) {
+      futures.add(threadPoolExecutor.submit(new BucketFetchCallable(getWindowPath(windowEntry.getKey()), windowEntry.getValue())));
     }
     for (Future<Map<Object, T>> future : futures) {
       bucketData.putAll(future.get());
@@ -358,16 +490,364 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
     return result;
   }
 
+  private Path getWindowPath(long window)
+  {
+    return new Path(bucketRoot + PATH_SEPARATOR + window);
+  }
+
+  private Path getSegmentPath(int segmentIdx, long version)
+  {
+    return new Path(bucketRoot + PATH_SEPARATOR + SEGMENTS_DIR + PATH_SEPARATOR + segmentIdx + "-" + version);
+  }
+
+  /**
+   * Reads the data of a bucket which starts at the offset in the file.
+   *
+   * @param filterPartitions true for reading only the events which belong to the partitions of this operator.
+   */
+  private void readBucket(Kryo readSerde, FileSystem fs, Path dataFile, long offset, boolean filterPartitions,
+                          Map<Object, T> bucketData) throws IOException
+  {
+    FSDataInputStream stream = fs.open(dataFile);
+    try {
+      stream.seek(offset);
+      Input input = new Input(stream);
+
+      int length = stream.readInt();
+
+      for (int i = 0; i < length; i++) {
+        Object key = readSerde.readObject(input, eventKeyClass);
+
+        boolean keyPasses = !filterPartitions || partitionKeys.contains(key.hashCode() & partitionMask);
+
+        if (!writeEventKeysOnly) {
+          //if key passes then read the value otherwise skip the value
+          int entrySize = input.readInt();
+          if (keyPasses) {
+            T entry = readSerde.readObject(input, eventClass);
+            bucketData.put(key, entry);
+          }
+          else {
+            input.skip(entrySize);
+          }
+        }
+        else if (keyPasses) {
+          bucketData.put(key, null);
+        }
+      }
+      input.close();
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void checkpointed(long window)
+  {
+    if (!filesPendingCheckpoint.isEmpty()) {
+      filesToDelete.put(window, Lists.newArrayList(filesPendingCheckpoint));
+      filesPendingCheckpoint.clear();
+    }
+  }
+
+  /**
+   * Deletes the files which are not used by any state that can be restored, applies the result of the compaction if
+   * it is complete and then starts compaction of the committed windows if there are enough of them.
+   */
+  @Override
+  public void committed(long window)
+  {
+    deleteUnusedFiles(window);
+    if (!compactWindowFiles) {
+      return;
+    }
+    if (compaction != null) {
+      if (!compaction.isDone()) {
+        return;
+      }
+      try {
+        applyCompaction(compaction.get());
+      }
+      catch (Exception e) {
+        logger.warn("compaction failed", e);
+      }
+      compaction = null;
+    }
+    final List<SegmentCompaction> segmentCompactions = collectSegmentCompactions(window);
+    if (!segmentCompactions.isEmpty()) {
+      compaction = compactor.submit(new Callable<List<SegmentCompaction>>()
+      {
+        @Override
+        public List<SegmentCompaction> call() throws Exception
+        {
+          Kryo serde = new Kryo();
+          serde.setClassLoader(classLoader);
+          for (SegmentCompaction segmentCompaction : segmentCompactions) {
+            compact(serde, segmentCompaction);
+          }
+          return segmentCompactions;
+        }
+
+      });
+    }
+  }
+
+  private void deleteUnusedFiles(long committedWindow)
+  {
+    Iterator<Map.Entry<Long, List<String>>> iterator = filesToDelete.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, List<String>> entry = iterator.next();
+      if (entry.getKey() >= committedWindow) {
+        break;
+      }
+      for (String file : entry.getValue()) {
+        deleteFile(new Path(file));
+      }
+      iterator.remove();
+    }
+  }
+
+  private void deleteFile(Path path)
+  {
+    try {
+      FileSystem fs = FileSystem.newInstance(path.toUri(), configuration);
+      try {
+        fs.delete(path, true);
+      }
+      finally {
+        fs.close();
+      }
+    }
+    catch (IOException e) {
+      logger.warn("could not delete {}", path, e);
+    }
+  }
+
+  /**
+   * Collects the committed windows of every bucket and groups them by segment. Invoked by the operator thread.
+   */
+  private List<SegmentCompaction> collectSegmentCompactions(long committedWindow)
+  {
+    synchronized (lock) {
+      List<SegmentCompaction> segmentCompactions = Lists.newArrayList();
+      List<Long> committedWindows = Lists.newArrayList();
+      for (long window : windowToBuckets.keySet()) {
+        if (window <= committedWindow) {
+          committedWindows.add(window);
+        }
+      }
+      if (committedWindows.size() < minWindowsToCompact) {
+        return segmentCompactions;
+      }
+
+      Map<Integer, SegmentCompaction> segments = Maps.newTreeMap();
+      for (long window : committedWindows) {
+        for (int bucketIdx : windowToBuckets.get(window)) {
+          Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+          if (offsetMap == null) {
+            continue;
+          }
+          Long offset = offsetMap.get(window);
+          if (offset == null) {
+            continue;
+          }
+          int segmentIdx = bucketIdx / bucketsPerSegment;
+          SegmentCompaction segmentCompaction = segments.get(segmentIdx);
+          if (segmentCompaction == null) {
+            segmentCompaction = new SegmentCompaction(segmentIdx, committedWindow);
+            segments.put(segmentIdx, segmentCompaction);
+          }
+          Map<Long, Long> windowOffsets = segmentCompaction.windowOffsets.get(bucketIdx);
+          if (windowOffsets == null) {
+            windowOffsets = Maps.newTreeMap();
+            segmentCompaction.windowOffsets.put(bucketIdx, windowOffsets);
+          }
+          windowOffsets.put(window, offset);
+        }
+      }
+
+      //The new segment replaces the old one so it has to include all the buckets of the old segment.
+      for (SegmentCompaction segmentCompaction : segments.values()) {
+        segmentCompaction.oldVersion = segmentVersions.get(segmentCompaction.segmentIdx);
+      }
+      for (Map.Entry<Integer, Long> entry : segmentOffsets.entrySet()) {
+        SegmentCompaction segmentCompaction = segments.get(entry.getKey() / bucketsPerSegment);
+        if (segmentCompaction != null) {
+          segmentCompaction.oldOffsets.put(entry.getKey(), entry.getValue());
+        }
+      }
+      segmentCompactions.addAll(segments.values());
+      return segmentCompactions;
+    }
+  }
+
+  /**
+   * Writes a new segment from the old segment and the window files. Invoked by the compactor thread.
+   */
+  private void compact(Kryo serde, SegmentCompaction segmentCompaction) throws IOException
+  {
+    long start = System.currentTimeMillis();
+    Path segmentPath = getSegmentPath(segmentCompaction.segmentIdx, segmentCompaction.newVersion);
+    Path oldSegmentPath = segmentCompaction.oldVersion == null ? null : getSegmentPath(segmentCompaction.segmentIdx, segmentCompaction.oldVersion);
+    Set<Integer> bucketIndices = Sets.newTreeSet(segmentCompaction.windowOffsets.keySet());
+    bucketIndices.addAll(segmentCompaction.oldOffsets.keySet());
+
+    FileSystem fs = FileSystem.newInstance(segmentPath.toUri(), configuration);
+    try {
+      FSDataOutputStream dataStream = fs.create(segmentPath);
+      Output output = new Output(dataStream);
+      try {
+        for (int bucketIdx : bucketIndices) {
+          Map<Object, T> bucketData = Maps.newHashMap();
+          Long oldOffset = segmentCompaction.oldOffsets.get(bucketIdx);
+          if (oldOffset != null) {
+            readBucket(serde, fs, oldSegmentPath, oldOffset, false, bucketData);
+          }
+          Map<Long, Long> windowOffsets = segmentCompaction.windowOffsets.get(bucketIdx);
+          if (windowOffsets != null) {
+            for (Map.Entry<Long, Long> windowEntry : windowOffsets.entrySet()) {
+              readBucket(serde, fs, getWindowPath(windowEntry.getKey()), windowEntry.getValue(), false, bucketData);
+            }
+          }
+          segmentCompaction.newOffsets.put(bucketIdx, dataStream.getPos());
+          writeBucket(serde, dataStream, output, bucketData);
+        }
+      }
+      finally {
+        output.close();
+        dataStream.close();
+      }
+    }
+    finally {
+      fs.close();
+    }
+    logger.debug("compacted segment {} buckets {} took {}", segmentCompaction.segmentIdx, bucketIndices.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Makes the buckets point to the new segments and schedules the replaced files for deletion. The data of a bucket
+   * in a new segment is ignored if the bucket was deleted while it was being compacted. Invoked by the operator thread.
+   */
+  private void applyCompaction(List<SegmentCompaction> segmentCompactions)
+  {
+    for (SegmentCompaction segmentCompaction : segmentCompactions) {
+      int segmentIdx = segmentCompaction.segmentIdx;
+      Path segmentPath = getSegmentPath(segmentIdx, segmentCompaction.newVersion);
+      boolean replaceable;
+      synchronized (lock) {
+        //A bucket which was deleted or expired while it was being compacted is left out of the new segment. If such a
+        //bucket still refers to the old segment then the old segment cannot be replaced.
+        List<Integer> compactedBuckets = Lists.newArrayList();
+        replaceable = Objects.equal(segmentVersions.get(segmentIdx), segmentCompaction.oldVersion);
+        for (int bucketIdx : segmentCompaction.newOffsets.keySet()) {
+          if (!replaceable) {
+            break;
+          }
+          if (isCompactionValid(segmentCompaction, bucketIdx)) {
+            compactedBuckets.add(bucketIdx);
+          }
+          else if (segmentOffsets.get(bucketIdx) != null) {
+            replaceable = false;
+          }
+        }
+        if (replaceable) {
+          applySegmentCompaction(segmentCompaction, compactedBuckets);
+        }
+      }
+      if (!replaceable) {
+        //no state refers to the new segment so it is deleted right away.
+        logger.debug("discard compaction of segment {}", segmentIdx);
+        deleteFile(segmentPath);
+        continue;
+      }
+      if (segmentCompaction.oldVersion != null) {
+        filesPendingCheckpoint.add(getSegmentPath(segmentIdx, segmentCompaction.oldVersion).toString());
+      }
+    }
+  }
+
+  /**
+   * Makes the compacted buckets point to the new segment. Invoked with the lock held.
+   */
+  private void applySegmentCompaction(SegmentCompaction segmentCompaction, List<Integer> compactedBuckets)
+  {
+    for (int bucketIdx : compactedBuckets) {
+      Map<Long, Long> windowOffsets = segmentCompaction.windowOffsets.get(bucketIdx);
+      if (windowOffsets != null) {
+        bucketPositions[bucketIdx].keySet().removeAll(windowOffsets.keySet());
+        for (long window : windowOffsets.keySet()) {
+          windowToBuckets.remove(window, bucketIdx);
+          if (!windowToBuckets.containsKey(window)) {
+            windowToTimestamp.remove(window);
+            filesPendingCheckpoint.add(getWindowPath(window).toString());
+          }
+        }
+      }
+      segmentOffsets.put(bucketIdx, segmentCompaction.newOffsets.get(bucketIdx));
+    }
+    segmentVersions.put(segmentCompaction.segmentIdx, segmentCompaction.newVersion);
+  }
+
+  /**
+   * Finds whether the data of the bucket which was compacted is still the current data of the bucket. Invoked with the
+   * lock held.
+   */
+  private boolean isCompactionValid(SegmentCompaction segmentCompaction, int bucketIdx)
+  {
+    Map<Long, Long> offsetMap = bucketPositions[bucketIdx];
+    if (offsetMap == null || !Objects.equal(segmentOffsets.get(bucketIdx), segmentCompaction.oldOffsets.get(bucketIdx))) {
+      return false;
+    }
+    Map<Long, Long> windowOffsets = segmentCompaction.windowOffsets.get(bucketIdx);
+    if (windowOffsets != null) {
+      for (Map.Entry<Long, Long> windowEntry : windowOffsets.entrySet()) {
+        if (!windowEntry.getValue().equals(offsetMap.get(windowEntry.getKey()))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compaction of the committed windows of the buckets of a segment.
+   */
+  protected static class SegmentCompaction
+  {
+    final int segmentIdx;
+    final long newVersion;
+    Long oldVersion;
+    //bucket index -> offset in the old segment
+    final Map<Integer, Long> oldOffsets;
+    //bucket index -> window -> offset in the window file
+    final Map<Integer, Map<Long, Long>> windowOffsets;
+    //bucket index -> offset in the new segment
+    final Map<Integer, Long> newOffsets;
+
+    SegmentCompaction(int segmentIdx, long newVersion)
+    {
+      this.segmentIdx = segmentIdx;
+      this.newVersion = newVersion;
+      oldOffsets = Maps.newHashMap();
+      windowOffsets = Maps.newHashMap();
+      newOffsets = Maps.newHashMap();
+    }
+  }
+
   private class BucketFetchCallable implements Callable<Map<Object, T>>
   {
 
-    final long window;
-    final int bucketIdx;
+    final Path dataFile;
+    final long offset;
 
-    BucketFetchCallable(int bucketIdx, long window)
+    BucketFetchCallable(Path dataFile, long offset)
     {
-      this.bucketIdx = bucketIdx;
-      this.window = window;
+      this.dataFile = dataFile;
+      this.offset = offset;
     }
 
     @Override
@@ -377,39 +857,10 @@ public class HdfsBucketStore<T extends Bucketable> implements BucketStore<T>
       readSerde.setClassLoader(classLoader);
 
       Map<Object, T> bucketDataPerWindow = Maps.newHashMap();
-      Path dataFile = new Path(bucketRoot + PATH_SEPARATOR + window);
       FileSystem fs = FileSystem.newInstance(dataFile.toUri(), configuration);
       try {
         //Read data only for the fileIds in which bucketIdx had events.
-        FSDataInputStream stream = fs.open(dataFile);
-        stream.seek(bucketPositions[bucketIdx].get(window));
-        Input input = new Input(stream);
-
-        int length = stream.readInt();
-
-        for (int i = 0; i < length; i++) {
-          Object key = readSerde.readObject(input, eventKeyClass);
-
-          int partitionKey = key.hashCode() & partitionMask;
-          boolean keyPasses = partitionKeys.contains(partitionKey);
-
-          if (!writeEventKeysOnly) {
-            //if key passes then read the value otherwise skip the value
-            int entrySize = input.readInt();
-            if (keyPasses) {
-              T entry = readSerde.readObject(input, eventClass);
-              bucketDataPerWindow.put(key, entry);
-            }
-            else {
-              input.skip(entrySize);
-            }
-          }
-          else if (keyPasses) {
-            bucketDataPerWindow.put(key, null);
-          }
-        }
-        input.close();
-        stream.close();
+        readBucket(readSerde, fs, dataFile, offset, true, bucketDataPerWindow);
       }
       finally {
         fs.close();
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * <p>
+ * Converts an event key to bytes and back so that it can be stored outside the java heap by {@link OffHeapKeySet}.
+ * </p>
+ *
+ * <p>
+ * The encoding must be injective: two keys are considered equal if and only if their encoded bytes are equal.
+ * Implementations should not allocate while encoding as encoding is done for every event.
+ * </p>
+ *
+ * @param <K> type of event key
+ */
+public interface KeyCodec<K>
+{
+  /**
+   * Writes the key to the buffer starting at its current position.
+   *
+   * @param key    event key.
+   * @param buffer buffer to write to.
+   * @return false if the buffer did not have enough space for the key; true otherwise.
+   */
+  boolean encode(@Nonnull K key, @Nonnull ByteBuffer buffer);
+
+  /**
+   * Reads a key from the buffer. The position and limit of the buffer mark the bytes of exactly one key.
+   *
+   * @param buffer buffer to read from.
+   * @return decoded key.
+   */
+  @Nonnull
+  K decode(@Nonnull ByteBuffer buffer);
+
+  /**
+   * Codec for {@link Long} keys.
+   */
+  public static class LongCodec implements KeyCodec<Long>
+  {
+    @Override
+    public boolean encode(@Nonnull Long key, @Nonnull ByteBuffer buffer)
+    {
+      if (buffer.remaining() < 8) {
+        return false;
+      }
+      buffer.putLong(key);
+      return true;
+    }
+
+    @Nonnull
+    @Override
+    public Long decode(@Nonnull ByteBuffer buffer)
+    {
+      return buffer.getLong();
+    }
+
+  }
+
+  /**
+   * Codec for {@link String} keys. Every char is written as a 1-3 byte UTF-8 sequence; surrogate chars are encoded
+   * individually so that the encoding is injective even for malformed strings.
+   */
+  public static class StringCodec implements KeyCodec<String>
+  {
+    @Override
+    public boolean encode(@Nonnull String key, @Nonnull ByteBuffer buffer)
+    {
+      int length = key.length();
+      for (int i = 0; i < length; i++) {
+        char c = key.charAt(i);
+        if (c < 0x80) {
+          if (!buffer.hasRemaining()) {
+            return false;
+          }
+          buffer.put((byte) c);
+        }
+        else if (c < 0x800) {
+          if (buffer.remaining() < 2) {
+            return false;
+          }
+          buffer.put((byte) (0xc0 | (c >> 6)));
+          buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+        else {
+          if (buffer.remaining() < 3) {
+            return false;
+          }
+          buffer.put((byte) (0xe0 | (c >> 12)));
+          buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+          buffer.put((byte) (0x80 | (c & 0x3f)));
+        }
+      }
+      return true;
+    }
+
+    @Nonnull
+    @Override
+    public String decode(@Nonnull ByteBuffer buffer)
+    {
+      char[] chars = new char[buffer.remaining()];
+      int length = 0;
+      while (buffer.hasRemaining()) {
+        int b = buffer.get() & 0xff;
+        if (b < 0x80) {
+          chars[length++] = (char) b;
+        }
+        else if (b < 0xe0) {
+          chars[length++] = (char) (((b & 0x1f) << 6) | (buffer.get() & 0x3f));
+        }
+        else {
+          chars[length++] = (char) (((b & 0x0f) << 12) | ((buffer.get() & 0x3f) << 6) | (buffer.get() & 0x3f));
+        }
+      }
+      return new String(chars, 0, length);
+    }
+
+  }
+
+  /**
+   * Codec for byte[] keys. Keys are compared by content and not by identity.
+   */
+  public static class BytesCodec implements KeyCodec<byte[]>
+  {
+    @Override
+    public boolean encode(@Nonnull byte[] key, @Nonnull ByteBuffer buffer)
+    {
+      if (buffer.remaining() < key.length) {
+        return false;
+      }
+      buffer.put(key);
+      return true;
+    }
+
+    @Nonnull
+    @Override
+    public byte[] decode(@Nonnull ByteBuffer buffer)
+    {
+      byte[] key = new byte[buffer.remaining()];
+      buffer.get(key);
+      return key;
+    }
+
+  }
+}
@@ -34,7 +34,7 @@ import com.datatorrent.api.annotation.Stateless;
  * @since 1.0.1
  */
 @Stateless
-public class NonOperationalBucketStore<T extends Bucketable & Event> implements BucketStore.ExpirableBucketStore<T>
+public class NonOperationalBucketStore<T extends Bucketable & Event> implements BucketStore.ExpirableBucketStore<T>, BucketStore.AsyncBucketStore<T>
 {
   public NonOperationalBucketStore()
   {
@@ -72,6 +72,24 @@ public class NonOperationalBucketStore<T extends Bucketable & Event> implements
   {
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Nonnull
+  @Override
+  public Map<Integer, Long> writeBucketData(long window, Map<Integer, Map<Object, T>> data) throws IOException
+  {
+    return Maps.newHashMap();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void bucketDataWritten(long window, long timestamp, Map<Integer, Map<Object, T>> data, Map<Integer, Long> positions)
+  {
+  }
+
   /**
    * {@inheritDoc}
    */
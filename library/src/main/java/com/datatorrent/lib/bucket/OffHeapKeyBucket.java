@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * A {@link Bucket} which keeps only the keys of the written events and stores them in an {@link OffHeapKeySet}.
+ * </p>
+ *
+ * <p>
+ * Un-written events are few since they are persisted at every window, so they are kept on the heap and
+ * check-pointed as in {@link Bucket}; their keys are also added to a small key set so that all the keys are compared
+ * by their encoding, even byte[] keys. Written events, which make up most of the bucket, only cost their encoded
+ * key size in direct memory, which is freed when the manager releases the bucket.<br/>
+ * This bucket is created by {@link BucketManagerImpl} when {@link BucketManagerImpl#setKeyCodec(KeyCodec)} is set
+ * and the manager is writing event keys only.
+ * </p>
+ *
+ * @param <T> type of bucket events
+ */
+public class OffHeapKeyBucket<T extends Bucketable> extends Bucket<T>
+{
+  private static final int EXPECTED_UNWRITTEN_KEYS = 64;
+  private KeyCodec<Object> keyCodec;
+  //Replaced by the loader while the operator thread reads it, so the loader fills a new set and then publishes it.
+  private transient volatile OffHeapKeySet<Object> writtenKeys;
+  //Keys of the un-written events so that they are compared by their encoding as the written keys are.
+  private transient OffHeapKeySet<Object> unwrittenKeys;
+
+  @SuppressWarnings("unused")
+  private OffHeapKeyBucket()
+  {
+    super();
+    keyCodec = null;
+  }
+
+  @SuppressWarnings("unchecked")
+  OffHeapKeyBucket(long bucketKey, @Nonnull KeyCodec<?> keyCodec)
+  {
+    super(bucketKey);
+    this.keyCodec = (KeyCodec<Object>) Preconditions.checkNotNull(keyCodec, "key codec");
+  }
+
+  private OffHeapKeySet<Object> newKeySet(int expectedKeys)
+  {
+    return new OffHeapKeySet<Object>(keyCodec, expectedKeys, OffHeapKeySet.DEF_CHUNK_SIZE);
+  }
+
+  private OffHeapKeySet<Object> getWrittenKeys(int expectedKeys)
+  {
+    if (writtenKeys == null) {
+      writtenKeys = newKeySet(expectedKeys);
+    }
+    return writtenKeys;
+  }
+
+  /**
+   * The un-written events are check-pointed but their keys are not, so the keys are added again after recovery.
+   */
+  private OffHeapKeySet<Object> getUnwrittenKeys()
+  {
+    if (unwrittenKeys == null) {
+      unwrittenKeys = newKeySet(EXPECTED_UNWRITTEN_KEYS);
+      if (unwrittenEvents != null) {
+        for (Object key : unwrittenEvents.keySet()) {
+          unwrittenKeys.add(key);
+        }
+      }
+    }
+    return unwrittenKeys;
+  }
+
+  /**
+   * The keys which were transferred to the store before the bucket was loaded are retained. Invoked by a loader
+   * thread.
+   */
+  @Override
+  synchronized void setWrittenEvents(@Nonnull Map<Object, T> writtenEvents)
+  {
+    OffHeapKeySet<Object> oldKeys = writtenKeys;
+    OffHeapKeySet<Object> keys = newKeySet(writtenEvents.size() + (oldKeys == null ? 0 : oldKeys.size()));
+    for (Object key : writtenEvents.keySet()) {
+      keys.add(key);
+    }
+    if (oldKeys != null) {
+      keys.addAll(oldKeys);
+    }
+    writtenKeys = keys;
+    isDataOnDiskLoaded = true;
+  }
+
+  /**
+   * Invoked by the operator thread while the loaders are suspended, so the written keys are modified in place.
+   */
+  @Override
+  synchronized void transferDataFromMemoryToStore()
+  {
+    if (unwrittenEvents != null) {
+      OffHeapKeySet<Object> keys = getWrittenKeys(unwrittenEvents.size());
+      for (Object key : unwrittenEvents.keySet()) {
+        keys.add(key);
+      }
+    }
+    unwrittenEvents = null;
+    if (unwrittenKeys != null) {
+      unwrittenKeys.clear();
+    }
+  }
+
+  /**
+   * Frees the direct memory of the keys.
+   */
+  @Override
+  synchronized void release()
+  {
+    if (writtenKeys != null) {
+      writtenKeys.clear();
+      writtenKeys = null;
+    }
+    if (unwrittenKeys != null) {
+      unwrittenKeys.clear();
+      unwrittenKeys = null;
+    }
+    isDataOnDiskLoaded = false;
+  }
+
+  /**
+   * The event is added only when its encoded key is new, so that keys like byte[] are not added twice.
+   */
+  @Override
+  void addNewEvent(Object eventKey, T event)
+  {
+    if (getUnwrittenKeys().add(eventKey)) {
+      super.addNewEvent(eventKey, event);
+    }
+  }
+
+  /**
+   * Decodes all the written keys; values are always null.
+   */
+  @Override
+  Map<Object, T> getWrittenEvents()
+  {
+    Map<Object, T> events = Maps.newHashMap();
+    OffHeapKeySet<Object> keys = writtenKeys;
+    if (keys != null) {
+      for (Object key : keys.keys()) {
+        events.put(key, null);
+      }
+    }
+    return Collections.unmodifiableMap(events);
+  }
+
+  /**
+   * Events are not cached by this bucket so this always returns null.
+   */
+  @Nullable
+  @Override
+  public T getValueFromWrittenPart(Object key)
+  {
+    return null;
+  }
+
+  @Override
+  public int countOfWrittenEvents()
+  {
+    OffHeapKeySet<Object> keys = writtenKeys;
+    if (keys == null) {
+      return 0;
+    }
+    return keys.size();
+  }
+
+  @Override
+  public boolean containsEvent(T event)
+  {
+    Object key = event.getEventKey();
+    if (unwrittenEvents != null && getUnwrittenKeys().contains(key)) {
+      return true;
+    }
+    OffHeapKeySet<Object> keys = writtenKeys;
+    return keys != null && keys.contains(key);
+  }
+
+  @Override
+  public String toString()
+  {
+    return "OffHeapKeyBucket {" + bucketKey + "}";
+  }
+
+}
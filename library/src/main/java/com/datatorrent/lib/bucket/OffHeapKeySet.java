@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * A set of keys that is stored outside the java heap.
+ * </p>
+ *
+ * <p>
+ * Keys are encoded with a {@link KeyCodec} and appended to direct memory chunks. The first chunk is sized for the
+ * expected number of keys, assuming they are as long as the first key, and every next chunk is twice as large as the
+ * previous one up to the chunk size. The set itself is an open-addressing hash table with linear probing which is also
+ * held in direct memory. Every slot of the table is 16 bytes:
+ * <ul>
+ * <li>address of the key in the chunks + 1 (0 marks an empty slot)</li>
+ * <li>hash of the encoded key</li>
+ * <li>length of the encoded key</li>
+ * </ul>
+ * Hence a key costs its encoded length + ~24 bytes of direct memory and does not create any object on the heap.
+ * Keys cannot be removed individually; the whole set is discarded when the bucket is off-loaded.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @param <K> type of keys
+ */
+public class OffHeapKeySet<K>
+{
+  public static final int DEF_CHUNK_SIZE = 1 << 20;
+  public static final int DEF_INITIAL_CAPACITY = 1024;
+  private static final int SLOT_SIZE = 16;
+  private static final float LOAD_FACTOR = 0.7f;
+
+  private final KeyCodec<K> codec;
+  private final int expectedKeys;
+  private final int chunkSize;
+  private final List<ByteBuffer> chunks;
+  private ByteBuffer currentChunk;
+  private ByteBuffer table;
+  private int capacity;
+  private int mask;
+  private int threshold;
+  private int size;
+  private ByteBuffer scratch;
+
+  public OffHeapKeySet(@Nonnull KeyCodec<K> codec)
+  {
+    this(codec, DEF_INITIAL_CAPACITY, DEF_CHUNK_SIZE);
+  }
+
+  /**
+   * @param codec           codec of the keys.
+   * @param initialCapacity expected number of keys. The table and the first chunk are sized for it.
+   * @param chunkSize       maximum size in bytes of a direct memory chunk. This limits the size of an encoded key.
+   */
+  public OffHeapKeySet(@Nonnull KeyCodec<K> codec, int initialCapacity, int chunkSize)
+  {
+    Preconditions.checkArgument(chunkSize > 0, "chunk size");
+    this.codec = Preconditions.checkNotNull(codec, "codec");
+    this.expectedKeys = Math.max(1, initialCapacity);
+    this.chunkSize = chunkSize;
+    this.chunks = Lists.newArrayList();
+    this.scratch = ByteBuffer.allocate(64);
+    int tableCapacity = Integer.highestOneBit(Math.max(16, (int) (initialCapacity / LOAD_FACTOR)) - 1) << 1;
+    allocateTable(tableCapacity);
+  }
+
+  /**
+   * Adds the key to the set.
+   *
+   * @param key key
+   * @return true if the key was not present in the set; false otherwise.
+   */
+  public boolean add(@Nonnull K key)
+  {
+    return addEncoded(encode(key));
+  }
+
+  /**
+   * Adds all the keys of the other set without decoding them. The other set must have the same codec.
+   *
+   * @param other key set
+   */
+  public void addAll(@Nonnull OffHeapKeySet<K> other)
+  {
+    for (int slot = 0; slot < other.capacity; slot++) {
+      int offset = slot * SLOT_SIZE;
+      long address = other.table.getLong(offset);
+      if (address != 0) {
+        int length = other.table.getInt(offset + 12);
+        if (scratch.capacity() < length) {
+          scratch = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+        }
+        scratch.clear();
+        scratch.put(other.keyBuffer(address - 1, length));
+        addEncoded(length);
+      }
+    }
+  }
+
+  /**
+   * Adds the encoded key which is in {@link #scratch}.
+   */
+  private boolean addEncoded(int length)
+  {
+    int hash = hash(scratch, length);
+    int slot = findSlot(hash, length);
+    if (table.getLong(slot * SLOT_SIZE) != 0) {
+      return false;
+    }
+    long address = store(length);
+    int offset = slot * SLOT_SIZE;
+    table.putLong(offset, address + 1);
+    table.putInt(offset + 8, hash);
+    table.putInt(offset + 12, length);
+    if (++size > threshold) {
+      allocateTable(capacity << 1);
+    }
+    return true;
+  }
+
+  /**
+   * Finds whether the key is in the set.
+   *
+   * @param key key
+   * @return true if the set contains the key; false otherwise.
+   */
+  public boolean contains(@Nonnull K key)
+  {
+    int length = encode(key);
+    int slot = findSlot(hash(scratch, length), length);
+    return table.getLong(slot * SLOT_SIZE) != 0;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Decodes all the keys in the set. This allocates every key on the heap and is meant for infrequent use.
+   *
+   * @return keys in the set.
+   */
+  @Nonnull
+  public List<K> keys()
+  {
+    List<K> keys = Lists.newArrayListWithCapacity(size);
+    for (int slot = 0; slot < capacity; slot++) {
+      int offset = slot * SLOT_SIZE;
+      long address = table.getLong(offset);
+      if (address != 0) {
+        ByteBuffer key = keyBuffer(address - 1, table.getInt(offset + 12));
+        keys.add(codec.decode(key));
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Releases the references to the direct memory so that it can be reclaimed.
+   */
+  public void clear()
+  {
+    chunks.clear();
+    currentChunk = null;
+    size = 0;
+    allocateTable(16);
+  }
+
+  private int encode(K key)
+  {
+    while (true) {
+      scratch.clear();
+      if (codec.encode(key, scratch)) {
+        int length = scratch.position();
+        Preconditions.checkArgument(length <= chunkSize, "encoded key size %s exceeds chunk size %s", length, chunkSize);
+        return length;
+      }
+      scratch = ByteBuffer.allocate(scratch.capacity() << 1);
+    }
+  }
+
+  /**
+   * Linear probing for the slot which either holds the key in {@link #scratch} or is empty.
+   */
+  private int findSlot(int hash, int length)
+  {
+    int slot = hash & mask;
+    while (true) {
+      int offset = slot * SLOT_SIZE;
+      long address = table.getLong(offset);
+      if (address == 0) {
+        return slot;
+      }
+      if (table.getInt(offset + 8) == hash && table.getInt(offset + 12) == length && keyEquals(address - 1, length)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean keyEquals(long address, int length)
+  {
+    ByteBuffer chunk = chunks.get((int) (address >>> 32));
+    int position = (int) address;
+    for (int i = 0; i < length; i++) {
+      if (chunk.get(position + i) != scratch.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long store(int length)
+  {
+    if (currentChunk == null || currentChunk.remaining() < length) {
+      long newChunkSize = currentChunk == null ? (long) expectedKeys * length : (long) currentChunk.capacity() << 1;
+      currentChunk = ByteBuffer.allocateDirect((int) Math.max(length, Math.min(chunkSize, newChunkSize)));
+      chunks.add(currentChunk);
+    }
+    long address = ((long) (chunks.size() - 1) << 32) | currentChunk.position();
+    for (int i = 0; i < length; i++) {
+      currentChunk.put(scratch.get(i));
+    }
+    return address;
+  }
+
+  private ByteBuffer keyBuffer(long address, int length)
+  {
+    ByteBuffer key = chunks.get((int) (address >>> 32)).duplicate();
+    int position = (int) address;
+    key.limit(position + length);
+    key.position(position);
+    return key;
+  }
+
+  private void allocateTable(int newCapacity)
+  {
+    Preconditions.checkState((long) newCapacity * SLOT_SIZE <= Integer.MAX_VALUE, "key set is full");
+    ByteBuffer oldTable = table;
+    int oldCapacity = capacity;
+
+    table = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+    capacity = newCapacity;
+    mask = newCapacity - 1;
+    threshold = (int) (newCapacity * LOAD_FACTOR);
+
+    if (oldTable != null && size > 0) {
+      for (int slot = 0; slot < oldCapacity; slot++) {
+        int offset = slot * SLOT_SIZE;
+        long address = oldTable.getLong(offset);
+        if (address != 0) {
+          int hash = oldTable.getInt(offset + 8);
+          int newSlot = hash & mask;
+          while (table.getLong(newSlot * SLOT_SIZE) != 0) {
+            newSlot = (newSlot + 1) & mask;
+          }
+          int newOffset = newSlot * SLOT_SIZE;
+          table.putLong(newOffset, address);
+          table.putInt(newOffset + 8, hash);
+          table.putInt(newOffset + 12, oldTable.getInt(offset + 12));
+        }
+      }
+    }
+  }
+
+  /**
+   * Murmur3 style hash of the first length bytes of the buffer.
+   */
+  static int hash(ByteBuffer buffer, int length)
+  {
+    int h = length;
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      int k = buffer.getInt(i);
+      k *= 0xcc9e2d51;
+      k = Integer.rotateLeft(k, 15);
+      k *= 0x1b873593;
+      h ^= k;
+      h = Integer.rotateLeft(h, 13);
+      h = h * 5 + 0xe6546b64;
+    }
+    for (; i < length; i++) {
+      h ^= (buffer.get(i) & 0xff) * 0xcc9e2d51;
+      h = Integer.rotateLeft(h, 15) * 0x1b873593;
+    }
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+}
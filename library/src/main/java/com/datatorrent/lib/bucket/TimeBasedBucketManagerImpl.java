@@ -251,7 +251,7 @@ public class TimeBasedBucketManagerImpl<T extends Event & Bucketable> extends Bu
     Bucket<T> bucket = buckets[bucketIdx];
 
     if (bucket == null || bucket.bucketKey != bucketKey) {
-      bucket = new Bucket<T>(bucketKey);
+      bucket = createBucket(bucketKey);
       buckets[bucketIdx] = bucket;
       dirtyBuckets.put(bucketIdx, bucket);
     }
@@ -260,6 +260,7 @@ public class TimeBasedBucketManagerImpl<T extends Event & Bucketable> extends Bu
     }
 
     bucket.addNewEvent(event.getEventKey(), writeEventKeysOnly ? null : event);
+    addToBloomFilter(bucketIdx, event.getEventKey());
     numEventsInMemory.increment();
 
     Long max = maxTimesPerBuckets[bucketIdx];
@@ -271,15 +272,21 @@ public class TimeBasedBucketManagerImpl<T extends Event & Bucketable> extends Bu
   @Override
   public void endWindow(long window)
   {
-    long maxTime = -1;
-    for (int bucketIdx : dirtyBuckets.keySet()) {
-      if (maxTimesPerBuckets[bucketIdx] > maxTime) {
-        maxTime = maxTimesPerBuckets[bucketIdx];
+    suspendLoader();
+    try {
+      long maxTime = -1;
+      for (int bucketIdx : dirtyBuckets.keySet()) {
+        if (maxTimesPerBuckets[bucketIdx] > maxTime) {
+          maxTime = maxTimesPerBuckets[bucketIdx];
+        }
+        maxTimesPerBuckets[bucketIdx] = null;
+      }
+      if (maxTime > -1) {
+        saveData(window, maxTime);
       }
-      maxTimesPerBuckets[bucketIdx] = null;
     }
-    if (maxTime > -1) {
-      saveData(window, maxTime);
+    finally {
+      resumeLoaderIfSynchronous();
     }
   }
 
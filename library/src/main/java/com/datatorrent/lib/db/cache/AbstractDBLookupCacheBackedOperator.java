@@ -15,11 +15,34 @@
  */
 package com.datatorrent.lib.db.cache;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+
+import org.apache.commons.lang.mutable.MutableLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 import com.datatorrent.api.Context;
+import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Operator;
 
+import com.datatorrent.common.util.DTThrowable;
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.lib.counters.BasicCounters;
 import com.datatorrent.lib.db.Connectable;
 import com.datatorrent.lib.util.KeyValPair;
 
@@ -31,20 +54,73 @@ import com.datatorrent.lib.util.KeyValPair;
  * <li>Method to extract a key from tuple.</li>
  * <li>Query to fetch the value of the key from tuple when the value is not present in the cache.</li>
  * </ul>
+ * <p>
+ * By default a key which is not in the cache is fetched from the database on the operator thread. When
+ * {@link #asyncLookups} is set, such keys are collected in batches of {@link #maxLookupBatchSize} distinct keys which
+ * are fetched with {@link #bulkGet(Set)} by {@link #noOfLookupThreads} lookup threads. The tuples of a key which is
+ * already being fetched wait for that lookup instead of starting another one. At most {@link #maxInFlightLookups}
+ * batches are fetched at a time; after that the operator thread waits for a batch to complete.<br/>
+ * The values are cached and emitted on the operator thread when it is idle, when a new batch cannot be submitted and
+ * at the end of the window, which waits for all the lookups of the window to complete. When {@link #emitInOrder} is
+ * set the key/values are emitted in the order of the input tuples, otherwise the tuples whose keys are in the cache are
+ * emitted right away. When there are more than one lookup threads, {@link #bulkGet(Set)} should be thread-safe.
+ * </p>
+ * <p>
+ * When the operator is a {@link Store.ChangeFeed} and {@link #changeRefreshIntervalMillis} is set, the cached keys which
+ * changed in the database are refreshed at the beginning of a window once in that interval. At most
+ * {@link #maxChangesPerWindow} changes are fetched in a window; when there are more, the rest are fetched in the next
+ * windows.
+ * </p>
+ * <p>
+ * The counters of the cache, {@link CacheStore.CounterKeys}, are sent to the platform at the end of every window.
+ * </p>
  *
  * @param <T> type of tuples </T>
  * @since 0.9.1
  */
-public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator, Store.Backup
+public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator, Operator.IdleTimeHandler, Store.Backup
 {
+  public static final int DEF_MAX_LOOKUP_BATCH_SIZE = 100;
+  public static final int DEF_MAX_IN_FLIGHT_LOOKUPS = 4;
+  public static final int DEF_MAX_CHANGES_PER_WINDOW = 1000;
+
   protected final CacheProperties cacheProperties;
   protected String cacheRefreshTime;
+  protected boolean asyncLookups;
+  protected boolean emitInOrder;
+  @Min(1)
+  protected int maxLookupBatchSize;
+  @Min(1)
+  protected int maxInFlightLookups;
+  @Min(1)
+  protected int noOfLookupThreads;
+  @Min(0)
+  protected long changeRefreshIntervalMillis;
+  @Min(1)
+  protected int maxChangesPerWindow;
 
   protected transient StoreManager storeManager;
+  protected transient CacheStore cacheStore;
+  protected transient BasicCounters<MutableLong> counters;
+  private transient Context.OperatorContext context;
+  private transient long sleepTimeMillis;
+  private transient long nextChangeRefreshMillis;
+  private transient ExecutorService lookupExecutor;
+  private transient Set<Object> lookupBatch;
+  private transient int inFlightLookups;
+  //key -> tuples which wait for its value
+  private transient Map<Object, List<PendingLookup>> pendingLookups;
+  //tuples in the order they arrived when emitInOrder is set
+  private transient Queue<PendingLookup> orderedLookups;
+  private transient BlockingQueue<LookupResult> completedLookups;
 
   public AbstractDBLookupCacheBackedOperator()
   {
     cacheProperties = new CacheProperties();
+    maxLookupBatchSize = DEF_MAX_LOOKUP_BATCH_SIZE;
+    maxInFlightLookups = DEF_MAX_IN_FLIGHT_LOOKUPS;
+    noOfLookupThreads = 1;
+    maxChangesPerWindow = DEF_MAX_CHANGES_PER_WINDOW;
   }
 
   public final transient DefaultInputPort<T> input = new DefaultInputPort<T>()
@@ -59,10 +135,113 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
   protected void processTuple(T tuple)
   {
     Object key = getKeyFromTuple(tuple);
-    Object value = storeManager.get(key);
+    if (!asyncLookups) {
+      Object value = storeManager.get(key);
 
-    if (value != null) {
-      output.emit(new KeyValPair<Object, Object>(key, value));
+      if (value != null) {
+        output.emit(new KeyValPair<Object, Object>(key, value));
+      }
+      return;
+    }
+
+    List<PendingLookup> waiting = pendingLookups.get(key);
+    if (waiting == null) {
+      Object value = storeManager.getCached(key);
+      if (value != null) {
+        if (orderedLookups.isEmpty()) {
+          output.emit(new KeyValPair<Object, Object>(key, value));
+        }
+        else {
+          PendingLookup lookup = new PendingLookup(key);
+          lookup.complete(value);
+          orderedLookups.add(lookup);
+        }
+        return;
+      }
+      waiting = Lists.newArrayList();
+      pendingLookups.put(key, waiting);
+      lookupBatch.add(key);
+    }
+    PendingLookup lookup = new PendingLookup(key);
+    waiting.add(lookup);
+    if (emitInOrder) {
+      orderedLookups.add(lookup);
+    }
+    if (lookupBatch.size() >= maxLookupBatchSize) {
+      submitLookupBatch();
+    }
+  }
+
+  /**
+   * Submits the current batch of keys to the lookup threads. When {@link #maxInFlightLookups} batches are being
+   * fetched, this waits for one of them to complete.
+   */
+  private void submitLookupBatch()
+  {
+    while (inFlightLookups >= maxInFlightLookups) {
+      applyLookupResult(takeLookupResult());
+    }
+    final LookupResult result = new LookupResult(lookupBatch);
+    lookupBatch = Sets.newHashSet();
+    inFlightLookups++;
+    lookupExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        long start = System.nanoTime();
+        try {
+          result.values = bulkGet(result.keys);
+          result.elapsedNanos = System.nanoTime() - start;
+        }
+        catch (Throwable cause) {
+          result.error = cause;
+        }
+        completedLookups.add(result);
+      }
+
+    });
+  }
+
+  private LookupResult takeLookupResult()
+  {
+    try {
+      return completedLookups.take();
+    }
+    catch (InterruptedException ie) {
+      throw new RuntimeException(ie);
+    }
+  }
+
+  private void applyLookupResult(LookupResult result)
+  {
+    inFlightLookups--;
+    if (result.error != null) {
+      DTThrowable.rethrow(result.error);
+    }
+    storeManager.recordLoad(result.elapsedNanos);
+    if (result.values != null) {
+      storeManager.cacheAll(result.values);
+    }
+    for (Object key : result.keys) {
+      Object value = result.values == null ? null : result.values.get(key);
+      for (PendingLookup lookup : pendingLookups.remove(key)) {
+        if (emitInOrder) {
+          lookup.complete(value);
+        }
+        else if (value != null) {
+          output.emit(new KeyValPair<Object, Object>(key, value));
+        }
+      }
+    }
+    if (emitInOrder) {
+      PendingLookup lookup;
+      while ((lookup = orderedLookups.peek()) != null && lookup.completed) {
+        orderedLookups.poll();
+        if (lookup.value != null) {
+          output.emit(new KeyValPair<Object, Object>(lookup.key, lookup.value));
+        }
+      }
     }
   }
 
@@ -71,26 +250,97 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
   @Override
   public void beginWindow(long l)
   {
-    //Do nothing
+    if (changeRefreshIntervalMillis > 0) {
+      long now = System.currentTimeMillis();
+      if (now >= nextChangeRefreshMillis && storeManager.refreshChanges(maxChangesPerWindow) < maxChangesPerWindow) {
+        nextChangeRefreshMillis = now + changeRefreshIntervalMillis;
+      }
+    }
   }
 
   @Override
   public void endWindow()
   {
-    //Do nothing
+    if (asyncLookups) {
+      if (!lookupBatch.isEmpty()) {
+        submitLookupBatch();
+      }
+      while (inFlightLookups > 0) {
+        applyLookupResult(takeLookupResult());
+      }
+    }
+    cacheStore.updateCounters(counters);
+    try {
+      counters.findCounter(CacheStore.CounterKeys.LOADS).setValue(storeManager.getLoads());
+      counters.findCounter(CacheStore.CounterKeys.LOAD_TIME_MILLIS).setValue(TimeUnit.NANOSECONDS.toMillis(storeManager.getLoadTimeNanos()));
+    }
+    catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+    catch (InstantiationException e) {
+      throw new RuntimeException(e);
+    }
+    context.setCounters(counters);
+  }
+
+  @Override
+  public void handleIdleTime()
+  {
+    LookupResult result = asyncLookups ? completedLookups.poll() : null;
+    if (result != null) {
+      do {
+        applyLookupResult(result);
+      }
+      while ((result = completedLookups.poll()) != null);
+    }
+    else if (asyncLookups && !lookupBatch.isEmpty()) {
+      /* do not keep a partial batch waiting while there are no tuples */
+      submitLookupBatch();
+    }
+    else {
+      /* nothing to do here, so sleep for a while to avoid busy loop */
+      try {
+        Thread.sleep(sleepTimeMillis);
+      }
+      catch (InterruptedException ie) {
+        throw new RuntimeException(ie);
+      }
+    }
   }
 
   @Override
   public void setup(Context.OperatorContext context)
   {
-    storeManager = new StoreManager(new CacheStore(cacheProperties), this);
+    Preconditions.checkArgument(changeRefreshIntervalMillis == 0 || this instanceof Store.ChangeFeed, "change refresh without a change feed");
+    this.context = context;
+    sleepTimeMillis = context.getValue(OperatorContext.SPIN_MILLIS);
+    counters = new BasicCounters<MutableLong>(MutableLong.class);
+    cacheStore = new CacheStore(cacheProperties);
+    storeManager = new StoreManager(cacheStore, this);
     storeManager.initialize(cacheRefreshTime);
+    nextChangeRefreshMillis = System.currentTimeMillis() + changeRefreshIntervalMillis;
+    if (asyncLookups) {
+      lookupBatch = Sets.newHashSet();
+      pendingLookups = Maps.newHashMap();
+      orderedLookups = Lists.newLinkedList();
+      completedLookups = new LinkedBlockingQueue<LookupResult>();
+      inFlightLookups = 0;
+      lookupExecutor = Executors.newFixedThreadPool(noOfLookupThreads, new NameableThreadFactory("DBLookup"));
+    }
   }
 
   @Override
   public void teardown()
   {
-    storeManager.shutdown();
+    if (lookupExecutor != null) {
+      lookupExecutor.shutdownNow();
+    }
+    if (storeManager != null) {
+      /* the operator is also the backup store which is torn down by the manager */
+      StoreManager manager = storeManager;
+      storeManager = null;
+      manager.shutdown();
+    }
   }
 
   /**
@@ -104,6 +354,122 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
     cacheRefreshTime = time;
   }
 
+  /**
+   * Returns the properties of the cache, eg. its size, which are used at setup.
+   *
+   * @return properties of the cache.
+   */
+  public CacheProperties getCacheProperties()
+  {
+    return cacheProperties;
+  }
+
+  /**
+   * Sets whether the keys which are not in the cache are fetched by lookup threads instead of the operator thread.
+   *
+   * @param asyncLookups true to fetch the keys asynchronously.
+   */
+  public void setAsyncLookups(boolean asyncLookups)
+  {
+    this.asyncLookups = asyncLookups;
+  }
+
+  public boolean isAsyncLookups()
+  {
+    return asyncLookups;
+  }
+
+  /**
+   * Sets whether the asynchronously fetched values are emitted in the order of the input tuples.
+   *
+   * @param emitInOrder true to preserve the order of tuples.
+   */
+  public void setEmitInOrder(boolean emitInOrder)
+  {
+    this.emitInOrder = emitInOrder;
+  }
+
+  public boolean isEmitInOrder()
+  {
+    return emitInOrder;
+  }
+
+  /**
+   * Sets the maximum no. of distinct keys which are fetched in one {@link #bulkGet(Set)} call.
+   *
+   * @param maxLookupBatchSize max no. of keys in a batch.
+   */
+  public void setMaxLookupBatchSize(int maxLookupBatchSize)
+  {
+    this.maxLookupBatchSize = maxLookupBatchSize;
+  }
+
+  public int getMaxLookupBatchSize()
+  {
+    return maxLookupBatchSize;
+  }
+
+  /**
+   * Sets the maximum no. of batches which are being fetched at a time.
+   *
+   * @param maxInFlightLookups max no. of batches in flight.
+   */
+  public void setMaxInFlightLookups(int maxInFlightLookups)
+  {
+    this.maxInFlightLookups = maxInFlightLookups;
+  }
+
+  public int getMaxInFlightLookups()
+  {
+    return maxInFlightLookups;
+  }
+
+  /**
+   * Sets the no. of threads which fetch the batches. {@link #bulkGet(Set)} should be thread-safe when it is more than 1.
+   *
+   * @param noOfLookupThreads no. of lookup threads.
+   */
+  public void setNoOfLookupThreads(int noOfLookupThreads)
+  {
+    this.noOfLookupThreads = noOfLookupThreads;
+  }
+
+  public int getNoOfLookupThreads()
+  {
+    return noOfLookupThreads;
+  }
+
+  /**
+   * Sets the interval at which the cached keys which changed in the database are refreshed. The operator should be a
+   * {@link Store.ChangeFeed}.
+   *
+   * @param changeRefreshIntervalMillis interval in milliseconds; 0 to not refresh the changes.
+   */
+  public void setChangeRefreshIntervalMillis(long changeRefreshIntervalMillis)
+  {
+    this.changeRefreshIntervalMillis = changeRefreshIntervalMillis;
+  }
+
+  public long getChangeRefreshIntervalMillis()
+  {
+    return changeRefreshIntervalMillis;
+  }
+
+  /**
+   * Sets the maximum no. of changes which are fetched from the database in a window.
+   *
+   * @param maxChangesPerWindow max no. of changes in a window.
+   */
+  public void setMaxChangesPerWindow(int maxChangesPerWindow)
+  {
+    this.maxChangesPerWindow = maxChangesPerWindow;
+  }
+
+  public int getMaxChangesPerWindow()
+  {
+    return maxChangesPerWindow;
+  }
+
   /**
    * <br>This operator receives tuples which encapsulates the keys. Concrete classes should
    * provide the implementation to extract a key from a tuple.</br>
@@ -112,4 +478,37 @@ public abstract class AbstractDBLookupCacheBackedOperator<T> implements Operator
    * @return key corresponding to the operator.
    */
   protected abstract Object getKeyFromTuple(T tuple);
+
+  private static class PendingLookup
+  {
+    final Object key;
+    Object value;
+    boolean completed;
+
+    PendingLookup(Object key)
+    {
+      this.key = key;
+    }
+
+    void complete(Object value)
+    {
+      this.value = value;
+      completed = true;
+    }
+
+  }
+
+  private static class LookupResult
+  {
+    final Set<Object> keys;
+    volatile Map<Object, Object> values;
+    volatile Throwable error;
+    volatile long elapsedNanos;
+
+    LookupResult(Set<Object> keys)
+    {
+      this.keys = keys;
+    }
+
+  }
 }
@@ -17,6 +17,8 @@ package com.datatorrent.lib.db.cache;
 
 import javax.validation.constraints.Min;
 
+import com.google.common.cache.Weigher;
+
 /**
  * Properties and their default values which is used by {@link CacheStore} to create the cache.<br/>
  *
@@ -28,6 +30,14 @@ public class CacheProperties
   @Min(0)
   long maxCacheSize = 2000;
 
+  @Min(0)
+  long maxCacheWeight;
+
+  Weigher<Object, Object> weigher;
+
+  @Min(0)
+  int admissionFrequency;
+
   @Min(0)
   int entryExpiryDurationInMillis = 60000; //1 minute
 
@@ -38,13 +48,42 @@ public class CacheProperties
 
   /**
    * Sets the max size of cache.
-   * @param maxCacheSize the max size of cache in memory.
+   * @param maxCacheSize the max no. of entries in the cache; 0 for no limit.
    */
   public void setMaxCacheSize(long maxCacheSize)
   {
     this.maxCacheSize = maxCacheSize;
   }
 
+  /**
+   * Sets the max total weight of the entries in cache which is used instead of the max size when there is a weigher.
+   * @param maxCacheWeight the max weight, eg. bytes, of cache in memory.
+   */
+  public void setMaxCacheWeight(long maxCacheWeight)
+  {
+    this.maxCacheWeight = maxCacheWeight;
+  }
+
+  /**
+   * Sets the weigher which computes the weight, eg. approximate size in bytes, of a cache entry.
+   * @param weigher the weigher of entries; null to limit the no. of entries.
+   */
+  public void setWeigher(Weigher<Object, Object> weigher)
+  {
+    this.weigher = weigher;
+  }
+
+  /**
+   * Sets how often a new key should have been requested recently to be cached when the cache is full.
+   * Keys which are requested once do not evict frequently requested keys then. The requests of about max cache size
+   * keys are tracked.
+   * @param admissionFrequency min no. of recent requests of a new key when the cache is full; 0 to cache all keys.
+   */
+  public void setAdmissionFrequency(int admissionFrequency)
+  {
+    this.admissionFrequency = admissionFrequency;
+  }
+
   /**
    * Sets the cache entry expiry strategy.
    * @param expiryType the cache entry expiry strategy.
@@ -20,10 +20,19 @@ import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.mutable.MutableLong;
 
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+
+import com.datatorrent.lib.counters.BasicCounters;
 
 /**
  * A {@link Store.Primary} which keeps key/value pairs in memory.<br/>
@@ -32,10 +41,18 @@ import com.google.common.cache.CacheBuilder;
  * <ul>
  * <li>Transient: It is not checkpointed.</li>
  * <li>Max Cache Size: it starts evicting entries before this limit is exceeded.</li>
+ * <li>Max Cache Weight: when there is a weigher, it starts evicting entries before their total weight exceeds this
+ * limit instead.</li>
+ * <li>Admission frequency: when the cache is full, a new key is only cached if it was requested at least this many
+ * times recently, which is estimated with a {@link FrequencySketch} of the requested keys. The cache then has a single
+ * segment so that it evicts only when its total size or weight reaches the limit, which is when the keys are
+ * checked.</li>
  * <li>Entry expiry time: the entries epire after the specified duration.</li>
  * <li>Cache cleanup interval: the interval at which the cache is cleaned up of expired entries periodically.</li>
  * </ul>
  * These properties of the cache are encapsulated in {@link CacheProperties}.<br/>
+ * The store counts hits, misses, evictions and rejected keys which are copied to {@link CounterKeys} counters by
+ * {@link AbstractDBLookupCacheBackedOperator}.<br/>
  *
  * @since 0.9.2
  */
@@ -43,10 +60,22 @@ public class CacheStore implements Store.Primary
 {
   private transient ScheduledExecutorService cleanupScheduler;
   private transient Cache<Object, Object> cache;
+  private final transient Weigher<Object, Object> weigher;
+  private final transient long maxCacheSize;
+  private final transient long maxCacheWeight;
+  private final transient int admissionFrequency;
+  private final transient FrequencySketch sketch;
+  private final transient AtomicLong weight = new AtomicLong();
+  private final transient AtomicLong hits = new AtomicLong();
+  private final transient AtomicLong misses = new AtomicLong();
+  private final transient AtomicLong evictions = new AtomicLong();
+  private final transient AtomicLong expirations = new AtomicLong();
+  private final transient AtomicLong rejections = new AtomicLong();
 
   public CacheStore(CacheProperties properties)
   {
     Preconditions.checkNotNull(properties.entryExpiryStrategy, "expiryType");
+    Preconditions.checkArgument(properties.admissionFrequency <= FrequencySketch.MAX_FREQUENCY, "admission frequency more than %s", FrequencySketch.MAX_FREQUENCY);
 
     CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
     if (properties.entryExpiryStrategy == ExpiryType.EXPIRE_AFTER_ACCESS) {
@@ -55,7 +84,46 @@ public class CacheStore implements Store.Primary
     else if (properties.entryExpiryStrategy == ExpiryType.EXPIRE_AFTER_WRITE) {
       cacheBuilder.expireAfterWrite(properties.entryExpiryDurationInMillis, TimeUnit.MILLISECONDS);
     }
-    cache = cacheBuilder.build();
+    weigher = properties.weigher;
+    if (weigher != null) {
+      Preconditions.checkArgument(properties.maxCacheWeight > 0, "max cache weight with a weigher");
+      maxCacheSize = 0;
+      maxCacheWeight = properties.maxCacheWeight;
+      cacheBuilder.maximumWeight(maxCacheWeight).weigher(weigher);
+    }
+    else {
+      maxCacheSize = properties.maxCacheSize;
+      maxCacheWeight = 0;
+      if (maxCacheSize > 0) {
+        cacheBuilder.maximumSize(maxCacheSize);
+      }
+    }
+    admissionFrequency = properties.admissionFrequency;
+    if (admissionFrequency > 0 && (maxCacheSize > 0 || maxCacheWeight > 0)) {
+      sketch = new FrequencySketch(properties.maxCacheSize);
+      /* every segment evicts by its share of the limit, so with more segments the cache evicts before it is full */
+      cacheBuilder.concurrencyLevel(1);
+    }
+    else {
+      sketch = null;
+    }
+    cache = cacheBuilder.removalListener(new RemovalListener<Object, Object>()
+    {
+      @Override
+      public void onRemoval(RemovalNotification<Object, Object> notification)
+      {
+        if (weigher != null) {
+          weight.addAndGet(-weigher.weigh(notification.getKey(), notification.getValue()));
+        }
+        if (notification.getCause() == RemovalCause.SIZE) {
+          evictions.incrementAndGet();
+        }
+        else if (notification.getCause() == RemovalCause.EXPIRED) {
+          expirations.incrementAndGet();
+        }
+      }
+
+    }).build();
     this.cleanupScheduler = Executors.newScheduledThreadPool(1);
     cleanupScheduler.scheduleAtFixedRate(new Runnable()
     {
@@ -70,7 +138,9 @@ public class CacheStore implements Store.Primary
   @Override
   public void put(Object key, Object value)
   {
-    cache.put(key, value);
+    if (admit(key, value)) {
+      cache.put(key, value);
+    }
   }
 
   @Override
@@ -82,19 +152,92 @@ public class CacheStore implements Store.Primary
   @Override
   public void bulkSet(Map<Object, Object> data)
   {
-    cache.asMap().putAll(data);
+    if (sketch == null && weigher == null) {
+      cache.asMap().putAll(data);
+      return;
+    }
+    for (Map.Entry<Object, Object> entry : data.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public void remove(Object key)
+  {
+    cache.invalidate(key);
   }
 
   @Override
   public Object get(Object key)
   {
-    return cache.getIfPresent(key);
+    if (sketch != null) {
+      sketch.increment(key);
+    }
+    Object value = cache.getIfPresent(key);
+    if (value != null) {
+      hits.incrementAndGet();
+    }
+    else {
+      misses.incrementAndGet();
+    }
+    return value;
   }
 
   @Override
   public Map<Object, Object> bulkGet(Set<Object> keys)
   {
-    return cache.getAllPresent(keys);
+    if (sketch != null) {
+      for (Object key : keys) {
+        sketch.increment(key);
+      }
+    }
+    Map<Object, Object> values = cache.getAllPresent(keys);
+    hits.addAndGet(values.size());
+    misses.addAndGet(keys.size() - values.size());
+    return values;
+  }
+
+  /**
+   * Returns whether the entry should be cached and keeps track of the total weight.
+   */
+  private boolean admit(Object key, Object value)
+  {
+    long entryWeight = weigher == null ? 1 : weigher.weigh(key, value);
+    if (sketch != null && !cache.asMap().containsKey(key) && sketch.frequency(key) < admissionFrequency) {
+      boolean full = weigher == null ? cache.size() >= maxCacheSize : weight.get() + entryWeight > maxCacheWeight;
+      if (full) {
+        rejections.incrementAndGet();
+        return false;
+      }
+    }
+    if (weigher != null) {
+      weight.addAndGet(entryWeight);
+    }
+    return true;
+  }
+
+  /**
+   * Copies the statistics of the cache to the counters.
+   *
+   * @param counters counters of the cache.
+   */
+  public void updateCounters(BasicCounters<MutableLong> counters)
+  {
+    try {
+      counters.findCounter(CounterKeys.HITS).setValue(hits.get());
+      counters.findCounter(CounterKeys.MISSES).setValue(misses.get());
+      counters.findCounter(CounterKeys.EVICTIONS).setValue(evictions.get());
+      counters.findCounter(CounterKeys.EXPIRATIONS).setValue(expirations.get());
+      counters.findCounter(CounterKeys.REJECTIONS).setValue(rejections.get());
+      counters.findCounter(CounterKeys.ENTRIES).setValue(cache.size());
+      counters.findCounter(CounterKeys.WEIGHT).setValue(weigher == null ? cache.size() : weight.get());
+    }
+    catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+    catch (InstantiationException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   @Override
@@ -103,6 +246,14 @@ public class CacheStore implements Store.Primary
     cleanupScheduler.shutdown();
   }
 
+  /**
+   * Counters of the cache. The load counters are the no. of calls to the backup store and their total duration.
+   */
+  public static enum CounterKeys
+  {
+    HITS, MISSES, EVICTIONS, EXPIRATIONS, REJECTIONS, ENTRIES, WEIGHT, LOADS, LOAD_TIME_MILLIS
+  }
+
   /**
    * Strategies for time-based expiration of entries.
    */
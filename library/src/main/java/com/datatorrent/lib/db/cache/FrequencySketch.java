@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.db.cache;
+
+/**
+ * <p>
+ * Estimates how often keys were requested recently with a count-min sketch of 4-bit counters.<br/>
+ * Each key updates one counter in each of the 4 rows and its frequency is the minimum of those counters, so the
+ * estimate is never lower than the real count (up to 15) but can be higher because of collisions.<br/>
+ * After 10 times the no. of counters in a row increments, all the counters are halved so that the keys which are not
+ * requested anymore are forgotten.
+ * </p>
+ *
+ * <p>
+ * This is used by {@link CacheStore} to decide whether a key is worth caching when the cache is full.
+ * </p>
+ */
+class FrequencySketch
+{
+  static final int MAX_FREQUENCY = 15;
+  private static final int DEPTH = 4;
+  private static final long[] SEEDS = new long[] {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  //16 counters of 4 bits in every long
+  private final long[][] table;
+  private final int rowMask;
+  private final int sampleSize;
+  private int increments;
+
+  /**
+   * @param expectedEntries no. of keys whose frequencies should be estimated accurately.
+   */
+  FrequencySketch(long expectedEntries)
+  {
+    int width = Integer.highestOneBit((int) Math.min(Math.max(expectedEntries, 16), 1 << 28) - 1) << 1;
+    table = new long[DEPTH][width >>> 4];
+    rowMask = width - 1;
+    sampleSize = 10 * width;
+  }
+
+  /**
+   * Records a request of the key.
+   */
+  synchronized void increment(Object key)
+  {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      int shift = (index & 15) << 2;
+      long[] row = table[i];
+      if (((row[index >>> 4] >>> shift) & 15) < MAX_FREQUENCY) {
+        row[index >>> 4] += 1L << shift;
+        added = true;
+      }
+    }
+    if (added && ++increments >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Returns the estimated no. of recent requests of the key which is at most {@link #MAX_FREQUENCY}.
+   */
+  synchronized int frequency(Object key)
+  {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      frequency = Math.min(frequency, (int) ((table[i][index >>> 4] >>> ((index & 15) << 2)) & 15));
+    }
+    return frequency;
+  }
+
+  private void reset()
+  {
+    for (long[] row : table) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = (row[i] >>> 1) & RESET_MASK;
+      }
+    }
+    increments /= 2;
+  }
+
+  private int indexOf(int hash, int row)
+  {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    return (int) (h ^ (h >>> 32)) & rowMask;
+  }
+
+  private static int spread(int hash)
+  {
+    hash ^= hash >>> 16;
+    hash *= 0x45d9f3b;
+    return hash ^ (hash >>> 16);
+  }
+
+}
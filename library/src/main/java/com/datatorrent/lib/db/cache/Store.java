@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * A store which could be a memory store or a database store.
@@ -75,6 +76,13 @@ public interface Store
      * @param data mapping of keys to values which will be saved.
      */
     void bulkSet(Map<Object, Object> data);
+
+    /**
+     * Removes a key from the store.
+     *
+     * @param key key to remove.
+     */
+    void remove(@Nonnull Object key);
   }
 
   /**
@@ -91,4 +99,31 @@ public interface Store
     Map<Object, Object> fetchStartupData();
   }
 
+  /**
+   * A backup store which can tell which keys changed after a point in time, eg. with a version or an updated-at column
+   * which increases with every change.<br/>
+   * {@link StoreManager} uses it to refresh the keys in the {@link Primary} store which changed.
+   */
+  public static interface ChangeFeed extends Backup
+  {
+    /**
+     * <br>Retrieves the token of the latest change. It is fetched before the startup data.</br>
+     *
+     * @return token of the latest change; null when the store is empty.
+     */
+    @Nullable
+    Object fetchLatestChangeToken();
+
+    /**
+     * <br>Retrieves the keys which changed after a change, in the order of the changes.</br>
+     *
+     * @param token      token of the last change which was retrieved.
+     * @param maxChanges max no. of changes to retrieve.
+     * @param changes    the changed keys are added to this with their new values; null values for removed keys.
+     * @return token of the last change which was retrieved; the given token if there are no new changes.
+     */
+    @Nullable
+    Object fetchChangesSince(@Nullable Object token, int maxChanges, @Nonnull Map<Object, Object> changes);
+  }
+
 }
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
 
 /**
  * Manages primary and secondary stores.<br/>
@@ -36,6 +37,8 @@ import com.google.common.base.Strings;
  * <p>
  * Typically primary store is faster but has limited size like memory and backup store is slower but unlimited like databases.<br/>
  * Store Manager can also refresh the values of keys at a specified time every day. This time is in format HH:mm:ss Z.<br/>
+ * When the backup store is a {@link Store.ChangeFeed}, the keys which changed in the backup store can instead be
+ * refreshed in batches with {@link #refreshChanges(int)}.<br/>
  * This is not thread-safe.
  * </p>
  *
@@ -46,6 +49,9 @@ public class StoreManager
   protected transient final Store.Primary primary;
   protected transient final Store.Backup backup;
   private transient Timer refresher;
+  private transient long loads;
+  private transient long loadTimeNanos;
+  private transient Object changeToken;
 
   public StoreManager(final Store.Primary primary, final Store.Backup backup)
   {
@@ -55,6 +61,10 @@ public class StoreManager
 
   public void initialize(@Nullable String refreshTime/*HH:mm:ss*/)
   {
+    if (backup instanceof Store.ChangeFeed) {
+      /* changes after startup data are fetched again which is harmless */
+      changeToken = ((Store.ChangeFeed) backup).fetchLatestChangeToken();
+    }
     Map<Object, Object> initialEntries = backup.fetchStartupData();
     if (initialEntries != null) {
       primary.bulkSet(initialEntries);
@@ -102,7 +112,9 @@ public class StoreManager
 
   public void shutdown()
   {
-    refresher.cancel();
+    if (refresher != null) {
+      refresher.cancel();
+    }
     primary.teardown();
     backup.teardown();
   }
@@ -115,7 +127,9 @@ public class StoreManager
       return primaryVal;
     }
 
+    long start = System.nanoTime();
     Object backupVal = backup.get(key);
+    recordLoad(System.nanoTime() - start);
     if (backupVal != null) {
       primary.put(key, backupVal);
     }
@@ -128,6 +142,98 @@ public class StoreManager
     backup.put(key, value);
   }
 
+  /**
+   * Retrieves the value of a key from the primary store only.
+   *
+   * @param key the key to look for.
+   * @return value of the key in the primary store; null if it is not present.
+   */
+  @Nullable
+  public Object getCached(@Nonnull Object key)
+  {
+    return primary.get(key);
+  }
+
+  /**
+   * Saves the values which were fetched from the backup store outside the manager in the primary store.
+   * Keys which do not have a value are skipped.
+   *
+   * @param values mapping of keys to their values in the backup store.
+   */
+  public void cacheAll(@Nonnull Map<Object, Object> values)
+  {
+    Map<Object, Object> present = Maps.newHashMapWithExpectedSize(values.size());
+    for (Map.Entry<Object, Object> entry : values.entrySet()) {
+      if (entry.getValue() != null) {
+        present.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!present.isEmpty()) {
+      primary.bulkSet(present);
+    }
+  }
+
+  /**
+   * Fetches the next batch of changes from the backup store and applies the changes of the keys which are in the
+   * primary store to it. Only the changed keys are looked up in the primary store. Keys which were removed from the
+   * backup store are removed from the primary store.
+   *
+   * @param maxChanges max no. of changes to fetch.
+   * @return no. of changed keys which were fetched.
+   */
+  public int refreshChanges(int maxChanges)
+  {
+    Preconditions.checkState(backup instanceof Store.ChangeFeed, "backup store does not have a change feed");
+    Map<Object, Object> changes = Maps.newHashMap();
+    long start = System.nanoTime();
+    changeToken = ((Store.ChangeFeed) backup).fetchChangesSince(changeToken, maxChanges, changes);
+    recordLoad(System.nanoTime() - start);
+
+    Map<Object, Object> updates = Maps.newHashMap();
+    for (Map.Entry<Object, Object> entry : changes.entrySet()) {
+      if (primary.get(entry.getKey()) != null) {
+        if (entry.getValue() == null) {
+          primary.remove(entry.getKey());
+        }
+        else {
+          updates.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    if (!updates.isEmpty()) {
+      primary.bulkSet(updates);
+    }
+    logger.debug("refreshed {} of {} changed keys", updates.size(), changes.size());
+    return changes.size();
+  }
+
+  /**
+   * Records a fetch from the backup store which was done outside the manager.
+   *
+   * @param elapsedNanos duration of the fetch in nanoseconds.
+   */
+  public void recordLoad(long elapsedNanos)
+  {
+    loads++;
+    loadTimeNanos += elapsedNanos;
+  }
+
+  /**
+   * @return no. of fetches from the backup store.
+   */
+  public long getLoads()
+  {
+    return loads;
+  }
+
+  /**
+   * @return total duration of the fetches from the backup store in nanoseconds.
+   */
+  public long getLoadTimeNanos()
+  {
+    return loadTimeNanos;
+  }
+
   private final static Logger logger = LoggerFactory.getLogger(StoreManager.class);
 
 }
@@ -15,9 +15,14 @@
  */
 package com.datatorrent.lib.db.jdbc;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.validation.constraints.Min;
@@ -25,7 +30,9 @@ import javax.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import com.datatorrent.api.Context;
 
@@ -40,13 +47,21 @@ import com.datatorrent.lib.db.AbstractPassThruTransactionableStoreOutputOperator
  * <p>
  * Each tuple corresponds to an SQL update statement. The operator groups the updates in a batch
  * and submits them with one call to the database. Batch processing improves performance considerably.<br/>
- * The size of a batch is configured by batchSize property.
+ * The size of a batch is configured by batchSize property. When targetBatchMillis is set, the batch size adapts to the
+ * time taken to execute a batch: it is halved when a batch takes longer than the target and doubled, up to batchSize,
+ * when a batch takes less than half of it.<br/>
+ * When multiRowInsert is set, a full batch is executed as one INSERT ... VALUES (...),(...) statement which repeats the
+ * row values of the update command once for every tuple. The row values are the parenthesized list after the VALUES
+ * keyword which follows the table and the column list, so a clause after them, eg. MySQL's ON DUPLICATE KEY UPDATE
+ * c = VALUES(c), is kept once at the end of the statement. This helps the drivers which send every statement of a batch
+ * separately.
  * </p>
  *
  * <p>
- * The tuples in a window are stored in check-pointed collection which is cleared in the endWindow().
- * This is needed for the recovery. The operator writes a tuple exactly once in the database, which is why
- * only when all the updates are executed, the transaction is committed in the end window call.
+ * Only the tuples of the current batch are kept and they are released once the batch is executed. The operator writes
+ * a tuple exactly once in the database, which is why only when all the updates are executed, the transaction is
+ * committed in the end window call along with the window id. If the operator fails in a window, the transaction of that
+ * window is rolled back and the window is processed again after recovery.
  * </p>
  *
  * @param <T> type of tuple
@@ -58,16 +73,27 @@ public abstract class AbstractJdbcTransactionableOutputOperator<T> extends Abstr
 
   @Min(1)
   private int batchSize;
-  private final List<T> tuples;
+  @Min(0)
+  private long targetBatchMillis;
+  private boolean multiRowInsert;
+  /* tuples of the current batch */
+  private final transient List<T> tuples;
 
-  private transient int batchStartIdx;
+  private transient int currentBatchSize;
   private transient PreparedStatement updateCommand;
+  /* multi-row insert statements by their no. of rows */
+  private transient Map<Integer, PreparedStatement> multiRowCommands;
+  private transient String multiRowPrefix;
+  private transient String rowValues;
+  private transient String multiRowSuffix;
+  private transient int parametersPerRow;
+  private transient ParameterOffsetHandler parameterOffsetHandler;
+  private transient PreparedStatement offsetCommand;
 
   public AbstractJdbcTransactionableOutputOperator()
   {
     tuples = Lists.newArrayList();
     batchSize = DEFAULT_BATCH_SIZE;
-    batchStartIdx = 0;
     store = new JdbcTransactionalStore();
   }
 
@@ -75,54 +101,200 @@ public abstract class AbstractJdbcTransactionableOutputOperator<T> extends Abstr
   public void setup(Context.OperatorContext context)
   {
     super.setup(context);
+    String command = getUpdateCommand();
     try {
-      updateCommand = store.connection.prepareStatement(getUpdateCommand());
+      updateCommand = store.connection.prepareStatement(command);
     }
     catch (SQLException e) {
       throw new RuntimeException(e);
     }
+    currentBatchSize = batchSize;
+    tuples.clear();
 
+    if (multiRowInsert) {
+      int[] rowValuesBounds = findRowValues(command);
+      Preconditions.checkArgument(rowValuesBounds != null, "multi-row insert needs an INSERT ... VALUES (...) command: %s", command);
+      multiRowPrefix = command.substring(0, rowValuesBounds[0]);
+      rowValues = command.substring(rowValuesBounds[0], rowValuesBounds[1]);
+      multiRowSuffix = command.substring(rowValuesBounds[1]);
+      Preconditions.checkArgument(multiRowSuffix.indexOf('?') < 0, "multi-row insert needs all the parameters in the row values: %s", command);
+      parametersPerRow = 0;
+      for (int i = 0; i < rowValues.length(); i++) {
+        if (rowValues.charAt(i) == '?') {
+          parametersPerRow++;
+        }
+      }
+      multiRowCommands = Maps.newHashMap();
+      parameterOffsetHandler = new ParameterOffsetHandler();
+      offsetCommand = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, parameterOffsetHandler);
+    }
   }
 
   @Override
   public void endWindow()
   {
-    if (tuples.size() - batchStartIdx > 0) {
+    if (!tuples.isEmpty()) {
       processBatch();
     }
     super.endWindow();
-    tuples.clear();
-    batchStartIdx = 0;
   }
 
   @Override
   public void processTuple(T tuple)
   {
     tuples.add(tuple);
-    if ((tuples.size() - batchStartIdx) >= batchSize) {
+    if (tuples.size() >= currentBatchSize) {
       processBatch();
     }
   }
 
   private void processBatch()
   {
-    logger.debug("start {} end {}", batchStartIdx, tuples.size());
+    logger.debug("batch of {}", tuples.size());
+    boolean full = tuples.size() >= currentBatchSize;
+    long start = System.nanoTime();
     try {
-      for (int i = batchStartIdx; i < tuples.size(); i++) {
-        setStatementParameters(updateCommand, tuples.get(i));
-        updateCommand.addBatch();
+      if (multiRowInsert && full && tuples.size() > 1) {
+        executeMultiRowInsert();
+      }
+      else {
+        for (T tuple : tuples) {
+          setStatementParameters(updateCommand, tuple);
+          updateCommand.addBatch();
+        }
+        updateCommand.executeBatch();
+        updateCommand.clearBatch();
       }
-      updateCommand.executeBatch();
-      updateCommand.clearBatch();
     }
     catch (SQLException e) {
       throw new RuntimeException("processing batch", e);
     }
     finally {
-      batchStartIdx += tuples.size() - batchStartIdx;
+      tuples.clear();
+    }
+    if (full && targetBatchMillis > 0) {
+      adaptBatchSize((System.nanoTime() - start) / 1000000);
+    }
+  }
+
+  private void executeMultiRowInsert() throws SQLException
+  {
+    PreparedStatement statement = multiRowCommands.get(tuples.size());
+    if (statement == null) {
+      StringBuilder builder = new StringBuilder(multiRowPrefix);
+      for (int i = 0; i < tuples.size(); i++) {
+        if (i > 0) {
+          builder.append(',');
+        }
+        builder.append(rowValues);
+      }
+      builder.append(multiRowSuffix);
+      statement = store.connection.prepareStatement(builder.toString());
+      multiRowCommands.put(tuples.size(), statement);
+    }
+    parameterOffsetHandler.statement = statement;
+    for (int i = 0; i < tuples.size(); i++) {
+      parameterOffsetHandler.offset = i * parametersPerRow;
+      setStatementParameters(offsetCommand, tuples.get(i));
+    }
+    statement.executeUpdate();
+  }
+
+  /**
+   * Finds the row values of an INSERT ... VALUES (...) command, which are the parenthesized list after the first VALUES
+   * keyword that is outside of parentheses and quotes. A VALUES keyword in the column list, in a literal or in a clause
+   * after the row values, eg. the VALUES(c) function of MySQL's ON DUPLICATE KEY UPDATE, is skipped.
+   *
+   * @param command update command.
+   * @return index of the opening and after the closing parenthesis of the row values; null when the command has none.
+   */
+  static int[] findRowValues(String command)
+  {
+    int start = -1;
+    int depth = 0;
+    char quote = 0;
+    for (int i = 0; i < command.length(); i++) {
+      char c = command.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      }
+      else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      }
+      else if (c == '(') {
+        depth++;
+      }
+      else if (c == ')') {
+        depth--;
+        if (start >= 0 && depth == 0) {
+          return new int[] {start, i + 1};
+        }
+      }
+      else if (start < 0 && depth == 0 && isValuesKeyword(command, i)) {
+        start = i + "VALUES".length();
+        while (start < command.length() && Character.isWhitespace(command.charAt(start))) {
+          start++;
+        }
+        if (start == command.length() || command.charAt(start) != '(') {
+          return null;
+        }
+        i = start - 1;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isValuesKeyword(String command, int index)
+  {
+    int end = index + "VALUES".length();
+    return command.regionMatches(true, index, "VALUES", 0, "VALUES".length())
+            && (index == 0 || !Character.isJavaIdentifierPart(command.charAt(index - 1)))
+            && (end == command.length() || !Character.isJavaIdentifierPart(command.charAt(end)));
+  }
+
+  /**
+   * Halves the batch size when the batch took longer than the target and doubles it, up to the batch size, when it took
+   * less than half of the target. The sizes stay few so that few multi-row statements are prepared.
+   */
+  private void adaptBatchSize(long elapsedMillis)
+  {
+    if (elapsedMillis > targetBatchMillis && currentBatchSize > 1) {
+      currentBatchSize /= 2;
+      logger.debug("batch took {} ms, batch size {}", elapsedMillis, currentBatchSize);
+    }
+    else if (elapsedMillis * 2 < targetBatchMillis && currentBatchSize < batchSize) {
+      currentBatchSize = Math.min(batchSize, currentBatchSize * 2);
+      logger.debug("batch took {} ms, batch size {}", elapsedMillis, currentBatchSize);
     }
   }
 
+  /**
+   * Shifts the parameter indexes which are set on the statement by the parameters of the previous rows, so that
+   * {@link #setStatementParameters(PreparedStatement, Object)} can set the parameters of a row in a multi-row insert.
+   */
+  private static class ParameterOffsetHandler implements InvocationHandler
+  {
+    PreparedStatement statement;
+    int offset;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+      if (args != null && args.length > 1 && method.getName().startsWith("set") && method.getParameterTypes()[0] == int.class) {
+        args[0] = (Integer) args[0] + offset;
+      }
+      try {
+        return method.invoke(statement, args);
+      }
+      catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+  }
+
   /**
    * Sets the size of a batch operation.<br/>
    * <b>Default:</b> {@value #DEFAULT_BATCH_SIZE}
@@ -134,6 +306,45 @@ public abstract class AbstractJdbcTransactionableOutputOperator<T> extends Abstr
     this.batchSize = batchSize;
   }
 
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Sets the time in which a batch should be executed. The batch size is reduced when batches take longer and grows up
+   * to the batch size when they take less than half of it.<br/>
+   * <b>Default:</b> 0 which does not change the batch size
+   *
+   * @param targetBatchMillis time in milliseconds
+   */
+  public void setTargetBatchMillis(long targetBatchMillis)
+  {
+    this.targetBatchMillis = targetBatchMillis;
+  }
+
+  public long getTargetBatchMillis()
+  {
+    return targetBatchMillis;
+  }
+
+  /**
+   * Sets whether a full batch is inserted with a single multi-row INSERT statement. The update command must be an
+   * INSERT ... VALUES (...) statement.<br/>
+   * <b>Default:</b> false
+   *
+   * @param multiRowInsert
+   */
+  public void setMultiRowInsert(boolean multiRowInsert)
+  {
+    this.multiRowInsert = multiRowInsert;
+  }
+
+  public boolean isMultiRowInsert()
+  {
+    return multiRowInsert;
+  }
+
   /**
    * Gets the statement which insert/update the table in the database.
    *
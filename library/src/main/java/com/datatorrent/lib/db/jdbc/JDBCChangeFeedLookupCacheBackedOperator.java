@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.db.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.datatorrent.lib.db.cache.Store;
+
+/**
+ * {@link JDBCLookupCacheBackedOperator} which refreshes the cached keys which changed in the table.
+ * <p>
+ * The table needs a column, eg. a version or updated-at column, whose value increases with every change. Concrete
+ * classes provide the query which retrieves the latest value of the column, the query which retrieves the rows changed
+ * after a value and the processing of the changed rows, and set the change refresh interval. The changes are fetched
+ * on the operator thread at the beginning of a window.
+ * </p>
+ *
+ * @param <T> type of input tuples </T>
+ */
+public abstract class JDBCChangeFeedLookupCacheBackedOperator<T> extends JDBCLookupCacheBackedOperator<T> implements Store.ChangeFeed
+{
+  protected transient PreparedStatement latestChangeStatement;
+  protected transient PreparedStatement changesStatement;
+
+  @Override
+  protected void prepareStatements() throws SQLException
+  {
+    super.prepareStatements();
+    latestChangeStatement = store.connection.prepareStatement(fetchLatestChangeQuery());
+    changesStatement = store.connection.prepareStatement(fetchChangesQuery());
+  }
+
+  @Override
+  public Object fetchLatestChangeToken()
+  {
+    try {
+      ResultSet resultSet = latestChangeStatement.executeQuery();
+      try {
+        return resultSet.next() ? resultSet.getObject(1) : null;
+      }
+      finally {
+        resultSet.close();
+      }
+    }
+    catch (SQLException e) {
+      throw new RuntimeException("while fetching latest change", e);
+    }
+  }
+
+  @Override
+  public Object fetchChangesSince(Object token, int maxChanges, @Nonnull Map<Object, Object> changes)
+  {
+    if (token == null) {
+      /* the table was empty at startup so the changes are tracked from its latest change */
+      return fetchLatestChangeToken();
+    }
+    try {
+      changesStatement.setObject(1, token);
+      changesStatement.setMaxRows(maxChanges);
+      ResultSet resultSet = changesStatement.executeQuery();
+      try {
+        while (resultSet.next()) {
+          token = processChangedRow(resultSet, changes);
+        }
+      }
+      finally {
+        resultSet.close();
+      }
+      return token;
+    }
+    catch (SQLException e) {
+      throw new RuntimeException("while fetching changes", e);
+    }
+  }
+
+  /**
+   * Returns the query which retrieves the latest value of the change column, eg. <code>SELECT MAX(updated_at) FROM
+   * table</code>.
+   *
+   * @return latest change query.
+   */
+  protected abstract String fetchLatestChangeQuery();
+
+  /**
+   * Returns the query which retrieves the rows whose change column is more than its only parameter ordered by that
+   * column, eg. <code>SELECT key, value, updated_at FROM table WHERE updated_at &gt; ? ORDER BY updated_at</code>.
+   * The value should increase with every change, otherwise changes with the same value as the last retrieved change
+   * can be missed.
+   *
+   * @return changes query.
+   */
+  protected abstract String fetchChangesQuery();
+
+  /**
+   * Adds the key and the value of the current row of the result of changes query to the changes.
+   *
+   * @param resultSet result of changes query.
+   * @param changes   mapping of changed keys to their values; null value when the key was deleted.
+   * @return value of the change column of the row.
+   * @throws SQLException
+   */
+  protected abstract Object processChangedRow(ResultSet resultSet, Map<Object, Object> changes) throws SQLException;
+
+}
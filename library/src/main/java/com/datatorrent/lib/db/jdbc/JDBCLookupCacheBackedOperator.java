@@ -33,6 +33,15 @@ import com.datatorrent.lib.db.cache.AbstractDBLookupCacheBackedOperator;
  * This is {@link AbstractDBLookupCacheBackedOperator} which uses JDBC to fetch
  * the value of a key from the database when the key is not present in cache.
  * </br>
+ * <p>
+ * {@link JDBCChangeFeedLookupCacheBackedOperator} also refreshes the cached keys which changed in the table.
+ * </p>
+ * <p>
+ * {@link #bulkGet(Set)} is called by the lookup threads and by the daily refresh, so it prepares its own statement on
+ * every call instead of using the statements of the operator thread. When {@link #fetchBulkGetQuery(int)} is provided,
+ * a batch of keys is fetched with one query, otherwise the keys are fetched one at a time. The other statements are
+ * used only on the operator thread. The threads share the connection, so the JDBC driver should allow that.
+ * </p>
  *
  * @param <T> type of input tuples </T>
  * @since 0.9.1
@@ -66,11 +75,8 @@ public abstract class JDBCLookupCacheBackedOperator<T> extends AbstractDBLookupC
   public void setup(Context.OperatorContext context)
   {
     store.connect();
-    String insertQuery = fetchInsertQuery();
-    String getQuery = fetchGetQuery();
     try {
-      putStatement = store.connection.prepareStatement(insertQuery);
-      getStatement = store.connection.prepareStatement(getQuery);
+      prepareStatements();
     }
     catch (SQLException e) {
       throw new RuntimeException(e);
@@ -79,6 +85,17 @@ public abstract class JDBCLookupCacheBackedOperator<T> extends AbstractDBLookupC
     super.setup(context);
   }
 
+  /**
+   * Prepares the statements of the operator thread after the store is connected and before the cache is initialized.
+   *
+   * @throws SQLException
+   */
+  protected void prepareStatements() throws SQLException
+  {
+    putStatement = store.connection.prepareStatement(fetchInsertQuery());
+    getStatement = store.connection.prepareStatement(fetchGetQuery());
+  }
+
   @Override
   public void teardown()
   {
@@ -120,19 +137,89 @@ public abstract class JDBCLookupCacheBackedOperator<T> extends AbstractDBLookupC
   public Map<Object, Object> bulkGet(Set<Object> keys)
   {
     Map<Object, Object> valMap = new HashMap<Object, Object>();
-    for (Object key : keys) {
+    if (keys.isEmpty()) {
+      return valMap;
+    }
+    String bulkGetQuery = fetchBulkGetQuery(keys.size());
+    try {
+      PreparedStatement statement = store.connection.prepareStatement(bulkGetQuery != null ? bulkGetQuery : fetchGetQuery());
       try {
-        prepareGetStatement(getStatement, key);
-        ResultSet resultSet = getStatement.executeQuery();
-        valMap.put(key, processResultSet(resultSet));
+        if (bulkGetQuery != null) {
+          prepareBulkGetStatement(statement, keys);
+          ResultSet resultSet = statement.executeQuery();
+          try {
+            processBulkResultSet(resultSet, valMap);
+          }
+          finally {
+            resultSet.close();
+          }
+        }
+        else {
+          for (Object key : keys) {
+            prepareGetStatement(statement, key);
+            ResultSet resultSet = statement.executeQuery();
+            try {
+              valMap.put(key, processResultSet(resultSet));
+            }
+            finally {
+              resultSet.close();
+            }
+          }
+        }
       }
-      catch (SQLException e) {
-        throw new RuntimeException("while fetching keys", e);
+      finally {
+        statement.close();
       }
     }
+    catch (SQLException e) {
+      throw new RuntimeException("while fetching keys", e);
+    }
     return valMap;
   }
 
+  /**
+   * Returns the query which retrieves the rows of a batch of keys with one parameter per key, eg. <code>SELECT col1,
+   * col2 FROM table WHERE col1 IN (?, ?, ?)</code>.
+   *
+   * @param noOfKeys no. of keys in the batch.
+   * @return bulk get query; null to fetch the keys one at a time with the get query.
+   */
+  protected String fetchBulkGetQuery(int noOfKeys)
+  {
+    return null;
+  }
+
+  /**
+   * Sets the keys as the parameters of the bulk get query in the order of iteration.
+   *
+   * @param bulkGetStatement statement of the bulk get query.
+   * @param keys             keys of the batch.
+   * @throws SQLException
+   */
+  protected void prepareBulkGetStatement(PreparedStatement bulkGetStatement, Set<Object> keys) throws SQLException
+  {
+    int parameterIndex = 1;
+    for (Object key : keys) {
+      bulkGetStatement.setObject(parameterIndex++, key);
+    }
+  }
+
+  /**
+   * Adds the keys and the values of all the rows of the result of the bulk get query to the values. By default the
+   * first column is the key and the second column is the value; the keys read from the rows should be equal to the
+   * keys of the batch.
+   *
+   * @param resultSet result of the bulk get query.
+   * @param values    mapping of keys to their values.
+   * @throws SQLException
+   */
+  protected void processBulkResultSet(ResultSet resultSet, Map<Object, Object> values) throws SQLException
+  {
+    while (resultSet.next()) {
+      values.put(resultSet.getObject(1), resultSet.getObject(2));
+    }
+  }
+
   protected abstract void prepareGetStatement(PreparedStatement getStatement, Object Key) throws SQLException;
 
   protected abstract void preparePutStatement(PreparedStatement putStatement, Object Key, Object Value) throws SQLException;
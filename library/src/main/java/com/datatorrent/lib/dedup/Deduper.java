@@ -53,7 +53,11 @@ import com.datatorrent.lib.counters.BasicCounters;
  * <li>Finding the bucket key of an event by calling {@link BucketManager#getBucketKeyFor(Bucketable)}.</li>
  * <li>Getting the bucket from {@link BucketManager} by calling {@link BucketManager#getBucket(long)}.</li>
  * <li>
- * If the bucket is not loaded:
+ * If the bucket is not loaded and {@link BucketManager#tryNewEvent(long, Bucketable)} can tell that the event is not a
+ * duplicate, the event is emitted right away.
+ * </li>
+ * <li>
+ * Otherwise if the bucket is not loaded:
  * <ol>
  * <li>it requests the {@link BucketManager} to load the bucket which is a non-blocking call.</li>
  * <li>Adds the event to {@link #waitingEvents} which is a collection of events that are waiting for buckets to be loaded.</li>
@@ -70,12 +74,20 @@ import com.datatorrent.lib.counters.BasicCounters;
  * Based on the assumption that duplicate events fall in the same bucket.
  * </p>
  *
+ * <p>
+ * By default the end of a window waits for all the pending bucket loads and processes all the waiting events.
+ * When {@link #carryOverWaitingEvents} is true, the waiting events are instead carried over to the next window. This
+ * should be used with a {@link BucketManager} which saves asynchronously (eg.
+ * {@link com.datatorrent.lib.bucket.BucketManagerImpl#setSaveAsynchronously(boolean)}) so that the end of a window is
+ * not bound by the latency of loading or persisting buckets.
+ * </p>
+ *
  * @param <INPUT>  type of input tuple
  * @param <OUTPUT> type of output tuple
  * @since 0.9.4
  */
 public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
-  implements Operator, BucketManager.Listener<INPUT>, IdleTimeHandler, Partitioner<Deduper<INPUT, OUTPUT>>
+  implements Operator, BucketManager.Listener<INPUT>, IdleTimeHandler, Partitioner<Deduper<INPUT, OUTPUT>>, CheckpointListener
 {
   @InputPortFieldAnnotation(name = "input", optional = true)
   public final transient DefaultInputPort<INPUT> input = new DefaultInputPort<INPUT>()
@@ -99,6 +111,10 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
         bucketManager.newEvent(bucketKey, tuple);
         output.emit(convert(tuple));
       }
+      else if (!waitingEvents.containsKey(bucketKey) && bucketManager.tryNewEvent(bucketKey, tuple)) {
+        //The event is definitely not a duplicate so the bucket is not loaded.
+        output.emit(convert(tuple));
+      }
       else {
         /**
          * The bucket on disk is not loaded. So we load the bucket from the disk.
@@ -131,6 +147,7 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
   protected final Map<Long, List<INPUT>> waitingEvents;
   protected Set<Integer> partitionKeys;
   protected int partitionMask;
+  protected boolean carryOverWaitingEvents;
   //Non check-pointed state
   protected transient final BlockingQueue<Bucket<INPUT>> fetchedBuckets;
   private transient long sleepTimeMillis;
@@ -182,15 +199,23 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
   public void beginWindow(long l)
   {
     currentWindow = l;
+    bucketManager.beginWindow(l);
   }
 
   @Override
   public void endWindow()
   {
     try {
-      bucketManager.blockUntilAllRequestsServiced();
-      handleIdleTime();
-      Preconditions.checkArgument(waitingEvents.isEmpty(), waitingEvents.keySet());
+      if (carryOverWaitingEvents) {
+        if (!fetchedBuckets.isEmpty()) {
+          handleIdleTime();
+        }
+      }
+      else {
+        bucketManager.blockUntilAllRequestsServiced();
+        handleIdleTime();
+        Preconditions.checkArgument(waitingEvents.isEmpty(), waitingEvents.keySet());
+      }
       bucketManager.endWindow(currentWindow);
     }
     catch (Throwable cause) {
@@ -218,6 +243,11 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
        */
       Bucket<INPUT> bucket;
       while ((bucket = fetchedBuckets.poll()) != null) {
+        if (!bucket.isDataOnDiskLoaded()) {
+          //The bucket was off-loaded and released before its waiting events were processed.
+          bucketManager.loadBucketData(bucket.bucketKey);
+          continue;
+        }
         List<INPUT> waitingList = waitingEvents.remove(bucket.bucketKey);
         if (waitingList != null) {
           for (INPUT event : waitingList) {
@@ -234,6 +264,18 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
     }
   }
 
+  @Override
+  public void checkpointed(long windowId)
+  {
+    bucketManager.checkpointed(windowId);
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    bucketManager.committed(windowId);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -322,6 +364,7 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
       deduperInstance.partitionMask = lPartitionMask;
       logger.debug("partitions {},{}", deduperInstance.partitionKeys, deduperInstance.partitionMask);
       deduperInstance.bucketManager = bucketManager.cloneWithProperties();
+      deduperInstance.carryOverWaitingEvents = carryOverWaitingEvents;
 
       for (int partitionKey : deduperInstance.partitionKeys) {
         partitionKeyToStorageManagers.put(partitionKey, deduperInstance.bucketManager);
@@ -365,6 +408,17 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
     return this.bucketManager;
   }
 
+  /**
+   * Set true for carrying over the events waiting for their buckets to be loaded to the next window instead of
+   * waiting for the loads at the end of the window; false otherwise.
+   *
+   * @param carryOverWaitingEvents
+   */
+  public void setCarryOverWaitingEvents(boolean carryOverWaitingEvents)
+  {
+    this.carryOverWaitingEvents = carryOverWaitingEvents;
+  }
+
   /**
    * Converts the input tuple to output tuple.
    *
@@ -388,6 +442,9 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
     if (partitionMask != deduper.partitionMask) {
       return false;
     }
+    if (carryOverWaitingEvents != deduper.carryOverWaitingEvents) {
+      return false;
+    }
     if (!bucketManager.equals(deduper.bucketManager)) {
       return false;
     }
@@ -404,6 +461,7 @@ public abstract class Deduper<INPUT extends Bucketable, OUTPUT>
     result = 31 * result + (waitingEvents.hashCode());
     result = 31 * result + (partitionKeys != null ? partitionKeys.hashCode() : 0);
     result = 31 * result + partitionMask;
+    result = 31 * result + (carryOverWaitingEvents ? 1 : 0);
     return result;
   }
 
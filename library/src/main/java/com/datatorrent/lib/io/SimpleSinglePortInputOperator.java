@@ -15,8 +15,10 @@
  */
 package com.datatorrent.lib.io;
 
-import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
 
 import com.datatorrent.api.*;
 import com.datatorrent.api.Context.OperatorContext;
@@ -29,6 +31,11 @@ import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
  * must be emitted by container thread). If derived class implements
  * {@link Runnable} to perform synchronous IO, this class will manage the thread
  * according to the operator lifecycle.
+ * <p>
+ * The tuples are handed over through an {@link ArrayBlockingQueue}. Operators
+ * which emit from a single thread can opt in to the lock free
+ * {@link SpscRingBuffer} with the singleProducer constructor argument, and
+ * configure how the IO thread waits when the buffer is full.
  *
  * @since 0.3.2
  */
@@ -36,6 +43,8 @@ public class SimpleSinglePortInputOperator<T> extends BaseOperator implements In
 {
   private transient Thread ioThread;
   private transient boolean isActive = false;
+  @NotNull
+  private SpscRingBuffer.WaitStrategy waitStrategy = SpscRingBuffer.WaitStrategy.PARK;
   /**
    * The single output port of this input operator.
    * Collects asynchronously emitted tuples and flushes in container thread.
@@ -43,9 +52,19 @@ public class SimpleSinglePortInputOperator<T> extends BaseOperator implements In
   @OutputPortFieldAnnotation(name = "outputPort")
   final public transient BufferingOutputPort<T> outputPort;
 
+  /**
+   * @param portCapacity no. of tuples which the output port buffers.
+   * @param singleProducer whether the tuples are emitted from a single thread
+   *          and handed over through a {@link SpscRingBuffer}.
+   */
+  public SimpleSinglePortInputOperator(int portCapacity, boolean singleProducer)
+  {
+    outputPort = new BufferingOutputPort<T>(this, portCapacity, singleProducer);
+  }
+
   public SimpleSinglePortInputOperator(int portCapacity)
   {
-    outputPort = new BufferingOutputPort<T>(this, portCapacity);
+    this(portCapacity, false);
   }
 
   public SimpleSinglePortInputOperator()
@@ -53,9 +72,30 @@ public class SimpleSinglePortInputOperator<T> extends BaseOperator implements In
     this(1024);
   }
 
+  /**
+   * @return how the IO thread waits when the output port buffer is full.
+   */
+  public SpscRingBuffer.WaitStrategy getWaitStrategy()
+  {
+    return waitStrategy;
+  }
+
+  /**
+   * Applies only to a single producer output port.
+   *
+   * @param waitStrategy how the IO thread waits when the output port buffer is full.
+   */
+  public void setWaitStrategy(SpscRingBuffer.WaitStrategy waitStrategy)
+  {
+    this.waitStrategy = waitStrategy;
+  }
+
   @Override
   final public void activate(OperatorContext ctx)
   {
+    if (outputPort.ring != null) {
+      outputPort.ring.setWaitStrategy(waitStrategy);
+    }
     isActive = true;
     if (this instanceof Runnable) {
       ioThread = new Thread((Runnable)this, "io-" + this.getName());
@@ -86,28 +126,78 @@ public class SimpleSinglePortInputOperator<T> extends BaseOperator implements In
 
   public static class BufferingOutputPort<T> extends DefaultOutputPort<T>
   {
+    /**
+     * Buffered tuples, null for a single producer port.
+     */
     public final ArrayBlockingQueue<T> tuples;
+    /* buffered tuples of a single producer port */
+    private final SpscRingBuffer<T> ring;
+    private final AtomicLong producerStalls = new AtomicLong();
+    private final AtomicLong producerStallNanos = new AtomicLong();
+    private final SpscRingBuffer.Handler<T> emitter = new SpscRingBuffer.Handler<T>()
+    {
+      @Override
+      public void handle(T tuple)
+      {
+        BufferingOutputPort.super.emit(tuple);
+      }
+
+    };
 
     /**
      * @param operator
      */
     public BufferingOutputPort(Operator operator)
     {
-      super();
-      tuples = new ArrayBlockingQueue<T>(1024);
+      this(operator, 1024);
     }
 
     public BufferingOutputPort(Operator operator, int capacity)
+    {
+      this(operator, capacity, false);
+    }
+
+    /**
+     * @param operator
+     * @param capacity no. of tuples which are buffered.
+     * @param singleProducer whether the tuples are emitted from a single
+     *          thread and handed over through a {@link SpscRingBuffer}.
+     */
+    public BufferingOutputPort(Operator operator, int capacity, boolean singleProducer)
     {
       super();
-      tuples = new ArrayBlockingQueue<T>(capacity);
+      if (singleProducer) {
+        tuples = null;
+        ring = new SpscRingBuffer<T>(capacity);
+      }
+      else {
+        tuples = new ArrayBlockingQueue<T>(capacity);
+        ring = null;
+      }
     }
 
+    /**
+     * Buffers the tuple till it is emitted by the container thread, waiting
+     * while the buffer is full. On a single producer port the tuples must be
+     * emitted from one thread at a time; concurrent emits lose tuples.
+     */
     @Override
     public void emit(T tuple)
     {
       try {
-        tuples.put(tuple);
+        if (ring != null) {
+          ring.put(tuple);
+        }
+        else if (!tuples.offer(tuple)) {
+          long start = System.nanoTime();
+          producerStalls.incrementAndGet();
+          try {
+            tuples.put(tuple);
+          }
+          finally {
+            producerStallNanos.addAndGet(System.nanoTime() - start);
+          }
+        }
       }
       catch (InterruptedException ex) {
         throw new RuntimeException(ex);
@@ -116,13 +206,48 @@ public class SimpleSinglePortInputOperator<T> extends BaseOperator implements In
 
     public void flush(int count)
     {
-      Iterator<T> iterator = tuples.iterator();
-      while (count-- > 0 && iterator.hasNext()) {
-        super.emit(iterator.next());
-        iterator.remove();
+      if (ring != null) {
+        ring.drain(emitter, count);
+        return;
+      }
+      T tuple;
+      while (count-- > 0 && (tuple = tuples.poll()) != null) {
+        super.emit(tuple);
       }
     }
 
+    /**
+     * @return whether the port is a single producer port.
+     */
+    public boolean isSingleProducer()
+    {
+      return ring != null;
+    }
+
+    /**
+     * @return no. of tuples waiting to be emitted.
+     */
+    public int getQueueDepth()
+    {
+      return ring != null ? ring.size() : tuples.size();
+    }
+
+    /**
+     * @return no. of emits which found the buffer full.
+     */
+    public long getProducerStalls()
+    {
+      return ring != null ? ring.getProducerStalls() : producerStalls.get();
+    }
+
+    /**
+     * @return total time in nanoseconds emits waited for the buffer.
+     */
+    public long getProducerStallNanos()
+    {
+      return ring != null ? ring.getProducerStallNanos() : producerStallNanos.get();
+    }
+
   };
 
 }
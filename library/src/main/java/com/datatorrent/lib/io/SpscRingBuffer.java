@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounded lock free queue for one producer thread and one consumer thread.
+ * <p>
+ * The slots are an array whose size is a power of 2. The producer and the consumer publish their positions with
+ * ordered writes and keep a cached copy of the position of the other side, so that the shared positions are only read
+ * when the ring looks full or empty. The consumer drains up to a given number of elements and publishes its position
+ * once per drain. When the ring is full, the producer waits with the {@link WaitStrategy} of the ring.
+ * </p>
+ *
+ * @param <T> type of the elements.
+ */
+public class SpscRingBuffer<T>
+{
+  /**
+   * How the producer waits for a free slot.
+   */
+  public enum WaitStrategy
+  {
+    /**
+     * Retry immediately, lowest latency and a busy core.
+     */
+    SPIN,
+    /**
+     * Yield the processor between retries.
+     */
+    YIELD,
+    /**
+     * Park the thread for parkNanos between retries.
+     */
+    PARK
+  }
+
+  /**
+   * Receives the elements of a drain.
+   *
+   * @param <T> type of the elements.
+   */
+  public interface Handler<T>
+  {
+    void handle(T element);
+
+  }
+
+  private final Object[] slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  /* producer side */
+  private long headCache;
+  /* consumer side */
+  private long tailCache;
+  private volatile WaitStrategy waitStrategy = WaitStrategy.PARK;
+  private volatile long parkNanos = TimeUnit.MICROSECONDS.toNanos(100);
+  private volatile long producerStalls;
+  private volatile long producerStallNanos;
+
+  /**
+   * @param capacity minimum no. of elements, rounded up to a power of 2.
+   */
+  public SpscRingBuffer(int capacity)
+  {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity %s", capacity);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    slots = new Object[size];
+    mask = size - 1;
+  }
+
+  public int getCapacity()
+  {
+    return slots.length;
+  }
+
+  public WaitStrategy getWaitStrategy()
+  {
+    return waitStrategy;
+  }
+
+  public void setWaitStrategy(WaitStrategy waitStrategy)
+  {
+    this.waitStrategy = Preconditions.checkNotNull(waitStrategy, "waitStrategy");
+  }
+
+  public long getParkNanos()
+  {
+    return parkNanos;
+  }
+
+  public void setParkNanos(long parkNanos)
+  {
+    this.parkNanos = parkNanos;
+  }
+
+  /**
+   * Adds the element if there is a free slot, called by the producer.
+   *
+   * @return false if the ring is full.
+   */
+  public boolean offer(T element)
+  {
+    Preconditions.checkNotNull(element);
+    long position = tail.get();
+    if (position - headCache >= slots.length) {
+      headCache = head.get();
+      if (position - headCache >= slots.length) {
+        return false;
+      }
+    }
+    slots[(int) position & mask] = element;
+    tail.lazySet(position + 1);
+    return true;
+  }
+
+  /**
+   * Adds the element and waits for a free slot if the ring is full, called by the producer.
+   *
+   * @throws InterruptedException if the producer is interrupted while waiting.
+   */
+  public void put(T element) throws InterruptedException
+  {
+    if (offer(element)) {
+      return;
+    }
+    long start = System.nanoTime();
+    producerStalls++;
+    try {
+      do {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        switch (waitStrategy) {
+          case SPIN:
+            break;
+          case YIELD:
+            Thread.yield();
+            break;
+          default:
+            LockSupport.parkNanos(parkNanos);
+            break;
+        }
+      }
+      while (!offer(element));
+    }
+    finally {
+      producerStallNanos += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Removes the first element, called by the consumer.
+   *
+   * @return the element, null if the ring is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll()
+  {
+    long position = head.get();
+    if (position >= tailCache) {
+      tailCache = tail.get();
+      if (position >= tailCache) {
+        return null;
+      }
+    }
+    int index = (int) position & mask;
+    T element = (T) slots[index];
+    slots[index] = null;
+    head.lazySet(position + 1);
+    return element;
+  }
+
+  /**
+   * Removes up to limit elements in order and passes them to the handler, called by the consumer.
+   *
+   * @return no. of elements which were removed.
+   */
+  @SuppressWarnings("unchecked")
+  public int drain(Handler<? super T> handler, int limit)
+  {
+    long position = head.get();
+    if (tailCache - position < limit) {
+      tailCache = tail.get();
+    }
+    int count = (int) Math.min(tailCache - position, limit);
+    int drained = 0;
+    try {
+      while (drained < count) {
+        int index = (int) (position + drained) & mask;
+        T element = (T) slots[index];
+        slots[index] = null;
+        drained++;
+        handler.handle(element);
+      }
+    }
+    finally {
+      if (drained > 0) {
+        head.lazySet(position + drained);
+      }
+    }
+    return drained;
+  }
+
+  /**
+   * @return no. of elements in the ring, exact only when called by the producer or the consumer.
+   */
+  public int size()
+  {
+    long size = tail.get() - head.get();
+    return size < 0 ? 0 : (int) size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /**
+   * @return no. of puts which found the ring full and had to wait.
+   */
+  public long getProducerStalls()
+  {
+    return producerStalls;
+  }
+
+  /**
+   * @return total time in nanoseconds the producer waited for free slots.
+   */
+  public long getProducerStallNanos()
+  {
+    return producerStallNanos;
+  }
+
+}
@@ -26,11 +26,11 @@ import java.util.regex.Pattern;
 import javax.validation.constraints.NotNull;
 
 import com.datatorrent.api.StatsListener;
-import com.datatorrent.common.util.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Seekable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,12 +53,20 @@ import com.datatorrent.api.Partitioner;
  * <p/>
  * Fault tolerant by tracking previously read files and current offset as part of checkpoint state. In case of failure
  * the operator will skip files that were already processed and fast forward to the offset of the current file.
+ * When the derived class reports the byte position of the entities with {@link #getEntityPosition()}, the position is
+ * checkpointed as well and the operator seeks to it instead of reading the file up to the offset.
  * <p/>
  * Supports partitioning and dynamic changes to number of partitions through property {@link #partitionCount}. The
  * directory scanner is responsible to only accept the files that belong to a partition.
  * <p/>
  * This class supports retrying of failed files by putting them into failed list, and retrying them after pending
  * files are processed. Retrying is disabled when maxRetryCount is set to zero.
+ * <p/>
+ * When {@link #blockSize} is set, files are divided in blocks of that many bytes and the directory scanner assigns the
+ * blocks instead of the files to the partitions, so that a large file is read by all the partitions. The records are
+ * aligned to the blocks like the input splits of Hadoop: a block has the records which start in it and a block other
+ * than the first skips the partial record at its start. This needs the entity positions of
+ * {@link #getEntityPosition()} and is meant for records which end with a delimiter, eg. lines.
  *
  * @since 1.0.2
  */
@@ -72,7 +80,10 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
   private DirectoryScanner scanner = new DirectoryScanner();
   private int scanIntervalMillis = 5000;
   private int offset;
+  private long byteOffset = -1;
   private String currentFile;
+  private FileBlock currentBlock;
+  private long blockSize;
   private final HashSet<String> processedFiles = new HashSet<String>();
   private int emitBatchSize = 1000;
   private int currentPartitions = 1 ;
@@ -91,7 +102,9 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
    */
   protected static class FailedFile {
     String path;
+    FileBlock block;
     int   offset;
+    long   byteOffset = -1;
     int    retryCount;
     long   lastFailedTime;
 
@@ -116,6 +129,7 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
       return "FailedFile[" +
           "path='" + path + '\'' +
           ", offset=" + offset +
+          ", byteOffset=" + byteOffset +
           ", retryCount=" + retryCount +
           ", lastFailedTime=" + lastFailedTime +
           ']';
@@ -124,12 +138,54 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
   /* List of failed file */
   private final Queue<FailedFile> failedFiles = new LinkedList<FailedFile>();
 
+  /**
+   * A range of bytes of a file which is read by one partition when files are read in blocks.
+   */
+  public static class FileBlock implements Serializable
+  {
+    private static final long serialVersionUID = 201410191100L;
+    final String path;
+    final long index;
+    final long start;
+    final long end;
+
+    /* For kryo serialization */
+    private FileBlock()
+    {
+      path = null;
+      index = start = end = 0;
+    }
+
+    public FileBlock(String path, long index, long start, long end)
+    {
+      this.path = path;
+      this.index = index;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * @return the name of the block in the list of processed files.
+     */
+    public String getName()
+    {
+      return path + "#" + index;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "FileBlock[" + getName() + " " + start + "-" + end + ']';
+    }
+  }
+
   protected transient FileSystem fs;
   protected transient Configuration configuration;
   private transient long lastScanMillis;
   private transient Path filePath;
   private transient InputStream inputStream;
   protected transient LinkedHashSet<Path> pendingFiles = new LinkedHashSet<Path>();
+  protected transient LinkedList<FileBlock> pendingBlocks = new LinkedList<FileBlock>();
 
   public String getDirectory()
   {
@@ -186,6 +242,21 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
     return currentPartitions;
   }
 
+  public long getBlockSize()
+  {
+    return blockSize;
+  }
+
+  /**
+   * Sets the size of the blocks in which files are read.
+   *
+   * @param blockSize block size in bytes; 0 to read whole files.
+   */
+  public void setBlockSize(long blockSize)
+  {
+    this.blockSize = blockSize;
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
@@ -195,14 +266,21 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
       fs = FileSystem.newInstance(filePath.toUri(), configuration);
       if (currentFile != null && offset > 0) {
         long startTime = System.currentTimeMillis();
-        LOG.info("Continue reading {} from index {} time={}", currentFile, offset, startTime);
+        LOG.info("Continue reading {} from index {} position {} time={}", currentFile, offset, byteOffset, startTime);
         int index = offset;
+        long position = byteOffset;
+        FileBlock block = currentBlock;
         this.inputStream = openFile(new Path(currentFile));
-        // fast forward to previous offset
-        while (offset < index) {
-          readEntity();
-          offset++;
+        currentBlock = block;
+        if (!seek(position)) {
+          skipPartialEntity();
+          // fast forward to previous offset
+          while (offset < index) {
+            readEntity();
+            offset++;
+          }
         }
+        offset = index;
         LOG.info("Read offset={} records in setup time={}", offset, System.currentTimeMillis() - startTime);
       }
     }
@@ -232,15 +310,47 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
   @Override
   public void endWindow()
   {
+    byteOffset = currentPosition();
+  }
+
+  /**
+   * Returns the byte position after the last entity which was read from the current file; -1 when it is not known.
+   */
+  private long currentPosition()
+  {
+    if (inputStream == null || skipCount > 0) {
+      return -1;
+    }
+    return getEntityPosition();
+  }
+
+  /**
+   * Moves the current file to a position which was returned by {@link #getEntityPosition()}.
+   *
+   * @return true if the stream was moved; false if the file has to be read up to the offset instead.
+   */
+  private boolean seek(long position) throws IOException
+  {
+    if (position < 0 || !(inputStream instanceof Seekable)) {
+      return false;
+    }
+    ((Seekable) inputStream).seek(position);
+    byteOffset = position;
+    return true;
   }
 
   @Override
   final public void emitTuples()
   {
     if (inputStream == null) {
-      if (pendingFiles.isEmpty() && failedFiles.isEmpty()) {
+      if (pendingFiles.isEmpty() && pendingBlocks.isEmpty() && failedFiles.isEmpty()) {
         if (System.currentTimeMillis() - scanIntervalMillis > lastScanMillis) {
-          pendingFiles = scanner.scan(fs, filePath, processedFiles);
+          if (blockSize > 0) {
+            pendingBlocks = Lists.newLinkedList(scanner.scanBlocks(fs, filePath, processedFiles, blockSize));
+          }
+          else {
+            pendingFiles = scanner.scan(fs, filePath, processedFiles);
+          }
           lastScanMillis = System.currentTimeMillis();
         }
       }
@@ -251,6 +361,9 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
           pendingFiles.remove(path);
           this.inputStream = openFile(path);
         }
+        else if (!pendingBlocks.isEmpty()) {
+          this.inputStream = openBlock(pendingBlocks.poll());
+        }
         else if (!failedFiles.isEmpty()) {
           FailedFile ff = failedFiles.poll();
           this.inputStream = retryFailedFile(ff);
@@ -264,7 +377,7 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
       try {
         int counterForTuple = 0;
         while (counterForTuple++ < emitBatchSize) {
-          T line = readEntity();
+          T line = endOfBlock() ? null : readEntity();
           if (line == null) {
             LOG.info("done reading file ({} entries).", offset);
             closeFile(inputStream);
@@ -292,6 +405,8 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
   protected void addToFailedList() throws IOException {
 
     FailedFile ff = new FailedFile(currentFile, offset, retryCount);
+    ff.block = currentBlock;
+    ff.byteOffset = currentPosition();
 
     // try to close file
     if (this.inputStream != null)
@@ -303,8 +418,10 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
 
     // Clear current file state.
     this.currentFile = null;
+    this.currentBlock = null;
     this.inputStream = null;
     this.offset = 0;
+    this.byteOffset = -1;
 
     if (ff.retryCount > maxRetryCount)
       return;
@@ -315,21 +432,67 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
 
   protected InputStream retryFailedFile(FailedFile ff)  throws IOException
   {
-    LOG.info("retrying failed file {} offset {} retry {}", ff.path, ff.offset, ff.retryCount);
+    LOG.info("retrying failed file {} offset {} position {} retry {}", ff.path, ff.offset, ff.byteOffset, ff.retryCount);
     String path = ff.path;
     this.inputStream = openFile(new Path(path));
+    this.currentBlock = ff.block;
     this.offset = ff.offset;
     this.retryCount = ff.retryCount;
-    this.skipCount = ff.offset;
+    if (seek(ff.byteOffset)) {
+      this.skipCount = 0;
+    }
+    else {
+      skipPartialEntity();
+      this.skipCount = ff.offset;
+    }
     return this.inputStream;
   }
 
+  /**
+   * Opens the file of a block and moves to the first entity which starts in the block.
+   */
+  protected InputStream openBlock(FileBlock block) throws IOException
+  {
+    LOG.info("opening block {}", block);
+    this.inputStream = openFile(new Path(block.path));
+    this.currentBlock = block;
+    skipPartialEntity();
+    if (getEntityPosition() < 0) {
+      throw new IllegalStateException("reading blocks needs entity positions");
+    }
+    return this.inputStream;
+  }
+
+  /**
+   * Skips the entity which starts before the current block, if the block is not the first block of the file.
+   * The stream is moved to the byte before the block so that an entity which starts right at the block is not skipped.
+   */
+  private void skipPartialEntity() throws IOException
+  {
+    if (currentBlock != null && currentBlock.start > 0) {
+      if (!seek(currentBlock.start - 1)) {
+        throw new IllegalStateException("reading blocks needs a seekable stream");
+      }
+      readEntity();
+    }
+  }
+
+  /**
+   * Returns whether all the entities which start in the current block were read.
+   */
+  private boolean endOfBlock()
+  {
+    return currentBlock != null && getEntityPosition() >= currentBlock.end;
+  }
+
   protected InputStream openFile(Path path) throws IOException
   {
     LOG.info("opening file {}", path);
     InputStream input = fs.open(path);
     currentFile = path.toString();
+    currentBlock = null;
     offset = 0;
+    byteOffset = -1;
     retryCount = 0;
     skipCount = 0;
     return input;
@@ -341,10 +504,13 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
 
     if (is != null)
       is.close();
-    if (currentFile != null)
+    if (currentBlock != null)
+      processedFiles.add(currentBlock.getName());
+    else if (currentFile != null)
       processedFiles.add(currentFile);
 
     currentFile = null;
+    currentBlock = null;
     inputStream = null;
   }
 
@@ -369,15 +535,20 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
      * Build collective state from all instances of the operator.
      */
     Set<String> totalProcessedFiles = new HashSet<String>();
-    List<Pair<String, Integer>> currentFiles = new ArrayList<Pair<String, Integer>>();
+    /* files which are being read with their offsets */
+    List<FailedFile> currentFiles = new ArrayList<FailedFile>();
     List<DirectoryScanner> oldscanners = new LinkedList<DirectoryScanner>();
     List<FailedFile> totalFailedFiles = new LinkedList<FailedFile>();
     for(Partition<AbstractFSDirectoryInputOperator<T>> partition : partitions) {
       AbstractFSDirectoryInputOperator<T> oper = partition.getPartitionedInstance();
       totalProcessedFiles.addAll(oper.processedFiles);
       totalFailedFiles.addAll(oper.failedFiles);
-      if (oper.currentFile != null)
-        currentFiles.add(new Pair<String, Integer>(oper.currentFile, oper.offset));
+      if (oper.currentFile != null) {
+        FailedFile current = new FailedFile(oper.currentFile, oper.offset);
+        current.block = oper.currentBlock;
+        current.byteOffset = oper.byteOffset;
+        currentFiles.add(current);
+      }
       oldscanners.add(oper.getScanner());
     }
 
@@ -399,11 +570,15 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
 
       /* set current scanning directory and offset */
       oper.currentFile = null;
+      oper.currentBlock = null;
       oper.offset = 0;
-      for(Pair<String, Integer> current : currentFiles) {
-        if (scn.acceptFile(current.getFirst())) {
-          oper.currentFile = current.getFirst();
-          oper.offset = current.getSecond();
+      oper.byteOffset = -1;
+      for(FailedFile current : currentFiles) {
+        if (scn.accept(current.path, current.block)) {
+          oper.currentFile = current.path;
+          oper.currentBlock = current.block;
+          oper.offset = current.offset;
+          oper.byteOffset = current.byteOffset;
           break;
         }
       }
@@ -413,7 +588,7 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
       Iterator<FailedFile> iter = totalFailedFiles.iterator();
       while (iter.hasNext()) {
         FailedFile ff = iter.next();
-        if (scn.acceptFile(ff.path)) {
+        if (scn.accept(ff.path, ff.block)) {
           oper.failedFiles.add(ff);
           iter.remove();
         }
@@ -438,6 +613,19 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
    */
   abstract protected T readEntity() throws IOException;
 
+  /**
+   * Returns the byte position in the current file right after the last entity returned by {@link #readEntity()}.
+   * Positions are checkpointed and used to resume reading a file with a seek instead of reading it again up to the
+   * last offset, so the stream returned by {@link #openFile(Path)} should not be read before {@link #readEntity()}.
+   * The default implementation returns -1, which means that positions are not tracked.
+   *
+   * @return position in the current file; -1 when it is not known.
+   */
+  protected long getEntityPosition()
+  {
+    return -1;
+  }
+
   /**
    * Emit the tuple on the port
    * @param tuple
@@ -544,6 +732,71 @@ public abstract class AbstractFSDirectoryInputOperator<T> implements InputOperat
       return pathSet;
     }
 
+    /**
+     * Scans the directory for the blocks of the files which belong to this partition.
+     *
+     * @param fs             file system.
+     * @param filePath       directory.
+     * @param consumedBlocks names of the blocks which were read.
+     * @param blockSize      size of blocks in bytes.
+     * @return blocks which were not read.
+     */
+    public List<FileBlock> scanBlocks(FileSystem fs, Path filePath, Set<String> consumedBlocks, long blockSize)
+    {
+      List<FileBlock> blocks = Lists.newArrayList();
+      try {
+        LOG.debug("Scanning {} for blocks with pattern {}", filePath, this.filePatternRegexp);
+        FileStatus[] files = fs.listStatus(filePath);
+        for (FileStatus status : files)
+        {
+          String filePathStr = status.getPath().toString();
+          if (ignoredFiles.contains(filePathStr)) {
+            continue;
+          }
+          if (getRegex() != null && !regex.matcher(filePathStr).matches()) {
+            ignoredFiles.add(filePathStr);
+            continue;
+          }
+
+          long length = status.getLen();
+          long count = Math.max(1, (length + blockSize - 1) / blockSize);
+          for (long index = 0; index < count; index++) {
+            FileBlock block = new FileBlock(filePathStr, index, index * blockSize, Math.min(length, (index + 1) * blockSize));
+            if (!consumedBlocks.contains(block.getName()) && acceptBlock(filePathStr, index)) {
+              LOG.debug("Found {}", block);
+              blocks.add(block);
+            }
+          }
+        }
+      } catch (FileNotFoundException e) {
+        LOG.warn("Failed to list directory {}", filePath, e);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return blocks;
+    }
+
+    /**
+     * Accepts the blocks of a file which belong to this partition. Consecutive blocks of a file belong to consecutive
+     * partitions.
+     */
+    protected boolean acceptBlock(String filePathStr, long blockIndex)
+    {
+      if (partitionCount > 1) {
+        int mod = (int) ((filePathStr.hashCode() + blockIndex) % partitionCount);
+        if (mod < 0) {
+          mod += partitionCount;
+        }
+        return mod == partitionIndex;
+      }
+      return true;
+    }
+
+    private boolean accept(String filePathStr, FileBlock block)
+    {
+      return block == null ? acceptFile(filePathStr) : acceptBlock(filePathStr, block.index);
+    }
+
     protected boolean acceptFile(String filePathStr)
     {
       if (filePatternRegexp != null && this.regex == null) {
@@ -18,6 +18,8 @@ package com.datatorrent.lib.io.fs;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 
+import javax.validation.constraints.Min;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,20 +27,43 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
 
 import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.CheckpointListener;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 
 /**
  * Base class for HDFS file output operators.
  * Contains base implementations for setup, teardown, open file and close file.
+ * <p>
+ * When {@link #asyncWrite} is set, the bytes of the tuples and the file actions which are submitted with
+ * {@link #write(byte[])} and {@link #submit(FileAction)} are done in order by a background thread, so that slow writes,
+ * flushes and closes do not block the operator thread. The bytes are copied into a ring of {@link #asyncBufferCount}
+ * buffers of {@link #asyncBufferSize} bytes and the operator blocks only when all of them wait to be written.
+ * All the work which was submitted is done when the window is checkpointed and when the operator is torn down.
+ * </p>
+ * <p>
+ * When {@link #compressionCodec} is set, the files are compressed with that Hadoop codec, eg. gzip, snappy or lz4,
+ * with a compressor which is borrowed from the {@link CodecPool} while the file is open.
+ * The compressed stream is finished, which ends the current compressed block, and flushed when the window is
+ * checkpointed, so that the file has only complete blocks up to the checkpoint. The following windows are written to a
+ * new compressed stream, eg. a new gzip member, with the same compressor.
+ * </p>
  *
  * @param <INPUT> incoming tuple type
  * @since 1.0.2
  */
-public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator
+public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator implements CheckpointListener
 {
+  public static final int DEF_ASYNC_BUFFER_SIZE = 64 * 1024;
+  public static final int DEF_ASYNC_BUFFER_COUNT = 16;
+
   protected transient FSDataOutputStream fsOutput;
   protected transient BufferedOutputStream bufferedOutput;
   protected transient FileSystem fs;
@@ -47,6 +72,24 @@ public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator
   protected boolean append = true;
   protected int bufferSize = 0;
   protected int replication = 0;
+  protected boolean asyncWrite;
+  @Min(1)
+  protected int asyncBufferSize = DEF_ASYNC_BUFFER_SIZE;
+  @Min(1)
+  protected int asyncBufferCount = DEF_ASYNC_BUFFER_COUNT;
+  private transient AsyncFileWriter asyncWriter;
+  protected String compressionCodec;
+  protected transient CompressionOutputStream compressedOutput;
+  private transient CompressionCodec codec;
+  /* compressor of the open file which is borrowed from the codec pool */
+  private transient Compressor compressor;
+  /* position of the open file when it was opened */
+  private transient long openPosition;
+  /* no. of bytes which were written to the open file after it was opened; compressed bytes when compressing */
+  private transient volatile long fileBytesWritten;
+  /* no. of files whose opening was submitted with submitOpenFile and no. of those which were opened */
+  private transient int submittedOpens;
+  private transient volatile int openedFiles;
   public final transient DefaultInputPort<INPUT> input = new DefaultInputPort<INPUT>()
   {
     @Override
@@ -90,19 +133,189 @@ public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator
       fsOutput = fs.create(filepath, (short)replication);
       logger.debug("creating {} with replication {}", filepath, replication);
     }
-    if (bufferSize > 0) {
+    openPosition = fsOutput.getPos();
+    fileBytesWritten = 0;
+    if (codec != null) {
+      compressor = CodecPool.getCompressor(codec);
+      openCompressedOutput();
+      logger.debug("compressing with {}", compressionCodec);
+    }
+    else if (bufferSize > 0) {
       this.bufferedOutput = new BufferedOutputStream(fsOutput, bufferSize);
+    }
+    if (bufferSize > 0) {
       logger.debug("buffering with size {}", bufferSize);
     }
 
   }
 
+  /**
+   * Starts a new compressed stream at the current position of the open file. A finished stream cannot be written
+   * again: the pure java gzip stream does not write a new header after {@link CompressionOutputStream#resetState()}.
+   *
+   * @throws IOException
+   */
+  private void openCompressedOutput() throws IOException
+  {
+    if (compressor != null) {
+      compressor.reset();
+    }
+    compressedOutput = codec.createOutputStream(fsOutput, compressor);
+    if (bufferSize > 0) {
+      bufferedOutput = new BufferedOutputStream(compressedOutput, bufferSize);
+    }
+  }
+
+  /**
+   * An operation on the output files which is done in order with the writes.
+   */
+  protected interface FileAction
+  {
+    void run() throws IOException;
+
+  }
+
+  /**
+   * Writes the bytes to the open file; they are copied and written by the background writer in async mode.
+   *
+   * @param bytes bytes to write.
+   * @throws IOException
+   */
+  protected void write(byte[] bytes) throws IOException
+  {
+    if (asyncWriter != null) {
+      asyncWriter.write(bytes);
+    }
+    else {
+      writeToFile(bytes, 0, bytes.length);
+    }
+  }
+
+  private void writeToFile(byte[] bytes, int offset, int length) throws IOException
+  {
+    if (bufferedOutput != null) {
+      bufferedOutput.write(bytes, offset, length);
+    }
+    else if (compressedOutput != null) {
+      compressedOutput.write(bytes, offset, length);
+    }
+    else {
+      fsOutput.write(bytes, offset, length);
+    }
+    fileBytesWritten = fsOutput.getPos() - openPosition;
+  }
+
+  /**
+   * Returns the no. of bytes which reached the stream of the file which was last opened with
+   * {@link #submitOpenFile(Path)}, which are compressed bytes when compressing. In async mode this does not include the
+   * bytes which wait for the writer, and is 0 till the writer opens the file.
+   *
+   * @return no. of bytes.
+   */
+  protected long getFileBytesWritten()
+  {
+    return openedFiles == submittedOpens ? fileBytesWritten : 0;
+  }
+
+  /**
+   * Runs the action after the bytes which were written before it; right away or by the background writer in async
+   * mode.
+   *
+   * @param action file action.
+   * @throws IOException
+   */
+  protected void submit(FileAction action) throws IOException
+  {
+    if (asyncWriter != null) {
+      asyncWriter.execute(action);
+    }
+    else {
+      action.run();
+    }
+  }
+
+  /**
+   * Submits opening the file.
+   *
+   * @param filepath
+   * @throws IOException
+   */
+  protected void submitOpenFile(final Path filepath) throws IOException
+  {
+    submittedOpens++;
+    submit(new FileAction()
+    {
+      @Override
+      public void run() throws IOException
+      {
+        openFile(filepath);
+        openedFiles++;
+      }
+
+    });
+  }
+
+  /**
+   * Submits closing the open file.
+   *
+   * @throws IOException
+   */
+  protected void submitCloseFile() throws IOException
+  {
+    submit(new FileAction()
+    {
+      @Override
+      public void run() throws IOException
+      {
+        closeFile();
+      }
+
+    });
+  }
+
+  /**
+   * Submits flushing the open file to the data nodes.
+   *
+   * @throws IOException
+   */
+  protected void submitFlush() throws IOException
+  {
+    submit(new FileAction()
+    {
+      @Override
+      public void run() throws IOException
+      {
+        if (bufferedOutput != null) {
+          bufferedOutput.flush();
+        }
+        if (compressedOutput != null) {
+          compressedOutput.finish();
+          openCompressedOutput();
+        }
+        if (fsOutput != null) {
+          fsOutput.hflush();
+        }
+      }
+
+    });
+  }
+
   protected void closeFile() throws IOException
   {
     if (bufferedOutput != null) {
       bufferedOutput.close();
       bufferedOutput = null;
     }
+    if (compressedOutput != null) {
+      try {
+        compressedOutput.close();
+      }
+      finally {
+        CodecPool.returnCompressor(compressor);
+        compressor = null;
+        compressedOutput = null;
+      }
+    }
     if (fsOutput != null) {
       fsOutput.close();
       fsOutput = null;
@@ -122,13 +335,67 @@ public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator
     catch (IOException ex) {
       throw new RuntimeException(ex);
     }
+    if (compressionCodec != null) {
+      codec = new CompressionCodecFactory(new Configuration()).getCodecByName(compressionCodec);
+      if (codec == null) {
+        throw new IllegalArgumentException("Unknown compression codec " + compressionCodec);
+      }
+    }
+    if (asyncWrite) {
+      asyncWriter = new AsyncFileWriter(new AsyncFileWriter.Target()
+      {
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+          writeToFile(bytes, offset, length);
+        }
+
+      }, asyncBufferSize, asyncBufferCount, "HdfsWriter");
+    }
+  }
+
+  /**
+   * Flushes the open file, ending the compressed block when compressing, and, in async mode, waits till everything
+   * which was submitted before is done.
+   */
+  @Override
+  public void checkpointed(long windowId)
+  {
+    if (asyncWriter != null || codec != null) {
+      try {
+        submitFlush();
+        if (asyncWriter != null) {
+          asyncWriter.await();
+        }
+      }
+      catch (IOException ex) {
+        throw new RuntimeException("Failed to flush.", ex);
+      }
+    }
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
   }
 
   @Override
   public void teardown()
   {
     try {
-      closeFile();
+      if (asyncWriter != null) {
+        try {
+          submitCloseFile();
+        }
+        finally {
+          AsyncFileWriter writer = asyncWriter;
+          asyncWriter = null;
+          writer.close();
+        }
+      }
+      else {
+        closeFile();
+      }
       if (fs != null) {
         fs.close();
       }
@@ -201,6 +468,67 @@ public abstract class AbstractHdfsFileOutputOperator<INPUT> extends BaseOperator
     return totalBytesWritten;
   }
 
+  /**
+   * Writes and closes the files on a background thread. Default is false.
+   *
+   * @param asyncWrite
+   */
+  public void setAsyncWrite(boolean asyncWrite)
+  {
+    this.asyncWrite = asyncWrite;
+  }
+
+  public boolean isAsyncWrite()
+  {
+    return asyncWrite;
+  }
+
+  /**
+   * Size of the buffers which hold the bytes that wait for the background writer.
+   *
+   * @param asyncBufferSize
+   */
+  public void setAsyncBufferSize(int asyncBufferSize)
+  {
+    this.asyncBufferSize = asyncBufferSize;
+  }
+
+  public int getAsyncBufferSize()
+  {
+    return asyncBufferSize;
+  }
+
+  /**
+   * No. of buffers which hold the bytes that wait for the background writer.
+   *
+   * @param asyncBufferCount
+   */
+  public void setAsyncBufferCount(int asyncBufferCount)
+  {
+    this.asyncBufferCount = asyncBufferCount;
+  }
+
+  public int getAsyncBufferCount()
+  {
+    return asyncBufferCount;
+  }
+
+  /**
+   * Hadoop compression codec of the files, given by its name or class name, eg. gzip, snappy, lz4 or
+   * org.apache.hadoop.io.compress.GzipCodec. Default is null which does not compress.
+   *
+   * @param compressionCodec
+   */
+  public void setCompressionCodec(String compressionCodec)
+  {
+    this.compressionCodec = compressionCodec;
+  }
+
+  public String getCompressionCodec()
+  {
+    return compressionCodec;
+  }
+
   /**
    * This function returns the byte array for the given tuple.
    *
@@ -28,6 +28,10 @@ import org.apache.hadoop.fs.Path;
  * Example file path pattern : file:///mydir/adviews.out.%(operatorId).part-%(partIndex). where operatorId and partIndex
  * are place holders.
  * </p>
+ * <p>
+ * In async mode or when compressing, the open file is flushed when the window is checkpointed instead of at every end
+ * window. When compressing, the file is rolled after {@link #bytesPerFile} compressed bytes reach the file.
+ * </p>
  *
  * @param <T> input port tuple type
  * @since 0.9.4
@@ -38,6 +42,8 @@ public abstract class AbstractHdfsRollingFileOutputOperator<T> extends AbstractH
   protected int bytesPerFile = 0;
 
   protected transient Path currentFilePath;
+  /* whether opening the current file was submitted and closing it was not */
+  private transient boolean fileOpen;
   /**
    * This variable specifies if the operator needs to close the file at every end window
    */
@@ -73,15 +79,13 @@ public abstract class AbstractHdfsRollingFileOutputOperator<T> extends AbstractH
   @Override
   public void beginWindow(long windowId)
   {
-    if (fsOutput == null) {
+    if (!fileOpen) {
       try {
-        validateNextFilePath();
-        openFile(currentFilePath);
+        openNextFile();
       }
       catch (IOException e) {
         throw new RuntimeException("Failed to open the file.", e);
       }
-      currentBytesWritten = 0;
     }
   }
 
@@ -90,13 +94,11 @@ public abstract class AbstractHdfsRollingFileOutputOperator<T> extends AbstractH
   {
     try {
       if (closeCurrentFile) {
-        closeFile();
+        submitCloseFile();
+        fileOpen = false;
       }
-      else {
-        if (bufferedOutput != null) {
-          bufferedOutput.flush();
-        }
-        fsOutput.hflush();
+      else if (!asyncWrite && compressionCodec == null) {
+        submitFlush();
       }
     }
     catch (IOException ex) {
@@ -109,25 +111,16 @@ public abstract class AbstractHdfsRollingFileOutputOperator<T> extends AbstractH
   {
     try {
       // checks if the stream is open. If not then open a stream
-      if (fsOutput == null) {
-        validateNextFilePath();
-        openFile(currentFilePath);
-        currentBytesWritten = 0;
+      if (!fileOpen) {
+        openNextFile();
       }
       byte[] tupleBytes = getBytesForTuple(t);
       // checks for the rolling file
-      if (bytesPerFile > 0 && currentBytesWritten + tupleBytes.length > bytesPerFile) {
-        closeFile();
-        validateNextFilePath();
-        openFile(currentFilePath);
-        currentBytesWritten = 0;
-      }
-      if (bufferedOutput != null) {
-        bufferedOutput.write(tupleBytes);
-      }
-      else {
-        fsOutput.write(tupleBytes);
+      if (bytesPerFile > 0 && (compressionCodec == null ? currentBytesWritten + tupleBytes.length > bytesPerFile : getFileBytesWritten() >= bytesPerFile)) {
+        submitCloseFile();
+        openNextFile();
       }
+      write(tupleBytes);
       currentBytesWritten += tupleBytes.length;
       totalBytesWritten += tupleBytes.length;
     }
@@ -136,6 +129,14 @@ public abstract class AbstractHdfsRollingFileOutputOperator<T> extends AbstractH
     }
   }
 
+  private void openNextFile() throws IOException
+  {
+    validateNextFilePath();
+    submitOpenFile(currentFilePath);
+    fileOpen = true;
+    currentBytesWritten = 0;
+  }
+
   /**
    * This checks if the new path is not same as old path. If it is then throw exception
    */
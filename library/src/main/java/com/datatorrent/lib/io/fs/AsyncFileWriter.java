@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io.fs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.common.util.NameableThreadFactory;
+
+import com.datatorrent.lib.io.fs.AbstractHdfsFileOutputOperator.FileAction;
+
+/**
+ * <p>
+ * Writes the bytes of the tuples and runs the file actions of an {@link AbstractHdfsFileOutputOperator} in order on a
+ * background thread.<br/>
+ * The bytes are copied into a ring of buffers which are re-used. When all the buffers wait to be written, the operator
+ * thread blocks till the writer frees one.<br/>
+ * A failure of the writer thread is thrown by the next call of the operator thread and the writer skips everything
+ * after it.
+ * </p>
+ */
+class AsyncFileWriter implements Runnable
+{
+  /**
+   * Destination of the bytes which are written by the writer thread.
+   */
+  interface Target
+  {
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+  }
+
+  private static class Chunk
+  {
+    final byte[] bytes;
+    int length;
+
+    Chunk(int size)
+    {
+      bytes = new byte[size];
+    }
+
+  }
+
+  private final Target target;
+  private final BlockingQueue<Chunk> freeChunks;
+  /* chunks and file actions in the order they were submitted */
+  private final BlockingQueue<Object> pending = new LinkedBlockingQueue<Object>();
+  private final Thread thread;
+  private Chunk current;
+  private volatile Throwable error;
+  private volatile boolean running = true;
+
+  AsyncFileWriter(Target target, int bufferSize, int bufferCount, String name)
+  {
+    this.target = target;
+    freeChunks = new ArrayBlockingQueue<Chunk>(bufferCount);
+    for (int i = 0; i < bufferCount; i++) {
+      freeChunks.add(new Chunk(bufferSize));
+    }
+    thread = new NameableThreadFactory(name).newThread(this);
+    thread.start();
+  }
+
+  /**
+   * Copies the bytes to the buffers. Full buffers are handed to the writer.
+   */
+  void write(byte[] bytes) throws IOException
+  {
+    checkError();
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (current == null) {
+        try {
+          current = freeChunks.take();
+        }
+        catch (InterruptedException ex) {
+          throw new InterruptedIOException("interrupted while waiting for a buffer");
+        }
+      }
+      int length = Math.min(bytes.length - offset, current.bytes.length - current.length);
+      System.arraycopy(bytes, offset, current.bytes, current.length, length);
+      current.length += length;
+      offset += length;
+      if (current.length == current.bytes.length) {
+        pending.add(current);
+        current = null;
+      }
+    }
+  }
+
+  /**
+   * Runs the action on the writer thread after the bytes which were written before it.
+   */
+  void execute(FileAction action) throws IOException
+  {
+    checkError();
+    if (current != null && current.length > 0) {
+      pending.add(current);
+      current = null;
+    }
+    pending.add(action);
+  }
+
+  /**
+   * Waits till all the bytes and actions which were submitted are done.
+   */
+  void await() throws IOException
+  {
+    final CountDownLatch latch = new CountDownLatch(1);
+    execute(new FileAction()
+    {
+      @Override
+      public void run()
+      {
+        latch.countDown();
+      }
+
+    });
+    try {
+      while (!latch.await(100, TimeUnit.MILLISECONDS)) {
+        checkError();
+      }
+    }
+    catch (InterruptedException ex) {
+      throw new InterruptedIOException("interrupted while waiting for the writer");
+    }
+    checkError();
+  }
+
+  /**
+   * Waits for the pending work and stops the writer thread.
+   */
+  void close() throws IOException
+  {
+    try {
+      await();
+    }
+    finally {
+      running = false;
+      thread.interrupt();
+      try {
+        thread.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void checkError() throws IOException
+  {
+    if (error != null) {
+      throw new IOException("Failed to write asynchronously.", error);
+    }
+  }
+
+  @Override
+  public void run()
+  {
+    while (running) {
+      Object item;
+      try {
+        item = pending.take();
+      }
+      catch (InterruptedException ex) {
+        return;
+      }
+      if (item instanceof Chunk) {
+        Chunk chunk = (Chunk) item;
+        try {
+          if (error == null) {
+            target.write(chunk.bytes, 0, chunk.length);
+          }
+        }
+        catch (Throwable t) {
+          logger.error("write failed", t);
+          error = t;
+        }
+        finally {
+          chunk.length = 0;
+          freeChunks.add(chunk);
+        }
+      }
+      else if (error == null) {
+        try {
+          ((FileAction) item).run();
+        }
+        catch (Throwable t) {
+          logger.error("file action failed", t);
+          error = t;
+        }
+      }
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(AsyncFileWriter.class);
+}
@@ -33,6 +33,8 @@ import com.datatorrent.api.Context.OperatorContext;
  * If the operator fails and recovers, checks if the file <window_id> exists during begin window. If it does,
  * then the operator doesn't process anything during that window. If it doesn't, then the operator deletes
  * the <window_id>.tmp file if it exists, creates new and starts writing to it.
+ * In async mode the files are written, closed and moved by the background writer; the windows up to the checkpoint
+ * are moved when the checkpoint completes.
  *
  * @since 1.0.2
  */
@@ -41,24 +43,20 @@ public class HdfsExactlyOnceOutputOperator extends AbstractHdfsFileOutputOperato
   private final String TEMP = ".tmp";
   private transient Path currentFilePath;
   private transient Path currentTempFilePath;
+  /* whether the file of the current window is written; it is not when the file exists already */
+  private transient boolean windowOpen;
 
   @Override
   protected void processTuple(String t)
   {
     try {
       // if stream is not open, then do nothing since the file already exists for current window
-      if (fsOutput == null) {
+      if (!windowOpen) {
         return;
       }
 
       byte[] tupleBytes = getBytesForTuple(t);
-
-      if (bufferedOutput != null) {
-        bufferedOutput.write(tupleBytes);
-      }
-      else {
-        fsOutput.write(tupleBytes);
-      }
+      write(tupleBytes);
       totalBytesWritten += tupleBytes.length;
     }
     catch (IOException ex) {
@@ -73,14 +71,21 @@ public class HdfsExactlyOnceOutputOperator extends AbstractHdfsFileOutputOperato
     try {
       currentFilePath = new Path(filePath + "/" + windowId);
       currentTempFilePath = currentFilePath.suffix(TEMP);
-      if (fs.exists(currentFilePath)) {
-        fsOutput = null;
-      }
-      else {
-        if (fs.exists(currentTempFilePath)) {
-          fs.delete(currentTempFilePath, true);
-        }
-        openFile(currentTempFilePath);
+      windowOpen = !fs.exists(currentFilePath);
+      if (windowOpen) {
+        final Path tempFilePath = currentTempFilePath;
+        submit(new FileAction()
+        {
+          @Override
+          public void run() throws IOException
+          {
+            if (fs.exists(tempFilePath)) {
+              fs.delete(tempFilePath, true);
+            }
+            openFile(tempFilePath);
+          }
+
+        });
       }
     }
     catch (IOException e) {
@@ -91,10 +96,20 @@ public class HdfsExactlyOnceOutputOperator extends AbstractHdfsFileOutputOperato
   @Override
   public void endWindow()
   {
-    if (fsOutput != null) {
+    if (windowOpen) {
+      final Path tempFilePath = currentTempFilePath;
+      final Path windowFilePath = currentFilePath;
       try {
-        closeFile();
-        fs.rename(currentTempFilePath, currentFilePath);
+        submit(new FileAction()
+        {
+          @Override
+          public void run() throws IOException
+          {
+            closeFile();
+            fs.rename(tempFilePath, windowFilePath);
+          }
+
+        });
       }
       catch (IOException ex) {
         throw new RuntimeException("Failed to flush.", ex);
@@ -126,6 +141,7 @@ public class HdfsExactlyOnceOutputOperator extends AbstractHdfsFileOutputOperato
   {
     super.teardown();
     fsOutput = null;
+    windowOpen = false;
   }
 
   private static final long serialVersionUID = 201405201214L;
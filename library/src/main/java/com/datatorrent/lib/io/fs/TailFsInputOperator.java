@@ -18,8 +18,16 @@ package com.datatorrent.lib.io.fs;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,17 +40,30 @@ import com.datatorrent.api.InputOperator;
  * <p>
  * This operator implements "tail -f" command. If the operator has reached the end of the file, it will wait till more
  * data comes
+ * </p>
+ * <p>
+ * The file is read through a {@link FileChannel} in chunks of {@link #bufferSize} bytes into a direct buffer which is
+ * re-used, and the records are found by scanning the bytes of the buffer for the encoded delimiter. Records are decoded
+ * with the charset of the file, which should encode the delimiter in the same bytes everywhere, eg. UTF-8.<br>
+ * The file is taken as truncated, eg. by a copytruncate rotation, when the open file or the file at the path is shorter
+ * than the position which was read. It is taken as rotated when, after all the data of the open file was read, the
+ * length of the file at the path differs from the size of the open file or the file was modified. The open file is
+ * then closed and the file at the path is read from the start.
  *
  * <br>
  * <b>Ports</b>:<br>
  * <b>outport</b>: emits &lt;String&gt;<br>
+ * <b>rawOutput</b>: emits the bytes of the records without the delimiter; records are decoded only when outport is
+ * connected<br>
  * <br>
  * <b>Properties</b>:<br>
  * <b>filePath</b> : Path for file to be read. <br>
- * <b>delay</b>: Thread sleep interval after emitting line.<br>
+ * <b>delay</b>: Thread sleep interval when the end of the file is reached.<br>
  * <b>position</b>: The position from where to start reading the file.<br>
  * <b>numberOfTuples</b>: number of tuples to be emitted in a single emit Tuple call.<br>
  * <b>end</b>: if the user wants to start tailing from end.<br>
+ * <b>charsetName</b>: charset of the file, UTF-8 by default.<br>
+ * <b>bufferSize</b>: no. of bytes read at once; the buffer grows for longer records.<br>
  * <br>
  *
  * @since 0.9.4
@@ -79,13 +100,29 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
    */
   private char delimiter = '\n';
 
+  @NotNull
+  private String charsetName = "UTF-8";
+
+  @Min(1)
+  private int bufferSize = 64 * 1024;
+
   /**
-   * This is used to store the last access time of the file
+   * This is used to store the modification time of the file when it was last read
    */
-  private transient long accessTime;
+  private transient long modificationTime;
 
   private transient RandomAccessFile reader;
+  private transient FileChannel channel;
   private transient File file;
+  /* the bytes after position which were read from the file */
+  private transient ByteBuffer buffer;
+  /* position of the file after the bytes in the buffer */
+  private transient long readPosition;
+  /* no. of bytes at the start of the buffer which were scanned for the delimiter */
+  private transient int scanned;
+  private transient byte[] delimiterBytes;
+  private transient CharsetDecoder decoder;
+  private transient CharBuffer chars;
 
   /**
    * @return the filePath
@@ -189,6 +226,40 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
     this.delimiter = delimiter;
   }
 
+  /**
+   * @return the charsetName
+   */
+  public String getCharsetName()
+  {
+    return charsetName;
+  }
+
+  /**
+   * @param charsetName
+   *          the charset of the file
+   */
+  public void setCharsetName(String charsetName)
+  {
+    this.charsetName = charsetName;
+  }
+
+  /**
+   * @return the bufferSize
+   */
+  public int getBufferSize()
+  {
+    return bufferSize;
+  }
+
+  /**
+   * @param bufferSize
+   *          the no. of bytes read from the file at once
+   */
+  public void setBufferSize(int bufferSize)
+  {
+    this.bufferSize = bufferSize;
+  }
+
   @Override
   public void beginWindow(long windowId)
   {
@@ -197,17 +268,16 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
   @Override
   public void endWindow()
   {
-    try {
-      this.position = reader.getFilePointer();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-
   }
 
   @Override
   public void setup(OperatorContext context)
   {
+    Charset charset = Charset.forName(charsetName);
+    delimiterBytes = String.valueOf(delimiter).getBytes(charset);
+    decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    chars = CharBuffer.allocate(bufferSize);
+    buffer = ByteBuffer.allocateDirect(bufferSize);
   }
 
   @Override
@@ -220,10 +290,7 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
   {
     try {
       file = new File(filePath);
-      reader = new RandomAccessFile(file, "r");
-      position = end ? file.length() : position;
-      reader.seek(position);
-      accessTime = System.currentTimeMillis();
+      open(end ? file.length() : position);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -243,56 +310,162 @@ public class TailFsInputOperator implements InputOperator, ActivationListener<Op
   @Override
   public void emitTuples()
   {
-    int localCounter = numberOfTuples;
     try {
-      while (localCounter >= 0) {
-        String str = readLine();
-        if (str == null) {
+      for (int localCounter = numberOfTuples; localCounter > 0; --localCounter) {
+        int length = readRecord();
+        if (length < 0) {
+          if (rotated()) {
+            continue;
+          }
           //logger.debug("reached end of file");
-        } else {
-          output.emit(str);
-        }
-        try {
-          Thread.sleep(delay);
-        } catch (InterruptedException e) {
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException e) {
+          }
+          return;
         }
-        --localCounter;
+        emitRecord(length);
       }
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
-  private String readLine() throws IOException
+  private void open(long offset) throws IOException
   {
-    StringBuffer sb = new StringBuffer();
-    char readChar;
-    int ch;
-    long pos = reader.getFilePointer();
-    long length = file.length();
-    if ((length < pos) || (length == pos && FileUtils.isFileNewer(file, accessTime))) {
-      // file got rotated or truncated
+    if (reader != null) {
       reader.close();
-      reader = new RandomAccessFile(file, "r");
-      position = 0;
-      reader.seek(position);
-      pos = 0;
     }
-    accessTime = System.currentTimeMillis();
-    while ((ch = reader.read()) != -1) {
-      readChar = (char) ch;
-      if (readChar != delimiter) {
-        sb.append(readChar);
-      } else {
-        return sb.toString();
+    reader = new RandomAccessFile(file, "r");
+    channel = reader.getChannel();
+    channel.position(offset);
+    position = readPosition = offset;
+    buffer.clear();
+    buffer.limit(0);
+    scanned = 0;
+    modificationTime = file.lastModified();
+  }
+
+  /**
+   * Finds the next record in the buffer and reads more of the file when the buffer does not have a complete record.
+   *
+   * @return no. of bytes of the record which starts at the position of the buffer; -1 if the file does not have a
+   * complete record yet.
+   */
+  private int readRecord() throws IOException
+  {
+    while (true) {
+      int start = buffer.position();
+      int last = buffer.limit() - delimiterBytes.length;
+      byte first = delimiterBytes[0];
+      for (int i = start + scanned; i <= last; i++) {
+        if (buffer.get(i) == first && isDelimiter(i)) {
+          scanned = 0;
+          return i - start;
+        }
+      }
+      scanned = Math.max(0, last + 1 - start);
+      if (!fill()) {
+        return -1;
+      }
+    }
+  }
+
+  private boolean isDelimiter(int index)
+  {
+    for (int i = 1; i < delimiterBytes.length; i++) {
+      if (buffer.get(index + i) != delimiterBytes[i]) {
+        return false;
       }
     }
-    reader.seek(pos);
-    return null;
+    return true;
+  }
+
+  /**
+   * Moves the unread bytes to the start of the buffer, growing it when it is full, and reads from the file after them.
+   *
+   * @return true if bytes were read.
+   */
+  private boolean fill() throws IOException
+  {
+    if (buffer.position() > 0) {
+      buffer.compact();
+    }
+    else if (buffer.limit() == buffer.capacity()) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+      larger.put(buffer);
+      buffer = larger;
+    }
+    else {
+      buffer.position(buffer.limit());
+      buffer.limit(buffer.capacity());
+    }
+    int read = channel.read(buffer);
+    buffer.flip();
+    if (read > 0) {
+      readPosition += read;
+      modificationTime = file.lastModified();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether the file was truncated, or rotated after the whole open file was read, and then opens the file at
+   * the path from the start. The modification time and the length of the path are checked before the size of the open
+   * file so that data which is appended in between is not taken for a rotation.
+   *
+   * @return true if the file was opened again.
+   */
+  private boolean rotated() throws IOException
+  {
+    long modified = file.lastModified();
+    long length = file.length();
+    long size = channel.size();
+    if (size < readPosition || length < readPosition) {
+      logger.debug("{} was truncated at {}", filePath, readPosition);
+      open(0);
+      return true;
+    }
+    if (size == readPosition && (length != readPosition || modified > modificationTime)) {
+      logger.debug("{} was rotated at {}", filePath, readPosition);
+      open(0);
+      return true;
+    }
+    return false;
+  }
+
+  private void emitRecord(int length)
+  {
+    int start = buffer.position();
+    if (rawOutput.isConnected()) {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      rawOutput.emit(bytes);
+    }
+    if (output.isConnected()) {
+      int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+      if (chars.capacity() < maxChars) {
+        chars = CharBuffer.allocate(maxChars);
+      }
+      chars.clear();
+      buffer.position(start);
+      buffer.limit(start + length);
+      decoder.reset();
+      decoder.decode(buffer, chars, true);
+      decoder.flush(chars);
+      buffer.limit((int) (readPosition - position) + start);
+      chars.flip();
+      output.emit(chars.toString());
+    }
+    buffer.position(start + length + delimiterBytes.length);
+    position += length + delimiterBytes.length;
   }
 
   public final transient DefaultOutputPort<String> output = new DefaultOutputPort<String>();
 
+  public final transient DefaultOutputPort<byte[]> rawOutput = new DefaultOutputPort<byte[]>();
+
   private static final Logger logger = LoggerFactory.getLogger(TailFsInputOperator.class);
 
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import javax.annotation.Nonnull;
+
+import gnu.trove.strategy.HashingStrategy;
+
+import com.datatorrent.lib.codec.KryoSerializableStreamCodec;
+
+/**
+ * <p>
+ * A codec which partitions the events by the hash code of their group in an aggregator, so that all the events of a
+ * group go to the same partition of {@link DimensionsComputation}.
+ * </p>
+ *
+ * <p>
+ * Codecs are instantiated with their default constructor so a sub-class provides the aggregator, eg.
+ * <pre>
+ * public static class AdvertiserCodec extends AggregatorHashStreamCodec&lt;AdInfo&gt;
+ * {
+ *   public AdvertiserCodec()
+ *   {
+ *     super(new AdInfoAggregator("advertiserId"));
+ *   }
+ * }
+ * </pre>
+ * </p>
+ *
+ * @param <EVENT> type of the events.
+ */
+public class AggregatorHashStreamCodec<EVENT> extends KryoSerializableStreamCodec<EVENT>
+{
+  private final HashingStrategy<EVENT> hashingStrategy;
+
+  /**
+   * @param hashingStrategy the aggregator whose groups define the partitions.
+   */
+  protected AggregatorHashStreamCodec(@Nonnull HashingStrategy<EVENT> hashingStrategy)
+  {
+    super();
+    this.hashingStrategy = hashingStrategy;
+  }
+
+  @Override
+  public int getPartition(EVENT event)
+  {
+    return hashingStrategy.computeHashCode(event);
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import gnu.trove.map.custom_hash.TObjectIntCustomHashMap;
+
+import com.datatorrent.api.DefaultOutputPort;
+
+import com.datatorrent.lib.statistics.DimensionsComputation.AggregateEvent;
+import com.datatorrent.lib.statistics.DimensionsComputation.ColumnarAggregator;
+import com.datatorrent.lib.statistics.DimensionsComputation.Measure;
+import com.datatorrent.lib.statistics.DimensionsComputation.MeasureSlots;
+
+/**
+ * <p>
+ * Aggregates the events of one {@link ColumnarAggregator} in primitive arrays.
+ * </p>
+ *
+ * <p>
+ * Groups are interned to ids which are indices in one long[] or double[] column per measure. The groups, their ids,
+ * the first event of every group and the columns are kept across windows. The slots of a group are reset when it gets
+ * its first event in a window, so only the groups which got events are visited at the end of the window. A new
+ * aggregate is created from the first event of a group for every window in which it is emitted, so the emitted
+ * aggregates are not changed later. The map itself is the {@link MeasureSlots} flyweight which is positioned on a group
+ * when its aggregate is filled.<br/>
+ * The state is not check-pointed because it is emitted at the end of every window.
+ * </p>
+ *
+ * @param <EVENT>
+ * @param <AGGREGATE>
+ */
+class ColumnarAggregatorMap<EVENT, AGGREGATE extends AggregateEvent> implements MeasureSlots
+{
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int NO_ID = -1;
+  final ColumnarAggregator<EVENT, AGGREGATE> aggregator;
+  private final int aggregatorIndex;
+  private final Measure[] measures;
+  private final TObjectIntCustomHashMap<EVENT> groupIds;
+  //id -> first event of the group
+  private final ArrayList<EVENT> groups;
+  //measure -> column; a column is null when the measure is of the other type.
+  private final long[][] longColumns;
+  private final double[][] doubleColumns;
+  private boolean[] touched;
+  private int[] touchedIds;
+  private int touchedCount;
+  private int capacity;
+  private int currentId;
+
+  ColumnarAggregatorMap(ColumnarAggregator<EVENT, AGGREGATE> aggregator, int aggregatorIndex)
+  {
+    this.aggregator = aggregator;
+    this.aggregatorIndex = aggregatorIndex;
+    this.measures = aggregator.getMeasures().clone();
+    this.groupIds = new TObjectIntCustomHashMap<EVENT>(aggregator, INITIAL_CAPACITY, 0.5f, NO_ID);
+    this.groups = new ArrayList<EVENT>(INITIAL_CAPACITY);
+    this.capacity = INITIAL_CAPACITY;
+    longColumns = new long[measures.length][];
+    doubleColumns = new double[measures.length][];
+    for (int m = measures.length; m-- > 0; ) {
+      if (measures[m].isDouble()) {
+        doubleColumns[m] = new double[capacity];
+      }
+      else {
+        longColumns[m] = new long[capacity];
+      }
+    }
+    touched = new boolean[capacity];
+    touchedIds = new int[capacity];
+  }
+
+  void add(EVENT tuple)
+  {
+    int id = groupIds.get(tuple);
+    if (id == NO_ID) {
+      id = groups.size();
+      if (id == capacity) {
+        grow();
+      }
+      groups.add(tuple);
+      groupIds.put(tuple, id);
+    }
+
+    if (!touched[id]) {
+      touched[id] = true;
+      touchedIds[touchedCount++] = id;
+      reset(id);
+    }
+
+    for (int m = measures.length; m-- > 0; ) {
+      switch (measures[m]) {
+        case LONG_SUM:
+          longColumns[m][id] += aggregator.getLong(tuple, m);
+          break;
+
+        case LONG_MIN: {
+          long value = aggregator.getLong(tuple, m);
+          if (value < longColumns[m][id]) {
+            longColumns[m][id] = value;
+          }
+          break;
+        }
+
+        case LONG_MAX: {
+          long value = aggregator.getLong(tuple, m);
+          if (value > longColumns[m][id]) {
+            longColumns[m][id] = value;
+          }
+          break;
+        }
+
+        case DOUBLE_SUM:
+          doubleColumns[m][id] += aggregator.getDouble(tuple, m);
+          break;
+
+        case DOUBLE_MIN: {
+          double value = aggregator.getDouble(tuple, m);
+          if (value < doubleColumns[m][id]) {
+            doubleColumns[m][id] = value;
+          }
+          break;
+        }
+
+        case DOUBLE_MAX: {
+          double value = aggregator.getDouble(tuple, m);
+          if (value > doubleColumns[m][id]) {
+            doubleColumns[m][id] = value;
+          }
+          break;
+        }
+
+        case COUNT:
+          longColumns[m][id]++;
+          break;
+      }
+    }
+  }
+
+  /**
+   * Fills and emits the aggregates of the groups which got events in this window.
+   *
+   * @param output port.
+   */
+  void emit(DefaultOutputPort<AGGREGATE> output)
+  {
+    for (int i = 0; i < touchedCount; i++) {
+      currentId = touchedIds[i];
+      touched[currentId] = false;
+      AGGREGATE aggregate = aggregator.getGroup(groups.get(currentId), aggregatorIndex);
+      aggregator.setMeasures(aggregate, this);
+      output.emit(aggregate);
+    }
+    touchedCount = 0;
+  }
+
+  /**
+   * Drops all the groups when there are more than the limit. Must be called after {@link #emit(DefaultOutputPort)}.
+   * The columns are not shrunk.
+   *
+   * @param maxGroups maximum number of groups.
+   */
+  void trim(int maxGroups)
+  {
+    if (groups.size() > maxGroups) {
+      groupIds.clear();
+      groups.clear();
+    }
+  }
+
+  int size()
+  {
+    return groups.size();
+  }
+
+  @Override
+  public long getLong(int measureIndex)
+  {
+    return longColumns[measureIndex][currentId];
+  }
+
+  @Override
+  public double getDouble(int measureIndex)
+  {
+    return doubleColumns[measureIndex][currentId];
+  }
+
+  private void reset(int id)
+  {
+    for (int m = measures.length; m-- > 0; ) {
+      switch (measures[m]) {
+        case LONG_MIN:
+          longColumns[m][id] = Long.MAX_VALUE;
+          break;
+
+        case LONG_MAX:
+          longColumns[m][id] = Long.MIN_VALUE;
+          break;
+
+        case DOUBLE_MIN:
+          doubleColumns[m][id] = Double.POSITIVE_INFINITY;
+          break;
+
+        case DOUBLE_MAX:
+          doubleColumns[m][id] = Double.NEGATIVE_INFINITY;
+          break;
+
+        case DOUBLE_SUM:
+          doubleColumns[m][id] = 0;
+          break;
+
+        default:
+          longColumns[m][id] = 0;
+          break;
+      }
+    }
+  }
+
+  private void grow()
+  {
+    capacity <<= 1;
+    for (int m = measures.length; m-- > 0; ) {
+      if (longColumns[m] != null) {
+        longColumns[m] = Arrays.copyOf(longColumns[m], capacity);
+      }
+      else {
+        doubleColumns[m] = Arrays.copyOf(doubleColumns[m], capacity);
+      }
+    }
+    touched = Arrays.copyOf(touched, capacity);
+    touchedIds = Arrays.copyOf(touchedIds, capacity);
+  }
+
+}
@@ -45,12 +45,34 @@ import com.datatorrent.api.annotation.ShipContainingJars;
 public class DimensionsComputation<EVENT, AGGREGATE extends DimensionsComputation.AggregateEvent> implements Operator
 {
   private Unifier<AGGREGATE> unifier;
+  private Class<? extends StreamCodec<EVENT>> streamCodec;
 
   public void setUnifier(Unifier<AGGREGATE> unifier)
   {
     this.unifier = unifier;
   }
 
+  public Unifier<AGGREGATE> getUnifier()
+  {
+    return unifier;
+  }
+
+  /**
+   * Sets the codec of the input stream. Its partition of an event decides which partition of the operator gets the
+   * event, see {@link AggregatorHashStreamCodec}.
+   *
+   * @param streamCodec codec of the input stream.
+   */
+  public void setStreamCodec(Class<? extends StreamCodec<EVENT>> streamCodec)
+  {
+    this.streamCodec = streamCodec;
+  }
+
+  public Class<? extends StreamCodec<EVENT>> getStreamCodec()
+  {
+    return streamCodec;
+  }
+
   public final transient DefaultOutputPort<AGGREGATE> output = new DefaultOutputPort<AGGREGATE>()
   {
     @Override
@@ -70,8 +92,31 @@ public class DimensionsComputation<EVENT, AGGREGATE extends DimensionsComputatio
     @Override
     public void process(EVENT tuple)
     {
-      for (int i = 0; i < aggregatorMaps.length; i++) {
-        aggregatorMaps[i].add(tuple, i);
+      if (columnarMaps == null) {
+        for (int i = 0; i < aggregatorMaps.length; i++) {
+          aggregatorMaps[i].add(tuple, i);
+        }
+      }
+      else {
+        for (int i = 0; i < aggregatorMaps.length; i++) {
+          if (columnarMaps[i] == null) {
+            aggregatorMaps[i].add(tuple, i);
+          }
+          else {
+            columnarMaps[i].add(tuple);
+          }
+        }
+      }
+    }
+
+    @Override
+    public Class<? extends StreamCodec<EVENT>> getStreamCodec()
+    {
+      if (DimensionsComputation.this.streamCodec == null) {
+        return super.getStreamCodec();
+      }
+      else {
+        return DimensionsComputation.this.streamCodec;
       }
     }
 
@@ -91,7 +136,90 @@ public class DimensionsComputation<EVENT, AGGREGATE extends DimensionsComputatio
     void aggregate(AGGREGATE dest, AGGREGATE src);
   }
 
+  /**
+   * The kind of a measure of a {@link ColumnarAggregator}.
+   */
+  public static enum Measure
+  {
+    LONG_SUM, LONG_MIN, LONG_MAX, DOUBLE_SUM, DOUBLE_MIN, DOUBLE_MAX,
+    /**
+     * Number of events in the group; the value of the measure is not read from the events.
+     */
+    COUNT;
+
+    public boolean isDouble()
+    {
+      return this == DOUBLE_SUM || this == DOUBLE_MIN || this == DOUBLE_MAX;
+    }
+
+  }
+
+  /**
+   * Read only view of the aggregated measures of one group.
+   */
+  public static interface MeasureSlots
+  {
+    /**
+     * @param measureIndex index of a {@link Measure#COUNT} or LONG_* measure.
+     * @return aggregated value of the measure.
+     */
+    long getLong(int measureIndex);
+
+    /**
+     * @param measureIndex index of a DOUBLE_* measure.
+     * @return aggregated value of the measure.
+     */
+    double getDouble(int measureIndex);
+  }
+
+  /**
+   * <p>
+   * An {@link Aggregator} whose aggregates are made of sum/count/min/max measures. When the operator is
+   * {@link #setColumnar(boolean) columnar}, the measures of such an aggregator are aggregated in primitive arrays
+   * instead of in the aggregate objects.
+   * </p>
+   *
+   * <p>
+   * The group of an event is interned to an int id. For every window in which the group has events, an aggregate is
+   * created by {@link #getGroup(Object, int)} from the first event of the group and then filled by
+   * {@link #setMeasures(AggregateEvent, MeasureSlots)}.
+   * </p>
+   */
+  public static interface ColumnarAggregator<EVENT, AGGREGATE extends AggregateEvent> extends Aggregator<EVENT, AGGREGATE>
+  {
+    /**
+     * @return the measures; the index of a measure in the array is used to read and set its value.
+     */
+    Measure[] getMeasures();
+
+    /**
+     * @param src          event.
+     * @param measureIndex index of a LONG_* measure.
+     * @return value of the measure in the event.
+     */
+    long getLong(EVENT src, int measureIndex);
+
+    /**
+     * @param src          event.
+     * @param measureIndex index of a DOUBLE_* measure.
+     * @return value of the measure in the event.
+     */
+    double getDouble(EVENT src, int measureIndex);
+
+    /**
+     * Sets all the measures of the aggregate of a group.
+     *
+     * @param dest  aggregate which was created for the group by {@link #getGroup(Object, int)}.
+     * @param slots aggregated measures of the group in the current window.
+     */
+    void setMeasures(AGGREGATE dest, MeasureSlots slots);
+  }
+
   private AggregatorMap<EVENT, AGGREGATE>[] aggregatorMaps;
+  private boolean columnar;
+  private int maxColumnarGroups = DEF_MAX_COLUMNAR_GROUPS;
+  private transient ColumnarAggregatorMap<EVENT, AGGREGATE>[] columnarMaps;
+  public static final int DEF_MAX_COLUMNAR_GROUPS = 1 << 20;
 
   /**
    * Set the dimensions which should each get the tuples going forward.
@@ -126,9 +254,49 @@ public class DimensionsComputation<EVENT, AGGREGATE extends DimensionsComputatio
   {
   }
 
+  /**
+   * When true, aggregators which are {@link ColumnarAggregator}s keep the groups and the primitive measures across
+   * windows so that the groups which recur are not allocated again every window.
+   *
+   * @param columnar true to aggregate {@link ColumnarAggregator}s in primitive arrays.
+   */
+  public void setColumnar(boolean columnar)
+  {
+    this.columnar = columnar;
+  }
+
+  public boolean isColumnar()
+  {
+    return columnar;
+  }
+
+  /**
+   * Sets the number of groups of an aggregator beyond which the groups which are kept across windows in the columnar
+   * mode are dropped at the end of the window.
+   *
+   * @param maxColumnarGroups maximum number of groups per aggregator.
+   */
+  public void setMaxColumnarGroups(int maxColumnarGroups)
+  {
+    this.maxColumnarGroups = maxColumnarGroups;
+  }
+
+  public int getMaxColumnarGroups()
+  {
+    return maxColumnarGroups;
+  }
+
   @Override
   public void endWindow()
   {
+    if (columnarMaps != null) {
+      for (ColumnarAggregatorMap<EVENT, AGGREGATE> columnarMap : columnarMaps) {
+        if (columnarMap != null) {
+          columnarMap.emit(output);
+          columnarMap.trim(maxColumnarGroups);
+        }
+      }
+    }
     for (AggregatorMap<EVENT, AGGREGATE> dimension : aggregatorMaps) {
       for (AGGREGATE value : dimension.values()) {
         output.emit(value);
@@ -140,6 +308,17 @@ public class DimensionsComputation<EVENT, AGGREGATE extends DimensionsComputatio
   @Override
   public void setup(OperatorContext context)
   {
+    columnarMaps = null;
+    if (columnar && aggregatorMaps != null) {
+      @SuppressWarnings("unchecked")
+      ColumnarAggregatorMap<EVENT, AGGREGATE>[] newInstance = (ColumnarAggregatorMap<EVENT, AGGREGATE>[]) Array.newInstance(ColumnarAggregatorMap.class, aggregatorMaps.length);
+      columnarMaps = newInstance;
+      for (int i = aggregatorMaps.length; i-- > 0; ) {
+        if (aggregatorMaps[i].aggregator instanceof ColumnarAggregator) {
+          columnarMaps[i] = new ColumnarAggregatorMap<EVENT, AGGREGATE>((ColumnarAggregator<EVENT, AGGREGATE>) aggregatorMaps[i].aggregator, i);
+        }
+      }
+    }
   }
 
   @Override
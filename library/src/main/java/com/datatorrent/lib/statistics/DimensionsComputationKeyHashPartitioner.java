@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.StatsListener;
+
+import com.datatorrent.lib.statistics.DimensionsComputation.AggregateEvent;
+
+/**
+ * <p>
+ * Partitions {@link DimensionsComputation} by the hash code of the events instead of by aggregator, so that a group
+ * which gets many events can be spread over more than one partition.
+ * </p>
+ *
+ * <p>
+ * Every partition has all the aggregators and gets the events whose partition keys it owns. The partition of an event
+ * is given by the codec of the input stream; with an {@link AggregatorHashStreamCodec} all the events of a group of the
+ * hot aggregator go to one partition. The partial aggregates of the other aggregators are merged by the unifier, which
+ * is set to a {@link DimensionsComputationUnifierImpl} when the operator does not have one.
+ * </p>
+ *
+ * <p>
+ * The partitioner is also the {@link StatsListener} of the operator. A partition which processes more than
+ * {@link #maximumTuplesPerSecond} is split in two and two sibling partitions which process less than
+ * {@link #minimumTuplesPerSecond} are merged. After repartitioning, the rate is not checked for {@link #cooldownMillis}.
+ * Since the aggregates are emitted at the end of every window, no state is transferred between partitions.
+ * </p>
+ *
+ * @param <EVENT>     type of the events.
+ * @param <AGGREGATE> type of the aggregates.
+ */
+public class DimensionsComputationKeyHashPartitioner<EVENT, AGGREGATE extends AggregateEvent>
+  implements Partitioner<DimensionsComputation<EVENT, AGGREGATE>>, StatsListener, Serializable
+{
+  public static final long DEF_COOLDOWN_MILLIS = 60000;
+
+  @Min(1)
+  private long maximumTuplesPerSecond;
+  @Min(0)
+  private long minimumTuplesPerSecond;
+  @Min(0)
+  private long cooldownMillis;
+  private transient long nextMillis;
+  private transient Set<Integer> partitionIds = Sets.newHashSet();
+
+  public DimensionsComputationKeyHashPartitioner()
+  {
+    maximumTuplesPerSecond = Long.MAX_VALUE;
+    cooldownMillis = DEF_COOLDOWN_MILLIS;
+  }
+
+  @Override
+  public Response processStats(BatchedOperatorStats stats)
+  {
+    Response response = new Response();
+    response.repartitionRequired = false;
+    if (!partitionIds.contains(stats.getOperatorId()) || System.currentTimeMillis() < nextMillis) {
+      return response;
+    }
+    long tuplesPerSecond = stats.getTuplesProcessedPSMA();
+    if (tuplesPerSecond > maximumTuplesPerSecond || (partitionIds.size() > 1 && tuplesPerSecond < minimumTuplesPerSecond)) {
+      logger.debug("operator {} processes {} tuples/s", stats.getOperatorId(), tuplesPerSecond);
+      response.repartitionRequired = true;
+      nextMillis = System.currentTimeMillis() + cooldownMillis;
+    }
+    return response;
+  }
+
+  @Override
+  public Collection<Partition<DimensionsComputation<EVENT, AGGREGATE>>> definePartitions(Collection<Partition<DimensionsComputation<EVENT, AGGREGATE>>> partitions, int incrementalCapacity)
+  {
+    Partition<DimensionsComputation<EVENT, AGGREGATE>> first = partitions.iterator().next();
+    DimensionsComputation<EVENT, AGGREGATE> prototype = first.getPartitionedInstance();
+    if (prototype.getUnifier() == null) {
+      DimensionsComputationUnifierImpl<EVENT, AGGREGATE> unifier = new DimensionsComputationUnifierImpl<EVENT, AGGREGATE>();
+      unifier.setAggregators(prototype.getAggregators());
+      for (Partition<DimensionsComputation<EVENT, AGGREGATE>> partition : partitions) {
+        partition.getPartitionedInstance().setUnifier(unifier);
+      }
+    }
+
+    if (first.getStats() == null) {
+      int count = partitions.size() + incrementalCapacity;
+      if (count == partitions.size()) {
+        return partitions;
+      }
+      List<Partition<DimensionsComputation<EVENT, AGGREGATE>>> newPartitions = Lists.newArrayListWithCapacity(count);
+      for (int i = 0; i < count; i++) {
+        newPartitions.add(new DefaultPartition<DimensionsComputation<EVENT, AGGREGATE>>(prototype));
+      }
+      DefaultPartition.assignPartitionKeys(Collections.unmodifiableCollection(newPartitions), prototype.data);
+      logger.debug("initial partitions {}", count);
+      return newPartitions;
+    }
+
+    List<Partition<DimensionsComputation<EVENT, AGGREGATE>>> newPartitions = Lists.newArrayList();
+    //reduced mask and partition key with the leading bit of the mask excluded -> partition which is not merged yet.
+    Map<Long, Partition<DimensionsComputation<EVENT, AGGREGATE>>> lowLoadPartitions = Maps.newHashMap();
+    for (Partition<DimensionsComputation<EVENT, AGGREGATE>> partition : partitions) {
+      long tuplesPerSecond = partition.getStats().getTuplesProcessedPSMA();
+      PartitionKeys keys = partition.getPartitionKeys().get(prototype.data);
+      if (keys == null) {
+        newPartitions.add(partition);
+      }
+      else if (tuplesPerSecond > maximumTuplesPerSecond) {
+        int newMask;
+        Set<Integer> newKeys;
+        if (keys.partitions.size() == 1) {
+          newMask = (keys.mask << 1) | 1;
+          int key = keys.partitions.iterator().next();
+          newKeys = Sets.newHashSet(key, (newMask ^ keys.mask) | key);
+        }
+        else {
+          newMask = keys.mask;
+          newKeys = keys.partitions;
+        }
+        for (int key : newKeys) {
+          Partition<DimensionsComputation<EVENT, AGGREGATE>> newPartition = new DefaultPartition<DimensionsComputation<EVENT, AGGREGATE>>(partition.getPartitionedInstance());
+          newPartition.getPartitionKeys().put(prototype.data, new PartitionKeys(newMask, Sets.newHashSet(key)));
+          newPartitions.add(newPartition);
+        }
+      }
+      else if (tuplesPerSecond < minimumTuplesPerSecond && keys.partitions.size() == 1 && keys.mask > 0) {
+        int reducedMask = keys.mask >>> 1;
+        int reducedKey = keys.partitions.iterator().next() & reducedMask;
+        long siblingKey = ((long) reducedMask << 32) | reducedKey;
+        Partition<DimensionsComputation<EVENT, AGGREGATE>> sibling = lowLoadPartitions.remove(siblingKey);
+        if (sibling == null) {
+          lowLoadPartitions.put(siblingKey, partition);
+        }
+        else {
+          sibling.getPartitionKeys().put(prototype.data, new PartitionKeys(reducedMask, Sets.newHashSet(reducedKey)));
+          newPartitions.add(sibling);
+        }
+      }
+      else {
+        newPartitions.add(partition);
+      }
+    }
+    newPartitions.addAll(lowLoadPartitions.values());
+    logger.debug("repartitioned {} to {}", partitions.size(), newPartitions.size());
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<DimensionsComputation<EVENT, AGGREGATE>>> partitions)
+  {
+    partitionIds.clear();
+    partitionIds.addAll(partitions.keySet());
+    nextMillis = System.currentTimeMillis() + cooldownMillis;
+  }
+
+  /**
+   * Sets the rate above which a partition is split.
+   *
+   * @param maximumTuplesPerSecond tuples per second.
+   */
+  public void setMaximumTuplesPerSecond(long maximumTuplesPerSecond)
+  {
+    this.maximumTuplesPerSecond = maximumTuplesPerSecond;
+  }
+
+  public long getMaximumTuplesPerSecond()
+  {
+    return maximumTuplesPerSecond;
+  }
+
+  /**
+   * Sets the rate below which two sibling partitions are merged.
+   *
+   * @param minimumTuplesPerSecond tuples per second.
+   */
+  public void setMinimumTuplesPerSecond(long minimumTuplesPerSecond)
+  {
+    this.minimumTuplesPerSecond = minimumTuplesPerSecond;
+  }
+
+  public long getMinimumTuplesPerSecond()
+  {
+    return minimumTuplesPerSecond;
+  }
+
+  /**
+   * Sets the time for which the partitions are left to stabilize after they change.
+   *
+   * @param cooldownMillis time in milliseconds.
+   */
+  public void setCooldownMillis(long cooldownMillis)
+  {
+    this.cooldownMillis = cooldownMillis;
+  }
+
+  public long getCooldownMillis()
+  {
+    return cooldownMillis;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    partitionIds = Sets.newHashSet();
+  }
+
+  private static final long serialVersionUID = 201410181700L;
+  private static final Logger logger = LoggerFactory.getLogger(DimensionsComputationKeyHashPartitioner.class);
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.io.IOException;
+import java.util.*;
+
+import javax.annotation.Nonnull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG;
+
+/**
+ * <p>
+ * {@link TimeBucketStore} which writes every stored time bucket to its own file in a hadoop file system. The path is
+ * {@link #basePath}/aggregator index/time bucket-window. When {@link #basePath} is not set, the files are created
+ * under the application path in timeBuckets/operator id.
+ * </p>
+ *
+ * <p>
+ * The window is part of the file name so that a time bucket which is stored again after the last checkpoint does not
+ * overwrite the file which the check-pointed state refers to. The file which a time bucket replaces and the files of
+ * expired time buckets are deleted once a checkpoint after the window in which they were replaced or expired is
+ * committed.
+ * </p>
+ *
+ * @param <AGGREGATE> type of the aggregates.
+ */
+public class HdfsTimeBucketStore<AGGREGATE> implements TimeBucketStore<AGGREGATE>, CheckpointListener
+{
+  public static transient String TIME_BUCKETS_DIR = "timeBuckets";
+  private static final String PATH_SEPARATOR = "/";
+
+  private String basePath;
+  //aggregator index -> time bucket -> window in which the time bucket was stored.
+  protected Map<Integer, TreeMap<Long, Long>> storedWindows;
+  //files which were replaced in the current checkpoint period.
+  protected List<String> filesPendingCheckpoint;
+  //checkpoint window -> files which can be deleted once a later window is committed.
+  protected TreeMap<Long, List<String>> filesToDelete;
+
+  protected transient String root;
+  protected transient Configuration configuration;
+  protected transient Kryo serde;
+
+  public HdfsTimeBucketStore()
+  {
+    storedWindows = Maps.newHashMap();
+    filesPendingCheckpoint = Lists.newArrayList();
+    filesToDelete = Maps.newTreeMap();
+  }
+
+  /**
+   * Sets the directory of the files. It can be a path in any hadoop file system, eg. on the local disk.
+   *
+   * @param basePath directory of the files.
+   */
+  public void setBasePath(String basePath)
+  {
+    this.basePath = basePath;
+  }
+
+  public String getBasePath()
+  {
+    return basePath;
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    if (basePath != null) {
+      root = basePath;
+    }
+    else {
+      root = context.getValue(DAG.APPLICATION_PATH) + PATH_SEPARATOR + TIME_BUCKETS_DIR + PATH_SEPARATOR + context.getId();
+    }
+    configuration = new Configuration();
+    serde = new Kryo();
+    serde.setClassLoader(Thread.currentThread().getContextClassLoader());
+  }
+
+  @Override
+  public void teardown()
+  {
+    configuration.clear();
+  }
+
+  @Override
+  public void store(long window, int aggregatorIndex, long timeBucket, @Nonnull Collection<AGGREGATE> aggregates) throws IOException
+  {
+    Path path = getPath(aggregatorIndex, timeBucket, window);
+    FileSystem fs = FileSystem.newInstance(path.toUri(), configuration);
+    try {
+      FSDataOutputStream stream = fs.create(path, true);
+      Output output = new Output(stream);
+      try {
+        serde.writeClassAndObject(output, new ArrayList<AGGREGATE>(aggregates));
+      }
+      finally {
+        output.close();
+        stream.close();
+      }
+    }
+    finally {
+      fs.close();
+    }
+
+    TreeMap<Long, Long> windows = storedWindows.get(aggregatorIndex);
+    if (windows == null) {
+      windows = Maps.newTreeMap();
+      storedWindows.put(aggregatorIndex, windows);
+    }
+    Long replacedWindow = windows.put(timeBucket, window);
+    if (replacedWindow != null && replacedWindow != window) {
+      filesPendingCheckpoint.add(getPath(aggregatorIndex, timeBucket, replacedWindow).toString());
+    }
+    logger.debug("stored {} aggregates of {} {} in {}", aggregates.size(), aggregatorIndex, timeBucket, window);
+  }
+
+  @Override
+  public Collection<AGGREGATE> fetch(int aggregatorIndex, long timeBucket) throws IOException
+  {
+    Map<Long, Long> windows = storedWindows.get(aggregatorIndex);
+    Long window = windows == null ? null : windows.get(timeBucket);
+    if (window == null) {
+      return null;
+    }
+
+    Path path = getPath(aggregatorIndex, timeBucket, window);
+    FileSystem fs = FileSystem.newInstance(path.toUri(), configuration);
+    try {
+      FSDataInputStream stream = fs.open(path);
+      Input input = new Input(stream);
+      try {
+        @SuppressWarnings("unchecked")
+        Collection<AGGREGATE> aggregates = (Collection<AGGREGATE>) serde.readClassAndObject(input);
+        return aggregates;
+      }
+      finally {
+        input.close();
+        stream.close();
+      }
+    }
+    finally {
+      fs.close();
+    }
+  }
+
+  @Override
+  public void expire(long window, int aggregatorIndex, long timeBucket)
+  {
+    TreeMap<Long, Long> windows = storedWindows.get(aggregatorIndex);
+    if (windows == null) {
+      return;
+    }
+    SortedMap<Long, Long> expired = windows.headMap(timeBucket);
+    for (Map.Entry<Long, Long> entry : expired.entrySet()) {
+      filesPendingCheckpoint.add(getPath(aggregatorIndex, entry.getKey(), entry.getValue()).toString());
+    }
+    if (!expired.isEmpty()) {
+      logger.debug("expired {} time buckets of {} before {}", expired.size(), aggregatorIndex, timeBucket);
+      expired.clear();
+    }
+  }
+
+  @Override
+  public void checkpointed(long window)
+  {
+    if (!filesPendingCheckpoint.isEmpty()) {
+      filesToDelete.put(window, Lists.newArrayList(filesPendingCheckpoint));
+      filesPendingCheckpoint.clear();
+    }
+  }
+
+  /**
+   * Deletes the replaced and expired files which are not used by any state that can be restored.
+   */
+  @Override
+  public void committed(long window)
+  {
+    Iterator<Map.Entry<Long, List<String>>> iterator = filesToDelete.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, List<String>> entry = iterator.next();
+      if (entry.getKey() >= window) {
+        break;
+      }
+      for (String file : entry.getValue()) {
+        deleteFile(new Path(file));
+      }
+      iterator.remove();
+    }
+  }
+
+  private void deleteFile(Path path)
+  {
+    try {
+      FileSystem fs = FileSystem.newInstance(path.toUri(), configuration);
+      try {
+        fs.delete(path, true);
+      }
+      finally {
+        fs.close();
+      }
+    }
+    catch (IOException e) {
+      logger.warn("could not delete {}", path, e);
+    }
+  }
+
+  private Path getPath(int aggregatorIndex, long timeBucket, long window)
+  {
+    return new Path(root + PATH_SEPARATOR + aggregatorIndex + PATH_SEPARATOR + timeBucket + "-" + window);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof HdfsTimeBucketStore)) {
+      return false;
+    }
+
+    HdfsTimeBucketStore<?> that = (HdfsTimeBucketStore<?>) o;
+    return basePath != null ? basePath.equals(that.basePath) : that.basePath == null;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return basePath != null ? basePath.hashCode() : 0;
+  }
+
+  private static transient final Logger logger = LoggerFactory.getLogger(HdfsTimeBucketStore.class);
+}
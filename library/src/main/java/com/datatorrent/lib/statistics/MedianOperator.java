@@ -38,6 +38,7 @@ import com.datatorrent.api.DefaultOutputPort;
  * <b>Partitions : No</b>, no will yield wrong results. <br>
  * <br>+
  *
+ * @see QuantileOperator for approximate quantiles which can be partitioned.
  * @since 0.3.4
  */
 @OperatorAnnotation(partitionable = false)
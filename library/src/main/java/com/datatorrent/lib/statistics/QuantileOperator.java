@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.BaseOperator;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+
+/**
+ * This operator computes approximate quantiles of incoming data with a {@link QuantileSketch}. <br>
+ * <br>
+ * <b>Input Port(s) : </b><br>
+ * <b>data : </b> Data values input port. <br>
+ * <br>
+ * <b>Output Port(s) : </b> <br>
+ * <b>percentiles : </b>Map from percentile name to value, for example p50, p99 and p99.9 for the quantiles 0.5, 0.99
+ * and 0.999. <br>
+ * <br>
+ * <b>StateFull : Yes</b>, values are aggregated over the last windowCount application windows. <br>
+ * <b>Partitions : Yes</b>, values are partitioned by their hash, partitions emit their sketches and the unifier
+ * merges them and emits the percentiles. <br>
+ * <br>
+ * <b>Properties : </b> <br>
+ * <b> quantiles : </b> Quantiles between 0 and 1 which are emitted. <br>
+ * <b> compression : </b> Accuracy of the sketch, about the no. of centroids which are kept. <br>
+ * <b> windowCount : </b> No. of application windows the quantiles are computed over. <br>
+ * <br>
+ */
+public class QuantileOperator extends BaseOperator implements Unifier<Map<String, Object>>, Partitioner<QuantileOperator>
+{
+  /**
+   * Key of the sketch of a partition in the tuples which are emitted for the unifier.
+   */
+  public static final String PARTIAL_SKETCH = "__partialSketch";
+
+  @NotNull
+  private double[] quantiles = new double[] {0.5, 0.95, 0.99, 0.999};
+  @Min(1)
+  private int compression = 100;
+  @Min(1)
+  private int windowCount = 1;
+  private boolean partialSketches;
+  private LinkedList<QuantileSketch> sketches = new LinkedList<QuantileSketch>();
+
+  /**
+   * Input data port.
+   */
+  @InputPortFieldAnnotation(name = "data")
+  public final transient DefaultInputPort<Number> data = new DefaultInputPort<Number>()
+  {
+    @Override
+    public void process(Number tuple)
+    {
+      sketches.getLast().add(tuple.doubleValue());
+    }
+
+  };
+
+  /**
+   * Output port
+   */
+  @OutputPortFieldAnnotation(name = "percentiles")
+  public final transient DefaultOutputPort<Map<String, Object>> percentiles = new DefaultOutputPort<Map<String, Object>>()
+  {
+    @Override
+    public Unifier<Map<String, Object>> getUnifier()
+    {
+      if (!partialSketches) {
+        return super.getUnifier();
+      }
+      QuantileOperator unifier = new QuantileOperator();
+      unifier.setQuantiles(quantiles);
+      unifier.setCompression(compression);
+      return unifier;
+    }
+
+  };
+
+  public double[] getQuantiles()
+  {
+    return quantiles;
+  }
+
+  /**
+   * @param quantiles quantiles between 0 and 1 which are emitted.
+   */
+  public void setQuantiles(double[] quantiles)
+  {
+    this.quantiles = quantiles;
+  }
+
+  public int getCompression()
+  {
+    return compression;
+  }
+
+  /**
+   * @param compression accuracy of the sketch, about the no. of centroids which are kept.
+   */
+  public void setCompression(int compression)
+  {
+    this.compression = compression;
+  }
+
+  public int getWindowCount()
+  {
+    return windowCount;
+  }
+
+  /**
+   * @param windowCount no. of application windows the quantiles are computed over.
+   */
+  public void setWindowCount(int windowCount)
+  {
+    this.windowCount = windowCount;
+  }
+
+  /**
+   * @return whether the sketches are emitted for the unifier, which is when the operator is partitioned.
+   */
+  public boolean isPartialSketches()
+  {
+    return partialSketches;
+  }
+
+  /**
+   * @return name of the percentile of the quantile, for example p99.9 for 0.999.
+   */
+  public static String getPercentileName(double quantile)
+  {
+    return "p" + BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString();
+  }
+
+  /**
+   * Partitions the values by their hash. The partitions emit their sketches when there is more than one of them.
+   * The values of the previous windows cannot be partitioned again, so their sketches are merged into the first new
+   * partition and the other new partitions start without them.
+   */
+  @Override
+  public Collection<Partition<QuantileOperator>> definePartitions(Collection<Partition<QuantileOperator>> partitions, int incrementalCapacity)
+  {
+    int count = Math.max(1, partitions.size() + incrementalCapacity);
+    if (incrementalCapacity == 0) {
+      for (Partition<QuantileOperator> partition : partitions) {
+        partition.getPartitionedInstance().partialSketches = count > 1;
+      }
+      return partitions;
+    }
+
+    LinkedList<QuantileSketch> history = new LinkedList<QuantileSketch>();
+    for (Partition<QuantileOperator> partition : partitions) {
+      LinkedList<QuantileSketch> windowSketches = partition.getPartitionedInstance().sketches;
+      while (history.size() < windowSketches.size()) {
+        history.addFirst(new QuantileSketch(compression));
+      }
+      ListIterator<QuantileSketch> iterator = history.listIterator(history.size() - windowSketches.size());
+      for (QuantileSketch sketch : windowSketches) {
+        iterator.next().merge(sketch);
+      }
+    }
+
+    QuantileOperator prototype = partitions.iterator().next().getPartitionedInstance();
+    prototype.partialSketches = count > 1;
+    List<Partition<QuantileOperator>> newPartitions = new ArrayList<Partition<QuantileOperator>>(count);
+    for (int i = 0; i < count; i++) {
+      QuantileOperator partition = new QuantileOperator();
+      partition.setQuantiles(prototype.quantiles);
+      partition.setCompression(prototype.compression);
+      partition.setWindowCount(prototype.windowCount);
+      partition.partialSketches = count > 1;
+      if (i == 0) {
+        partition.sketches = history;
+      }
+      newPartitions.add(new DefaultPartition<QuantileOperator>(partition));
+    }
+    DefaultPartition.assignPartitionKeys(Collections.unmodifiableCollection(newPartitions), data);
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<QuantileOperator>> partitions)
+  {
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    sketches.addLast(new QuantileSketch(compression));
+    while (sketches.size() > windowCount) {
+      sketches.removeFirst();
+    }
+  }
+
+  /**
+   * Merges the sketch of a partition.
+   */
+  @Override
+  public void process(Map<String, Object> tuple)
+  {
+    QuantileSketch sketch = (QuantileSketch)tuple.get(PARTIAL_SKETCH);
+    if (sketch != null) {
+      sketches.getLast().merge(sketch);
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    QuantileSketch sketch = sketches.getLast();
+    if (sketches.size() > 1) {
+      sketch = new QuantileSketch(compression);
+      for (QuantileSketch windowSketch : sketches) {
+        sketch.merge(windowSketch);
+      }
+    }
+    if (sketch.getCount() == 0) {
+      return;
+    }
+
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    if (partialSketches) {
+      result.put(PARTIAL_SKETCH, sketch);
+    }
+    else {
+      for (double quantile : quantiles) {
+        result.put(getPercentileName(quantile), sketch.quantile(quantile));
+      }
+    }
+    percentiles.emit(result);
+  }
+
+}
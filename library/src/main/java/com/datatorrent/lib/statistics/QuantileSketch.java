@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Mergeable sketch of the distribution of a stream of values for approximate quantiles (merging t-digest). <br>
+ * <br>
+ * Values are buffered and periodically merged into a sorted list of centroids, each with the mean and the no. of the
+ * values it summarizes. A centroid spans at most 1 on the scale compression / (2 * pi) * asin(2 * q - 1) of the
+ * quantile q, so the centroids near the tails stay small and the extreme quantiles are accurate. The sketch keeps
+ * less than compression centroids regardless of the no. of values and two sketches are merged by adding the
+ * centroids of one to the other. Quantiles are interpolated between the centroids and are exact while every value is its own
+ * centroid. <br>
+ */
+public class QuantileSketch
+{
+  private double compression;
+  private double[] means;
+  private double[] weights;
+  private int centroids;
+  private double[] bufferMeans;
+  private double[] bufferWeights;
+  private int buffered;
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  private QuantileSketch()
+  {
+    //for kryo
+  }
+
+  /**
+   * @param compression accuracy of the sketch, about the no. of centroids which are kept.
+   */
+  public QuantileSketch(double compression)
+  {
+    Preconditions.checkArgument(compression >= 1, "compression %s", compression);
+    this.compression = compression;
+    means = new double[0];
+    weights = new double[0];
+    int bufferSize = 5 * (int) Math.ceil(compression);
+    bufferMeans = new double[bufferSize];
+    bufferWeights = new double[bufferSize];
+  }
+
+  public double getCompression()
+  {
+    return compression;
+  }
+
+  /**
+   * @return no. of values in the sketch.
+   */
+  public long getCount()
+  {
+    return (long) totalWeight;
+  }
+
+  /**
+   * @return smallest value, positive infinity if the sketch is empty.
+   */
+  public double getMin()
+  {
+    return min;
+  }
+
+  /**
+   * @return largest value, negative infinity if the sketch is empty.
+   */
+  public double getMax()
+  {
+    return max;
+  }
+
+  public void add(double value)
+  {
+    add(value, 1);
+  }
+
+  private void add(double value, double weight)
+  {
+    Preconditions.checkArgument(!Double.isNaN(value), "NaN");
+    if (buffered == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[buffered] = value;
+    bufferWeights[buffered] = weight;
+    buffered++;
+    totalWeight += weight;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Adds the values of the other sketch to this sketch.
+   */
+  public void merge(QuantileSketch other)
+  {
+    for (int i = 0; i < other.centroids; i++) {
+      add(other.means[i], other.weights[i]);
+    }
+    for (int i = 0; i < other.buffered; i++) {
+      add(other.bufferMeans[i], other.bufferWeights[i]);
+    }
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * @param quantile quantile between 0 and 1.
+   * @return approximate value at the quantile, NaN if the sketch is empty.
+   */
+  public double quantile(double quantile)
+  {
+    Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "quantile %s", quantile);
+    compress();
+    if (centroids == 0) {
+      return Double.NaN;
+    }
+    /* the values of a centroid are spread around its mean, which is at the middle of its weight */
+    double index = quantile * totalWeight;
+    double half = weights[0] / 2;
+    if (index < half) {
+      return min + (means[0] - min) * index / half;
+    }
+    double center = half;
+    for (int i = 0; i < centroids - 1; i++) {
+      double distance = (weights[i] + weights[i + 1]) / 2;
+      if (index < center + distance) {
+        return means[i] + (means[i + 1] - means[i]) * (index - center) / distance;
+      }
+      center += distance;
+    }
+    half = weights[centroids - 1] / 2;
+    double last = means[centroids - 1];
+    return last + (max - last) * Math.min(1, (index - center) / half);
+  }
+
+  /**
+   * Merges the buffered values into the centroids.
+   */
+  private void compress()
+  {
+    if (buffered == 0) {
+      return;
+    }
+    sort(bufferMeans, bufferWeights, 0, buffered - 1);
+    double[] mergedMeans = new double[centroids + buffered];
+    double[] mergedWeights = new double[centroids + buffered];
+    int count = 0;
+    double completed = 0;
+    double limit = totalWeight * inverseScale(scale(0) + 1);
+    int i = 0;
+    int j = 0;
+    while (i < centroids || j < buffered) {
+      double mean;
+      double weight;
+      if (j == buffered || (i < centroids && means[i] <= bufferMeans[j])) {
+        mean = means[i];
+        weight = weights[i++];
+      }
+      else {
+        mean = bufferMeans[j];
+        weight = bufferWeights[j++];
+      }
+      if (count > 0) {
+        double proposed = mergedWeights[count - 1] + weight;
+        if (completed + proposed <= limit) {
+          mergedWeights[count - 1] = proposed;
+          mergedMeans[count - 1] += (mean - mergedMeans[count - 1]) * weight / proposed;
+          continue;
+        }
+        completed += mergedWeights[count - 1];
+        limit = totalWeight * inverseScale(scale(completed / totalWeight) + 1);
+      }
+      mergedMeans[count] = mean;
+      mergedWeights[count] = weight;
+      count++;
+    }
+    means = mergedMeans;
+    weights = mergedWeights;
+    centroids = count;
+    buffered = 0;
+  }
+
+  /**
+   * @return position of the quantile on the scale on which every centroid spans at most 1.
+   */
+  private double scale(double quantile)
+  {
+    return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, quantile) - 1);
+  }
+
+  private double inverseScale(double scale)
+  {
+    return (Math.sin(Math.min(scale * 2 * Math.PI / compression, Math.PI / 2)) + 1) / 2;
+  }
+
+  /**
+   * Sorts the keys from index low to index high and moves the values along.
+   */
+  private static void sort(double[] keys, double[] values, int low, int high)
+  {
+    while (high - low > 16) {
+      double pivot = keys[(low + high) >>> 1];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (keys[i] < pivot) {
+          i++;
+        }
+        while (keys[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(keys, values, i++, j--);
+        }
+      }
+      if (j - low < high - i) {
+        sort(keys, values, low, j);
+        low = i;
+      }
+      else {
+        sort(keys, values, i, high);
+        high = j;
+      }
+    }
+    for (int i = low + 1; i <= high; i++) {
+      for (int j = i; j > low && keys[j - 1] > keys[j]; j--) {
+        swap(keys, values, j - 1, j);
+      }
+    }
+  }
+
+  private static void swap(double[] keys, double[] values, int i, int j)
+  {
+    double key = keys[i];
+    keys[i] = keys[j];
+    keys[j] = key;
+    double value = values[i];
+    values[i] = values[j];
+    values[j] = value;
+  }
+
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import gnu.trove.map.hash.TCustomHashMap;
+import gnu.trove.strategy.HashingStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.CheckpointListener;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.ShipContainingJars;
+
+import com.datatorrent.lib.statistics.DimensionsComputation.AggregateEvent;
+import com.datatorrent.lib.statistics.DimensionsComputation.Aggregator;
+import com.datatorrent.lib.statistics.DimensionsComputation.AggregatorMap;
+
+/**
+ * <p>
+ * A stateful {@link DimensionsComputation} which keeps the aggregates of every (dimension combination, time bucket)
+ * across windows.
+ * </p>
+ *
+ * <p>
+ * Every {@link TimeBucketAggregator} puts an event in the time bucket which contains the time of the event. At the end
+ * of a window only the aggregates which changed in the window are emitted; either the delta of the window, like
+ * {@link DimensionsComputation} does, or a copy of the running total of the aggregate when {@link #emitTotals} is
+ * true.
+ * </p>
+ *
+ * <p>
+ * A time bucket is finalized when the latest event time that was seen is past the end of the time bucket by
+ * {@link #allowedLatenessMillis}. When there are more than {@link #maxAggregatesInMemory} aggregates in memory, the
+ * time buckets which end first are finalized early. Finalized time buckets are removed from memory and persisted in the
+ * {@link TimeBucketStore} if one is set. An event for a time bucket which is not in memory opens it again with the
+ * stored aggregates, which are read synchronously.<br/>
+ * When {@link #expiryMillis} is set, a time bucket expires once the latest event time is past its end by that much. The
+ * expired time buckets are removed from the store and their events are ignored.<br/>
+ * The time buckets in memory and the store are check-pointed.
+ * </p>
+ *
+ * @param <EVENT>     type of the events.
+ * @param <AGGREGATE> type of the aggregates.
+ */
+@ShipContainingJars(classes = {TCustomHashMap.class, HashingStrategy.class})
+public class TimeBucketDimensionsComputation<EVENT, AGGREGATE extends AggregateEvent> implements Operator, CheckpointListener
+{
+  public static final long DEF_MAX_AGGREGATES_IN_MEMORY = 1000000;
+
+  @NotNull
+  private TimeBucketAggregator<EVENT, AGGREGATE>[] aggregators;
+  //aggregator index -> time bucket -> aggregates.
+  private TreeMap<Long, TimeBucket<EVENT, AGGREGATE>>[] timeBuckets;
+  private long maxEventTime;
+  @Min(0)
+  private long allowedLatenessMillis;
+  @Min(1)
+  private long maxAggregatesInMemory;
+  @Min(0)
+  private long expiryMillis;
+  private boolean emitTotals;
+  private TimeBucketStore<AGGREGATE> store;
+
+  private transient long currentWindow;
+  private transient AggregatorMap<EVENT, AGGREGATE>[] deltas;
+  //aggregator index -> aggregates which changed in the window -> an event of their group.
+  private transient Map<AGGREGATE, EVENT>[] changedAggregates;
+
+  public final transient DefaultOutputPort<AGGREGATE> output = new DefaultOutputPort<AGGREGATE>();
+
+  public final transient DefaultInputPort<EVENT> data = new DefaultInputPort<EVENT>()
+  {
+    @Override
+    public void process(EVENT tuple)
+    {
+      for (int i = 0; i < aggregators.length; i++) {
+        TimeBucketAggregator<EVENT, AGGREGATE> aggregator = aggregators[i];
+        long time = aggregator.getTime(tuple);
+        if (time > maxEventTime) {
+          maxEventTime = time;
+        }
+
+        long bucketKey = aggregator.getTimeBucketUnit().convert(time, TimeUnit.MILLISECONDS);
+        if (expiryMillis > 0 && getEndTime(i, bucketKey) + expiryMillis <= maxEventTime) {
+          continue;
+        }
+        TimeBucket<EVENT, AGGREGATE> timeBucket = timeBuckets[i].get(bucketKey);
+        if (timeBucket == null) {
+          timeBucket = openTimeBucket(i, bucketKey);
+        }
+
+        AGGREGATE aggregate = timeBucket.add(tuple, i);
+        if (emitTotals) {
+          changedAggregates[i].put(aggregate, tuple);
+        }
+        else {
+          deltas[i].add(tuple, i);
+        }
+      }
+    }
+
+  };
+
+  /**
+   * An {@link Aggregator} which puts the events in time buckets. The group of an event, which is defined by the
+   * hashing strategy, must include its time bucket. Aggregates which are read from the {@link TimeBucketStore} are
+   * matched with the group of an event by their equals and hashCode.
+   */
+  public static interface TimeBucketAggregator<EVENT, AGGREGATE extends AggregateEvent> extends Aggregator<EVENT, AGGREGATE>
+  {
+    /**
+     * @param src event.
+     * @return time of the event in milliseconds.
+     */
+    long getTime(EVENT src);
+
+    /**
+     * @return unit of the time buckets, eg. {@link TimeUnit#MINUTES}.
+     */
+    TimeUnit getTimeBucketUnit();
+  }
+
+  public TimeBucketDimensionsComputation()
+  {
+    maxAggregatesInMemory = DEF_MAX_AGGREGATES_IN_MEMORY;
+  }
+
+  public void setAggregators(TimeBucketAggregator<EVENT, AGGREGATE>[] aggregators)
+  {
+    this.aggregators = aggregators;
+    @SuppressWarnings("unchecked")
+    TreeMap<Long, TimeBucket<EVENT, AGGREGATE>>[] newInstance = (TreeMap<Long, TimeBucket<EVENT, AGGREGATE>>[]) Array.newInstance(TreeMap.class, aggregators.length);
+    timeBuckets = newInstance;
+    for (int i = aggregators.length; i-- > 0; ) {
+      timeBuckets[i] = Maps.newTreeMap();
+    }
+  }
+
+  public TimeBucketAggregator<EVENT, AGGREGATE>[] getAggregators()
+  {
+    return aggregators;
+  }
+
+  /**
+   * Sets how long after the end of a time bucket its events can still arrive, measured in event time.
+   *
+   * @param allowedLatenessMillis lateness in milliseconds.
+   */
+  public void setAllowedLatenessMillis(long allowedLatenessMillis)
+  {
+    this.allowedLatenessMillis = allowedLatenessMillis;
+  }
+
+  public long getAllowedLatenessMillis()
+  {
+    return allowedLatenessMillis;
+  }
+
+  /**
+   * Sets the number of aggregates in memory beyond which time buckets are finalized before they are complete.
+   *
+   * @param maxAggregatesInMemory maximum number of aggregates in memory.
+   */
+  public void setMaxAggregatesInMemory(long maxAggregatesInMemory)
+  {
+    this.maxAggregatesInMemory = maxAggregatesInMemory;
+  }
+
+  public long getMaxAggregatesInMemory()
+  {
+    return maxAggregatesInMemory;
+  }
+
+  /**
+   * Sets how long after the end of a time bucket, measured in event time, it is kept in the store. Events of expired
+   * time buckets are ignored.
+   *
+   * @param expiryMillis expiry in milliseconds; 0 to keep the time buckets forever.
+   */
+  public void setExpiryMillis(long expiryMillis)
+  {
+    this.expiryMillis = expiryMillis;
+  }
+
+  public long getExpiryMillis()
+  {
+    return expiryMillis;
+  }
+
+  /**
+   * When true the running totals of the changed aggregates are emitted instead of their deltas. A copy of the running
+   * total is emitted in every window since the aggregate itself is updated in later windows.
+   *
+   * @param emitTotals true to emit the running totals.
+   */
+  public void setEmitTotals(boolean emitTotals)
+  {
+    this.emitTotals = emitTotals;
+  }
+
+  public boolean isEmitTotals()
+  {
+    return emitTotals;
+  }
+
+  /**
+   * Sets the store of the finalized time buckets. Without a store, finalized time buckets are dropped.
+   *
+   * @param store store of the finalized time buckets.
+   */
+  public void setStore(TimeBucketStore<AGGREGATE> store)
+  {
+    this.store = store;
+  }
+
+  public TimeBucketStore<AGGREGATE> getStore()
+  {
+    return store;
+  }
+
+  @Override
+  public void setup(OperatorContext context)
+  {
+    @SuppressWarnings("unchecked")
+    AggregatorMap<EVENT, AGGREGATE>[] newInstance = (AggregatorMap<EVENT, AGGREGATE>[]) Array.newInstance(AggregatorMap.class, aggregators.length);
+    deltas = newInstance;
+    for (int i = aggregators.length; i-- > 0; ) {
+      deltas[i] = new AggregatorMap<EVENT, AGGREGATE>(aggregators[i]);
+    }
+    @SuppressWarnings("unchecked")
+    Map<AGGREGATE, EVENT>[] newChangedAggregates = (Map<AGGREGATE, EVENT>[]) Array.newInstance(Map.class, aggregators.length);
+    changedAggregates = newChangedAggregates;
+    for (int i = aggregators.length; i-- > 0; ) {
+      changedAggregates[i] = new IdentityHashMap<AGGREGATE, EVENT>();
+    }
+    if (store != null) {
+      store.setup(context);
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    currentWindow = windowId;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (emitTotals) {
+      for (int i = 0; i < aggregators.length; i++) {
+        for (Map.Entry<AGGREGATE, EVENT> entry : changedAggregates[i].entrySet()) {
+          AGGREGATE total = aggregators[i].getGroup(entry.getValue(), i);
+          aggregators[i].aggregate(total, entry.getKey());
+          output.emit(total);
+        }
+        changedAggregates[i].clear();
+      }
+    }
+    else {
+      for (AggregatorMap<EVENT, AGGREGATE> delta : deltas) {
+        for (AGGREGATE aggregate : delta.values()) {
+          output.emit(aggregate);
+        }
+        delta.clear();
+      }
+    }
+
+    long aggregatesInMemory = 0;
+    for (int i = 0; i < aggregators.length; i++) {
+      Iterator<Map.Entry<Long, TimeBucket<EVENT, AGGREGATE>>> iterator = timeBuckets[i].entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Long, TimeBucket<EVENT, AGGREGATE>> entry = iterator.next();
+        if (getEndTime(i, entry.getKey()) + allowedLatenessMillis <= maxEventTime) {
+          finalizeTimeBucket(i, entry.getKey(), entry.getValue());
+          iterator.remove();
+        }
+        else {
+          aggregatesInMemory += entry.getValue().size();
+        }
+      }
+    }
+
+    while (aggregatesInMemory > maxAggregatesInMemory) {
+      int earliestIdx = -1;
+      long earliestEnd = Long.MAX_VALUE;
+      for (int i = 0; i < aggregators.length; i++) {
+        if (!timeBuckets[i].isEmpty()) {
+          long end = getEndTime(i, timeBuckets[i].firstKey());
+          if (end < earliestEnd) {
+            earliestEnd = end;
+            earliestIdx = i;
+          }
+        }
+      }
+      Map.Entry<Long, TimeBucket<EVENT, AGGREGATE>> entry = timeBuckets[earliestIdx].pollFirstEntry();
+      finalizeTimeBucket(earliestIdx, entry.getKey(), entry.getValue());
+      aggregatesInMemory -= entry.getValue().size();
+    }
+
+    if (store != null && expiryMillis > 0) {
+      for (int i = 0; i < aggregators.length; i++) {
+        store.expire(currentWindow, i, aggregators[i].getTimeBucketUnit().convert(maxEventTime - expiryMillis, TimeUnit.MILLISECONDS));
+      }
+    }
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+    if (store instanceof CheckpointListener) {
+      ((CheckpointListener) store).checkpointed(windowId);
+    }
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    if (store instanceof CheckpointListener) {
+      ((CheckpointListener) store).committed(windowId);
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (store != null) {
+      store.teardown();
+    }
+  }
+
+  private long getEndTime(int aggregatorIdx, long bucketKey)
+  {
+    return TimeUnit.MILLISECONDS.convert(bucketKey + 1, aggregators[aggregatorIdx].getTimeBucketUnit());
+  }
+
+  private TimeBucket<EVENT, AGGREGATE> openTimeBucket(int aggregatorIdx, long bucketKey)
+  {
+    TimeBucket<EVENT, AGGREGATE> timeBucket = new TimeBucket<EVENT, AGGREGATE>(aggregators[aggregatorIdx]);
+    if (store != null) {
+      Collection<AGGREGATE> stored;
+      try {
+        stored = store.fetch(aggregatorIdx, bucketKey);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      if (stored != null) {
+        logger.debug("re-opened {} {} with {} aggregates", aggregatorIdx, bucketKey, stored.size());
+        timeBucket.reopen(stored);
+      }
+    }
+    timeBuckets[aggregatorIdx].put(bucketKey, timeBucket);
+    return timeBucket;
+  }
+
+  private void finalizeTimeBucket(int aggregatorIdx, long bucketKey, TimeBucket<EVENT, AGGREGATE> timeBucket)
+  {
+    if (store != null) {
+      try {
+        store.store(currentWindow, aggregatorIdx, bucketKey, timeBucket.getAggregates());
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * The aggregates of one time bucket of an aggregator.
+   */
+  static class TimeBucket<EVENT, AGGREGATE extends AggregateEvent>
+  {
+    private AggregatorMap<EVENT, AGGREGATE> aggregates;
+    //aggregates which were read from the store and did not get an event since. They are found by the group.
+    private Map<AGGREGATE, AGGREGATE> reopened;
+
+    @SuppressWarnings("unused")
+    private TimeBucket()
+    {
+      /* for serialization */
+    }
+
+    TimeBucket(Aggregator<EVENT, AGGREGATE> aggregator)
+    {
+      aggregates = new AggregatorMap<EVENT, AGGREGATE>(aggregator);
+    }
+
+    AGGREGATE add(EVENT tuple, int aggregatorIdx)
+    {
+      AGGREGATE aggregate = aggregates.get(tuple);
+      if (aggregate == null) {
+        aggregate = aggregates.aggregator.getGroup(tuple, aggregatorIdx);
+        if (reopened != null) {
+          AGGREGATE stored = reopened.remove(aggregate);
+          if (stored != null) {
+            aggregate = stored;
+          }
+        }
+        aggregates.put(tuple, aggregate);
+      }
+      aggregates.aggregator.aggregate(aggregate, tuple);
+      return aggregate;
+    }
+
+    void reopen(Collection<AGGREGATE> stored)
+    {
+      reopened = Maps.newHashMap();
+      for (AGGREGATE aggregate : stored) {
+        reopened.put(aggregate, aggregate);
+      }
+    }
+
+    Collection<AGGREGATE> getAggregates()
+    {
+      if (reopened == null || reopened.isEmpty()) {
+        return aggregates.values();
+      }
+      List<AGGREGATE> all = Lists.newArrayList(aggregates.values());
+      all.addAll(reopened.values());
+      return all;
+    }
+
+    int size()
+    {
+      return aggregates.size() + (reopened == null ? 0 : reopened.size());
+    }
+
+  }
+
+  private static transient final Logger logger = LoggerFactory.getLogger(TimeBucketDimensionsComputation.class);
+}
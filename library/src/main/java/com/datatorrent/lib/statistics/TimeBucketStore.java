@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.datatorrent.api.Context.OperatorContext;
+
+/**
+ * <p>
+ * Persistent store of the time buckets which {@link TimeBucketDimensionsComputation} removes from memory.
+ * </p>
+ *
+ * <p>
+ * The store is check-pointed with the operator. A store which implements
+ * {@link com.datatorrent.api.CheckpointListener} is notified when the operator is check-pointed and committed.
+ * </p>
+ *
+ * @param <AGGREGATE> type of the aggregates.
+ */
+public interface TimeBucketStore<AGGREGATE>
+{
+  /**
+   * Invoked when the operator is setup.
+   *
+   * @param context operator context.
+   */
+  void setup(OperatorContext context);
+
+  /**
+   * Invoked when the operator is torn down.
+   */
+  void teardown();
+
+  /**
+   * Persists all the aggregates of a time bucket. They replace the aggregates which were stored before for the time
+   * bucket.
+   *
+   * @param window          window in which the time bucket is stored.
+   * @param aggregatorIndex index of the aggregator.
+   * @param timeBucket      time bucket.
+   * @param aggregates      aggregates of the time bucket.
+   * @throws IOException
+   */
+  void store(long window, int aggregatorIndex, long timeBucket, @Nonnull Collection<AGGREGATE> aggregates) throws IOException;
+
+  /**
+   * Fetches the aggregates of a time bucket.
+   *
+   * @param aggregatorIndex index of the aggregator.
+   * @param timeBucket      time bucket.
+   * @return the stored aggregates; null if the time bucket was never stored.
+   * @throws IOException
+   */
+  @Nullable
+  Collection<AGGREGATE> fetch(int aggregatorIndex, long timeBucket) throws IOException;
+
+  /**
+   * Removes the time buckets of an aggregator which are before a time bucket. They are not fetched again.
+   *
+   * @param window          window in which the time buckets expire.
+   * @param aggregatorIndex index of the aggregator.
+   * @param timeBucket      first time bucket which is kept.
+   */
+  void expire(long window, int aggregatorIndex, long timeBucket);
+}
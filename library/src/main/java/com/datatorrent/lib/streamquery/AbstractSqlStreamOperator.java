@@ -38,6 +38,10 @@ public abstract class AbstractSqlStreamOperator extends BaseOperator
       public String type;
       public int bindIndex = 0;
       public boolean isColumnIndex = false;
+      /**
+       * java.sql.Types constant of the type, set by the operator in setup
+       */
+      public transient int sqlType;
     }
 
     /**
@@ -19,14 +19,26 @@ import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.annotation.ShipContainingJars;
 import com.datatorrent.lib.streamquery.AbstractSqlStreamOperator.InputSchema.ColumnInfo;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
+import com.google.common.collect.ImmutableMap;
+
 /**
  * Embedded derby sql input operator.
+ * <p>
+ * Tuples are inserted into the temporary tables in JDBC batches of batchSize rows and the columns are bound with the
+ * setter of their SQL type. The batches are flushed at the end of the window before the statements are executed.
+ * Subclasses may run another embedded database by overriding the driver, the connection url and the statement which
+ * creates the temporary tables.
+ * </p>
  *
  * @since 0.3.2
  */
@@ -38,25 +50,102 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
   protected transient ArrayList<PreparedStatement> execStatements = new ArrayList<PreparedStatement>(5);
   protected transient ArrayList<PreparedStatement> deleteStatements = new ArrayList<PreparedStatement>(5);
   protected transient Connection db;
+  protected transient int[] batchedRows;
+  @Min(1)
+  private int batchSize = 1000;
+
+  private static final Map<String, Integer> SQL_TYPES = ImmutableMap.<String, Integer>builder()
+          .put("SMALLINT", Types.SMALLINT)
+          .put("INT", Types.INTEGER)
+          .put("INTEGER", Types.INTEGER)
+          .put("BIGINT", Types.BIGINT)
+          .put("REAL", Types.REAL)
+          .put("FLOAT", Types.DOUBLE)
+          .put("DOUBLE", Types.DOUBLE)
+          .put("DOUBLE PRECISION", Types.DOUBLE)
+          .put("DEC", Types.DECIMAL)
+          .put("DECIMAL", Types.DECIMAL)
+          .put("NUMERIC", Types.DECIMAL)
+          .put("BOOLEAN", Types.BOOLEAN)
+          .put("DATE", Types.DATE)
+          .put("TIME", Types.TIME)
+          .put("TIMESTAMP", Types.TIMESTAMP)
+          .build();
 
   public void addExecStatementString(String stmt) {
        this.execStmtStringList.add(stmt);
   }
 
 
+  /**
+   * @return no. of rows which are inserted into a table with one batch.
+   */
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize no. of rows which are inserted into a table with one batch.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @return class name of the JDBC driver of the embedded database.
+   */
+  protected String getDriverClassName()
+  {
+    return "org.apache.derby.jdbc.EmbeddedDriver";
+  }
+
+  /**
+   * @return url of the connection to the embedded database.
+   */
+  protected String getConnectionUrl()
+  {
+    return "jdbc:derby:memory:MALHAR_TEMP;create=true";
+  }
+
+  /**
+   * @return statement which creates the temporary table SESSION.tableName of the connection.
+   */
+  protected String getCreateTableStatement(String tableName, String columnSpec)
+  {
+    return "DECLARE GLOBAL TEMPORARY TABLE SESSION." + tableName + "(" + columnSpec + ") NOT LOGGED";
+  }
+
+  /**
+   * @return {@link Types} constant of the SQL type of a column, {@link Types#VARCHAR} for the character and unknown
+   *         types.
+   */
+  protected static int getSqlType(String type)
+  {
+    String name = type.trim().toUpperCase(Locale.ENGLISH);
+    int paren = name.indexOf('(');
+    if (paren >= 0) {
+      name = name.substring(0, paren).trim();
+    }
+    Integer sqlType = SQL_TYPES.get(name);
+    return sqlType == null ? Types.VARCHAR : sqlType;
+  }
+
   @Override
   public void setup(OperatorContext context)
   {
     System.setProperty("derby.stream.error.file", "/dev/null");
     try {
-      Class.forName("org.apache.derby.jdbc.EmbeddedDriver").newInstance();
+      Class.forName(getDriverClassName()).newInstance();
     }
     catch (Exception ex) {
       throw new RuntimeException(ex);
     }
 
-    String connUrl = "jdbc:derby:memory:MALHAR_TEMP;create=true";
+    String connUrl = getConnectionUrl();
     PreparedStatement st;
+    batchedRows = new int[inputSchemas.size()];
 
     try {
       db = DriverManager.getConnection(connUrl);
@@ -82,8 +171,9 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
           columnNames += entry.getKey();
           insertQuestionMarks += "?";
           entry.getValue().bindIndex = ++j;
+          entry.getValue().sqlType = getSqlType(entry.getValue().type);
         }
-        String createTempTableStmt = "DECLARE GLOBAL TEMPORARY TABLE SESSION." + inputSchema.name + "(" + columnSpec + ") NOT LOGGED";
+        String createTempTableStmt = getCreateTableStatement(inputSchema.name, columnSpec);
         st = db.prepareStatement(createTempTableStmt);
         st.execute();
         st.close();
@@ -120,26 +210,114 @@ public class DerbySqlStreamOperator extends AbstractSqlStreamOperator
 
     PreparedStatement insertStatement = insertStatements.get(tableNum);
     try {
-      for (Map.Entry<String, Object> entry: tuple.entrySet()) {
-        ColumnInfo t = inputSchema.columnInfoMap.get(entry.getKey());
-        if (t != null && t.bindIndex != 0) {
-          //System.out.println("Binding: "+entry.getValue().toString()+" to "+t.bindIndex);
-          insertStatement.setString(t.bindIndex, entry.getValue().toString());
+      for (Map.Entry<String, ColumnInfo> entry: inputSchema.columnInfoMap.entrySet()) {
+        ColumnInfo t = entry.getValue();
+        if (t.bindIndex != 0) {
+          bind(insertStatement, t, tuple.get(entry.getKey()));
         }
       }
 
-      insertStatement.executeUpdate();
+      insertStatement.addBatch();
       insertStatement.clearParameters();
+      if (++batchedRows[tableNum] >= batchSize) {
+        executeBatch(tableNum);
+      }
     }
     catch (SQLException ex) {
       throw new RuntimeException(ex);
     }
   }
 
+  /**
+   * Binds the value with the setter of the SQL type of the column. Values which are not of the java type of the column
+   * are bound as strings and converted by the database, missing values are bound as NULL.
+   */
+  protected void bind(PreparedStatement statement, ColumnInfo column, Object value) throws SQLException
+  {
+    if (value == null) {
+      statement.setNull(column.bindIndex, column.sqlType);
+      return;
+    }
+    switch (column.sqlType) {
+      case Types.SMALLINT:
+      case Types.INTEGER:
+        if (value instanceof Number) {
+          statement.setInt(column.bindIndex, ((Number)value).intValue());
+          return;
+        }
+        break;
+      case Types.BIGINT:
+        if (value instanceof Number) {
+          statement.setLong(column.bindIndex, ((Number)value).longValue());
+          return;
+        }
+        break;
+      case Types.REAL:
+        if (value instanceof Number) {
+          statement.setFloat(column.bindIndex, ((Number)value).floatValue());
+          return;
+        }
+        break;
+      case Types.DOUBLE:
+        if (value instanceof Number) {
+          statement.setDouble(column.bindIndex, ((Number)value).doubleValue());
+          return;
+        }
+        break;
+      case Types.DECIMAL:
+        if (value instanceof BigDecimal) {
+          statement.setBigDecimal(column.bindIndex, (BigDecimal)value);
+          return;
+        }
+        break;
+      case Types.BOOLEAN:
+        if (value instanceof Boolean) {
+          statement.setBoolean(column.bindIndex, (Boolean)value);
+          return;
+        }
+        break;
+      case Types.DATE:
+        if (value instanceof java.util.Date) {
+          statement.setDate(column.bindIndex, new Date(((java.util.Date)value).getTime()));
+          return;
+        }
+        break;
+      case Types.TIME:
+        if (value instanceof java.util.Date) {
+          statement.setTime(column.bindIndex, new Time(((java.util.Date)value).getTime()));
+          return;
+        }
+        break;
+      case Types.TIMESTAMP:
+        if (value instanceof java.util.Date) {
+          statement.setTimestamp(column.bindIndex, new Timestamp(((java.util.Date)value).getTime()));
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    statement.setString(column.bindIndex, value.toString());
+  }
+
+  /**
+   * Inserts the rows which are batched for the table.
+   */
+  protected void executeBatch(int tableNum) throws SQLException
+  {
+    if (batchedRows[tableNum] > 0) {
+      insertStatements.get(tableNum).executeBatch();
+      batchedRows[tableNum] = 0;
+    }
+  }
+
   @Override
   public void endWindow()
   {
     try {
+      for (int i = 0; i < insertStatements.size(); i++) {
+        executeBatch(i);
+      }
       db.commit();
       if (bindings != null) {
         for (int i = 0; i < bindings.size(); i++) {
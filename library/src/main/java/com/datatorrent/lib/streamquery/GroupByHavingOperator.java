@@ -16,7 +16,10 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -24,7 +27,9 @@ import javax.validation.constraints.NotNull;
 import com.datatorrent.api.BaseOperator;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
-import com.datatorrent.api.annotation.OperatorAnnotation;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.Partitioner;
 import com.datatorrent.lib.streamquery.condition.Condition;
 import com.datatorrent.lib.streamquery.condition.HavingCondition;
 import com.datatorrent.lib.streamquery.function.FunctionIndex;
@@ -37,9 +42,15 @@ import com.datatorrent.lib.streamquery.index.ColumnIndex;
  * If having condition is specified for aggregate index(s), it must also be
  * satisfied by row. HashMap of column name(s) and aggregate alias is emitted on
  * output port. <br>
+ * Each arriving row updates the accumulators of its group, so only one
+ * accumulator per group and aggregate is held over the window. Having
+ * conditions which can only be checked on the rows of a group keep the rows
+ * of the group. <br>
  * <br>
  * <b>StateFull : Yes,</b> Operator aggregates input over application window. <br>
- * <b>Partitions : No, </b> will yield wrong result(s). <br>
+ * <b>Partitions : Yes, </b> rows are partitioned by their hash, partitions
+ * emit the accumulators of their groups and the unifier merges them and
+ * checks the having conditions. <br>
  * <br>
  * <b>Ports</b>:<br>
  * <b> inport : </b> Input hash map(row) port, expects
@@ -56,9 +67,12 @@ import com.datatorrent.lib.streamquery.index.ColumnIndex;
  *
  * @since 0.3.4
  */
-@OperatorAnnotation(partitionable = false)
-public class GroupByHavingOperator extends BaseOperator
+public class GroupByHavingOperator extends BaseOperator implements Unifier<Map<String, Object>>, Partitioner<GroupByHavingOperator>
 {
+  /**
+   * Key of the accumulators in the partial aggregate rows.
+   */
+  public static final String PARTIAL_AGGREGATES = "__partialAggregates";
 
   /**
    * aggregate indexes.
@@ -81,9 +95,15 @@ public class GroupByHavingOperator extends BaseOperator
   private ArrayList<HavingCondition> havingConditions = new ArrayList<HavingCondition>();
 
   /**
-   * Table rows.
+   * Emit accumulators of the groups for the unifier, set when the operator is
+   * partitioned.
+   */
+  private boolean partialAggregation;
+
+  /**
+   * Groups of the current window.
    */
-  private ArrayList<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+  private transient HashMap<Object, Group> groups = new HashMap<Object, Group>();
 
   public void addAggregateIndex(@NotNull FunctionIndex index)
   {
@@ -108,6 +128,16 @@ public class GroupByHavingOperator extends BaseOperator
     this.condition = condition;
   }
 
+  /**
+   * @return whether the accumulators of the groups are emitted for the
+   *         unifier of the output port, which is when the operator is
+   *         partitioned.
+   */
+  public boolean isPartialAggregation()
+  {
+    return partialAggregation;
+  }
+
   /**
    * Input port.
    */
@@ -119,59 +149,124 @@ public class GroupByHavingOperator extends BaseOperator
     {
       if ((condition != null) && (!condition.isValidRow(tuple)))
         return;
-      rows.add(tuple);
+      if (columnGroupIndexes.size() == 0)
+        return;
+
+      List<Object> key = new ArrayList<Object>(columnGroupIndexes.size());
+      for (ColumnIndex index : columnGroupIndexes) {
+        key.add(tuple.get(index.getColumn()));
+      }
+      Group group = groups.get(key);
+      if (group == null) {
+        Map<String, Object> columns = new HashMap<String, Object>();
+        for (ColumnIndex index : columnGroupIndexes) {
+          index.filter(tuple, columns);
+        }
+        group = new Group(columns);
+        groups.put(key, group);
+      }
+      for (int i = 0; i < aggregates.size(); i++) {
+        aggregates.get(i).accumulate(group.accumulators[i], tuple);
+      }
+      for (int i = 0; i < havingConditions.size(); i++) {
+        havingIndex(i).accumulate(group.accumulators[aggregates.size() + i], tuple);
+      }
     }
   };
 
   /**
    * Output port.
    */
-  public final transient DefaultOutputPort<Map<String, Object>> outport = new DefaultOutputPort<Map<String, Object>>();
+  public final transient DefaultOutputPort<Map<String, Object>> outport = new DefaultOutputPort<Map<String, Object>>()
+  {
+    @Override
+    public Unifier<Map<String, Object>> getUnifier()
+    {
+      if (!partialAggregation) {
+        return super.getUnifier();
+      }
+      GroupByHavingOperator unifier = new GroupByHavingOperator();
+      unifier.aggregates = aggregates;
+      unifier.columnGroupIndexes = columnGroupIndexes;
+      unifier.havingConditions = havingConditions;
+      return unifier;
+    }
+  };
 
   /**
-   * Create aggregate at end window.
+   * Partitions the rows by their hash. The partitions emit partial aggregates
+   * when there is more than one of them.
    */
   @Override
-  public void endWindow()
+  public Collection<Partition<GroupByHavingOperator>> definePartitions(Collection<Partition<GroupByHavingOperator>> partitions, int incrementalCapacity)
   {
-    // group names
-    if (columnGroupIndexes.size() == 0) {
-      rows = new ArrayList<Map<String, Object>>();
-      return;
+    int count = Math.max(1, partitions.size() + incrementalCapacity);
+    if (incrementalCapacity == 0) {
+      for (Partition<GroupByHavingOperator> partition : partitions) {
+        partition.getPartitionedInstance().partialAggregation = count > 1;
+      }
+      return partitions;
     }
 
-    // group rows
-    HashMap<MultiKeyCompare, ArrayList<Map<String, Object>>> groups = new HashMap<MultiKeyCompare, ArrayList<Map<String, Object>>>();
-    for (Map<String, Object> row : rows) {
-      MultiKeyCompare key = new MultiKeyCompare();
-      for (ColumnIndex index : columnGroupIndexes) {
-        key.addCompareKey(row.get(index.getColumn()));
-      }
-      ArrayList<Map<String, Object>> subRows;
-      if (groups.containsKey(key)) {
-        subRows = groups.get(key);
-      } else {
-        subRows = new ArrayList<Map<String, Object>>();
-        groups.put(key, subRows);
-      }
-      subRows.add(row);
+    GroupByHavingOperator prototype = partitions.iterator().next().getPartitionedInstance();
+    prototype.partialAggregation = count > 1;
+    List<Partition<GroupByHavingOperator>> newPartitions = new ArrayList<Partition<GroupByHavingOperator>>(count);
+    for (int i = 0; i < count; i++) {
+      newPartitions.add(new DefaultPartition<GroupByHavingOperator>(prototype));
     }
+    DefaultPartition.assignPartitionKeys(Collections.unmodifiableCollection(newPartitions), inport);
+    return newPartitions;
+  }
 
+  @Override
+  public void partitioned(Map<Integer, Partition<GroupByHavingOperator>> partitions)
+  {
+  }
+
+  /**
+   * Merge partial aggregate row of a partition.
+   */
+  @Override
+  public void process(Map<String, Object> tuple)
+  {
+    Object[] accumulators = (Object[])tuple.get(PARTIAL_AGGREGATES);
+    Map<String, Object> columns = new HashMap<String, Object>(tuple);
+    columns.remove(PARTIAL_AGGREGATES);
+    Group group = groups.get(columns);
+    if (group == null) {
+      group = new Group(columns);
+      groups.put(columns, group);
+    }
+    for (int i = 0; i < aggregates.size(); i++) {
+      aggregates.get(i).merge(group.accumulators[i], accumulators[i]);
+    }
+    for (int i = 0; i < havingConditions.size(); i++) {
+      havingIndex(i).merge(group.accumulators[aggregates.size() + i], accumulators[aggregates.size() + i]);
+    }
+  }
+
+  /**
+   * Create aggregate at end window.
+   */
+  @Override
+  public void endWindow()
+  {
     // Iterate over groups and emit aggregate values
-    for (Map.Entry<MultiKeyCompare, ArrayList<Map<String, Object>>> entry : groups
-        .entrySet()) {
-      ArrayList<Map<String, Object>> subRows = entry.getValue();
+    for (Group group : groups.values()) {
+      if (partialAggregation) {
+        Map<String, Object> result = new HashMap<String, Object>(group.columns);
+        result.put(PARTIAL_AGGREGATES, group.accumulators);
+        outport.emit(result);
+        continue;
+      }
 
       // get result
-      Map<String, Object> result = new HashMap<String, Object>();
-      for (ColumnIndex index : columnGroupIndexes) {
-        index.filter(subRows.get(0), result);
-      }
+      Map<String, Object> result = new HashMap<String, Object>(group.columns);
 
       // append aggregate values
-      for (FunctionIndex aggregate : aggregates) {
+      for (int i = 0; i < aggregates.size(); i++) {
         try {
-          aggregate.filter(subRows, result);
+          aggregates.get(i).filterResult(group.accumulators[i], result);
         } catch (Exception e) {
           e.printStackTrace();
         }
@@ -179,11 +274,18 @@ public class GroupByHavingOperator extends BaseOperator
 
       // check valid having aggregate
       boolean isValidHaving = true;
-      for (HavingCondition condition : havingConditions) {
+      for (int i = 0; i < havingConditions.size(); i++) {
+        HavingCondition condition = havingConditions.get(i);
+        Object accumulator = group.accumulators[aggregates.size() + i];
         try {
-          isValidHaving &= condition.isValidAggregate(subRows);
+          if (condition.isResultCondition()) {
+            isValidHaving &= condition.isValidResult(condition.getAggregateIndex().getResult(accumulator));
+          } else {
+            isValidHaving &= condition.isValidAggregate(rows(accumulator));
+          }
         } catch (Exception e) {
           e.printStackTrace();
+          groups.clear();
           return;
         }
       }
@@ -191,61 +293,62 @@ public class GroupByHavingOperator extends BaseOperator
         outport.emit(result);
     }
 
-    rows = new ArrayList<Map<String, Object>>();
+    groups.clear();
   }
 
   /**
-   * multi key compare class.
+   * Accumulates the values which are checked by having condition i, the rows
+   * of the group if the condition cannot be checked on the value alone.
    */
-  @SuppressWarnings("rawtypes")
-  private class MultiKeyCompare implements Comparable
+  private FunctionIndex havingIndex(int i)
   {
+    HavingCondition condition = havingConditions.get(i);
+    return condition.isResultCondition() ? condition.getAggregateIndex() : ROWS;
+  }
 
-    /**
-     * compare keys.
-     */
-    ArrayList<Object> compareKeys = new ArrayList<Object>();
+  @SuppressWarnings("unchecked")
+  private static ArrayList<Map<String, Object>> rows(Object accumulator)
+  {
+    return (ArrayList<Map<String, Object>>)accumulator;
+  }
 
+  /**
+   * Collects the rows of a group with the default accumulator of {@link FunctionIndex}.
+   */
+  private static final FunctionIndex ROWS = new FunctionIndex(null, null)
+  {
     @Override
-    public boolean equals(Object other)
+    public Object compute(ArrayList<Map<String, Object>> rows)
     {
-      if (other instanceof MultiKeyCompare)
-        if (compareKeys.size() != ((MultiKeyCompare) other).compareKeys.size()) {
-          return false;
-        }
-      for (int i = 0; i < compareKeys.size(); i++) {
-        if (!(compareKeys.get(i).equals(((MultiKeyCompare) other).compareKeys
-            .get(i)))) {
-          return false;
-        }
-      }
-      return true;
+      return rows;
     }
 
     @Override
-    public int hashCode()
+    protected String aggregateName()
     {
-      int hashCode = 0;
-      for (int i = 0; i < compareKeys.size(); i++) {
-        hashCode += compareKeys.get(i).hashCode();
-      }
-      return hashCode;
+      return null;
     }
+  };
 
-    @Override
-    public int compareTo(Object other)
-    {
-      if (this.equals(other))
-        return 0;
-      return -1;
-    }
+  /**
+   * Group by column values and accumulators of the aggregates and having
+   * conditions.
+   */
+  private class Group
+  {
+    final Map<String, Object> columns;
+    final Object[] accumulators;
 
-    /**
-     * Add compare key.
-     */
-    public void addCompareKey(Object value)
+    Group(Map<String, Object> columns)
     {
-      compareKeys.add(value);
+      this.columns = columns;
+      accumulators = new Object[aggregates.size() + havingConditions.size()];
+      for (int i = 0; i < aggregates.size(); i++) {
+        accumulators[i] = aggregates.get(i).createAccumulator();
+      }
+      for (int i = 0; i < havingConditions.size(); i++) {
+        accumulators[aggregates.size() + i] = havingIndex(i).createAccumulator();
+      }
     }
   }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import com.datatorrent.api.annotation.ShipContainingJars;
+
+/**
+ * Embedded in-memory HSQLDB sql input operator.
+ * <p>
+ * Same as {@link DerbySqlStreamOperator} except that the temporary tables are session tables of an in-memory HSQLDB
+ * database. The statements refer to the input tables as SESSION.name.
+ * </p>
+ */
+@ShipContainingJars(classes = {org.hsqldb.jdbc.JDBCDriver.class})
+public class HsqldbSqlStreamOperator extends DerbySqlStreamOperator
+{
+  @Override
+  protected String getDriverClassName()
+  {
+    return "org.hsqldb.jdbc.JDBCDriver";
+  }
+
+  @Override
+  protected String getConnectionUrl()
+  {
+    return "jdbc:hsqldb:mem:MALHAR_TEMP";
+  }
+
+  @Override
+  protected String getCreateTableStatement(String tableName, String columnSpec)
+  {
+    return "DECLARE LOCAL TEMPORARY TABLE " + tableName + "(" + columnSpec + ") ON COMMIT PRESERVE ROWS";
+  }
+
+}
@@ -19,20 +19,26 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Operator;
 import com.datatorrent.api.annotation.OperatorAnnotation;
 import com.datatorrent.lib.streamquery.condition.Condition;
+import com.datatorrent.lib.streamquery.condition.JoinColumnEqualCondition;
 import com.datatorrent.lib.streamquery.index.Index;
+import com.datatorrent.lib.streamquery.schema.ColumnProjection;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
 
 /**
  * This operator reads table row data from 2 table data input ports. <br>
  * Operator joins row on given condition and selected names, emits
  * joined result at output port.
  *  <br>
- *  <b>StateFull : Yes,</b> Operator aggregates input over application window. <br>
+ *  <b>StateFull : Yes,</b> Operator aggregates input over windowCount application windows. <br>
  *  <b>Partitions : No, </b> will yield wrong result(s). <br>
  *  <br>
  *  <b>Ports : </b> <br>
@@ -44,6 +50,14 @@ import com.datatorrent.lib.streamquery.index.Index;
  *  <b> joinCondition : </b> Join condition for table rows. <br>
  *  <b> table1Columns : </b> Columns to be selected from table1. <br>
  *  <b> table2Columns : </b> Columns to be selected from table2. <br>
+ *  <b> windowCount : </b> No. of windows whose rows are joined, rows expire after it. Default is 1. <br>
+ *  <b> maxRowsInMemory : </b> Max no. of rows of each table held in memory, older windows are spilled to disk after it. <br>
+ *  <b> spillDirectory : </b> Directory of the spilled rows. Default is the temporary directory. <br>
+ *  <br>
+ *  When the join condition is a {@link JoinColumnEqualCondition}, rows of each table are indexed by their join column
+ *  and an arriving row is only compared with the rows of the other table which have the same value. <br>
+ *  When both joined rows are {@link TypedRow} and the selections are columns, the joined row is a typed row whose
+ *  slots are copied from them. <br>
  *  <br>
  *
  * @since 0.3.3
@@ -69,28 +83,65 @@ public class InnerJoinOperator  implements Operator
   /**
    * Collect data rows from input port 1.
    */
-	protected ArrayList<Map<String, Object>> table1;
+	protected JoinTable table1 = new JoinTable();
 	
 	
 	/**
 	 * Collect data from input port 2. 
 	 */
-	protected ArrayList<Map<String, Object>> table2;
+	protected JoinTable table2 = new JoinTable();
+
+  /**
+   * No. of windows whose rows are joined.
+   */
+  @Min(1)
+  private int windowCount = 1;
+
+  /**
+   * Max no. of rows of each table which are held in memory; 0 for no limit.
+   */
+  @Min(0)
+  private int maxRowsInMemory;
+
+  /**
+   * Directory of the files to which rows are spilled.
+   */
+  private String spillDirectory;
+
+  /**
+   * Join columns of table1 and table2 when the join condition is a column equality.
+   */
+  private transient String joinColumn1;
+  private transient String joinColumn2;
+
+  /**
+   * Projection of joined {@link TypedRow} rows of the bound schemas.
+   */
+  private transient RowSchema boundSchema1;
+  private transient RowSchema boundSchema2;
+  private transient ColumnProjection projection;
 	
   /**
    * Input port 1.
    */
 	public final transient DefaultInputPort<Map<String, Object>> inport1 = new DefaultInputPort<Map<String, Object>>() {
 		@Override
-		public void process(Map<String, Object> tuple)
+		public void process(final Map<String, Object> tuple)
 		{
-      table1.add(tuple);
-      for (int j = 0; j < table2.size(); j++) {
-        if ((joinCondition == null)
-            || (joinCondition.isValidJoin(tuple, table2.get(j)))) {
-          joinRows(tuple, table2.get(j));
+      boolean matched = table2.probe(joinColumn1 == null ? null : tuple.get(joinColumn1), new JoinTable.RowVisitor()
+      {
+        @Override
+        public boolean visit(Map<String, Object> row)
+        {
+          if ((joinCondition == null) || (joinCondition.isValidJoin(tuple, row))) {
+            joinRows(tuple, row);
+            return true;
+          }
+          return false;
         }
-      }
+
+      });
+      table1.add(tuple, matched);
 		}
 	};
 	
@@ -99,15 +150,22 @@ public class InnerJoinOperator  implements Operator
 	 */
 	public final transient DefaultInputPort<Map<String, Object>> inport2 = new DefaultInputPort<Map<String, Object>>() {
 		@Override
-		public void process(Map<String, Object> tuple)
+		public void process(final Map<String, Object> tuple)
 		{
-	    table2.add(tuple);
-      for (int j = 0; j < table1.size(); j++) {
-        if ((joinCondition == null)
-            || (joinCondition.isValidJoin(table1.get(j), tuple))) {
-          joinRows(table1.get(j), tuple);
+      boolean matched = table1.probe(joinColumn2 == null ? null : tuple.get(joinColumn2), new JoinTable.RowVisitor()
+      {
+        @Override
+        public boolean visit(Map<String, Object> row)
+        {
+          if ((joinCondition == null) || (joinCondition.isValidJoin(row, tuple))) {
+            joinRows(row, tuple);
+            return true;
+          }
+          return false;
         }
-      }
+
+      });
+      table2.add(tuple, matched);
 		}
 	};
 	
@@ -120,23 +178,39 @@ public class InnerJoinOperator  implements Operator
 	@Override
   public void setup(OperatorContext arg0)
   { 
+    joinColumn1 = null;
+    joinColumn2 = null;
+    if (joinCondition instanceof JoinColumnEqualCondition) {
+      joinColumn1 = ((JoinColumnEqualCondition) joinCondition).getColumn1();
+      joinColumn2 = ((JoinColumnEqualCondition) joinCondition).getColumn2();
+    }
+    table1.setKeyColumn(joinColumn1);
+    table2.setKeyColumn(joinColumn2);
+    table1.setMaxRowsInMemory(maxRowsInMemory);
+    table2.setMaxRowsInMemory(maxRowsInMemory);
+    table1.setSpillDirectory(spillDirectory);
+    table2.setSpillDirectory(spillDirectory);
   }
 
 	@Override
   public void teardown()
   { 
+    table1.teardown();
+    table2.teardown();
   }
 
 	@Override
   public void beginWindow(long arg0)
   { 
-		table1 = new ArrayList<Map<String, Object>>();
-		table2 = new ArrayList<Map<String, Object>>();
+    table1.beginWindow();
+    table2.beginWindow();
   }
 
 	@Override
   public void endWindow()
   {
+    table1.expire(windowCount, null);
+    table2.expire(windowCount, null);
   }
 
 	/**
@@ -160,6 +234,8 @@ public class InnerJoinOperator  implements Operator
    */
   public void selectTable1Column(Index column) {
   	table1Columns.add(column);
+    boundSchema1 = null;
+    projection = null;
   }
   
   /**
@@ -167,13 +243,79 @@ public class InnerJoinOperator  implements Operator
    */
   public void selectTable2Column(Index column) {
     table2Columns.add(column);
+    boundSchema2 = null;
+    projection = null;
   }
   
+  /**
+   * @return no. of windows whose rows are joined.
+   */
+  public int getWindowCount()
+  {
+    return windowCount;
+  }
+
+  /**
+   * Sets the no. of windows whose rows are joined. Rows expire after this many windows; default is 1.
+   */
+  public void setWindowCount(int windowCount)
+  {
+    this.windowCount = windowCount;
+  }
+
+  /**
+   * @return max no. of rows of each table which are held in memory.
+   */
+  public int getMaxRowsInMemory()
+  {
+    return maxRowsInMemory;
+  }
+
+  /**
+   * Sets the max no. of rows of each table which are held in memory. When there are more, the rows of the older
+   * windows are spilled to disk; 0 for no limit.
+   */
+  public void setMaxRowsInMemory(int maxRowsInMemory)
+  {
+    this.maxRowsInMemory = maxRowsInMemory;
+  }
+
+  /**
+   * @return directory of the files to which rows are spilled.
+   */
+  public String getSpillDirectory()
+  {
+    return spillDirectory;
+  }
+
+  /**
+   * Sets the directory of the files to which rows are spilled; default is the temporary directory.
+   */
+  public void setSpillDirectory(String spillDirectory)
+  {
+    this.spillDirectory = spillDirectory;
+  }
+
   /**
    * Join row from table1 and table2.
    */
   protected void joinRows(Map<String, Object> row1, Map<String, Object> row2)
   {
+    // copy typed columns slot by slot
+    if (row1 instanceof TypedRow && row2 instanceof TypedRow) {
+      TypedRow typedRow1 = (TypedRow) row1;
+      TypedRow typedRow2 = (TypedRow) row2;
+      if (!typedRow1.getSchema().equals(boundSchema1) || !typedRow2.getSchema().equals(boundSchema2)) {
+        boundSchema1 = typedRow1.getSchema();
+        boundSchema2 = typedRow2.getSchema();
+        projection = ColumnProjection.compile(table1Columns, boundSchema1, table2Columns, boundSchema2);
+      }
+      if (projection != null) {
+        outport.emit(projection.project(typedRow1, typedRow2));
+        return;
+      }
+    }
+
     // joined row 
     Map<String, Object> join = new HashMap<String, Object>();
     
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Rows of one side of a stream join grouped by the window in which they arrived.<br/>
+ * When a key column is set, the rows of every window are indexed by the value of that column and a probe only visits
+ * the rows which have the probed value. Otherwise a probe visits all the rows.<br/>
+ * When more than maxRowsInMemory rows are held in memory, the rows of the oldest windows except the current one are
+ * spilled to a file in the spill directory. Only the index and the file offsets of the spilled rows stay in memory and
+ * the rows are read back when a probe visits them.<br/>
+ * The rows, including the spilled ones, and whether they were matched are part of the checkpointed state.
+ * </p>
+ */
+public class JoinTable implements KryoSerializable
+{
+  /**
+   * Visits the rows of a table.
+   */
+  public interface RowVisitor
+  {
+    /**
+     * @param row row of the table.
+     * @return true if the row matched.
+     */
+    boolean visit(Map<String, Object> row);
+
+  }
+
+  private static class WindowRows
+  {
+    /* null when the rows are spilled */
+    List<Map<String, Object>> rows = Lists.newArrayList();
+    final BitSet matched = new BitSet();
+    /* value of the key column -> positions of the rows */
+    Map<Object, List<Integer>> index;
+    int size;
+    File file;
+    RandomAccessFile spill;
+    long[] offsets;
+  }
+
+  private LinkedList<WindowRows> windows = Lists.newLinkedList();
+  private String keyColumn;
+  private int maxRowsInMemory;
+  private String spillDirectory;
+  private int rowsInMemory;
+  private int rowsSpilled;
+  private transient Kryo kryo;
+  private transient Output buffer;
+
+  /**
+   * Sets the column whose values index the rows; null to not index them.
+   */
+  public void setKeyColumn(String keyColumn)
+  {
+    this.keyColumn = keyColumn;
+    for (WindowRows window : windows) {
+      window.index = null;
+      if (keyColumn != null) {
+        window.index = Maps.newHashMap();
+        for (int i = 0; i < window.size; i++) {
+          index(window, getRow(window, i), i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the max no. of rows which are held in memory; 0 to never spill rows.
+   */
+  public void setMaxRowsInMemory(int maxRowsInMemory)
+  {
+    this.maxRowsInMemory = maxRowsInMemory;
+  }
+
+  /**
+   * Sets the directory of the files to which rows are spilled; null for the default temporary directory.
+   */
+  public void setSpillDirectory(String spillDirectory)
+  {
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Starts a window whose rows are added to the table.
+   */
+  public void beginWindow()
+  {
+    WindowRows window = new WindowRows();
+    if (keyColumn != null) {
+      window.index = Maps.newHashMap();
+    }
+    windows.add(window);
+  }
+
+  /**
+   * Adds a row to the current window.
+   *
+   * @param row row to add.
+   * @param matched whether the row already matched a row of the other side.
+   */
+  public void add(Map<String, Object> row, boolean matched)
+  {
+    WindowRows window = windows.getLast();
+    window.rows.add(row);
+    if (matched) {
+      window.matched.set(window.size);
+    }
+    index(window, row, window.size);
+    window.size++;
+    rowsInMemory++;
+    if (maxRowsInMemory > 0 && rowsInMemory > maxRowsInMemory) {
+      spillOldWindows();
+    }
+  }
+
+  /**
+   * Visits the rows whose key column has the given value or all the rows when the table is not indexed. The rows for
+   * which the visitor returns true are marked as matched.
+   *
+   * @param key value of the key column; ignored when the table is not indexed.
+   * @param visitor visitor of the rows.
+   * @return true if any row matched.
+   */
+  public boolean probe(Object key, RowVisitor visitor)
+  {
+    if (keyColumn != null && key == null) {
+      return false;
+    }
+    boolean matched = false;
+    for (WindowRows window : windows) {
+      if (keyColumn != null) {
+        List<Integer> positions = window.index.get(key);
+        if (positions != null) {
+          for (int position : positions) {
+            matched |= visit(window, position, visitor);
+          }
+        }
+      }
+      else {
+        for (int i = 0; i < window.size; i++) {
+          matched |= visit(window, i, visitor);
+        }
+      }
+    }
+    return matched;
+  }
+
+  /**
+   * Removes the windows which are older than the last windowCount - 1 windows so that the next window starts a range
+   * of windowCount windows.
+   *
+   * @param windowCount no. of windows whose rows are joined.
+   * @param unmatchedVisitor visitor of the removed rows which never matched; can be null.
+   */
+  public void expire(int windowCount, RowVisitor unmatchedVisitor)
+  {
+    while (windows.size() > windowCount - 1) {
+      WindowRows window = windows.removeFirst();
+      if (unmatchedVisitor != null) {
+        for (int i = window.matched.nextClearBit(0); i < window.size; i = window.matched.nextClearBit(i + 1)) {
+          unmatchedVisitor.visit(getRow(window, i));
+        }
+      }
+      if (window.rows != null) {
+        rowsInMemory -= window.size;
+      }
+      else {
+        rowsSpilled -= window.size;
+        deleteSpill(window);
+      }
+    }
+  }
+
+  /**
+   * @return no. of rows in the table.
+   */
+  public int size()
+  {
+    return rowsInMemory + rowsSpilled;
+  }
+
+  /**
+   * @return no. of rows which are spilled to files.
+   */
+  public int getRowsSpilled()
+  {
+    return rowsSpilled;
+  }
+
+  /**
+   * Deletes the files of the spilled rows. The rows cannot be read anymore.
+   */
+  public void teardown()
+  {
+    for (WindowRows window : windows) {
+      deleteSpill(window);
+    }
+  }
+
+  private void index(WindowRows window, Map<String, Object> row, int position)
+  {
+    if (window.index != null) {
+      Object key = row.get(keyColumn);
+      if (key != null) {
+        List<Integer> positions = window.index.get(key);
+        if (positions == null) {
+          positions = Lists.newArrayListWithCapacity(1);
+          window.index.put(key, positions);
+        }
+        positions.add(position);
+      }
+    }
+  }
+
+  private boolean visit(WindowRows window, int position, RowVisitor visitor)
+  {
+    if (visitor.visit(getRow(window, position))) {
+      window.matched.set(position);
+      return true;
+    }
+    return false;
+  }
+
+  private Map<String, Object> getRow(WindowRows window, int position)
+  {
+    if (window.rows != null) {
+      return window.rows.get(position);
+    }
+    try {
+      window.spill.seek(window.offsets[position]);
+      byte[] bytes = new byte[window.spill.readInt()];
+      window.spill.readFully(bytes);
+      @SuppressWarnings("unchecked")
+      Map<String, Object> row = (Map<String, Object>) getKryo().readClassAndObject(new Input(bytes));
+      return row;
+    }
+    catch (IOException ex) {
+      throw new RuntimeException("Failed to read a spilled row from " + window.file, ex);
+    }
+  }
+
+  private void spillOldWindows()
+  {
+    Iterator<WindowRows> iterator = windows.iterator();
+    /* the current window is not spilled since rows are still added to it */
+    for (int i = windows.size() - 1; i > 0 && rowsInMemory > maxRowsInMemory; i--) {
+      WindowRows window = iterator.next();
+      if (window.rows != null) {
+        spill(window);
+      }
+    }
+  }
+
+  private void spill(WindowRows window)
+  {
+    try {
+      File directory = spillDirectory == null ? null : new File(spillDirectory);
+      window.file = File.createTempFile("join", ".rows", directory);
+      window.spill = new RandomAccessFile(window.file, "rw");
+      window.offsets = new long[window.size];
+      Kryo kryo = getKryo();
+      for (int i = 0; i < window.size; i++) {
+        window.offsets[i] = window.spill.getFilePointer();
+        buffer.clear();
+        kryo.writeClassAndObject(buffer, window.rows.get(i));
+        window.spill.writeInt(buffer.position());
+        window.spill.write(buffer.getBuffer(), 0, buffer.position());
+      }
+    }
+    catch (IOException ex) {
+      deleteSpill(window);
+      throw new RuntimeException("Failed to spill rows to " + window.file, ex);
+    }
+    logger.debug("spilled {} rows to {}", window.size, window.file);
+    window.rows = null;
+    rowsInMemory -= window.size;
+    rowsSpilled += window.size;
+  }
+
+  private void deleteSpill(WindowRows window)
+  {
+    if (window.spill != null) {
+      try {
+        window.spill.close();
+      }
+      catch (IOException ex) {
+        logger.warn("closing {}", window.file, ex);
+      }
+      window.spill = null;
+    }
+    if (window.file != null && !window.file.delete()) {
+      logger.warn("could not delete {}", window.file);
+    }
+    window.file = null;
+  }
+
+  private Kryo getKryo()
+  {
+    if (kryo == null) {
+      kryo = new Kryo();
+      buffer = new Output(4096, -1);
+    }
+    return kryo;
+  }
+
+  /**
+   * Writes all the rows of the table. The spilled rows are read back from their files.
+   */
+  @Override
+  public void write(Kryo kryo, Output output)
+  {
+    output.writeInt(windows.size(), true);
+    for (WindowRows window : windows) {
+      output.writeInt(window.size, true);
+      for (int i = 0; i < window.size; i++) {
+        kryo.writeClassAndObject(output, getRow(window, i));
+        output.writeBoolean(window.matched.get(i));
+      }
+    }
+  }
+
+  /**
+   * Reads the rows of the table into memory. They are spilled again when rows are added and the index is built when
+   * the key column is set.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public void read(Kryo kryo, Input input)
+  {
+    windows = Lists.newLinkedList();
+    rowsInMemory = 0;
+    rowsSpilled = 0;
+    for (int count = input.readInt(true); count-- > 0;) {
+      WindowRows window = new WindowRows();
+      window.size = input.readInt(true);
+      for (int i = 0; i < window.size; i++) {
+        window.rows.add((Map<String, Object>) kryo.readClassAndObject(input));
+        if (input.readBoolean()) {
+          window.matched.set(i);
+        }
+      }
+      rowsInMemory += window.size;
+      windows.add(window);
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(JoinTable.class);
+}
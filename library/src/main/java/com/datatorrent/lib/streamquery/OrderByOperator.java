@@ -18,6 +18,8 @@ package com.datatorrent.lib.streamquery;
 import java.util.ArrayList;
 import java.util.Map;
 
+import javax.validation.constraints.Min;
+
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Context.OperatorContext;
@@ -38,7 +40,10 @@ import com.datatorrent.api.Operator.Unifier;
  * <b> outport : </b> Output hash map(row) port, emits  HashMap&lt;String,Object&gt;<br>
  * <br>
  * <b> Properties : </b> <br>
- * <b> oredrByRules : </b>List of order by rules for tuples.
+ * <b> oredrByRules : </b>List of order by rules for tuples. <br>
+ * <b> limit : </b>No. of first rows emitted, only these rows are kept in a heap. <br>
+ * <b> maxRowsInMemory : </b>Without limit, sorted runs of this many rows are spilled to disk and merged. <br>
+ * <b> spillDirectory : </b>Directory of the spilled runs. <br>
  *
  * @since 0.3.5
  */
@@ -54,10 +59,27 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
 	 */
 	private boolean isDescending;
 	
+	/**
+	 * No. of first rows emitted, 0 for all.
+	 */
+	@Min(0)
+	private int limit;
+
+	/**
+	 * Max no. of rows held in memory without limit, 0 for no spill.
+	 */
+	@Min(0)
+	private int maxRowsInMemory;
+
+	/**
+	 * Directory of spilled sorted runs.
+	 */
+	private String spillDirectory;
+
 	/**
 	 * collected rows.
 	 */
-	private ArrayList<Map<String, Object>> rows;
+	private transient RowSorter rows;
 
 	/**
 	 * Add order by rule.
@@ -89,37 +111,79 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
 	  rows.add(tuple);
   }
 
+  /**
+   * @return no. of first rows emitted.
+   */
+  public int getLimit()
+  {
+    return limit;
+  }
+
+  /**
+   * @param set limit, no. of first rows emitted per window, 0 for all.
+   */
+  public void setLimit(int limit)
+  {
+    this.limit = limit;
+  }
+
+  /**
+   * @return max no. of rows held in memory.
+   */
+  public int getMaxRowsInMemory()
+  {
+    return maxRowsInMemory;
+  }
+
+  /**
+   * @param set maxRowsInMemory, rows are spilled to sorted runs on disk
+   * after it when there is no limit, 0 for no spill.
+   */
+  public void setMaxRowsInMemory(int maxRowsInMemory)
+  {
+    this.maxRowsInMemory = maxRowsInMemory;
+  }
+
+  /**
+   * @return directory of spilled sorted runs.
+   */
+  public String getSpillDirectory()
+  {
+    return spillDirectory;
+  }
+
+  /**
+   * @param set spillDirectory, default is the temporary directory.
+   */
+  public void setSpillDirectory(String spillDirectory)
+  {
+    this.spillDirectory = spillDirectory;
+  }
+
   @Override
   public void beginWindow(long arg0)
   {
-    rows = new ArrayList<Map<String, Object>>();
   }
 
   @Override
   public void endWindow()
   {
-    for (int i=0; i < oredrByRules.size(); i++) {
-      rows = oredrByRules.get(i).sort(rows);
-    }
-    if (isDescending) {
-      for (int i=0; i < rows.size(); i++)  outport.emit(rows.get(i));
-    } else {
-      for (int i=rows.size()-1; i >= 0;  i--)  outport.emit(rows.get(i));
-    }
+    rows.emit(outport);
   }
 
   @Override
   public void setup(OperatorContext arg0)
   {
-    // TODO Auto-generated method stub
-    
+    // isDescending emits rows in ascending order of the rules
+    rows = new RowSorter(oredrByRules, isDescending, limit, maxRowsInMemory, spillDirectory);
   }
 
   @Override
   public void teardown()
   {
-    // TODO Auto-generated method stub
-    
+    if (rows != null) {
+      rows.clear();
+    }
   }
   
   /**
@@ -145,6 +209,9 @@ public class OrderByOperator implements Operator, Unifier<Map<String, Object>>
              unifier.addOrderByRule(oredrByRules.get(i));
            }
            unifier.setDescending(isDescending);
+           unifier.setLimit(limit);
+           unifier.setMaxRowsInMemory(maxRowsInMemory);
+           unifier.setSpillDirectory(spillDirectory);
            return unifier;
          }
       };
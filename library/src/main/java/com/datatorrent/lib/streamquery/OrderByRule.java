@@ -72,6 +72,23 @@ public class OrderByRule<T extends Comparable>
     return result;
   }
 
+  /**
+   * @return true if row has a value to be ordered by.
+   */
+  public boolean hasValue(Map<String, Object> row)
+  {
+    return row.get(columnName) != null;
+  }
+
+  /**
+   * Compare rows by column value, rows must have a value.
+   */
+  @SuppressWarnings("unchecked")
+  public int compare(Map<String, Object> row1, Map<String, Object> row2)
+  {
+    return ((T) row1.get(columnName)).compareTo(row2.get(columnName));
+  }
+
   /**
    * @return the columnName
    */
@@ -15,11 +15,14 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.util.Map;
+
 /**
  * This operator provides sql left/right/full outer join metric semantic on
  * live stream. <br>
  * Please refer to {@link com.datatorrent.lib.streamquery.InnerJoinOperator} for
- * details.
+ * details. Rows of a table which did not match any row of the other table are
+ * emitted when they expire. <br>
  *
  * <b> Properties : </b> <br>
  * <b> isLeftJoin : </b> Left join flag. <br>
@@ -33,66 +36,34 @@ public class OuterJoinOperator extends InnerJoinOperator
   private boolean isLeftJoin = true;
   private boolean isFullJoin = false;
 
+  /**
+   * Emits the rows which expire without having matched a row of the other table.
+   */
   @Override
   public void endWindow()
   {
-    // full outer join
-    if (isFullJoin) {
-      for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
-          joinRows(table1.get(i), null);
-        }
-      }
-      for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
-          joinRows(null, table2.get(i));
-        }
+    boolean left = isFullJoin || isLeftJoin;
+    boolean right = isFullJoin || !isLeftJoin;
+    table1.expire(getWindowCount(), !left ? null : new JoinTable.RowVisitor()
+    {
+      @Override
+      public boolean visit(Map<String, Object> row)
+      {
+        joinRows(row, null);
+        return true;
       }
-      return;
-    }
 
-    // left or right join
-    if (isLeftJoin) {
-      for (int i = 0; i < table1.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table2.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(i), table2.get(j)))) {
-            merged = true;
-          }
-        }
-        if (!merged) {
-          joinRows(table1.get(i), null);
-        }
+    });
+    table2.expire(getWindowCount(), !right ? null : new JoinTable.RowVisitor()
+    {
+      @Override
+      public boolean visit(Map<String, Object> row)
+      {
+        joinRows(null, row);
+        return true;
       }
-    } else {
-      for (int i = 0; i < table2.size(); i++) {
-        boolean merged = false;
-        for (int j = 0; j < table1.size(); j++) {
-          if ((joinCondition == null)
-              || (joinCondition.isValidJoin(table1.get(j), table2.get(i)))) {
-            merged = true;
-          }
-        }
-        if (!merged) { // only output non merged rows
-          joinRows(null, table2.get(i));
-        }
-      }
-    }
+
+    });
   }
 
   public void setLeftJoin()
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.DefaultOutputPort;
+
+/**
+ * <p>
+ * Sorts the rows of a window with one comparator over all the order by rules.<br/>
+ * Rows which are equal by the rules keep their arrival order. With a limit only the first limit rows are kept in a
+ * heap whose head is the last kept row. Without a limit, rows are buffered and when there are more than
+ * maxRowsInMemory rows, the buffer is sorted and spilled as a run to a file which is merged with the other runs when
+ * the rows are emitted.
+ * </p>
+ */
+class RowSorter
+{
+  private static class SequencedRow
+  {
+    final Map<String, Object> row;
+    final long sequence;
+
+    SequencedRow(Map<String, Object> row, long sequence)
+    {
+      this.row = row;
+      this.sequence = sequence;
+    }
+
+  }
+
+  private static class Run
+  {
+    final File file;
+    final int size;
+    Input input;
+    int read;
+    SequencedRow current;
+
+    Run(File file, int size)
+    {
+      this.file = file;
+      this.size = size;
+    }
+
+  }
+
+  private final List<OrderByRule<?>> rules;
+  private final boolean ascending;
+  private final int limit;
+  private final int maxRowsInMemory;
+  private final String spillDirectory;
+  private final Comparator<SequencedRow> order = new Comparator<SequencedRow>()
+  {
+    @Override
+    public int compare(SequencedRow row1, SequencedRow row2)
+    {
+      for (int i = rules.size() - 1; i >= 0; i--) {
+        int result = rules.get(i).compare(row1.row, row2.row);
+        if (result != 0) {
+          return ascending ? result : -result;
+        }
+      }
+      int result = row1.sequence < row2.sequence ? -1 : (row1.sequence == row2.sequence ? 0 : 1);
+      return ascending ? result : -result;
+    }
+
+  };
+  private final PriorityQueue<SequencedRow> heap;
+  private final ArrayList<SequencedRow> buffer = Lists.newArrayList();
+  private final ArrayList<Run> runs = Lists.newArrayList();
+  private long sequence;
+  private Kryo kryo;
+
+  /**
+   * @param rules order by rules, the last rule is the most significant one.
+   * @param ascending whether rows are emitted in ascending order of the rules.
+   * @param limit no. of first rows which are emitted, 0 for all.
+   * @param maxRowsInMemory no. of rows after which sorted runs are spilled when there is no limit, 0 to never spill.
+   * @param spillDirectory directory of the runs, null for the temporary directory.
+   */
+  RowSorter(List<OrderByRule<?>> rules, boolean ascending, int limit, int maxRowsInMemory, String spillDirectory)
+  {
+    this.rules = rules;
+    this.ascending = ascending;
+    this.limit = limit;
+    this.maxRowsInMemory = maxRowsInMemory;
+    this.spillDirectory = spillDirectory;
+    heap = limit > 0 ? new PriorityQueue<SequencedRow>(limit + 1, Collections.reverseOrder(order)) : null;
+  }
+
+  /**
+   * Adds the row if it has values for all the rules.
+   */
+  void add(Map<String, Object> row)
+  {
+    for (OrderByRule<?> rule : rules) {
+      if (!rule.hasValue(row)) {
+        return;
+      }
+    }
+    SequencedRow sequencedRow = new SequencedRow(row, sequence++);
+    if (heap != null) {
+      if (heap.size() < limit) {
+        heap.add(sequencedRow);
+      }
+      else if (order.compare(sequencedRow, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(sequencedRow);
+      }
+      return;
+    }
+    buffer.add(sequencedRow);
+    if (maxRowsInMemory > 0 && buffer.size() >= maxRowsInMemory) {
+      spill();
+    }
+  }
+
+  /**
+   * Emits the sorted rows and removes them.
+   */
+  void emit(DefaultOutputPort<Map<String, Object>> port)
+  {
+    if (heap != null) {
+      buffer.addAll(heap);
+      heap.clear();
+    }
+    Collections.sort(buffer, order);
+    try {
+      if (runs.isEmpty()) {
+        for (SequencedRow row : buffer) {
+          port.emit(row.row);
+        }
+      }
+      else {
+        merge(port);
+      }
+    }
+    finally {
+      clear();
+    }
+  }
+
+  /**
+   * Removes the rows and deletes the runs.
+   */
+  void clear()
+  {
+    buffer.clear();
+    if (heap != null) {
+      heap.clear();
+    }
+    for (Run run : runs) {
+      if (run.input != null) {
+        run.input.close();
+      }
+      if (!run.file.delete()) {
+        logger.warn("could not delete {}", run.file);
+      }
+    }
+    runs.clear();
+    sequence = 0;
+  }
+
+  private void spill()
+  {
+    Collections.sort(buffer, order);
+    File file = null;
+    Output output = null;
+    try {
+      file = File.createTempFile("orderby", ".run", spillDirectory == null ? null : new File(spillDirectory));
+      output = new Output(new FileOutputStream(file));
+      for (SequencedRow row : buffer) {
+        output.writeLong(row.sequence);
+        getKryo().writeClassAndObject(output, row.row);
+      }
+      output.close();
+      output = null;
+    }
+    catch (IOException ex) {
+      if (file != null && !file.delete()) {
+        logger.warn("could not delete {}", file);
+      }
+      throw new RuntimeException("Failed to spill rows", ex);
+    }
+    finally {
+      if (output != null) {
+        output.close();
+      }
+    }
+    logger.debug("spilled {} rows to {}", buffer.size(), file);
+    runs.add(new Run(file, buffer.size()));
+    buffer.clear();
+  }
+
+  private void merge(DefaultOutputPort<Map<String, Object>> port)
+  {
+    final Comparator<Run> runOrder = new Comparator<Run>()
+    {
+      @Override
+      public int compare(Run run1, Run run2)
+      {
+        return order.compare(run1.current, run2.current);
+      }
+
+    };
+    PriorityQueue<Run> queue = new PriorityQueue<Run>(runs.size() + 1, runOrder);
+    for (Run run : runs) {
+      try {
+        run.input = new Input(new FileInputStream(run.file));
+      }
+      catch (IOException ex) {
+        throw new RuntimeException("Failed to read " + run.file, ex);
+      }
+      if (next(run)) {
+        queue.add(run);
+      }
+    }
+    Iterator<SequencedRow> memory = buffer.iterator();
+    SequencedRow memoryRow = memory.hasNext() ? memory.next() : null;
+    while (!queue.isEmpty() || memoryRow != null) {
+      Run run = queue.peek();
+      if (run == null || (memoryRow != null && order.compare(memoryRow, run.current) < 0)) {
+        port.emit(memoryRow.row);
+        memoryRow = memory.hasNext() ? memory.next() : null;
+      }
+      else {
+        queue.poll();
+        port.emit(run.current.row);
+        if (next(run)) {
+          queue.add(run);
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private boolean next(Run run)
+  {
+    if (run.read == run.size) {
+      run.current = null;
+      return false;
+    }
+    long rowSequence = run.input.readLong();
+    run.current = new SequencedRow((Map<String, Object>) getKryo().readClassAndObject(run.input), rowSequence);
+    run.read++;
+    return true;
+  }
+
+  private Kryo getKryo()
+  {
+    if (kryo == null) {
+      kryo = new Kryo();
+    }
+    return kryo;
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(RowSorter.class);
+}
@@ -24,6 +24,12 @@ import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.lib.streamquery.condition.Condition;
 import com.datatorrent.lib.streamquery.index.Index;
+import com.datatorrent.lib.streamquery.schema.ColumnProjection;
+import com.datatorrent.lib.streamquery.schema.RowBatch;
+import com.datatorrent.lib.streamquery.schema.RowPredicate;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.SchemaRow;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
 
 /**
  * This operator provides sql select query semantic on live data stream. <br>
@@ -35,6 +41,8 @@ import com.datatorrent.lib.streamquery.index.Index;
  * <b>Ports</b>:<br>
  * <b> inport : </b> Input hash map(row) port, expects
  * HashMap&lt;String,Object&gt;<<br>
+ * <b> batchInport : </b> Input port for columnar row batches, expects
+ * RowBatch<br>
  * <b> outport : </b> Output hash map(row) port, emits
  * HashMap&lt;String,Object&gt;<br>
  * <br>
@@ -42,6 +50,10 @@ import com.datatorrent.lib.streamquery.index.Index;
  * <b> condition : </b> Select condition for selecting rows. <br>
  * <b> columns : </b> Column names/aggregate functions for select. <br>
  * <br>
+ * Rows which are {@link TypedRow} are checked by the condition compiled for
+ * their schema and column selections are copied slot by slot to a
+ * {@link SchemaRow}. <br>
+ * <br>
  *
  * @since 0.3.3
  */
@@ -64,6 +76,7 @@ public class SelectOperator extends BaseOperator
   public void addIndex(Index index)
   {
     indexes.add(index);
+    boundSchema = null;
   }
 
   /**
@@ -72,10 +85,23 @@ public class SelectOperator extends BaseOperator
   public void setCondition(Condition condition)
   {
     this.condition = condition;
+    boundSchema = null;
   }
 
   /**
-   * Input port.
+   * Schema the condition and indexes are bound to.
+   */
+  private transient RowSchema boundSchema;
+  private transient RowPredicate predicate;
+
+  /**
+   * Projection of the schema when all indexes are columns.
+   */
+  private transient ColumnProjection projection;
+
+  /**
+   * Input port, rows which are {@link TypedRow} are validated by the
+   * condition compiled for their schema.
    */
   public final transient DefaultInputPort<Map<String, Object>> inport = new DefaultInputPort<Map<String, Object>>()
   {
@@ -83,6 +109,14 @@ public class SelectOperator extends BaseOperator
     @Override
     public void process(Map<String, Object> tuple)
     {
+      if (tuple instanceof TypedRow) {
+        TypedRow row = (TypedRow)tuple;
+        bind(row.getSchema());
+        if ((predicate != null) && (!predicate.isValid(row)))
+          return;
+        emitSelected(row, row);
+        return;
+      }
       if ((condition != null) && (!condition.isValidRow(tuple)))
         return;
       if (indexes.size() == 0) {
@@ -97,6 +131,58 @@ public class SelectOperator extends BaseOperator
     }
   };
 
+  /**
+   * Input port for columnar batches of rows, rows are read in place and
+   * copied only when selected.
+   */
+  public final transient DefaultInputPort<RowBatch> batchInport = new DefaultInputPort<RowBatch>()
+  {
+
+    @Override
+    public void process(RowBatch tuple)
+    {
+      bind(tuple.getSchema());
+      RowBatch.Cursor cursor = tuple.cursor();
+      for (int i = 0; i < tuple.size(); i++) {
+        cursor.moveTo(i);
+        if ((predicate != null) && (!predicate.isValid(cursor)))
+          continue;
+        emitSelected(cursor, indexes.size() == 0 ? tuple.getRow(i) : cursor);
+      }
+    }
+  };
+
+  /**
+   * Compile condition and column indexes for the schema.
+   */
+  private void bind(RowSchema schema)
+  {
+    if (schema == boundSchema || schema.equals(boundSchema)) {
+      boundSchema = schema;
+      return;
+    }
+    boundSchema = schema;
+    predicate = condition == null ? null : condition.compile(schema);
+    projection = ColumnProjection.compile(indexes, schema);
+  }
+
+  private void emitSelected(TypedRow row, Map<String, Object> unchanged)
+  {
+    if (indexes.size() == 0) {
+      outport.emit(unchanged);
+      return;
+    }
+    if (projection != null) {
+      outport.emit(projection.project(row));
+      return;
+    }
+    Map<String, Object> result = new HashMap<String, Object>();
+    for (int i = 0; i < indexes.size(); i++) {
+      indexes.get(i).filter(row, result);
+    }
+    outport.emit(result);
+  }
+
   /**
    * Output port.
    */
@@ -41,7 +41,10 @@ public class SelectTopOperator implements Operator
     @Override
     public void process(Map<String, Object> tuple)
     {
-      list.add(tuple);
+      // only the first topValue rows are emitted
+      if (isPercentage || (list.size() < topValue)) {
+        list.add(tuple);
+      }
     }
   };
   
@@ -19,6 +19,11 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.schema.RowPredicate;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.RowSchema.ColumnType;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 /**
  * This class validates row. Given column name value must be between given left/right range. <br>
  * <br>
@@ -87,4 +92,48 @@ public class BetweenCondition  extends Condition
     return false;
   }
 
+
+  /**
+   * Compare primitive columns with the unboxed range when the range values have the
+   * type of the column.
+   */
+  @Override
+  public RowPredicate compile(RowSchema schema)
+  {
+    final int ordinal = schema.getOrdinal(column);
+    if (ordinal < 0) {
+      return super.compile(schema);
+    }
+    ColumnType type = schema.getType(ordinal);
+    if (type == ColumnType.DOUBLE && leftValue instanceof Double && rightValue instanceof Double) {
+      final double left = (Double)leftValue;
+      final double right = (Double)rightValue;
+      return new RowPredicate()
+      {
+        @Override
+        public boolean isValid(TypedRow row)
+        {
+          if (!row.isSet(ordinal)) return false;
+          double value = row.getDouble(ordinal);
+          return Double.compare(value, left) >= 0 && Double.compare(value, right) <= 0;
+        }
+      };
+    }
+    if ((type == ColumnType.INTEGER && leftValue instanceof Integer && rightValue instanceof Integer)
+        || (type == ColumnType.LONG && leftValue instanceof Long && rightValue instanceof Long)) {
+      final long left = ((Number)leftValue).longValue();
+      final long right = ((Number)rightValue).longValue();
+      return new RowPredicate()
+      {
+        @Override
+        public boolean isValid(TypedRow row)
+        {
+          if (!row.isSet(ordinal)) return false;
+          long value = row.getLong(ordinal);
+          return value >= left && value <= right;
+        }
+      };
+    }
+    return super.compile(schema);
+  }
 }
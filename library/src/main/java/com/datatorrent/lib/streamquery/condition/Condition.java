@@ -19,6 +19,10 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.schema.RowPredicate;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 /**
  * Abstract select condition for selecting/filtering rows.
  *
@@ -36,4 +40,21 @@ abstract public class Condition
    * Filter valid rows only.
    */
   public abstract boolean isValidJoin(@NotNull Map<String, Object> row1, Map<String, Object> row2);
+
+  /**
+   * Bind condition to the column ordinals of the schema. Sub classes override this to read
+   * the typed slots of the rows, the default predicate validates the rows as maps.
+   * @return predicate for rows of the schema.
+   */
+  public RowPredicate compile(@NotNull RowSchema schema)
+  {
+    return new RowPredicate()
+    {
+      @Override
+      public boolean isValid(TypedRow row)
+      {
+        return isValidRow(row);
+      }
+    };
+  }
 }
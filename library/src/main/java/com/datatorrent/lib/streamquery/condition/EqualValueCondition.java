@@ -18,6 +18,11 @@ package com.datatorrent.lib.streamquery.condition;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.datatorrent.lib.streamquery.schema.RowPredicate;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.RowSchema.ColumnType;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 
 /**
  * Class to implement column equal condition.
@@ -82,4 +87,65 @@ public class EqualValueCondition extends Condition
   {
     return false;
   }
+
+  /**
+   * Compare primitive columns with the unboxed values, other columns with equals.
+   */
+  @Override
+  public RowPredicate compile(RowSchema schema)
+  {
+    if (equalMap.containsValue(null)) {
+      return super.compile(schema);
+    }
+    final int[] ordinals = new int[equalMap.size()];
+    final boolean[] primitive = new boolean[equalMap.size()];
+    final long[] raws = new long[equalMap.size()];
+    final Object[] values = new Object[equalMap.size()];
+    int i = 0;
+    for (Map.Entry<String, Object> entry : equalMap.entrySet()) {
+      ordinals[i] = schema.getOrdinal(entry.getKey());
+      if (ordinals[i] < 0) {
+        return FALSE;
+      }
+      ColumnType type = schema.getType(ordinals[i]);
+      Object value = entry.getValue();
+      if ((type == ColumnType.INTEGER && value instanceof Integer) || (type == ColumnType.LONG && value instanceof Long)) {
+        primitive[i] = true;
+        raws[i] = ((Number)value).longValue();
+      } else if (type == ColumnType.DOUBLE && value instanceof Double) {
+        primitive[i] = true;
+        raws[i] = Double.doubleToLongBits((Double)value);
+      }
+      values[i++] = value;
+    }
+    return new RowPredicate()
+    {
+      @Override
+      public boolean isValid(TypedRow row)
+      {
+        for (int i = 0; i < ordinals.length; i++) {
+          if (!row.isSet(ordinals[i]))
+            return false;
+          if (primitive[i]) {
+            if (row.getSchema().getType(ordinals[i]) == ColumnType.DOUBLE) {
+              if (Double.doubleToLongBits(row.getDouble(ordinals[i])) != raws[i])
+                return false;
+            } else if (row.getLong(ordinals[i]) != raws[i])
+              return false;
+          } else if (!values[i].equals(row.getValue(ordinals[i])))
+            return false;
+        }
+        return true;
+      }
+    };
+  }
+
+  private static final RowPredicate FALSE = new RowPredicate()
+  {
+    @Override
+    public boolean isValid(TypedRow row)
+    {
+      return false;
+    }
+  };
 }
@@ -68,4 +68,17 @@ public class HavingCompareValue<T extends Comparable>   extends HavingCondition
       return (compareType == compareValue.compareTo(computed));
   }
 
+  @Override
+  public boolean isResultCondition()
+  {
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean isValidResult(Object result) throws Exception
+  {
+    return (compareType == compareValue.compareTo(result));
+  }
+
 }
@@ -45,4 +45,29 @@ public abstract class HavingCondition
    *  Check if aggregate is valid.
    */
   abstract public boolean isValidAggregate(@NotNull ArrayList<Map<String, Object>> rows) throws Exception;
+
+  /**
+   * @return aggregate index to be validated.
+   */
+  public FunctionIndex getAggregateIndex()
+  {
+    return aggregateIndex;
+  }
+
+  /**
+   * Check if condition can be validated by {@link #isValidResult(Object)} from the aggregate value only, which lets
+   * the group by operator aggregate rows incrementally.
+   */
+  public boolean isResultCondition()
+  {
+    return false;
+  }
+
+  /**
+   * Check if aggregate value computed by the aggregate index is valid.
+   */
+  public boolean isValidResult(Object result) throws Exception
+  {
+    throw new UnsupportedOperationException("condition needs the rows of the group");
+  }
 }
@@ -43,11 +43,32 @@ public class JoinColumnEqualCondition  extends Condition
   @NotNull
   private String column2;
   
+  private JoinColumnEqualCondition()
+  {
+    //for kryo
+  }
+
   public JoinColumnEqualCondition(@NotNull String column1,@NotNull String column2) {
     this.column1 = column1;
     this.column2 = column2;
   }
   
+  /**
+   * @return column of the first row.
+   */
+  public String getColumn1()
+  {
+    return column1;
+  }
+
+  /**
+   * @return column of the second row.
+   */
+  public String getColumn2()
+  {
+    return column2;
+  }
+
   /**
    * Must never be called.
    */
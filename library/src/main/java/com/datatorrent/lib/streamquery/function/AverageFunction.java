@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 /**
  * Class implements aggregate function semantic for select function  statement. <br>
  *   e.g : sql => SELECT AVG(column_name) FROM table_name. <br>
@@ -57,6 +59,46 @@ public class AverageFunction  extends FunctionIndex
     return sum/rows.size();
   }
 
+  /**
+   * Sum and count of the values.
+   */
+  @Override
+  public Object createAccumulator()
+  {
+    return new double[2];
+  }
+
+  @Override
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    double[] sumCount = (double[])accumulator;
+    int ordinal = primitiveOrdinal(row);
+    if (ordinal >= 0) {
+      sumCount[0] += ((TypedRow)row).getDouble(ordinal);
+    } else {
+      Object value = row.get(column);
+      if (value != null) {
+        sumCount[0] += ((Number)value).doubleValue();
+      }
+    }
+    sumCount[1]++;
+  }
+
+  @Override
+  public void merge(Object accumulator, Object other)
+  {
+    ((double[])accumulator)[0] += ((double[])other)[0];
+    ((double[])accumulator)[1] += ((double[])other)[1];
+  }
+
+  @Override
+  public Object getResult(Object accumulator)
+  {
+    double[] sumCount = (double[])accumulator;
+    if (sumCount[1] == 0) return 0.0;
+    return sumCount[0]/sumCount[1];
+  }
+
   /**
    * Get aggregate name.
    * @return name.
@@ -58,6 +58,32 @@ public class CountFunction extends FunctionIndex
     return count;
   }
 
+  @Override
+  public Object createAccumulator()
+  {
+    return new long[1];
+  }
+
+  @Override
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    if (column.equals("*") || (row.get(column) != null)) ((long[])accumulator)[0]++;
+  }
+
+  @Override
+  public void merge(Object accumulator, Object other)
+  {
+    ((long[])accumulator)[0] += ((long[])other)[0];
+  }
+
+  @Override
+  public Object getResult(Object accumulator)
+  {
+    long count = ((long[])accumulator)[0];
+    if (column.equals("*")) return (int)count;
+    return count;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
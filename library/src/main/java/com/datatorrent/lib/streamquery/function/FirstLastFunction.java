@@ -70,6 +70,38 @@ public class FirstLastFunction extends FunctionIndex
     return null;
   }
 
+  /**
+   * First/last non null value. Merged accumulators keep the value of the first/last merged one.
+   */
+  @Override
+  public Object createAccumulator()
+  {
+    return new Object[1];
+  }
+
+  @Override
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    update((Object[])accumulator, row.get(column));
+  }
+
+  @Override
+  public void merge(Object accumulator, Object other)
+  {
+    update((Object[])accumulator, ((Object[])other)[0]);
+  }
+
+  @Override
+  public Object getResult(Object accumulator)
+  {
+    return ((Object[])accumulator)[0];
+  }
+
+  private void update(Object[] firstLast, Object value)
+  {
+    if ((value != null) && (!isFirst || (firstLast[0] == null))) firstLast[0] = value;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
@@ -20,6 +20,9 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 /**
  * Abstract class for select aggregate function implementation.
  * <br>
@@ -41,6 +44,12 @@ abstract public class FunctionIndex
    * Alias name.
    */
   protected String alias;
+
+  /**
+   * Schema of the last typed row and ordinal of the column in it.
+   */
+  private transient RowSchema boundSchema;
+  private transient int boundOrdinal;
   
   /**
    * @param column Column name for aggregation.
@@ -72,9 +81,84 @@ abstract public class FunctionIndex
   public void filter(ArrayList<Map<String, Object>> rows, Map<String, Object> collect) throws Exception
   {
     if (rows == null) return;
+    collect.put(outputName(), compute(rows));
+  }
+
+  /**
+   * Create the state of the aggregate of a group which is updated by {@link #accumulate(Object, Map)} as rows arrive.
+   * By default it is the list of the rows and the aggregate is computed from it by {@link #compute(ArrayList)},
+   * functions which can be computed incrementally override this with a smaller state.
+   * @return empty accumulator.
+   */
+  public Object createAccumulator()
+  {
+    return new ArrayList<Map<String, Object>>();
+  }
+
+  /**
+   * Add a row to the accumulator of a group.
+   * @param accumulator Accumulator created by {@link #createAccumulator()}.
+   * @param row Row of the group.
+   */
+  @SuppressWarnings("unchecked")
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    ((ArrayList<Map<String, Object>>) accumulator).add(row);
+  }
+
+  /**
+   * Add the rows of the accumulator other to accumulator, used to merge the partial aggregates of partitions.
+   * @param accumulator Accumulator which is updated.
+   * @param other Accumulator of the same group.
+   */
+  @SuppressWarnings("unchecked")
+  public void merge(Object accumulator, Object other)
+  {
+    ((ArrayList<Map<String, Object>>) accumulator).addAll((ArrayList<Map<String, Object>>) other);
+  }
+
+  /**
+   * Get aggregate value of an accumulator.
+   * @param accumulator Accumulator of a group.
+   * @return aggregate result object.
+   */
+  @SuppressWarnings("unchecked")
+  public Object getResult(Object accumulator) throws Exception
+  {
+    return compute((ArrayList<Map<String, Object>>) accumulator);
+  }
+
+  /**
+   * Store aggregate value of an accumulator in collect by output value name.
+   * @param accumulator Accumulator of a group.
+   */
+  public void filterResult(Object accumulator, Map<String, Object> collect) throws Exception
+  {
+    collect.put(outputName(), getResult(accumulator));
+  }
+
+  /**
+   * Get ordinal of the column if row is a {@link TypedRow} with a value in the primitive column,
+   * which is read without boxing.
+   * @return ordinal of the column, -1 for other rows.
+   */
+  protected int primitiveOrdinal(Map<String, Object> row)
+  {
+    if (!(row instanceof TypedRow)) return -1;
+    TypedRow typedRow = (TypedRow)row;
+    if (typedRow.getSchema() != boundSchema) {
+      boundSchema = typedRow.getSchema();
+      boundOrdinal = boundSchema.getOrdinal(column);
+      if ((boundOrdinal >= 0) && !boundSchema.isPrimitive(boundOrdinal)) boundOrdinal = -1;
+    }
+    return ((boundOrdinal >= 0) && typedRow.isSet(boundOrdinal)) ? boundOrdinal : -1;
+  }
+
+  private String outputName()
+  {
     String name = column;
     if (alias != null) name = alias;
     if (name == null) name = aggregateName();
-    collect.put(name, compute(rows));
+    return name;
   }
 }
@@ -22,6 +22,8 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.lang.StringUtils;
 
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 /**
  * Class implements sql max/min function semantic for select function  statement. <br>
  *   e.g : sql => SELECT MAX/MIN(column_name) FROM table_name. <br>
@@ -66,6 +68,46 @@ public class MaxMinFunction extends FunctionIndex
     return minMax;
   }
 
+  /**
+   * Max/min starts at 0 like {@link #compute(ArrayList)}.
+   */
+  @Override
+  public Object createAccumulator()
+  {
+    return new double[1];
+  }
+
+  @Override
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    int ordinal = primitiveOrdinal(row);
+    if (ordinal >= 0) {
+      update((double[])accumulator, ((TypedRow)row).getDouble(ordinal));
+    } else {
+      Object value = row.get(column);
+      if (value != null) {
+        update((double[])accumulator, ((Number)value).doubleValue());
+      }
+    }
+  }
+
+  @Override
+  public void merge(Object accumulator, Object other)
+  {
+    update((double[])accumulator, ((double[])other)[0]);
+  }
+
+  @Override
+  public Object getResult(Object accumulator)
+  {
+    return ((double[])accumulator)[0];
+  }
+
+  private void update(double[] minMax, double value)
+  {
+    if ((isMax && (minMax[0] < value))||(!isMax && (minMax[0] > value))) minMax[0] = value;
+  }
+
   /**
    * Aggregate output name.
    * @return name string.
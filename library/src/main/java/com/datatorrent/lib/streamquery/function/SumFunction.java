@@ -5,6 +5,8 @@ import java.util.Map;
 
 import javax.validation.constraints.NotNull;
 
+import com.datatorrent.lib.streamquery.schema.TypedRow;
+
 
 
 /**
@@ -30,6 +32,38 @@ public class SumFunction extends FunctionIndex
     return result;
   }
 
+  @Override
+  public Object createAccumulator()
+  {
+    return new double[1];
+  }
+
+  @Override
+  public void accumulate(Object accumulator, Map<String, Object> row)
+  {
+    int ordinal = primitiveOrdinal(row);
+    if (ordinal >= 0) {
+      ((double[])accumulator)[0] += ((TypedRow)row).getDouble(ordinal);
+    } else {
+      Object value = row.get(column);
+      if (value != null) {
+        ((double[])accumulator)[0] += ((Number)value).doubleValue();
+      }
+    }
+  }
+
+  @Override
+  public void merge(Object accumulator, Object other)
+  {
+    ((double[])accumulator)[0] += ((double[])other)[0];
+  }
+
+  @Override
+  public Object getResult(Object accumulator)
+  {
+    return ((double[])accumulator)[0];
+  }
+
   @Override
   protected String aggregateName()
   {
@@ -51,6 +51,11 @@ public class ColumnIndex implements Index
     collect.put(name, row.get(name));
   }
 
+  public String getAlias()
+  {
+    return alias;
+  }
+
   public String getColumn()
   {
     return column;
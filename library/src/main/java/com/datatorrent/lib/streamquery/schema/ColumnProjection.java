@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+import java.util.List;
+
+import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.streamquery.index.Index;
+
+/**
+ * Column indexes bound to the ordinals of the schemas of one or two rows. <br>
+ * The selected columns are copied slot by slot to a {@link SchemaRow} of the result schema, in the order of the
+ * indexes. <br>
+ */
+public class ColumnProjection
+{
+  private final RowSchema schema = new RowSchema();
+  private final int[] ordinals;
+  private final int count1;
+
+  private ColumnProjection(int count1, int count2)
+  {
+    this.count1 = count1;
+    ordinals = new int[count1 + count2];
+  }
+
+  /**
+   * @return projection of the rows of the schema, null if an index is not a column of the schema.
+   */
+  public static ColumnProjection compile(List<? extends Index> indexes, RowSchema schema)
+  {
+    ColumnProjection projection = new ColumnProjection(indexes.size(), 0);
+    return projection.bind(indexes, schema, 0) ? projection : null;
+  }
+
+  /**
+   * @return projection of pairs of rows of the schemas, null if an index is not a column of its schema or the same
+   *         column is selected from both rows.
+   */
+  public static ColumnProjection compile(List<? extends Index> indexes1, RowSchema schema1, List<? extends Index> indexes2, RowSchema schema2)
+  {
+    ColumnProjection projection = new ColumnProjection(indexes1.size(), indexes2.size());
+    return projection.bind(indexes1, schema1, 0) && projection.bind(indexes2, schema2, indexes1.size()) ? projection : null;
+  }
+
+  private boolean bind(List<? extends Index> indexes, RowSchema source, int offset)
+  {
+    for (int i = 0; i < indexes.size(); i++) {
+      if (!(indexes.get(i) instanceof ColumnIndex)) {
+        return false;
+      }
+      ColumnIndex index = (ColumnIndex) indexes.get(i);
+      /* same name as ColumnIndex.filter */
+      String name = index.getAlias() != null ? index.getAlias() : index.getColumn();
+      int ordinal = source.getOrdinal(name);
+      if (ordinal < 0 || schema.getOrdinal(name) >= 0) {
+        return false;
+      }
+      ordinals[offset + i] = ordinal;
+      schema.addColumn(name, source.getType(ordinal));
+    }
+    return true;
+  }
+
+  /**
+   * @return schema of the projected rows.
+   */
+  public RowSchema getSchema()
+  {
+    return schema;
+  }
+
+  public SchemaRow project(TypedRow row)
+  {
+    return project(row, null);
+  }
+
+  public SchemaRow project(TypedRow row1, TypedRow row2)
+  {
+    SchemaRow result = new SchemaRow(schema);
+    for (int i = 0; i < count1; i++) {
+      result.copy(i, row1, ordinals[i]);
+    }
+    for (int i = count1; i < ordinals.length; i++) {
+      result.copy(i, row2, ordinals[i]);
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Batch of rows of a schema held by column. <br>
+ * Every primitive column is a long array and every OBJECT column an object array, indexed by the position of the row
+ * in the batch. A {@link Cursor} reads the rows in place. <br>
+ */
+public class RowBatch
+{
+  private RowSchema schema;
+  private int size;
+  private long[][] values;
+  private Object[][] objects;
+  private BitSet[] set;
+
+  private RowBatch()
+  {
+    //for kryo
+  }
+
+  /**
+   * @param schema Schema of the rows.
+   * @param capacity Initial no. of rows.
+   */
+  public RowBatch(@NotNull RowSchema schema, int capacity)
+  {
+    this.schema = schema;
+    values = new long[schema.size()][];
+    objects = new Object[schema.size()][];
+    set = new BitSet[schema.size()];
+    for (int i = 0; i < schema.size(); i++) {
+      if (schema.isPrimitive(i)) {
+        values[i] = new long[capacity];
+      }
+      else {
+        objects[i] = new Object[capacity];
+      }
+      set[i] = new BitSet(capacity);
+    }
+  }
+
+  public RowSchema getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * @return no. of rows in the batch.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Add row, the values of columns which are not in the schema are ignored.
+   */
+  public void add(Map<String, Object> row)
+  {
+    ensureCapacity(size + 1);
+    if (row instanceof TypedRow && ((TypedRow) row).getSchema().equals(schema)) {
+      TypedRow typedRow = (TypedRow) row;
+      for (int i = 0; i < schema.size(); i++) {
+        if (typedRow.isSet(i)) {
+          if (schema.isPrimitive(i)) {
+            values[i][size] = typedRow.getRaw(i);
+          }
+          else {
+            objects[i][size] = typedRow.getObject(i);
+          }
+          set[i].set(size);
+        }
+      }
+    }
+    else {
+      for (int i = 0; i < schema.size(); i++) {
+        Object value = row.get(schema.getName(i));
+        if (value != null) {
+          if (schema.isPrimitive(i)) {
+            values[i][size] = TypedRow.toRaw(schema.getType(i), value);
+          }
+          else {
+            objects[i][size] = value;
+          }
+          set[i].set(size);
+        }
+      }
+    }
+    size++;
+  }
+
+  /**
+   * @return copy of the row at the position.
+   */
+  public SchemaRow getRow(int position)
+  {
+    Cursor cursor = cursor();
+    cursor.moveTo(position);
+    SchemaRow row = new SchemaRow(schema);
+    for (int i = 0; i < schema.size(); i++) {
+      row.copy(i, cursor, i);
+    }
+    return row;
+  }
+
+  /**
+   * @return cursor at the first row.
+   */
+  public Cursor cursor()
+  {
+    return new Cursor();
+  }
+
+  /**
+   * Remove all the rows, the capacity is kept.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < schema.size(); i++) {
+      if (objects[i] != null) {
+        Arrays.fill(objects[i], 0, size, null);
+      }
+      set[i].clear();
+    }
+    size = 0;
+  }
+
+  private void ensureCapacity(int capacity)
+  {
+    for (int i = 0; i < schema.size(); i++) {
+      if (values[i] != null && values[i].length < capacity) {
+        values[i] = Arrays.copyOf(values[i], Math.max(capacity, values[i].length * 2));
+      }
+      if (objects[i] != null && objects[i].length < capacity) {
+        objects[i] = Arrays.copyOf(objects[i], Math.max(capacity, objects[i].length * 2));
+      }
+    }
+  }
+
+  /**
+   * View of a row of the batch which is moved from row to row without copying them.
+   */
+  public class Cursor extends TypedRow
+  {
+    private int position;
+
+    /**
+     * Move to the row at the position.
+     */
+    public void moveTo(int position)
+    {
+      this.position = position;
+    }
+
+    public int getPosition()
+    {
+      return position;
+    }
+
+    @Override
+    public RowSchema getSchema()
+    {
+      return schema;
+    }
+
+    @Override
+    public boolean isSet(int ordinal)
+    {
+      return set[ordinal].get(position);
+    }
+
+    @Override
+    protected long getRaw(int ordinal)
+    {
+      return values[ordinal][position];
+    }
+
+    @Override
+    public Object getObject(int ordinal)
+    {
+      return objects[ordinal][position];
+    }
+
+  }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+/**
+ * Row condition which is bound to the column ordinals of a schema.
+ *
+ * @see com.datatorrent.lib.streamquery.condition.Condition#compile(RowSchema)
+ */
+public interface RowPredicate
+{
+  /**
+   * @param row Row of the schema the predicate was compiled for.
+   * @return row validation status.
+   */
+  boolean isValid(TypedRow row);
+
+}
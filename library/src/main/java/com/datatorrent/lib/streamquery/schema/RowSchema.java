@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.validation.constraints.NotNull;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Ordered columns of typed rows. <br>
+ * Every column has a fixed ordinal which is its position in the schema. Values of INTEGER, LONG and DOUBLE columns are
+ * held in primitive slots of {@link SchemaRow} and {@link RowBatch}, values of OBJECT columns are held as objects. <br>
+ * Operators and conditions resolve the ordinals of their columns once per schema instead of looking up the column
+ * names in every row, so the rows which are deserialized with equal schemas share the {@link #intern() interned}
+ * schema. <br>
+ */
+public class RowSchema
+{
+  /**
+   * Type of the values of a column.
+   */
+  public enum ColumnType
+  {
+    INTEGER, LONG, DOUBLE, OBJECT
+  }
+
+  private final ArrayList<String> names = new ArrayList<String>();
+  private final ArrayList<ColumnType> types = new ArrayList<ColumnType>();
+  private transient HashMap<String, Integer> ordinals;
+
+  private static final Interner<RowSchema> INTERNER = Interners.newWeakInterner();
+
+  /**
+   * Add column at the next ordinal.
+   * @param name Column name, must be unique.
+   * @param type Type of the column values.
+   */
+  public void addColumn(@NotNull String name, @NotNull ColumnType type)
+  {
+    Preconditions.checkArgument(!names.contains(name), "duplicate column %s", name);
+    names.add(name);
+    types.add(Preconditions.checkNotNull(type, "type"));
+    ordinals = null;
+  }
+
+  /**
+   * @return no. of columns.
+   */
+  public int size()
+  {
+    return names.size();
+  }
+
+  /**
+   * @return ordinal of the column, -1 if the schema does not have the column.
+   */
+  public int getOrdinal(Object name)
+  {
+    if (ordinals == null) {
+      HashMap<String, Integer> map = new HashMap<String, Integer>();
+      for (int i = 0; i < names.size(); i++) {
+        map.put(names.get(i), i);
+      }
+      ordinals = map;
+    }
+    Integer ordinal = ordinals.get(name);
+    return ordinal == null ? -1 : ordinal;
+  }
+
+  public String getName(int ordinal)
+  {
+    return names.get(ordinal);
+  }
+
+  public ColumnType getType(int ordinal)
+  {
+    return types.get(ordinal);
+  }
+
+  /**
+   * @return true if values of the column are held in primitive slots.
+   */
+  public boolean isPrimitive(int ordinal)
+  {
+    return types.get(ordinal) != ColumnType.OBJECT;
+  }
+
+  /**
+   * Returns the canonical instance of the schemas which are equal to this schema. The schema must not be changed after
+   * it was interned.
+   *
+   * @return interned schema.
+   */
+  public RowSchema intern()
+  {
+    return INTERNER.intern(this);
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RowSchema)) {
+      return false;
+    }
+    RowSchema schema = (RowSchema) o;
+    return names.equals(schema.names) && types.equals(schema.types);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * names.hashCode() + types.hashCode();
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder builder = new StringBuilder("RowSchema{");
+    for (int i = 0; i < names.size(); i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(names.get(i)).append(' ').append(types.get(i));
+    }
+    return builder.append('}').toString();
+  }
+
+}
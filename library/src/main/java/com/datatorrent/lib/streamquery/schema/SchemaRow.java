@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javax.validation.constraints.NotNull;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Preconditions;
+
+/**
+ * Row with a slot per column of its schema. <br>
+ * Values of primitive columns are held in a long array and values of OBJECT columns in an object array. The map
+ * methods put and remove are supported for the columns of the schema. <br>
+ */
+@DefaultSerializer(SchemaRow.Serializer.class)
+public class SchemaRow extends TypedRow
+{
+  private final RowSchema schema;
+  private final long[] values;
+  private final Object[] objects;
+  private final BitSet set;
+
+  public SchemaRow(@NotNull RowSchema schema)
+  {
+    this.schema = schema;
+    values = new long[schema.size()];
+    objects = new Object[schema.size()];
+    set = new BitSet(schema.size());
+  }
+
+  @Override
+  public RowSchema getSchema()
+  {
+    return schema;
+  }
+
+  @Override
+  public boolean isSet(int ordinal)
+  {
+    return set.get(ordinal);
+  }
+
+  @Override
+  protected long getRaw(int ordinal)
+  {
+    return values[ordinal];
+  }
+
+  @Override
+  public Object getObject(int ordinal)
+  {
+    return objects[ordinal];
+  }
+
+  /**
+   * Set value of an INTEGER or LONG column.
+   */
+  public void setLong(int ordinal, long value)
+  {
+    values[ordinal] = value;
+    set.set(ordinal);
+  }
+
+  /**
+   * Set value of a DOUBLE column.
+   */
+  public void setDouble(int ordinal, double value)
+  {
+    values[ordinal] = Double.doubleToRawLongBits(value);
+    set.set(ordinal);
+  }
+
+  /**
+   * Set value of a column, numbers are unboxed for primitive columns. A null value clears the column.
+   */
+  public void setValue(int ordinal, Object value)
+  {
+    if (value == null) {
+      clear(ordinal);
+      return;
+    }
+    if (schema.isPrimitive(ordinal)) {
+      values[ordinal] = toRaw(schema.getType(ordinal), value);
+    }
+    else {
+      objects[ordinal] = value;
+    }
+    set.set(ordinal);
+  }
+
+  /**
+   * Copy value of a column of another row to a column of the same type.
+   */
+  public void copy(int ordinal, TypedRow row, int rowOrdinal)
+  {
+    if (!row.isSet(rowOrdinal)) {
+      clear(ordinal);
+    }
+    else if (schema.isPrimitive(ordinal)) {
+      values[ordinal] = row.getRaw(rowOrdinal);
+      set.set(ordinal);
+    }
+    else {
+      objects[ordinal] = row.getObject(rowOrdinal);
+      set.set(ordinal);
+    }
+  }
+
+  /**
+   * Clear value of the column.
+   */
+  public void clear(int ordinal)
+  {
+    objects[ordinal] = null;
+    set.clear(ordinal);
+  }
+
+  @Override
+  public Object put(String key, Object value)
+  {
+    int ordinal = schema.getOrdinal(key);
+    Preconditions.checkArgument(ordinal >= 0, "column %s is not in %s", key, schema);
+    Object previous = getValue(ordinal);
+    setValue(ordinal, value);
+    return previous;
+  }
+
+  @Override
+  public Object remove(Object key)
+  {
+    int ordinal = schema.getOrdinal(key);
+    if (ordinal < 0) {
+      return null;
+    }
+    Object previous = getValue(ordinal);
+    clear(ordinal);
+    return previous;
+  }
+
+  @Override
+  public void clear()
+  {
+    Arrays.fill(objects, null);
+    set.clear();
+  }
+
+  /**
+   * Writes the schema and the set slots of the row. The schema which is read is interned, so that the rows of a
+   * schema share one schema instance and the ordinals which operators resolve for it.
+   */
+  public static class Serializer extends com.esotericsoftware.kryo.Serializer<SchemaRow>
+  {
+    @Override
+    public void write(Kryo kryo, Output output, SchemaRow row)
+    {
+      kryo.writeObject(output, row.schema);
+      for (int i = 0; i < row.schema.size(); i++) {
+        output.writeBoolean(row.set.get(i));
+        if (row.set.get(i)) {
+          if (row.schema.isPrimitive(i)) {
+            output.writeLong(row.values[i]);
+          }
+          else {
+            kryo.writeClassAndObject(output, row.objects[i]);
+          }
+        }
+      }
+    }
+
+    @Override
+    public SchemaRow read(Kryo kryo, Input input, Class<SchemaRow> type)
+    {
+      SchemaRow row = new SchemaRow(kryo.readObject(input, RowSchema.class).intern());
+      for (int i = 0; i < row.schema.size(); i++) {
+        if (input.readBoolean()) {
+          if (row.schema.isPrimitive(i)) {
+            row.values[i] = input.readLong();
+          }
+          else {
+            row.objects[i] = kryo.readClassAndObject(input);
+          }
+          row.set.set(i);
+        }
+      }
+      return row;
+    }
+
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery.schema;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.datatorrent.lib.streamquery.schema.RowSchema.ColumnType;
+
+/**
+ * Row whose values are held by column ordinal of a {@link RowSchema}. <br>
+ * The typed getters read primitive columns without boxing. The row is also a read only map from column name to the
+ * boxed value so that it can be passed to the conditions, indexes and operators which work on maps. Columns which are
+ * not set are not in the map. <br>
+ */
+public abstract class TypedRow extends AbstractMap<String, Object>
+{
+  /**
+   * @return schema of the row.
+   */
+  public abstract RowSchema getSchema();
+
+  /**
+   * @return true if the column has a value.
+   */
+  public abstract boolean isSet(int ordinal);
+
+  /**
+   * @return bits of the primitive slot of the column.
+   */
+  protected abstract long getRaw(int ordinal);
+
+  /**
+   * @return value of an OBJECT column.
+   */
+  public abstract Object getObject(int ordinal);
+
+  /**
+   * @return value of a primitive column as long.
+   */
+  public long getLong(int ordinal)
+  {
+    if (getSchema().getType(ordinal) == ColumnType.DOUBLE) {
+      return (long) Double.longBitsToDouble(getRaw(ordinal));
+    }
+    return getRaw(ordinal);
+  }
+
+  /**
+   * @return value of a primitive column as double.
+   */
+  public double getDouble(int ordinal)
+  {
+    if (getSchema().getType(ordinal) == ColumnType.DOUBLE) {
+      return Double.longBitsToDouble(getRaw(ordinal));
+    }
+    return getRaw(ordinal);
+  }
+
+  /**
+   * @return value of the column, boxed for primitive columns; null if the column is not set.
+   */
+  public Object getValue(int ordinal)
+  {
+    if (!isSet(ordinal)) {
+      return null;
+    }
+    switch (getSchema().getType(ordinal)) {
+      case INTEGER:
+        return (int) getRaw(ordinal);
+      case LONG:
+        return getRaw(ordinal);
+      case DOUBLE:
+        return Double.longBitsToDouble(getRaw(ordinal));
+      default:
+        return getObject(ordinal);
+    }
+  }
+
+  @Override
+  public Object get(Object key)
+  {
+    int ordinal = getSchema().getOrdinal(key);
+    return ordinal < 0 ? null : getValue(ordinal);
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    int ordinal = getSchema().getOrdinal(key);
+    return ordinal >= 0 && isSet(ordinal);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet()
+  {
+    return new AbstractSet<Map.Entry<String, Object>>()
+    {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator()
+      {
+        return new Iterator<Map.Entry<String, Object>>()
+        {
+          private int next = nextSet(0);
+
+          @Override
+          public boolean hasNext()
+          {
+            return next < getSchema().size();
+          }
+
+          @Override
+          public Map.Entry<String, Object> next()
+          {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Map.Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(getSchema().getName(next), getValue(next));
+            next = nextSet(next + 1);
+            return entry;
+          }
+
+          @Override
+          public void remove()
+          {
+            throw new UnsupportedOperationException();
+          }
+
+        };
+      }
+
+      @Override
+      public int size()
+      {
+        int size = 0;
+        for (int i = 0; i < getSchema().size(); i++) {
+          if (isSet(i)) {
+            size++;
+          }
+        }
+        return size;
+      }
+
+    };
+  }
+
+  private int nextSet(int ordinal)
+  {
+    while (ordinal < getSchema().size() && !isSet(ordinal)) {
+      ordinal++;
+    }
+    return ordinal;
+  }
+
+  /**
+   * @return bits of the primitive slot which holds the number in a column of the type.
+   */
+  static long toRaw(ColumnType type, Object value)
+  {
+    if (type == ColumnType.DOUBLE) {
+      return Double.doubleToRawLongBits(((Number) value).doubleValue());
+    }
+    if (type == ColumnType.INTEGER) {
+      return ((Number) value).intValue();
+    }
+    return ((Number) value).longValue();
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BloomFilter}
+ */
+public class BloomFilterTest
+{
+  @Test
+  public void testNoFalseNegatives()
+  {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add("key" + i);
+    }
+    for (int i = 0; i < 10000; i++) {
+      Assert.assertTrue("added key " + i, filter.mightContain("key" + i));
+    }
+    int falsePositives = 0;
+    for (int i = 10000; i < 20000; i++) {
+      if (filter.mightContain("key" + i)) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue("false positives " + falsePositives, falsePositives < 300);
+  }
+
+  @Test
+  public void testMerge()
+  {
+    BloomFilter filter1 = new BloomFilter(100, 0.01);
+    BloomFilter filter2 = filter1.emptyCopy();
+    filter1.add(1L);
+    filter2.add(2L);
+    Assert.assertFalse(filter1.mightContain(2L));
+    filter1.merge(filter2);
+    Assert.assertTrue(filter1.mightContain(1L));
+    Assert.assertTrue(filter1.mightContain(2L));
+  }
+}
@@ -16,8 +16,16 @@
 package com.datatorrent.lib.bucket;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Exchanger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -27,6 +35,7 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -118,6 +127,270 @@ public class BucketManagerTest
     }
   }
 
+  @Test
+  public void testParallelLoaders() throws InterruptedException
+  {
+    final List<Long> loadedBuckets = Collections.synchronizedList(Lists.<Long>newArrayList());
+    BucketManagerImpl<DummyEvent> parallelManager = new BucketManagerImpl<DummyEvent>();
+    parallelManager.setNoOfBuckets(100);
+    parallelManager.setNoOfBucketsInMemory(100);
+    parallelManager.setMaxNoOfBucketsInMemory(100);
+    parallelManager.setNoOfLoaders(4);
+    parallelManager.setBucketStore(new NonOperationalBucketStore<DummyEvent>());
+    parallelManager.startService(new BucketManager.Listener<DummyEvent>()
+    {
+      @Override
+      public void bucketLoaded(Bucket<DummyEvent> bucket)
+      {
+        loadedBuckets.add(bucket.bucketKey);
+      }
+
+      @Override
+      public void bucketOffLoaded(long bucketKey)
+      {
+      }
+
+    });
+    try {
+      for (int i = 0; i < 50; i++) {
+        parallelManager.loadBucketData(i);
+      }
+      for (int i = 0; i < 50; i += 10) {
+        parallelManager.loadBucketData(i);
+      }
+      parallelManager.blockUntilAllRequestsServiced();
+      Assert.assertEquals("loaded buckets", 50, Sets.newHashSet(loadedBuckets).size());
+      Assert.assertTrue("repeated requests", loadedBuckets.size() <= 55);
+      for (long i = 0; i < 50; i++) {
+        Assert.assertNotNull(parallelManager.getBucket(i));
+      }
+    }
+    finally {
+      parallelManager.shutdownService();
+    }
+  }
+
+  @Test
+  public void testReleaseOffLoadedBucket() throws InterruptedException
+  {
+    BucketManagerImpl<DummyEvent> evictingManager = new BucketManagerImpl<DummyEvent>();
+    evictingManager.setNoOfBuckets(100);
+    evictingManager.setNoOfBucketsInMemory(1);
+    evictingManager.setMaxNoOfBucketsInMemory(1);
+    evictingManager.setMillisPreventingBucketEviction(0);
+    evictingManager.setBucketStore(new NonOperationalBucketStore<DummyEvent>());
+    evictingManager.startService(new TestStorageManagerListener()
+    {
+      @Override
+      public void bucketLoaded(Bucket<DummyEvent> bucket)
+      {
+      }
+
+    });
+    try {
+      evictingManager.loadBucketData(1);
+      evictingManager.blockUntilAllRequestsServiced();
+      Bucket<DummyEvent> offLoadedBucket = evictingManager.getBucket(1);
+      Assert.assertTrue("loaded", offLoadedBucket.isDataOnDiskLoaded());
+
+      evictingManager.loadBucketData(2);
+      evictingManager.blockUntilAllRequestsServiced();
+      Assert.assertNull("evicted", evictingManager.getBucket(1));
+      Assert.assertTrue("released at the end of the window", offLoadedBucket.isDataOnDiskLoaded());
+
+      evictingManager.endWindow(0);
+      Assert.assertFalse("released", offLoadedBucket.isDataOnDiskLoaded());
+      Assert.assertTrue("loaded", evictingManager.getBucket(2).isDataOnDiskLoaded());
+    }
+    finally {
+      evictingManager.shutdownService();
+    }
+  }
+  @Test
+  public void testAsynchronousSave() throws Exception
+  {
+    String asyncApplicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX + "Async");
+    BucketManagerImpl<DummyEvent> asyncManager = new BucketManagerImpl<DummyEvent>();
+    asyncManager.setNoOfBuckets(100);
+    asyncManager.setNoOfBucketsInMemory(10);
+    asyncManager.setMaxNoOfBucketsInMemory(10);
+    asyncManager.setSaveAsynchronously(true);
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>();
+    asyncManager.setBucketStore(store);
+    store.setConfiguration(0, asyncApplicationPath, Sets.newHashSet(0), 0);
+    asyncManager.startService(new TestStorageManagerListener()
+    {
+      @Override
+      public void bucketLoaded(Bucket<DummyEvent> bucket)
+      {
+      }
+
+    });
+    Path root = new Path(asyncApplicationPath);
+    FileSystem fs = FileSystem.newInstance(root.toUri(), new Configuration());
+    try {
+      long now = System.currentTimeMillis();
+      asyncManager.beginWindow(0);
+      for (int i = 0; i < 10; i++) {
+        asyncManager.newEvent(1, new DummyEvent(i, now));
+      }
+      asyncManager.endWindow(0);
+      asyncManager.checkpointed(0);
+      asyncManager.committed(0);
+      Assert.assertEquals("committed window waits for the save", -1, asyncManager.committedWindow);
+
+      asyncManager.beginWindow(1);
+      asyncManager.endWindow(1);
+      asyncManager.checkpointed(1);
+      asyncManager.committed(1);
+      Assert.assertEquals("committed window", 1, asyncManager.committedWindow);
+      Assert.assertEquals("saved events", 10, store.fetchBucket(1).size());
+      Assert.assertEquals("written events", 10, asyncManager.getBucket(1).countOfWrittenEvents());
+
+      //the bucket is replaced while its events are being saved.
+      asyncManager.beginWindow(2);
+      asyncManager.newEvent(1, new DummyEvent(10, now));
+      asyncManager.endWindow(2);
+      asyncManager.loadBucketData(101);
+      asyncManager.beginWindow(3);
+      asyncManager.blockUntilAllRequestsServiced();
+      asyncManager.endWindow(3);
+      asyncManager.checkpointed(3);
+      asyncManager.committed(4);
+      Assert.assertNotNull("replaced", asyncManager.getBucket(101));
+      Assert.assertTrue("replaced bucket deleted", store.fetchBucket(1).isEmpty());
+      Assert.assertFalse("window file deleted", fs.exists(new Path(store.bucketRoot + HdfsBucketStore.PATH_SEPARATOR + 2)));
+    }
+    finally {
+      asyncManager.shutdownService();
+      fs.delete(root, true);
+      fs.close();
+    }
+  }
+
+  @Test
+  public void testSuspendWhileFetching() throws Exception
+  {
+    String fetchApplicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX + "Fetch");
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch fetchReleased = new CountDownLatch(1);
+    final BucketManagerImpl<DummyEvent> fetchManager = new BucketManagerImpl<DummyEvent>();
+    fetchManager.setNoOfBuckets(100);
+    fetchManager.setNoOfBucketsInMemory(10);
+    fetchManager.setMaxNoOfBucketsInMemory(10);
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>()
+    {
+      @Override
+      public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+      {
+        fetchStarted.countDown();
+        fetchReleased.await();
+        return super.fetchBucket(bucketIdx);
+      }
+
+    };
+    fetchManager.setBucketStore(store);
+    store.setConfiguration(0, fetchApplicationPath, Sets.newHashSet(0), 0);
+    fetchManager.startService(new TestStorageManagerListener()
+    {
+      @Override
+      public void bucketLoaded(Bucket<DummyEvent> bucket)
+      {
+      }
+
+    });
+    ExecutorService operatorThread = Executors.newSingleThreadExecutor();
+    try {
+      fetchManager.beginWindow(0);
+      fetchManager.loadBucketData(1);
+      Assert.assertTrue("fetch started", fetchStarted.await(10, TimeUnit.SECONDS));
+      Future<Void> endWindow = operatorThread.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          fetchManager.endWindow(0);
+          return null;
+        }
+
+      });
+      //the end of the window does not wait for the data being fetched.
+      endWindow.get(10, TimeUnit.SECONDS);
+
+      fetchReleased.countDown();
+      fetchManager.blockUntilAllRequestsServiced();
+      Assert.assertNotNull("loaded", fetchManager.getBucket(1));
+    }
+    finally {
+      fetchReleased.countDown();
+      operatorThread.shutdownNow();
+      fetchManager.shutdownService();
+      Path root = new Path(fetchApplicationPath);
+      FileSystem fs = FileSystem.newInstance(root.toUri(), new Configuration());
+      fs.delete(root, true);
+      fs.close();
+    }
+  }
+
+  @Test
+  public void testBloomFilterOfBytesKeys() throws Exception
+  {
+    String filterApplicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX + "Filter");
+    BucketManagerImpl<BytesEvent> filterManager = new BucketManagerImpl<BytesEvent>();
+    filterManager.setNoOfBuckets(100);
+    filterManager.setNoOfBucketsInMemory(10);
+    filterManager.setMaxNoOfBucketsInMemory(10);
+    filterManager.setWriteEventKeysOnly(true);
+    filterManager.setKeyCodec(new KeyCodec.BytesCodec());
+    filterManager.setExpectedEventsPerBucket(100);
+    HdfsBucketStore<BytesEvent> store = new HdfsBucketStore<BytesEvent>();
+    filterManager.setBucketStore(store);
+    store.setConfiguration(0, filterApplicationPath, Sets.newHashSet(0), 0);
+    filterManager.startService(new BucketManager.Listener<BytesEvent>()
+    {
+      @Override
+      public void bucketLoaded(Bucket<BytesEvent> bucket)
+      {
+      }
+
+      @Override
+      public void bucketOffLoaded(long bucketKey)
+      {
+      }
+
+    });
+    try {
+      filterManager.beginWindow(0);
+      Assert.assertTrue("new key", filterManager.tryNewEvent(1, new BytesEvent(new byte[]{1, 2})));
+      Assert.assertFalse("key with the same content", filterManager.tryNewEvent(1, new BytesEvent(new byte[]{1, 2})));
+      Assert.assertTrue("duplicate found in the bucket", filterManager.getBucket(1).containsEvent(new BytesEvent(new byte[]{1, 2})));
+      Assert.assertEquals("unwritten events", 1, filterManager.getBucket(1).countOfUnwrittenEvents());
+    }
+    finally {
+      filterManager.shutdownService();
+      Path root = new Path(filterApplicationPath);
+      FileSystem fs = FileSystem.newInstance(root.toUri(), new Configuration());
+      fs.delete(root, true);
+      fs.close();
+    }
+  }
+
+  private static class BytesEvent implements Bucketable
+  {
+    private final byte[] key;
+
+    BytesEvent(byte[] key)
+    {
+      this.key = key;
+    }
+
+    @Override
+    public Object getEventKey()
+    {
+      return key;
+    }
+
+  }
 
   @BeforeClass
   public static void setup() throws Exception
@@ -114,6 +114,78 @@ public class BucketStoreTests
     deleteFsPath(rootBucketPath);
   }
 
+  void testWriteBucketDataThenRecord() throws Exception
+  {
+    bucketStore.deleteBucket(0);
+    bucketStore.deleteBucket(1);
+    Map<Integer, Long> positions = bucketStore.writeBucketData(1, data);
+    Assert.assertTrue("file written", bucketExists(1));
+    Assert.assertEquals("positions", data.keySet(), positions.keySet());
+
+    positions.remove(1);
+    bucketStore.bucketDataWritten(1, 1, data, positions);
+    Map<Object, DummyEvent> fetchedData = bucketStore.fetchBucket(0);
+    Assert.assertEquals("recorded bucket", data.get(0).keySet(), fetchedData.keySet());
+    Assert.assertTrue("ignored bucket", bucketStore.fetchBucket(1).isEmpty());
+
+    bucketStore.writeBucketData(2, data);
+    bucketStore.bucketDataWritten(2, 2, data, Maps.<Integer, Long>newHashMap());
+    bucketStore.checkpointed(2);
+    bucketStore.committed(2);
+    Assert.assertTrue("file kept till the checkpoint is committed", bucketExists(2));
+    bucketStore.committed(3);
+    Assert.assertFalse("file of no bucket deleted", bucketExists(2));
+    deleteFsPath(rootBucketPath);
+  }
+
+  void testCompaction() throws Exception
+  {
+    HdfsBucketStore<DummyEvent> store = new HdfsBucketStore<DummyEvent>();
+    store.setNoOfBuckets(TOTAL_BUCKETS);
+    store.setWriteEventKeysOnly(true);
+    store.setCompactWindowFiles(true);
+    store.setMinWindowsToCompact(2);
+    store.setConfiguration(8, applicationPath, Sets.newHashSet(0), 0);
+    store.setup();
+    try {
+      Map<Integer, Map<Object, DummyEvent>> moreData = Maps.newHashMap();
+      Map<Object, DummyEvent> bucketData = Maps.newHashMap();
+      for (int i = 10; i < 20; i++) {
+        DummyEvent event = new DummyEvent(i, System.currentTimeMillis());
+        bucketData.put(event.getEventKey(), event);
+      }
+      moreData.put(0, bucketData);
+      store.storeBucketData(1, 1, data);
+      store.storeBucketData(2, 2, moreData);
+
+      store.committed(2);
+      store.compaction.get();
+      store.checkpointed(3);
+      store.committed(3);
+      Path segmentPath = new Path(store.bucketRoot + HdfsBucketStore.PATH_SEPARATOR + HdfsBucketStore.SEGMENTS_DIR
+        + HdfsBucketStore.PATH_SEPARATOR + "0-2");
+      Assert.assertTrue("segment written", fs.exists(segmentPath));
+      Path windowPath = new Path(store.bucketRoot + HdfsBucketStore.PATH_SEPARATOR + 1);
+      Assert.assertTrue("window file kept till checkpoint is committed", fs.exists(windowPath));
+
+      Map<Object, DummyEvent> expected = Maps.newHashMap(data.get(0));
+      expected.putAll(bucketData);
+      Assert.assertEquals("compacted bucket", expected.keySet(), store.fetchBucket(0).keySet());
+      Assert.assertEquals("compacted bucket", data.get(1).keySet(), store.fetchBucket(1).keySet());
+
+      store.checkpointed(4);
+      store.committed(5);
+      Assert.assertFalse("window file deleted", fs.exists(windowPath));
+      Assert.assertEquals("compacted bucket", expected.keySet(), store.fetchBucket(0).keySet());
+
+      store.deleteBucket(1);
+      Assert.assertTrue("deleted bucket", store.fetchBucket(1).isEmpty());
+    }
+    finally {
+      store.teardown();
+    }
+  }
+
   void deleteFsPath(Path path) throws IOException
   {
     fs.delete(path, true);
@@ -121,8 +193,7 @@ public class BucketStoreTests
 
   boolean bucketExists(int fileId)
   {
-    Path bucketPath = new Path(applicationPath + HdfsBucketStore.PATH_SEPARATOR + 7 + HdfsBucketStore.PATH_SEPARATOR
-      + fileId);
+    Path bucketPath = new Path(bucketStore.bucketRoot + HdfsBucketStore.PATH_SEPARATOR + fileId);
     try {
       return fs.exists(bucketPath);
     }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for {@link ClockEvictionPolicy} and {@link ByteBudgetEvictionPolicy}
+ */
+public class EvictionPolicyTest
+{
+  @Test
+  public void testClock() throws Exception
+  {
+    ClockEvictionPolicy policy = new ClockEvictionPolicy(2, 3);
+    Bucket<DummyEvent> bucket0 = new Bucket<DummyEvent>(0);
+    Bucket<DummyEvent> bucket1 = new Bucket<DummyEvent>(1);
+    policy.bucketAdded(0, bucket0);
+    Assert.assertEquals(EvictionPolicy.Pressure.NONE, policy.getPressure(0));
+    policy.bucketAdded(1, bucket1);
+    Assert.assertEquals(EvictionPolicy.Pressure.SOFT, policy.getPressure(0));
+    policy.bucketAdded(2, new Bucket<DummyEvent>(2));
+    Assert.assertEquals(EvictionPolicy.Pressure.HARD, policy.getPressure(0));
+
+    Thread.sleep(5);
+    bucket0.updateAccessTime();
+    Assert.assertEquals("second chance to accessed bucket", 1, policy.nextCandidate());
+    policy.bucketRemoved(1);
+    Assert.assertEquals("next in ring", 2, policy.nextCandidate());
+    Assert.assertEquals("accessed bucket lost its second chance", 0, policy.nextCandidate());
+    Assert.assertEquals(2, policy.size());
+  }
+
+  @Test
+  public void testByteBudget()
+  {
+    ByteBudgetEvictionPolicy policy = new ByteBudgetEvictionPolicy(1000, 2000, 10);
+    policy.setBytesPerBucket(0);
+    Bucket<DummyEvent> bucket = new Bucket<DummyEvent>(0);
+    Map<Object, DummyEvent> events = Maps.newHashMap();
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 50; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      events.put(event.getEventKey(), event);
+    }
+    bucket.setWrittenEvents(events);
+    policy.bucketAdded(0, bucket);
+    Assert.assertEquals("estimated bytes", 500, policy.getUsage());
+    Assert.assertEquals(EvictionPolicy.Pressure.NONE, policy.getPressure(40));
+    Assert.assertEquals(EvictionPolicy.Pressure.SOFT, policy.getPressure(60));
+    Assert.assertEquals(EvictionPolicy.Pressure.HARD, policy.getPressure(160));
+
+    for (int i = 50; i < 100; i++) {
+      DummyEvent event = new DummyEvent(i, now);
+      bucket.addNewEvent(event.getEventKey(), event);
+    }
+    policy.bucketAdded(0, bucket);
+    Assert.assertEquals("refreshed estimate", 1000, policy.getUsage());
+    policy.bucketRemoved(0);
+    Assert.assertEquals(0, policy.getUsage());
+  }
+}
@@ -46,4 +46,16 @@ public class ExpirableHdfsBucketStoreTest
     expirableStore.deleteExpiredBuckets(1);
     Assert.assertTrue(!tests.bucketExists(0));
   }
+
+  @Test
+  public void testCompactionNotSupported()
+  {
+    try {
+      new ExpirableHdfsBucketStore<DummyEvent>().setCompactWindowFiles(true);
+      Assert.fail("compaction of an expirable store");
+    }
+    catch (IllegalArgumentException ex) {
+      // expected
+    }
+  }
 }
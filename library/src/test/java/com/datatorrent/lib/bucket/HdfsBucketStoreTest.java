@@ -59,6 +59,18 @@ public class HdfsBucketStoreTest
     tests.testDeleteBucket();
   }
 
+  @Test
+  public void test4() throws Exception
+  {
+    tests.testWriteBucketDataThenRecord();
+  }
+
+  @Test
+  public void test5() throws Exception
+  {
+    tests.testCompaction();
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(HdfsBucketStore.class);
 
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.bucket;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for {@link OffHeapKeySet} and {@link OffHeapKeyBucket}
+ */
+public class OffHeapKeySetTest
+{
+  @Test
+  public void testLongKeys()
+  {
+    OffHeapKeySet<Long> keySet = new OffHeapKeySet<Long>(new KeyCodec.LongCodec());
+    for (long i = 0; i < 100000; i++) {
+      Assert.assertTrue("new key " + i, keySet.add(i * 3));
+    }
+    for (long i = 0; i < 100000; i++) {
+      Assert.assertFalse("existing key " + i, keySet.add(i * 3));
+      Assert.assertTrue("contains " + i, keySet.contains(i * 3));
+      Assert.assertFalse("absent " + i, keySet.contains(i * 3 + 1));
+    }
+    Assert.assertEquals("size", 100000, keySet.size());
+    Assert.assertEquals("decoded keys", 100000, keySet.keys().size());
+  }
+
+  @Test
+  public void testStringKeys()
+  {
+    OffHeapKeySet<String> keySet = new OffHeapKeySet<String>(new KeyCodec.StringCodec(), 4, 128);
+    String nonAscii = "café-世😀";
+    keySet.add(nonAscii);
+    for (int i = 0; i < 1000; i++) {
+      keySet.add("key" + i);
+    }
+    Assert.assertTrue("non ascii key", keySet.contains(nonAscii));
+    Assert.assertTrue("decoded non ascii key", keySet.keys().contains(nonAscii));
+    Assert.assertTrue("contains", keySet.contains("key999"));
+    Assert.assertFalse("absent", keySet.contains("key1000"));
+    Assert.assertEquals("size", 1001, keySet.size());
+  }
+
+  @Test
+  public void testBytesKeys()
+  {
+    OffHeapKeySet<byte[]> keySet = new OffHeapKeySet<byte[]>(new KeyCodec.BytesCodec());
+    Assert.assertTrue(keySet.add(new byte[]{1, 2, 3}));
+    Assert.assertFalse("compared by content", keySet.add(new byte[]{1, 2, 3}));
+    Assert.assertFalse(keySet.contains(new byte[]{1, 2}));
+    Assert.assertTrue(keySet.add(new byte[0]));
+    Assert.assertTrue(keySet.contains(new byte[0]));
+  }
+
+  @Test
+  public void testBucket()
+  {
+    long now = System.currentTimeMillis();
+    OffHeapKeyBucket<DummyEvent> bucket = new OffHeapKeyBucket<DummyEvent>(1, new DummyEventCodec());
+    Map<Object, DummyEvent> written = Maps.newHashMap();
+    for (int i = 0; i < 10; i++) {
+      written.put(new DummyEvent(i, now), null);
+    }
+    bucket.setWrittenEvents(written);
+    Assert.assertTrue(bucket.isDataOnDiskLoaded());
+    Assert.assertEquals("written", 10, bucket.countOfWrittenEvents());
+
+    DummyEvent newEvent = new DummyEvent(20, now);
+    bucket.addNewEvent(newEvent.getEventKey(), null);
+    Assert.assertTrue(bucket.containsEvent(newEvent));
+    Assert.assertEquals("unwritten", 1, bucket.countOfUnwrittenEvents());
+
+    bucket.transferDataFromMemoryToStore();
+    Assert.assertEquals("unwritten", 0, bucket.countOfUnwrittenEvents());
+    Assert.assertEquals("written", 11, bucket.countOfWrittenEvents());
+    Assert.assertTrue(bucket.containsEvent(new DummyEvent(5, now)));
+    Assert.assertTrue(bucket.containsEvent(new DummyEvent(20, now)));
+    Assert.assertFalse(bucket.containsEvent(new DummyEvent(21, now)));
+    Assert.assertTrue(bucket.getWrittenEvents().containsKey(new DummyEvent(20, now)));
+  }
+
+  @Test
+  public void testLoadAfterTransfer()
+  {
+    long now = System.currentTimeMillis();
+    OffHeapKeyBucket<DummyEvent> bucket = new OffHeapKeyBucket<DummyEvent>(1, new DummyEventCodec());
+    bucket.addNewEvent(new DummyEvent(1, now), null);
+    bucket.transferDataFromMemoryToStore();
+
+    Map<Object, DummyEvent> written = Maps.newHashMap();
+    for (int i = 2; i < 100; i++) {
+      written.put(new DummyEvent(i, now), null);
+    }
+    bucket.setWrittenEvents(written);
+    Assert.assertEquals("written", 99, bucket.countOfWrittenEvents());
+    Assert.assertTrue("transferred before the load", bucket.containsEvent(new DummyEvent(1, now)));
+    Assert.assertTrue("loaded", bucket.containsEvent(new DummyEvent(99, now)));
+  }
+
+  @Test
+  public void testBytesKeyBucket()
+  {
+    OffHeapKeyBucket<BytesEvent> bucket = new OffHeapKeyBucket<BytesEvent>(1, new KeyCodec.BytesCodec());
+    bucket.addNewEvent(new byte[]{1, 2}, null);
+    bucket.addNewEvent(new byte[]{1, 2}, null);
+    Assert.assertEquals("unwritten compared by content", 1, bucket.countOfUnwrittenEvents());
+    Assert.assertTrue(bucket.containsEvent(new BytesEvent(new byte[]{1, 2})));
+    Assert.assertFalse(bucket.containsEvent(new BytesEvent(new byte[]{2, 1})));
+
+    bucket.transferDataFromMemoryToStore();
+    Assert.assertTrue(bucket.containsEvent(new BytesEvent(new byte[]{1, 2})));
+    bucket.addNewEvent(new byte[]{2, 1}, null);
+    Assert.assertTrue(bucket.containsEvent(new BytesEvent(new byte[]{2, 1})));
+    Assert.assertEquals("written", 1, bucket.countOfWrittenEvents());
+  }
+
+  @Test
+  public void testRelease()
+  {
+    long now = System.currentTimeMillis();
+    OffHeapKeyBucket<DummyEvent> bucket = new OffHeapKeyBucket<DummyEvent>(1, new DummyEventCodec());
+    Map<Object, DummyEvent> written = Maps.newHashMap();
+    written.put(new DummyEvent(1, now), null);
+    bucket.setWrittenEvents(written);
+    bucket.addNewEvent(new DummyEvent(2, now), null);
+
+    bucket.release();
+    Assert.assertFalse("not loaded", bucket.isDataOnDiskLoaded());
+    Assert.assertEquals("written", 0, bucket.countOfWrittenEvents());
+    Assert.assertFalse(bucket.containsEvent(new DummyEvent(1, now)));
+
+    bucket.setWrittenEvents(written);
+    Assert.assertTrue("loaded again", bucket.isDataOnDiskLoaded());
+    Assert.assertTrue(bucket.containsEvent(new DummyEvent(1, now)));
+  }
+
+  @Test
+  public void testChunkGrowth()
+  {
+    OffHeapKeySet<Long> keySet = new OffHeapKeySet<Long>(new KeyCodec.LongCodec(), 2, 64);
+    for (long i = 0; i < 100; i++) {
+      keySet.add(i);
+    }
+    keySet.clear();
+    Assert.assertEquals("cleared", 0, keySet.size());
+    Assert.assertFalse(keySet.contains(1L));
+    for (long i = 0; i < 100; i++) {
+      Assert.assertTrue("new key " + i, keySet.add(i));
+    }
+    Assert.assertEquals("size", 100, keySet.size());
+    Assert.assertTrue(keySet.contains(99L));
+  }
+
+  private static class BytesEvent implements Bucketable
+  {
+    private final byte[] key;
+
+    BytesEvent(byte[] key)
+    {
+      this.key = key;
+    }
+
+    @Override
+    public Object getEventKey()
+    {
+      return key;
+    }
+
+  }
+
+  private static class DummyEventCodec implements KeyCodec<DummyEvent>
+  {
+    @Override
+    public boolean encode(@Nonnull DummyEvent key, @Nonnull ByteBuffer buffer)
+    {
+      if (buffer.remaining() < 12) {
+        return false;
+      }
+      buffer.putInt(key.id);
+      buffer.putLong(key.time);
+      return true;
+    }
+
+    @Nonnull
+    @Override
+    public DummyEvent decode(@Nonnull ByteBuffer buffer)
+    {
+      return new DummyEvent(buffer.getInt(), buffer.getLong());
+    }
+
+  }
+}
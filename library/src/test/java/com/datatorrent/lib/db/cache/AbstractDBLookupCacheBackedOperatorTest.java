@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.db.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Tests for asynchronous lookups of {@link AbstractDBLookupCacheBackedOperator}
+ */
+public class AbstractDBLookupCacheBackedOperatorTest
+{
+  private static class TestLookupOperator extends AbstractDBLookupCacheBackedOperator<Integer>
+  {
+    final List<Set<Object>> batches = Lists.newArrayList();
+
+    @Override
+    protected Object getKeyFromTuple(Integer tuple)
+    {
+      return tuple;
+    }
+
+    @Override
+    public Map<Object, Object> fetchStartupData()
+    {
+      Map<Object, Object> startupData = Maps.newHashMap();
+      startupData.put(1, "v1");
+      return startupData;
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+      throw new UnsupportedOperationException("keys are fetched in batches");
+    }
+
+    @Override
+    public Map<Object, Object> bulkGet(Set<Object> keys)
+    {
+      synchronized (batches) {
+        batches.add(Sets.newHashSet(keys));
+      }
+      Map<Object, Object> values = Maps.newHashMap();
+      for (Object key : keys) {
+        if ((Integer) key < 10) {
+          values.put(key, "v" + key);
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public void put(Object key, Object value)
+    {
+    }
+
+  }
+
+  private static List<Object> keysOf(CollectorTestSink<Object> sink)
+  {
+    List<Object> keys = Lists.newArrayList();
+    for (Object tuple : sink.collectedTuples) {
+      @SuppressWarnings("unchecked")
+      KeyValPair<Object, Object> keyVal = (KeyValPair<Object, Object>) tuple;
+      Assert.assertEquals("value", "v" + keyVal.getKey(), keyVal.getValue());
+      keys.add(keyVal.getKey());
+    }
+    return keys;
+  }
+
+  @Test
+  public void testInOrder()
+  {
+    TestLookupOperator operator = new TestLookupOperator();
+    operator.setAsyncLookups(true);
+    operator.setEmitInOrder(true);
+    operator.setMaxLookupBatchSize(2);
+    operator.setMaxInFlightLookups(1);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    operator.output.setSink(sink);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+
+    operator.beginWindow(0);
+    for (int tuple : new int[] {2, 1, 2, 11, 3, 1, 4}) {
+      operator.input.process(tuple);
+    }
+    operator.endWindow();
+
+    Assert.assertEquals("emitted in order", Lists.<Object>newArrayList(2, 1, 2, 3, 1, 4), keysOf(sink));
+    Assert.assertEquals("batches", Lists.<Set<Object>>newArrayList(Sets.<Object>newHashSet(2, 11), Sets.<Object>newHashSet(3, 4)), operator.batches);
+
+    sink.clear();
+    operator.beginWindow(1);
+    operator.input.process(3);
+    operator.endWindow();
+    Assert.assertEquals("cached", Lists.<Object>newArrayList(3), keysOf(sink));
+    Assert.assertEquals("batches", 2, operator.batches.size());
+    operator.teardown();
+  }
+
+  @Test
+  public void testIdleTime()
+  {
+    TestLookupOperator operator = new TestLookupOperator();
+    operator.setAsyncLookups(true);
+    operator.setMaxLookupBatchSize(10);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    operator.output.setSink(sink);
+    operator.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+
+    operator.beginWindow(0);
+    operator.input.process(5);
+    operator.input.process(1);
+    Assert.assertEquals("cached key emitted", Lists.<Object>newArrayList(1), keysOf(sink));
+
+    long timeout = System.currentTimeMillis() + 10000;
+    while (sink.collectedTuples.size() < 2 && System.currentTimeMillis() < timeout) {
+      operator.handleIdleTime();
+    }
+    Assert.assertEquals("fetched key emitted", Lists.<Object>newArrayList(1, 5), keysOf(sink));
+    Assert.assertEquals("partial batch", Lists.<Set<Object>>newArrayList(Sets.<Object>newHashSet(5)), operator.batches);
+    operator.endWindow();
+    operator.teardown();
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.db.cache;
+
+import org.apache.commons.lang.mutable.MutableLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.cache.Weigher;
+
+import com.datatorrent.lib.counters.BasicCounters;
+
+/**
+ * Tests for {@link CacheStore}
+ */
+public class CacheStoreTest
+{
+  private static long counter(BasicCounters<MutableLong> counters, CacheStore.CounterKeys key)
+  {
+    return counters.getCounter(key).longValue();
+  }
+
+  @Test
+  public void testAdmission()
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(2);
+    properties.setAdmissionFrequency(2);
+    CacheStore store = new CacheStore(properties);
+
+    store.put(1, "one");
+    store.put(2, "two");
+    Assert.assertNull("miss", store.get(3));
+    store.put(3, "three");
+    Assert.assertNull("requested once", store.get(3));
+    store.put(3, "three");
+    Assert.assertEquals("requested twice", "three", store.get(3));
+    Assert.assertEquals("size", 2, store.getKeys().size());
+
+    BasicCounters<MutableLong> counters = new BasicCounters<MutableLong>(MutableLong.class);
+    store.updateCounters(counters);
+    Assert.assertEquals("hits", 1, counter(counters, CacheStore.CounterKeys.HITS));
+    Assert.assertEquals("misses", 2, counter(counters, CacheStore.CounterKeys.MISSES));
+    Assert.assertEquals("rejections", 1, counter(counters, CacheStore.CounterKeys.REJECTIONS));
+    Assert.assertEquals("evictions", 1, counter(counters, CacheStore.CounterKeys.EVICTIONS));
+    store.teardown();
+  }
+
+  @Test
+  public void testColdKeyRejectedWhenFull()
+  {
+    int maxCacheSize = 1000;
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheSize(maxCacheSize);
+    properties.setAdmissionFrequency(2);
+    CacheStore store = new CacheStore(properties);
+
+    for (int i = 0; i < maxCacheSize; i++) {
+      store.put(i, i);
+    }
+    Assert.assertEquals("full", maxCacheSize, store.getKeys().size());
+    Assert.assertNull("miss", store.get(maxCacheSize));
+    store.put(maxCacheSize, maxCacheSize);
+    Assert.assertNull("cold key", store.get(maxCacheSize));
+    Assert.assertEquals("size", maxCacheSize, store.getKeys().size());
+
+    BasicCounters<MutableLong> counters = new BasicCounters<MutableLong>(MutableLong.class);
+    store.updateCounters(counters);
+    Assert.assertEquals("rejections", 1, counter(counters, CacheStore.CounterKeys.REJECTIONS));
+    Assert.assertEquals("evictions", 0, counter(counters, CacheStore.CounterKeys.EVICTIONS));
+    store.teardown();
+  }
+
+  @Test
+  public void testWeigher()
+  {
+    CacheProperties properties = new CacheProperties();
+    properties.setMaxCacheWeight(10);
+    properties.setWeigher(new Weigher<Object, Object>()
+    {
+      @Override
+      public int weigh(Object key, Object value)
+      {
+        return ((String) value).length();
+      }
+
+    });
+    CacheStore store = new CacheStore(properties);
+
+    store.put(1, "aaaa");
+    store.put(2, "bbbb");
+    store.put(1, "aaa");
+    store.put(3, "cccc");
+
+    BasicCounters<MutableLong> counters = new BasicCounters<MutableLong>(MutableLong.class);
+    store.updateCounters(counters);
+    Assert.assertEquals("entries", 2, counter(counters, CacheStore.CounterKeys.ENTRIES));
+    Assert.assertEquals("weight", 7, counter(counters, CacheStore.CounterKeys.WEIGHT));
+    Assert.assertEquals("evictions", 1, counter(counters, CacheStore.CounterKeys.EVICTIONS));
+    store.teardown();
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.datatorrent.lib.db.cache;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -24,6 +25,8 @@ import junit.framework.Assert;
 import org.junit.Test;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -93,6 +96,97 @@ public class StoreManagerTest
 	}
   }
 
+  private static class DummyChangeFeed implements Store.ChangeFeed
+  {
+    private final Map<Object, Object> values = Maps.newHashMap();
+    private final List<Object> changedKeys = Lists.newArrayList();
+
+    void change(Object key, Object value)
+    {
+      values.put(key, value);
+      changedKeys.add(key);
+    }
+
+    @Override
+    public Object fetchLatestChangeToken()
+    {
+      return changedKeys.size();
+    }
+
+    @Override
+    public Object fetchChangesSince(Object token, int maxChanges, Map<Object, Object> changes)
+    {
+      int from = (Integer) token;
+      int to = Math.min(changedKeys.size(), from + maxChanges);
+      for (Object key : changedKeys.subList(from, to)) {
+        changes.put(key, values.get(key));
+      }
+      return to;
+    }
+
+    @Override
+    public Map<Object, Object> fetchStartupData()
+    {
+      return Maps.newHashMap(values);
+    }
+
+    @Override
+    public Object get(Object key)
+    {
+      return values.get(key);
+    }
+
+    @Override
+    public Map<Object, Object> bulkGet(Set<Object> keys)
+    {
+      return Maps.newHashMap(Maps.filterKeys(values, Predicates.in(keys)));
+    }
+
+    @Override
+    public void put(Object key, Object value)
+    {
+      change(key, value);
+    }
+
+    @Override
+    public void teardown()
+    {
+    }
+
+  }
+
+  @Test
+  public void testRefreshChanges()
+  {
+    DummyChangeFeed feed = new DummyChangeFeed();
+    feed.change(1, "one");
+    feed.change(2, "two");
+    Store.Primary primary = new CacheStore(new CacheProperties())
+    {
+      @Override
+      public Set<Object> getKeys()
+      {
+        throw new AssertionError("only the changed keys should be looked up");
+      }
+
+    };
+    StoreManager manager = new StoreManager(primary, feed);
+    manager.initialize(null);
+    Assert.assertEquals("no changes", 0, manager.refreshChanges(10));
+
+    feed.change(1, "uno");
+    feed.change(3, "three");
+    feed.change(2, null);
+    Assert.assertEquals("first batch", 2, manager.refreshChanges(2));
+    Assert.assertEquals("changed", "uno", primary.get(1));
+    Assert.assertNull("not cached", primary.get(3));
+    Assert.assertEquals("not fetched yet", "two", primary.get(2));
+
+    Assert.assertEquals("second batch", 1, manager.refreshChanges(2));
+    Assert.assertNull("removed", primary.get(2));
+    manager.shutdown();
+  }
+
   @Test
   public void testStoreManager()
   {
@@ -112,6 +112,16 @@ public class JDBCLookupCacheBackedOperatorTest
       return "select col1, col2 from " + TABLE_NAME + " where col1 = ?";
     }
 
+    @Override
+    protected String fetchBulkGetQuery(int noOfKeys)
+    {
+      StringBuilder query = new StringBuilder("select col1, col2 from " + TABLE_NAME + " where col1 in (?");
+      for (int i = 1; i < noOfKeys; i++) {
+        query.append(", ?");
+      }
+      return query.append(')').toString();
+    }
+
     @Override
     public Map<Object, Object> bulkGet(Set<Object> keys)
     {
@@ -140,6 +150,8 @@ public class JDBCLookupCacheBackedOperatorTest
 
     Map<Object, Object> bulk = bulkValuesExchanger.exchange(null, 30, TimeUnit.SECONDS);
     Assert.assertEquals("bulk values retrieval", 2, bulk.size());
+    Assert.assertEquals("bulk value", mapping.get(1), bulk.get(1));
+    Assert.assertEquals("bulk value", mapping.get(2), bulk.get(2));
   }
 
   @BeforeClass
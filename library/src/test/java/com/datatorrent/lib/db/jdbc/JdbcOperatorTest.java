@@ -82,6 +82,8 @@ public class JdbcOperatorTest
   private static class TestOutputOperator extends AbstractJdbcTransactionableOutputOperator<TestEvent>
   {
     private static final String INSERT_STMT = "INSERT INTO " + TABLE_NAME + " values (?)";
+    /* time it takes to set the parameters of a tuple */
+    long delayMillis;
 
     TestOutputOperator()
     {
@@ -98,9 +100,35 @@ public class JdbcOperatorTest
     @Override
     protected void setStatementParameters(PreparedStatement statement, TestEvent tuple) throws SQLException
     {
+      if (delayMillis > 0) {
+        try {
+          Thread.sleep(delayMillis);
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
       statement.setInt(1, tuple.id);
     }
 
+    /**
+     * @return no. of rows which were inserted in the open transaction and before.
+     */
+    public int getNumOfEventsInTransaction()
+    {
+      try {
+        Statement stmt = store.connection.createStatement();
+        ResultSet resultSet = stmt.executeQuery("SELECT count(*) from " + TABLE_NAME);
+        resultSet.next();
+        int count = resultSet.getInt(1);
+        stmt.close();
+        return count;
+      }
+      catch (SQLException e) {
+        throw new RuntimeException("fetching count", e);
+      }
+    }
+
     public int getNumOfEventsInStore()
     {
       Connection con;
@@ -195,6 +223,101 @@ public class JdbcOperatorTest
     Assert.assertEquals("rows in db", 10, outputOperator.getNumOfEventsInStore());
   }
 
+  @Test
+  public void testJdbcOutputOperatorMultiRowInsert()
+  {
+    JdbcTransactionalStore transactionalStore = new JdbcTransactionalStore();
+    transactionalStore.setDbDriver(DB_DRIVER);
+    transactionalStore.setDbUrl(URL);
+
+    AttributeMap.DefaultAttributeMap attributeMap = new AttributeMap.DefaultAttributeMap();
+    attributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    OperatorContextTestHelper.TestIdOperatorContext context = new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID, attributeMap);
+
+    TestOutputOperator outputOperator = new TestOutputOperator();
+    outputOperator.setBatchSize(4);
+    outputOperator.setMultiRowInsert(true);
+    outputOperator.setTargetBatchMillis(60000);
+    outputOperator.setStore(transactionalStore);
+
+    outputOperator.setup(context);
+
+    outputOperator.beginWindow(1);
+    for (int i = 0; i < 10; i++) {
+      outputOperator.input.process(new TestEvent(i));
+    }
+    outputOperator.endWindow();
+
+    Assert.assertEquals("rows in db", 10, outputOperator.getNumOfEventsInStore());
+  }
+
+  @Test
+  public void testJdbcOutputOperatorAdaptiveBatchSize()
+  {
+    JdbcTransactionalStore transactionalStore = new JdbcTransactionalStore();
+    transactionalStore.setDbDriver(DB_DRIVER);
+    transactionalStore.setDbUrl(URL);
+
+    AttributeMap.DefaultAttributeMap attributeMap = new AttributeMap.DefaultAttributeMap();
+    attributeMap.put(DAG.APPLICATION_ID, APP_ID);
+    /* another operator id so that the committed window does not skip the windows of the other tests */
+    OperatorContextTestHelper.TestIdOperatorContext context = new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID + 1, attributeMap);
+
+    TestOutputOperator outputOperator = new TestOutputOperator();
+    outputOperator.setBatchSize(4);
+    outputOperator.setTargetBatchMillis(100);
+    outputOperator.setStore(transactionalStore);
+
+    outputOperator.setup(context);
+
+    outputOperator.beginWindow(0);
+    /* a batch takes longer than the target so the batch size shrinks from 4 to 2 and then to 1 */
+    outputOperator.delayMillis = 60;
+    int id = 0;
+    for (; id < 4; id++) {
+      outputOperator.input.process(new TestEvent(id));
+    }
+    Assert.assertEquals("rows after batch of 4", 4, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows before batch of 2", 4, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows after batch of 2", 6, outputOperator.getNumOfEventsInTransaction());
+
+    /* a batch takes less than half of the target so the batch size grows from 1 to 2 and then to 4 */
+    outputOperator.delayMillis = 0;
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows after batch of 1", 7, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows before batch of 2", 7, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows after batch of 2", 9, outputOperator.getNumOfEventsInTransaction());
+    for (int i = 0; i < 3; i++) {
+      outputOperator.input.process(new TestEvent(id++));
+    }
+    Assert.assertEquals("rows before batch of 4", 9, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.input.process(new TestEvent(id++));
+    Assert.assertEquals("rows after batch of 4", 13, outputOperator.getNumOfEventsInTransaction());
+    outputOperator.endWindow();
+
+    Assert.assertEquals("rows in db", 13, outputOperator.getNumOfEventsInStore());
+  }
+
+  @Test
+  public void testFindRowValues()
+  {
+    String command = "INSERT INTO t (a, b) VALUES (?, ?) ON DUPLICATE KEY UPDATE b = VALUES(b)";
+    int[] bounds = AbstractJdbcTransactionableOutputOperator.findRowValues(command);
+    Assert.assertEquals("row values", "(?, ?)", command.substring(bounds[0], bounds[1]));
+    Assert.assertEquals("suffix", " ON DUPLICATE KEY UPDATE b = VALUES(b)", command.substring(bounds[1]));
+
+    command = "insert into values_table (\"values\", b) values(?, 'VALUES (x)')";
+    bounds = AbstractJdbcTransactionableOutputOperator.findRowValues(command);
+    Assert.assertEquals("row values", "(?, 'VALUES (x)')", command.substring(bounds[0], bounds[1]));
+
+    Assert.assertNull("no row values", AbstractJdbcTransactionableOutputOperator.findRowValues("UPDATE t SET a = ?"));
+    Assert.assertNull("select", AbstractJdbcTransactionableOutputOperator.findRowValues("INSERT INTO t SELECT * FROM s"));
+  }
+
   @Test
   public void TestJdbcInputOperator()
   {
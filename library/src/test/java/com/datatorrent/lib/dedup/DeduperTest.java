@@ -18,7 +18,11 @@ package com.datatorrent.lib.dedup;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Exchanger;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -84,6 +88,53 @@ public class DeduperTest
     }
   }
 
+  private static class CarryOverDeduper extends DeduperWithHdfsStore<DummyEvent, DummyEvent>
+  {
+    final BlockingQueue<Bucket<DummyEvent>> loadedBuckets = new LinkedBlockingQueue<Bucket<DummyEvent>>();
+
+    /**
+     * The loaded buckets are held back so that the waiting events are carried over to the next window.
+     */
+    @Override
+    public void bucketLoaded(Bucket<DummyEvent> bucket)
+    {
+      loadedBuckets.add(bucket);
+    }
+
+    void handOverLoadedBuckets()
+    {
+      Bucket<DummyEvent> bucket;
+      while ((bucket = loadedBuckets.poll()) != null) {
+        super.bucketLoaded(bucket);
+      }
+    }
+
+    @Override
+    public DummyEvent convert(DummyEvent dummyEvent)
+    {
+      return dummyEvent;
+    }
+
+  }
+
+  private static final CountDownLatch fetchStarted = new CountDownLatch(1);
+  private static final CountDownLatch fetchReleased = new CountDownLatch(1);
+
+  /**
+   * Keeps a loader busy in {@link #fetchBucket(int)} until the test releases it.
+   */
+  private static class BlockingBucketStore extends ExpirableHdfsBucketStore<DummyEvent>
+  {
+    @Override
+    public Map<Object, DummyEvent> fetchBucket(int bucketIdx) throws Exception
+    {
+      fetchStarted.countDown();
+      fetchReleased.await();
+      return super.fetchBucket(bucketIdx);
+    }
+
+  }
+
   private static DummyDeduper deduper;
   private static String applicationPath;
   private static TimeBasedBucketManagerImpl<DummyEvent> storageManager;
@@ -179,6 +230,102 @@ public class DeduperTest
     deduper.teardown();
   }
 
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testCarryOverWaitingEvents() throws Exception
+  {
+    String carryOverApplicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX + "CarryOver");
+    CarryOverDeduper carryOverDeduper = new CarryOverDeduper();
+    TimeBasedBucketManagerImpl<DummyEvent> manager = new TimeBasedBucketManagerImpl<DummyEvent>();
+    manager.setBucketSpanInMillis(1000);
+    manager.setMillisPreventingBucketEviction(60000);
+    manager.setSaveAsynchronously(true);
+    manager.setBucketStore(new ExpirableHdfsBucketStore<DummyEvent>());
+    carryOverDeduper.setBucketManager(manager);
+    carryOverDeduper.setCarryOverWaitingEvents(true);
+
+    AttributeMap.DefaultAttributeMap attributes = new AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, APP_ID);
+    attributes.put(DAG.APPLICATION_PATH, carryOverApplicationPath);
+    carryOverDeduper.setup(new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID, attributes));
+    CollectorTestSink collectorTestSink = new CollectorTestSink<DummyEvent>();
+    carryOverDeduper.output.setSink(collectorTestSink);
+    try {
+      long now = System.currentTimeMillis();
+      carryOverDeduper.beginWindow(0);
+      for (int i = 0; i < 10; i++) {
+        carryOverDeduper.input.process(new DummyEvent(i, now));
+      }
+      carryOverDeduper.input.process(new DummyEvent(5, now));
+      carryOverDeduper.endWindow();
+      Assert.assertEquals("output tuples", 0, collectorTestSink.collectedTuples.size());
+      Assert.assertEquals("waiting events", 1, carryOverDeduper.waitingEvents.size());
+      Assert.assertEquals("waiting events", 11, carryOverDeduper.waitingEvents.values().iterator().next().size());
+
+      carryOverDeduper.beginWindow(1);
+      manager.blockUntilAllRequestsServiced();
+      carryOverDeduper.handOverLoadedBuckets();
+      carryOverDeduper.endWindow();
+      Assert.assertEquals("output tuples", 10, collectorTestSink.collectedTuples.size());
+      Assert.assertTrue("no waiting events", carryOverDeduper.waitingEvents.isEmpty());
+    }
+    finally {
+      carryOverDeduper.teardown();
+      Path root = new Path(carryOverApplicationPath);
+      FileSystem fs = FileSystem.newInstance(root.toUri(), new Configuration());
+      fs.delete(root, true);
+      fs.close();
+    }
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testNewEventsWithoutLoad() throws Exception
+  {
+    String filterApplicationPath = OperatorContextTestHelper.getUniqueApplicationPath(APPLICATION_PATH_PREFIX + "Filter");
+    CarryOverDeduper filterDeduper = new CarryOverDeduper();
+    TimeBasedBucketManagerImpl<DummyEvent> manager = new TimeBasedBucketManagerImpl<DummyEvent>();
+    manager.setBucketSpanInMillis(1000);
+    manager.setMillisPreventingBucketEviction(60000);
+    manager.setExpectedEventsPerBucket(100);
+    manager.setBucketStore(new BlockingBucketStore());
+    filterDeduper.setBucketManager(manager);
+
+    AttributeMap.DefaultAttributeMap attributes = new AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, APP_ID);
+    attributes.put(DAG.APPLICATION_PATH, filterApplicationPath);
+    filterDeduper.setup(new OperatorContextTestHelper.TestIdOperatorContext(OPERATOR_ID, attributes));
+    CollectorTestSink collectorTestSink = new CollectorTestSink<DummyEvent>();
+    filterDeduper.output.setSink(collectorTestSink);
+    try {
+      long now = System.currentTimeMillis();
+      filterDeduper.beginWindow(0);
+      //A loader is busy with another bucket while the new events arrive.
+      manager.loadBucketData(manager.getBucketKeyFor(new DummyEvent(0, now - 5000)));
+      Assert.assertTrue("loader started", fetchStarted.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < 10; i++) {
+        filterDeduper.input.process(new DummyEvent(i, now));
+      }
+      filterDeduper.input.process(new DummyEvent(5, now));
+      Assert.assertEquals("output tuples", 10, collectorTestSink.collectedTuples.size());
+      Assert.assertTrue("no waiting events", filterDeduper.waitingEvents.isEmpty());
+
+      fetchReleased.countDown();
+      manager.blockUntilAllRequestsServiced();
+      filterDeduper.endWindow();
+      Assert.assertEquals("loaded buckets", 1, filterDeduper.loadedBuckets.size());
+      Assert.assertEquals("output tuples", 10, collectorTestSink.collectedTuples.size());
+    }
+    finally {
+      fetchReleased.countDown();
+      filterDeduper.teardown();
+      Path root = new Path(filterApplicationPath);
+      FileSystem fs = FileSystem.newInstance(root.toUri(), new Configuration());
+      fs.delete(root, true);
+      fs.close();
+    }
+  }
+
   @BeforeClass
   public static void setup()
   {
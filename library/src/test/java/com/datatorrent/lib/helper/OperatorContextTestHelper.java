@@ -58,9 +58,11 @@ public class OperatorContextTestHelper
     @SuppressWarnings("unchecked")
     public <T> T getValue(Attribute<T> key)
     {
-      T value = attributes.get(key);
-      if (value != null) {
-        return value;
+      if (attributes != null) {
+        T value = attributes.get(key);
+        if (value != null) {
+          return value;
+        }
       }
       return super.getValue(key);
     }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * Functional test for {@link com.datatorrent.lib.io.SpscRingBuffer}.
+ */
+public class SpscRingBufferTest
+{
+  private static class Collector implements SpscRingBuffer.Handler<Integer>
+  {
+    final List<Integer> elements = new ArrayList<Integer>();
+
+    @Override
+    public void handle(Integer element)
+    {
+      elements.add(element);
+    }
+
+  }
+
+  @Test
+  public void testOfferDrain()
+  {
+    SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(3);
+    Assert.assertEquals("capacity", 4, ring.getCapacity());
+    Collector collector = new Collector();
+    int next = 0;
+    for (int round = 0; round < 3; round++) {
+      while (ring.offer(next)) {
+        next++;
+      }
+      Assert.assertEquals("full", 4, ring.size());
+      Assert.assertEquals("drained", 3, ring.drain(collector, 3));
+      Assert.assertEquals("remaining", 1, ring.size());
+    }
+    Assert.assertEquals("polled", Integer.valueOf(next - 1), ring.poll());
+    Assert.assertNull("empty", ring.poll());
+    Assert.assertEquals("drained empty", 0, ring.drain(collector, 3));
+    for (int i = 0; i < collector.elements.size(); i++) {
+      Assert.assertEquals("order", Integer.valueOf(i), collector.elements.get(i));
+    }
+  }
+
+  @Test
+  public void testProducerConsumer() throws Exception
+  {
+    final int count = 10000;
+    for (SpscRingBuffer.WaitStrategy waitStrategy : SpscRingBuffer.WaitStrategy.values()) {
+      final SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(64);
+      ring.setWaitStrategy(waitStrategy);
+      ring.setParkNanos(1000);
+      Thread producer = new Thread("producer")
+      {
+        @Override
+        public void run()
+        {
+          try {
+            for (int i = 0; i < count; i++) {
+              ring.put(i);
+            }
+          }
+          catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+          }
+        }
+
+      };
+      producer.start();
+      final int[] expected = new int[1];
+      SpscRingBuffer.Handler<Integer> checker = new SpscRingBuffer.Handler<Integer>()
+      {
+        @Override
+        public void handle(Integer element)
+        {
+          Assert.assertEquals("order", expected[0]++, element.intValue());
+        }
+
+      };
+      /* the consumer starts when the ring is full so that the producer waits with the wait strategy */
+      while (ring.size() < ring.getCapacity()) {
+        Thread.yield();
+      }
+      while (expected[0] < count) {
+        if (ring.drain(checker, 16) == 0) {
+          Thread.yield();
+        }
+      }
+      producer.join();
+      Assert.assertTrue("empty", ring.isEmpty());
+    }
+  }
+
+  @Test
+  public void testInterruptedPut() throws Exception
+  {
+    SpscRingBuffer<Integer> ring = new SpscRingBuffer<Integer>(1);
+    ring.put(1);
+    Thread.currentThread().interrupt();
+    try {
+      ring.put(2);
+      Assert.fail("put should be interrupted");
+    }
+    catch (InterruptedException ex) {
+      Assert.assertEquals("stalls", 1, ring.getProducerStalls());
+    }
+  }
+
+}
@@ -21,6 +21,8 @@ import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
 import com.datatorrent.lib.io.fs.AbstractFSDirectoryInputOperator.DirectoryScanner;
 import com.datatorrent.lib.testbench.CollectorTestSink;
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.*;
 import java.io.*;
 import java.util.*;
@@ -84,6 +86,140 @@ public class AbstractFSDirectoryInputOperatorTest
     }
   }
 
+  public static class PositionTrackingInputOperator extends AbstractFSDirectoryInputOperator<String>
+  {
+    @OutputPortFieldAnnotation(name = "output")
+    public final transient DefaultOutputPort<String> output = new DefaultOutputPort<String>();
+    private transient FSDataInputStream input = null;
+    transient int reads = 0;
+
+    @Override
+    protected InputStream openFile(Path path) throws IOException
+    {
+      InputStream is = super.openFile(path);
+      input = (FSDataInputStream)is;
+      return is;
+    }
+
+    @Override
+    protected String readEntity() throws IOException
+    {
+      reads++;
+      StringBuilder line = new StringBuilder();
+      int b;
+      while ((b = input.read()) != -1 && b != '\n') {
+        line.append((char)b);
+      }
+      return b == -1 && line.length() == 0 ? null : line.toString();
+    }
+
+    @Override
+    protected long getEntityPosition()
+    {
+      try {
+        return input.getPos();
+      }
+      catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+
+    @Override
+    protected void emit(String tuple)
+    {
+      output.emit(tuple);
+    }
+  }
+
+  @Test
+  public void testRecoveryWithPosition() throws Exception
+  {
+    FileContext.getLocalFSFileContext().delete(new Path(new File(testMeta.dir).getAbsolutePath()), true);
+    FileUtils.write(new File(testMeta.dir, "file0"), "l0\nl1\nl2\nl3\nl4\n");
+
+    PositionTrackingInputOperator oper = new PositionTrackingInputOperator();
+    CollectorTestSink<String> queryResults = new CollectorTestSink<String>();
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    CollectorTestSink<Object> sink = (CollectorTestSink) queryResults;
+    oper.output.setSink(sink);
+    oper.setDirectory(testMeta.dir);
+    oper.getScanner().setFilePatternRegexp(".*file[\\d]");
+    oper.setEmitBatchSize(2);
+
+    oper.setup(null);
+    oper.beginWindow(0);
+    oper.emitTuples();
+    oper.endWindow();
+    Assert.assertEquals("lines before checkpoint", Lists.newArrayList("l0", "l1"), queryResults.collectedTuples);
+    Kryo kryo = new Kryo();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Output output = new Output(bytes);
+    kryo.writeObject(output, oper);
+    output.close();
+    PositionTrackingInputOperator recovered = kryo.readObject(new Input(bytes.toByteArray()), PositionTrackingInputOperator.class);
+    oper.teardown();
+
+    queryResults.clear();
+    recovered.output.setSink(sink);
+    recovered.setup(null);
+    for (long wid = 1; wid < 4; wid++) {
+      recovered.beginWindow(wid);
+      recovered.emitTuples();
+      recovered.endWindow();
+    }
+    recovered.teardown();
+
+    Assert.assertEquals("lines after recovery", Lists.newArrayList("l2", "l3", "l4"), queryResults.collectedTuples);
+    Assert.assertEquals("lines read after recovery", 4, recovered.reads);
+  }
+
+  @Test
+  public void testBlockPartitioning() throws Exception
+  {
+    FileContext.getLocalFSFileContext().delete(new Path(new File(testMeta.dir).getAbsolutePath()), true);
+    List<String> allLines = Lists.newArrayList();
+    for (int file = 0; file < 2; file++) {
+      List<String> lines = Lists.newArrayList();
+      for (int line = 0; line < 20; line++) {
+        lines.add("f" + file + "l" + line);
+      }
+      allLines.addAll(lines);
+      FileUtils.write(new File(testMeta.dir, "file" + file), StringUtils.join(lines, '\n') + "\n");
+    }
+
+    PositionTrackingInputOperator oper = new PositionTrackingInputOperator();
+    oper.setDirectory(testMeta.dir);
+    oper.getScanner().setFilePatternRegexp(".*file[\\d]");
+    oper.setBlockSize(16);
+
+    List<Partition<AbstractFSDirectoryInputOperator<String>>> partitions = Lists.newArrayList();
+    partitions.add(new DefaultPartition<AbstractFSDirectoryInputOperator<String>>(oper));
+    Collection<Partition<AbstractFSDirectoryInputOperator<String>>> newPartitions = oper.definePartitions(partitions, 2);
+    Assert.assertEquals("partitions", 3, newPartitions.size());
+
+    List<String> emitted = Lists.newArrayList();
+    for (Partition<AbstractFSDirectoryInputOperator<String>> p : newPartitions) {
+      PositionTrackingInputOperator partitionOper = (PositionTrackingInputOperator) p.getPartitionedInstance();
+      CollectorTestSink<String> queryResults = new CollectorTestSink<String>();
+      @SuppressWarnings({ "unchecked", "rawtypes" })
+      CollectorTestSink<Object> sink = (CollectorTestSink) queryResults;
+      partitionOper.output.setSink(sink);
+      partitionOper.setup(null);
+      for (long wid = 0; wid < 20; wid++) {
+        partitionOper.beginWindow(wid);
+        partitionOper.emitTuples();
+        partitionOper.endWindow();
+      }
+      partitionOper.teardown();
+      Assert.assertFalse("lines of partition", queryResults.collectedTuples.isEmpty());
+      emitted.addAll(queryResults.collectedTuples);
+    }
+
+    Collections.sort(allLines);
+    Collections.sort(emitted);
+    Assert.assertEquals("every line once", allLines, emitted);
+  }
+
   @Test
   public void testSinglePartiton() throws Exception
   {
@@ -16,6 +16,7 @@
 package com.datatorrent.lib.io.fs;
 
 import java.io.*;
+import java.util.zip.GZIPInputStream;
 
 import javax.annotation.Nonnull;
 
@@ -87,6 +88,61 @@ public class HdfsExactlyOnceOutputOperatorTest
     Assert.assertEquals("Checking the file target/2", true, checkFile("target/2"));
   }
 
+  @Test
+  public void testAsyncWrite()
+  {
+    HdfsExactlyOnceOutputOperator oper = new HdfsExactlyOnceOutputOperator();
+    oper.setFilePath("target");
+    oper.setAsyncWrite(true);
+    oper.setAsyncBufferSize(4);
+    oper.setAsyncBufferCount(2);
+    oper.setup(new DummyContext(0));
+    for (int window = 0; window < 2; window++) {
+      oper.beginWindow(window);
+      for (int i = 0; i < 100; i++) {
+        oper.input.process("window " + window);
+      }
+      oper.endWindow();
+    }
+    oper.checkpointed(1);
+    Assert.assertEquals("The number of lines in file target/0", 100, readFile("target/0", "window 0"));
+    Assert.assertEquals("The number of lines in file target/1", 100, readFile("target/1", "window 1"));
+
+    oper.beginWindow(2);
+    oper.input.process("window 2");
+    oper.teardown();
+    Assert.assertEquals("The number of lines in file target/2.tmp", 1, readFile("target/2.tmp", "window 2"));
+    Assert.assertEquals("Checking the file target/2", false, checkFile("target/2"));
+    deleteFile("target/2.tmp");
+  }
+
+  @Test
+  public void testCompression() throws IOException
+  {
+    HdfsExactlyOnceOutputOperator oper = new HdfsExactlyOnceOutputOperator();
+    oper.setFilePath("target");
+    oper.setCompressionCodec("gzip");
+    oper.setBufferSize(16);
+    oper.setup(new DummyContext(0));
+    oper.beginWindow(0);
+    for (int i = 0; i < 100; i++) {
+      oper.input.process("window 0");
+    }
+    oper.endWindow();
+    oper.teardown();
+
+    Assert.assertTrue("compressed", new File("target/0").length() < 900);
+    BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream("target/0"))));
+    int count = 0;
+    String line;
+    while ((line = br.readLine()) != null) {
+      Assert.assertEquals("Comparing the values", "window 0", line);
+      count++;
+    }
+    br.close();
+    Assert.assertEquals("The number of lines in file target/0", 100, count);
+  }
+
   @After
   public void tearDown()
   {
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -119,6 +120,26 @@ public class HdfsOutputOperatorTest
     }
   }
 
+  /**
+   * Reads the file whose gzip members are concatenated.
+   */
+  private int readCompressedFile(String path, final String val) throws IOException
+  {
+    BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(path))));
+    try {
+      String strLine;
+      int count = 0;
+      while ((strLine = br.readLine()) != null) {
+        Assert.assertEquals("Comparing the values", val, strLine);
+        count++;
+      }
+      return count;
+    }
+    finally {
+      br.close();
+    }
+  }
+
   private boolean checkFile(String path)
   {
     File file = new File(path);
@@ -195,6 +216,96 @@ public class HdfsOutputOperatorTest
     Assert.assertEquals("Checking the file target/file", true, checkFile("target/file"));
   }
 
+  @Test
+  public void TestAsyncRollingFiles()
+  {
+    HdfsOutputOperator oper = new HdfsOutputOperator();
+    oper.setFilePath("target/file-%(operatorId)-%(partIndex)");
+    oper.setCloseCurrentFile(false);
+    oper.setAppend(false);
+    oper.setBytesPerFile(10);
+    oper.setAsyncWrite(true);
+    oper.setAsyncBufferSize(4);
+    oper.setAsyncBufferCount(2);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+    oper.beginWindow(0);
+    for (int i = 0; i < 5; i++) {
+      oper.input.process(new MyStringClass("test"));
+    }
+    oper.endWindow();
+    oper.checkpointed(0);
+    Assert.assertEquals("The number of lines in file target/file-0-0", 2, readFile("target/file-0-0", "test"));
+    Assert.assertEquals("The number of lines in file target/file-0-1", 2, readFile("target/file-0-1", "test"));
+    Assert.assertEquals("The number of lines flushed to file target/file-0-2", 1, readFile("target/file-0-2", "test"));
+
+    oper.beginWindow(1);
+    oper.input.process(new MyStringClass("test"));
+    oper.input.process(new MyStringClass("test"));
+    oper.endWindow();
+    oper.teardown();
+    Assert.assertEquals("The number of lines in file target/file-0-2", 2, readFile("target/file-0-2", "test"));
+    Assert.assertEquals("The number of lines in file target/file-0-3", 1, readFile("target/file-0-3", "test"));
+    Assert.assertEquals("Checking the file target/file-0-0", true, checkFile("target/file-0-0"));
+    Assert.assertEquals("Checking the file target/file-0-1", true, checkFile("target/file-0-1"));
+    Assert.assertEquals("Checking the file target/file-0-2", true, checkFile("target/file-0-2"));
+    Assert.assertEquals("Checking the file target/file-0-3", true, checkFile("target/file-0-3"));
+    Assert.assertEquals("Checking the file target/file-0-4", false, checkFile("target/file-0-4"));
+  }
+
+  @Test
+  public void TestAsyncSeparateFilesEachWindow()
+  {
+    HdfsOutputOperator oper = new HdfsOutputOperator();
+    oper.setFilePath("target/file-%(operatorId)-%(partIndex)");
+    oper.setCloseCurrentFile(true);
+    oper.setAppend(false);
+    oper.setAsyncWrite(true);
+    oper.setAsyncBufferSize(4);
+    oper.setAsyncBufferCount(2);
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+    for (int window = 0; window < 2; window++) {
+      oper.beginWindow(window);
+      oper.input.process(new MyStringClass("test"));
+      oper.input.process(new MyStringClass("test"));
+      oper.endWindow();
+    }
+    oper.checkpointed(1);
+    Assert.assertEquals("The number of lines in file target/file-0-0", 2, readFile("target/file-0-0", "test"));
+    Assert.assertEquals("The number of lines in file target/file-0-1", 2, readFile("target/file-0-1", "test"));
+    oper.teardown();
+    Assert.assertEquals("Checking the file target/file-0-0", true, checkFile("target/file-0-0"));
+    Assert.assertEquals("Checking the file target/file-0-1", true, checkFile("target/file-0-1"));
+    Assert.assertEquals("Checking the file target/file-0-2", false, checkFile("target/file-0-2"));
+  }
+
+  @Test
+  public void TestCompressionAcrossCheckpoints() throws IOException
+  {
+    HdfsOutputOperator oper = new HdfsOutputOperator();
+    oper.setFilePath("target/file");
+    oper.setCloseCurrentFile(false);
+    oper.setAppend(false);
+    oper.setCompressionCodec("gzip");
+    oper.setup(new OperatorContextTestHelper.TestIdOperatorContext(0));
+    oper.beginWindow(0);
+    oper.input.process(new MyStringClass("test"));
+    oper.input.process(new MyStringClass("test"));
+    oper.endWindow();
+    oper.checkpointed(0);
+    Assert.assertEquals("The number of lines in file target/file at checkpoint", 2, readCompressedFile("target/file", "test"));
+
+    oper.beginWindow(1);
+    oper.input.process(new MyStringClass("test"));
+    oper.endWindow();
+    oper.checkpointed(1);
+    oper.beginWindow(2);
+    oper.input.process(new MyStringClass("test"));
+    oper.endWindow();
+    oper.teardown();
+    Assert.assertEquals("The number of lines in file target/file", 4, readCompressedFile("target/file", "test"));
+    Assert.assertEquals("Checking the file target/file", true, checkFile("target/file"));
+  }
+
   @Test
   public void TestSeparateFilesEachWindowFailure()
   {
@@ -17,6 +17,7 @@ package com.datatorrent.lib.io.fs;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 
 import junit.framework.Assert;
@@ -187,6 +188,76 @@ public class TailFsInputOperatorTest
     Assert.assertEquals("Hello", sink.collectedTuples.get(0));
   }
 
+  @Test
+  public void testMultiByteLinesLongerThanBuffer() throws Exception
+  {
+    FileOutputStream out = new FileOutputStream(filePath);
+    out.write("h\u00e9llo j\u00e4va\n\u20ac1\nlast".getBytes("UTF-8"));
+    out.close();
+
+    TailFsInputOperator oper = new TailFsInputOperator();
+    oper.setFilePath(filePath);
+    oper.setBufferSize(4);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    oper.output.setSink(sink);
+    CollectorTestSink<Object> rawSink = new CollectorTestSink<Object>();
+    oper.rawOutput.setSink(rawSink);
+    oper.setDelay(1);
+    oper.setNumberOfTuples(10);
+    oper.setup(null);
+    oper.activate(null);
+    oper.beginWindow(0);
+    oper.emitTuples();
+    oper.endWindow();
+    oper.deactivate();
+    new File(filePath).delete();
+
+    Assert.assertEquals(2, sink.collectedTuples.size());
+    Assert.assertEquals("h\u00e9llo j\u00e4va", sink.collectedTuples.get(0));
+    Assert.assertEquals("\u20ac1", sink.collectedTuples.get(1));
+    Assert.assertEquals(2, rawSink.collectedTuples.size());
+    Assert.assertEquals("\u20ac1", new String((byte[]) rawSink.collectedTuples.get(1), "UTF-8"));
+  }
+
+  /**
+   * This tests the case when the file is copied and then truncated in place, like logrotate's copytruncate
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCopyTruncate() throws Exception
+  {
+    FileWriter fstream = new FileWriter(filePath);
+    BufferedWriter out = new BufferedWriter(fstream);
+    out.write("Hello Java\nHello Again\n");
+    out.close();
+    TailFsInputOperator oper = new TailFsInputOperator();
+    oper.setFilePath(filePath);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    oper.output.setSink(sink);
+    oper.setDelay(1);
+    oper.setNumberOfTuples(10);
+    oper.setup(null);
+    oper.activate(null);
+    oper.beginWindow(0);
+    oper.emitTuples();
+    oper.endWindow();
+    Assert.assertEquals(2, sink.collectedTuples.size());
+
+    /* the open file is truncated, so it is the same file as the one at the path */
+    FileOutputStream truncated = new FileOutputStream(filePath);
+    truncated.write("Hi\n".getBytes("UTF-8"));
+    truncated.close();
+    oper.beginWindow(1);
+    oper.emitTuples();
+    oper.endWindow();
+    oper.deactivate();
+    new File(filePath).delete();
+
+    Assert.assertEquals(3, sink.collectedTuples.size());
+    Assert.assertEquals("Hi", sink.collectedTuples.get(2));
+  }
+
   /**
    * This tests the case when the file is rotated and new file has same size as old file
    * 
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.api.Partitioner.PartitionKeys;
+
+import com.datatorrent.lib.statistics.DimensionsComputation.Measure;
+import com.datatorrent.lib.statistics.DimensionsComputation.MeasureSlots;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Tests for {@link DimensionsComputation}
+ */
+public class DimensionsComputationTest
+{
+  public static class Event
+  {
+    String key;
+    long value;
+    double cost;
+
+    Event()
+    {
+    }
+
+    Event(String key, long value, double cost)
+    {
+      this.key = key;
+      this.value = value;
+      this.cost = cost;
+    }
+
+  }
+
+  public static class Aggregate implements DimensionsComputation.AggregateEvent
+  {
+    String key;
+    long sum;
+    long count;
+    long max;
+    double cost;
+    int aggregatorIndex;
+
+    @Override
+    public int getAggregatorIndex()
+    {
+      return aggregatorIndex;
+    }
+
+  }
+
+  public static class KeyAggregator implements DimensionsComputation.ColumnarAggregator<Event, Aggregate>
+  {
+    private static final Measure[] MEASURES = new Measure[] {Measure.LONG_SUM, Measure.COUNT, Measure.LONG_MAX, Measure.DOUBLE_SUM};
+
+    @Override
+    public Aggregate getGroup(Event src, int aggregatorIndex)
+    {
+      Aggregate aggregate = new Aggregate();
+      aggregate.key = src.key;
+      aggregate.max = Long.MIN_VALUE;
+      aggregate.aggregatorIndex = aggregatorIndex;
+      return aggregate;
+    }
+
+    @Override
+    public void aggregate(Aggregate dest, Event src)
+    {
+      dest.sum += src.value;
+      dest.count++;
+      dest.max = Math.max(dest.max, src.value);
+      dest.cost += src.cost;
+    }
+
+    @Override
+    public void aggregate(Aggregate dest, Aggregate src)
+    {
+      dest.sum += src.sum;
+      dest.count += src.count;
+      dest.max = Math.max(dest.max, src.max);
+      dest.cost += src.cost;
+    }
+
+    @Override
+    public Measure[] getMeasures()
+    {
+      return MEASURES;
+    }
+
+    @Override
+    public long getLong(Event src, int measureIndex)
+    {
+      return src.value;
+    }
+
+    @Override
+    public double getDouble(Event src, int measureIndex)
+    {
+      return src.cost;
+    }
+
+    @Override
+    public void setMeasures(Aggregate dest, MeasureSlots slots)
+    {
+      dest.sum = slots.getLong(0);
+      dest.count = slots.getLong(1);
+      dest.max = slots.getLong(2);
+      dest.cost = slots.getDouble(3);
+    }
+
+    @Override
+    public int computeHashCode(Event object)
+    {
+      return object.key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Event o1, Event o2)
+    {
+      return o1.key.equals(o2.key);
+    }
+
+    private static final long serialVersionUID = 201410181430L;
+  }
+
+  private static Map<String, Aggregate> runWindow(DimensionsComputation<Event, Aggregate> operator, CollectorTestSink<Object> sink, long windowId, int events)
+  {
+    sink.clear();
+    operator.beginWindow(windowId);
+    for (int i = 0; i < events; i++) {
+      operator.data.process(new Event("key" + (i % 3), i, 0.5));
+    }
+    operator.endWindow();
+
+    Map<String, Aggregate> aggregates = Maps.newHashMap();
+    for (Object tuple : sink.collectedTuples) {
+      Aggregate aggregate = (Aggregate) tuple;
+      Assert.assertNull("one aggregate per group " + aggregate.key, aggregates.put(aggregate.key, aggregate));
+    }
+    return aggregates;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static DimensionsComputation<Event, Aggregate> newOperator(boolean columnar, CollectorTestSink<Object> sink)
+  {
+    DimensionsComputation<Event, Aggregate> operator = new DimensionsComputation<Event, Aggregate>();
+    operator.setAggregators(new DimensionsComputation.Aggregator[] {new KeyAggregator()});
+    operator.setColumnar(columnar);
+    operator.output.setSink(sink);
+    operator.setup(null);
+    return operator;
+  }
+
+  @Test
+  public void testColumnar()
+  {
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    DimensionsComputation<Event, Aggregate> operator = newOperator(true, sink);
+    CollectorTestSink<Object> expectedSink = new CollectorTestSink<Object>();
+    DimensionsComputation<Event, Aggregate> expectedOperator = newOperator(false, expectedSink);
+
+    Map<String, Aggregate> previous = null;
+    Map<String, Aggregate> previousExpected = null;
+    for (int window = 0; window < 3; window++) {
+      Map<String, Aggregate> aggregates = runWindow(operator, sink, window, 10 + window);
+      Map<String, Aggregate> expected = runWindow(expectedOperator, expectedSink, window, 10 + window);
+      Assert.assertEquals("groups", expected.keySet(), aggregates.keySet());
+      for (Map.Entry<String, Aggregate> entry : expected.entrySet()) {
+        Aggregate aggregate = aggregates.get(entry.getKey());
+        Assert.assertEquals("sum", entry.getValue().sum, aggregate.sum);
+        Assert.assertEquals("count", entry.getValue().count, aggregate.count);
+        Assert.assertEquals("max", entry.getValue().max, aggregate.max);
+        Assert.assertEquals("cost", entry.getValue().cost, aggregate.cost, 0);
+        if (previous != null) {
+          Assert.assertNotSame("new aggregate", previous.get(entry.getKey()), aggregate);
+          Assert.assertEquals("previous sum", previousExpected.get(entry.getKey()).sum, previous.get(entry.getKey()).sum);
+        }
+      }
+      previous = aggregates;
+      previousExpected = expected;
+    }
+  }
+
+  @Test
+  public void testMaxColumnarGroups()
+  {
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    DimensionsComputation<Event, Aggregate> operator = newOperator(true, sink);
+    operator.setMaxColumnarGroups(2);
+    Map<String, Aggregate> first = runWindow(operator, sink, 0, 3);
+    Map<String, Aggregate> second = runWindow(operator, sink, 1, 3);
+    Assert.assertNotSame("groups dropped", first.get("key0"), second.get("key0"));
+    Assert.assertEquals("sum", 0, second.get("key0").sum);
+    Assert.assertEquals("count", 1, second.get("key0").count);
+  }
+
+  public static class KeyCodec extends AggregatorHashStreamCodec<Event>
+  {
+    public KeyCodec()
+    {
+      super(new KeyAggregator());
+    }
+
+  }
+
+  @Test
+  public void testKeyHashPartitions()
+  {
+    DimensionsComputation<Event, Aggregate> operator = newOperator(false, new CollectorTestSink<Object>());
+    operator.setStreamCodec(KeyCodec.class);
+    Assert.assertEquals("codec of input", KeyCodec.class, operator.data.getStreamCodec());
+
+    DimensionsComputationKeyHashPartitioner<Event, Aggregate> partitioner = new DimensionsComputationKeyHashPartitioner<Event, Aggregate>();
+    Partition<DimensionsComputation<Event, Aggregate>> partition = new DefaultPartition<DimensionsComputation<Event, Aggregate>>(operator);
+    Collection<Partition<DimensionsComputation<Event, Aggregate>>> partitions = partitioner.definePartitions(Collections.singletonList(partition), 3);
+    Assert.assertEquals("partitions", 4, partitions.size());
+
+    Set<Integer> keys = Sets.newHashSet();
+    for (Partition<DimensionsComputation<Event, Aggregate>> newPartition : partitions) {
+      Assert.assertTrue("merging unifier", newPartition.getPartitionedInstance().getUnifier() instanceof DimensionsComputationUnifierImpl);
+      PartitionKeys partitionKeys = newPartition.getPartitionKeys().get(operator.data);
+      Assert.assertEquals("mask", 3, partitionKeys.mask);
+      keys.addAll(partitionKeys.partitions);
+    }
+    Assert.assertEquals("all keys", Sets.newHashSet(0, 1, 2, 3), keys);
+
+    KeyCodec codec = new KeyCodec();
+    Event event = new Event("key", 0, 0);
+    Assert.assertEquals("partition of event", new KeyAggregator().computeHashCode(event), codec.getPartition(event));
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional Test for {@link com.datatorrent.lib.statistics.QuantileOperator}. <br>
+ */
+public class QuantileOperatorTest
+{
+  private static List<Double> shuffledValues(int count)
+  {
+    List<Double> values = new ArrayList<Double>(count);
+    for (int i = 0; i < count; i++) {
+      values.add((double)i);
+    }
+    Collections.shuffle(values, new Random(7));
+    return values;
+  }
+
+  @Test
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void testQuantiles()
+  {
+    QuantileOperator oper = new QuantileOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.percentiles.setSink(sink);
+
+    oper.setup(null);
+    oper.beginWindow(0);
+    oper.data.process(1.0);
+    oper.data.process(7.0);
+    oper.data.process(3.0);
+    oper.data.process(9.0);
+    oper.endWindow();
+
+    Assert.assertEquals("Must be one tuple in sink", 1, sink.collectedTuples.size());
+    Map<String, Object> result = (Map<String, Object>)sink.collectedTuples.get(0);
+    Assert.assertEquals("Median value", 5.0, result.get("p50"));
+    Assert.assertEquals("p99.9", 9.0, result.get("p99.9"));
+
+    sink.clear();
+    int count = 100000;
+    oper.beginWindow(1);
+    for (Double value : shuffledValues(count)) {
+      oper.data.process(value);
+    }
+    oper.endWindow();
+
+    result = (Map<String, Object>)sink.collectedTuples.get(0);
+    Assert.assertEquals("p50", 0.5 * count, (Double)result.get("p50"), 0.01 * count);
+    Assert.assertEquals("p95", 0.95 * count, (Double)result.get("p95"), 0.005 * count);
+    Assert.assertEquals("p99", 0.99 * count, (Double)result.get("p99"), 0.001 * count);
+    Assert.assertEquals("p99.9", 0.999 * count, (Double)result.get("p99.9"), 0.0002 * count);
+  }
+
+  @Test
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void testPartitionedSlidingWindow()
+  {
+    int partitionCount = 3;
+    List<QuantileOperator> partitions = new ArrayList<QuantileOperator>();
+    List<Partition<QuantileOperator>> defined = new ArrayList<Partition<QuantileOperator>>();
+    CollectorTestSink partialSink = new CollectorTestSink();
+    for (int i = 0; i < partitionCount; i++) {
+      QuantileOperator oper = new QuantileOperator();
+      oper.setWindowCount(2);
+      oper.percentiles.setSink(partialSink);
+      oper.setup(null);
+      partitions.add(oper);
+      defined.add(new DefaultPartition<QuantileOperator>(oper));
+    }
+    Assert.assertSame("partitions", defined, partitions.get(0).definePartitions(defined, 0));
+    for (QuantileOperator oper : partitions) {
+      Assert.assertTrue("partial sketches", oper.isPartialSketches());
+    }
+    Unifier<Map<String, Object>> unifier = partitions.get(0).percentiles.getUnifier();
+    CollectorTestSink sink = new CollectorTestSink();
+    ((QuantileOperator)unifier).percentiles.setSink(sink);
+    unifier.setup(null);
+
+    int count = 30000;
+    for (int window = 0; window < 3; window++) {
+      List<Double> values = shuffledValues(count);
+      for (QuantileOperator oper : partitions) {
+        oper.beginWindow(window);
+      }
+      for (int i = 0; i < count; i++) {
+        partitions.get(i % partitionCount).data.process(window * count + values.get(i));
+      }
+      partialSink.clear();
+      for (QuantileOperator oper : partitions) {
+        oper.endWindow();
+      }
+      Assert.assertEquals("partial sketches", partitionCount, partialSink.collectedTuples.size());
+
+      sink.clear();
+      unifier.beginWindow(window);
+      for (Object tuple : partialSink.collectedTuples) {
+        unifier.process((Map<String, Object>)tuple);
+      }
+      unifier.endWindow();
+
+      Assert.assertEquals("Must be one tuple in sink", 1, sink.collectedTuples.size());
+      Map<String, Object> result = (Map<String, Object>)sink.collectedTuples.get(0);
+      /* the last two windows */
+      double low = Math.max(0, window - 1) * count;
+      double high = (window + 1) * count;
+      Assert.assertEquals("p50", low + 0.5 * (high - low), (Double)result.get("p50"), 0.01 * (high - low));
+      Assert.assertEquals("p99", low + 0.99 * (high - low), (Double)result.get("p99"), 0.001 * (high - low));
+    }
+  }
+
+  @Test
+  public void testDefinePartitions()
+  {
+    QuantileOperator oper = new QuantileOperator();
+    List<Partition<QuantileOperator>> partitions = new ArrayList<Partition<QuantileOperator>>();
+    partitions.add(new DefaultPartition<QuantileOperator>(oper));
+    Collection<Partition<QuantileOperator>> newPartitions = oper.definePartitions(partitions, 2);
+    Assert.assertEquals("partitions", 3, newPartitions.size());
+    for (Partition<QuantileOperator> partition : newPartitions) {
+      Assert.assertNotNull("partition keys", partition.getPartitionKeys().get(oper.data));
+      Assert.assertTrue("partial sketches", partition.getPartitionedInstance().isPartialSketches());
+    }
+    Assert.assertTrue("unifier", oper.percentiles.getUnifier() instanceof QuantileOperator);
+
+    newPartitions = oper.definePartitions(Collections.singletonList(newPartitions.iterator().next()), 0);
+    Assert.assertFalse("single partition", newPartitions.iterator().next().getPartitionedInstance().isPartialSketches());
+  }
+
+  @Test
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void testRepartitionHistory()
+  {
+    List<Partition<QuantileOperator>> partitions = new ArrayList<Partition<QuantileOperator>>();
+    for (int i = 0; i < 2; i++) {
+      QuantileOperator oper = new QuantileOperator();
+      oper.setWindowCount(2);
+      oper.setup(null);
+      oper.beginWindow(0);
+      for (int value = 0; value < 100; value++) {
+        oper.data.process(i * 100 + value);
+      }
+      oper.endWindow();
+      partitions.add(new DefaultPartition<QuantileOperator>(oper));
+    }
+
+    Collection<Partition<QuantileOperator>> newPartitions = partitions.get(0).getPartitionedInstance().definePartitions(partitions, 1);
+    Assert.assertEquals("partitions", 3, newPartitions.size());
+    CollectorTestSink partialSink = new CollectorTestSink();
+    for (Partition<QuantileOperator> partition : newPartitions) {
+      QuantileOperator oper = partition.getPartitionedInstance();
+      Assert.assertEquals("window count", 2, oper.getWindowCount());
+      oper.percentiles.setSink(partialSink);
+      oper.beginWindow(1);
+      oper.endWindow();
+    }
+    Assert.assertEquals("only one partition has the history", 1, partialSink.collectedTuples.size());
+    QuantileSketch sketch = (QuantileSketch)((Map<String, Object>)partialSink.collectedTuples.get(0)).get(QuantileOperator.PARTIAL_SKETCH);
+    Assert.assertEquals("values of both partitions", 200, sketch.getCount());
+  }
+
+}
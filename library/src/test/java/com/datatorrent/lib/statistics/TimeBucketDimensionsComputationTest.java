@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.statistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Tests for {@link TimeBucketDimensionsComputation}
+ */
+public class TimeBucketDimensionsComputationTest
+{
+  private static final String STORE_PATH = "target/TimeBucketDimensionsComputationTest";
+
+  public static class Event implements Serializable
+  {
+    String key;
+    long time;
+    long value;
+
+    Event()
+    {
+    }
+
+    Event(String key, long time, long value)
+    {
+      this.key = key;
+      this.time = time;
+      this.value = value;
+    }
+
+    private static final long serialVersionUID = 201410181600L;
+  }
+
+  public static class Aggregate implements DimensionsComputation.AggregateEvent, Serializable
+  {
+    String key;
+    long minute;
+    long sum;
+    int aggregatorIndex;
+
+    @Override
+    public int getAggregatorIndex()
+    {
+      return aggregatorIndex;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Aggregate)) {
+        return false;
+      }
+      Aggregate that = (Aggregate) o;
+      return minute == that.minute && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * key.hashCode() + (int) (minute ^ (minute >>> 32));
+    }
+
+    private static final long serialVersionUID = 201410181601L;
+  }
+
+  public static class MinuteAggregator implements TimeBucketDimensionsComputation.TimeBucketAggregator<Event, Aggregate>
+  {
+    @Override
+    public long getTime(Event src)
+    {
+      return src.time;
+    }
+
+    @Override
+    public TimeUnit getTimeBucketUnit()
+    {
+      return TimeUnit.MINUTES;
+    }
+
+    @Override
+    public Aggregate getGroup(Event src, int aggregatorIndex)
+    {
+      Aggregate aggregate = new Aggregate();
+      aggregate.key = src.key;
+      aggregate.minute = TimeUnit.MILLISECONDS.toMinutes(src.time);
+      aggregate.aggregatorIndex = aggregatorIndex;
+      return aggregate;
+    }
+
+    @Override
+    public void aggregate(Aggregate dest, Event src)
+    {
+      dest.sum += src.value;
+    }
+
+    @Override
+    public void aggregate(Aggregate dest, Aggregate src)
+    {
+      dest.sum += src.sum;
+    }
+
+    @Override
+    public int computeHashCode(Event object)
+    {
+      return 31 * object.key.hashCode() + (int) TimeUnit.MILLISECONDS.toMinutes(object.time);
+    }
+
+    @Override
+    public boolean equals(Event o1, Event o2)
+    {
+      return o1.key.equals(o2.key) && TimeUnit.MILLISECONDS.toMinutes(o1.time) == TimeUnit.MILLISECONDS.toMinutes(o2.time);
+    }
+
+    private static final long serialVersionUID = 201410181602L;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static TimeBucketDimensionsComputation<Event, Aggregate> newOperator(boolean emitTotals)
+  {
+    TimeBucketDimensionsComputation<Event, Aggregate> operator = new TimeBucketDimensionsComputation<Event, Aggregate>();
+    operator.setAggregators(new TimeBucketDimensionsComputation.TimeBucketAggregator[] {new MinuteAggregator()});
+    operator.setEmitTotals(emitTotals);
+    return operator;
+  }
+
+  private static void runWindow(TimeBucketDimensionsComputation<Event, Aggregate> operator, long windowId, Event... events)
+  {
+    operator.beginWindow(windowId);
+    for (Event event : events) {
+      operator.data.process(event);
+    }
+    operator.endWindow();
+  }
+
+  @After
+  public void cleanup() throws Exception
+  {
+    Path path = new Path(STORE_PATH);
+    FileSystem fs = FileSystem.newInstance(path.toUri(), new Configuration());
+    fs.delete(path, true);
+    fs.close();
+  }
+
+  @Test
+  public void testDeltasAndTotals()
+  {
+    for (boolean emitTotals : new boolean[] {false, true}) {
+      TimeBucketDimensionsComputation<Event, Aggregate> operator = newOperator(emitTotals);
+      CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+      operator.output.setSink(sink);
+      operator.setup(null);
+
+      runWindow(operator, 0, new Event("a", 0, 1), new Event("a", 10, 2), new Event("b", 20, 4));
+      Assert.assertEquals("changed aggregates", 2, sink.collectedTuples.size());
+      Aggregate first = null;
+      for (Object tuple : sink.collectedTuples) {
+        if (((Aggregate) tuple).key.equals("a")) {
+          first = (Aggregate) tuple;
+        }
+      }
+
+      sink.clear();
+      runWindow(operator, 1, new Event("a", 30, 3));
+      Assert.assertEquals("changed aggregates", 1, sink.collectedTuples.size());
+      Aggregate aggregate = (Aggregate) sink.collectedTuples.get(0);
+      Assert.assertEquals("key", "a", aggregate.key);
+      Assert.assertEquals("sum", emitTotals ? 6 : 3, aggregate.sum);
+      Assert.assertEquals("emitted aggregate is not changed", 3, first.sum);
+      operator.teardown();
+    }
+  }
+
+  @Test
+  public void testFinalizeAndRecover()
+  {
+    TimeBucketDimensionsComputation<Event, Aggregate> operator = newOperator(true);
+    HdfsTimeBucketStore<Aggregate> store = new HdfsTimeBucketStore<Aggregate>();
+    store.setBasePath(STORE_PATH);
+    operator.setStore(store);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    operator.output.setSink(sink);
+    operator.setup(null);
+
+    runWindow(operator, 0, new Event("a", 0, 1), new Event("b", 10, 2));
+    runWindow(operator, 1, new Event("a", 60000, 4));
+    Assert.assertTrue("finalized minute 0", store.storedWindows.get(0).containsKey(0L));
+
+    Kryo kryo = new Kryo();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Output output = new Output(bytes);
+    kryo.writeClassAndObject(output, operator);
+    output.close();
+    operator.checkpointed(1);
+
+    sink.clear();
+    runWindow(operator, 2, new Event("a", 20, 5));
+    Assert.assertEquals("changed aggregates", 1, sink.collectedTuples.size());
+    Aggregate aggregate = (Aggregate) sink.collectedTuples.get(0);
+    Assert.assertEquals("re-opened total", 6, aggregate.sum);
+    operator.teardown();
+
+    @SuppressWarnings("unchecked")
+    TimeBucketDimensionsComputation<Event, Aggregate> recovered = (TimeBucketDimensionsComputation<Event, Aggregate>) kryo.readClassAndObject(new Input(bytes.toByteArray()));
+    sink.clear();
+    recovered.output.setSink(sink);
+    recovered.setup(null);
+    runWindow(recovered, 2, new Event("a", 20, 5), new Event("a", 60010, 2));
+    Assert.assertEquals("changed aggregates", 2, sink.collectedTuples.size());
+    for (Object tuple : sink.collectedTuples) {
+      aggregate = (Aggregate) tuple;
+      Assert.assertEquals("recovered total of minute " + aggregate.minute, 6, aggregate.sum);
+    }
+    recovered.teardown();
+  }
+
+  @Test
+  public void testExpiry() throws Exception
+  {
+    TimeBucketDimensionsComputation<Event, Aggregate> operator = newOperator(false);
+    HdfsTimeBucketStore<Aggregate> store = new HdfsTimeBucketStore<Aggregate>();
+    store.setBasePath(STORE_PATH);
+    operator.setStore(store);
+    operator.setExpiryMillis(60000);
+    CollectorTestSink<Object> sink = new CollectorTestSink<Object>();
+    operator.output.setSink(sink);
+    operator.setup(null);
+
+    runWindow(operator, 0, new Event("a", 0, 1));
+    runWindow(operator, 1, new Event("a", 60000, 2));
+    Assert.assertTrue("finalized minute 0", store.storedWindows.get(0).containsKey(0L));
+    Path file = new Path(STORE_PATH + "/0/0-1");
+    FileSystem fs = FileSystem.newInstance(file.toUri(), new Configuration());
+    try {
+      Assert.assertTrue("file of minute 0", fs.exists(file));
+
+      runWindow(operator, 2, new Event("a", 120000, 4));
+      Assert.assertFalse("expired minute 0", store.storedWindows.get(0).containsKey(0L));
+      Assert.assertTrue("finalized minute 1", store.storedWindows.get(0).containsKey(1L));
+      operator.checkpointed(2);
+      operator.committed(2);
+      Assert.assertTrue("file kept till the checkpoint is committed", fs.exists(file));
+      operator.committed(3);
+      Assert.assertFalse("file of expired minute deleted", fs.exists(file));
+
+      sink.clear();
+      runWindow(operator, 3, new Event("a", 10, 8));
+      Assert.assertTrue("event of expired minute ignored", sink.collectedTuples.isEmpty());
+      Assert.assertFalse("expired minute not stored again", store.storedWindows.get(0).containsKey(0L));
+    }
+    finally {
+      fs.close();
+    }
+    operator.teardown();
+  }
+
+  @Test
+  public void testMaxAggregatesInMemory()
+  {
+    TimeBucketDimensionsComputation<Event, Aggregate> operator = newOperator(false);
+    HdfsTimeBucketStore<Aggregate> store = new HdfsTimeBucketStore<Aggregate>();
+    store.setBasePath(STORE_PATH);
+    operator.setStore(store);
+    operator.setAllowedLatenessMillis(Long.MAX_VALUE / 2);
+    operator.setMaxAggregatesInMemory(2);
+    operator.setup(null);
+
+    runWindow(operator, 0, new Event("a", 0, 1), new Event("b", 60000, 2), new Event("c", 60010, 2));
+    Assert.assertTrue("earliest minute finalized", store.storedWindows.get(0).containsKey(0L));
+    Assert.assertFalse("later minute in memory", store.storedWindows.get(0).containsKey(1L));
+    operator.teardown();
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014 DataTorrent, Inc. ALL Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datatorrent.lib.streamquery;
+
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Functional test for {@link com.datatorrent.lib.streamquery.DerbySqlStreamOperator} and
+ * {@link com.datatorrent.lib.streamquery.HsqldbSqlStreamOperator}.
+ */
+public class DerbySqlStreamOperatorTest
+{
+  private static HashMap<String, Object> row(String symbol, Object last, Object count)
+  {
+    HashMap<String, Object> row = new HashMap<String, Object>();
+    row.put("s0", symbol);
+    if (last != null) {
+      row.put("l1", last);
+    }
+    row.put("n0", count);
+    return row;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static void testOperator(DerbySqlStreamOperator oper)
+  {
+    AbstractSqlStreamOperator.InputSchema inputSchema = new AbstractSqlStreamOperator.InputSchema("t1");
+    inputSchema.setColumnInfo("s0", "varchar(10)", true);
+    inputSchema.setColumnInfo("l1", "float", false);
+    inputSchema.setColumnInfo("n0", "int", false);
+    oper.setInputSchema(0, inputSchema);
+    oper.addExecStatementString("SELECT s0, l1, n0 FROM SESSION.t1 ORDER BY s0");
+    oper.setBatchSize(2);
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.result.setSink(sink);
+
+    oper.setup(null);
+    Assert.assertEquals("sql type", Types.DOUBLE, inputSchema.columnInfoMap.get("l1").sqlType);
+    for (int window = 0; window < 2; window++) {
+      oper.beginWindow(window);
+      oper.in1.process(row("a", 1.5, 1L));
+      oper.in1.process(row("b", 2, 2));
+      Assert.assertEquals("full batch is executed", 0, oper.batchedRows[0]);
+      oper.in1.process(row("c", null, 3));
+      Assert.assertEquals("batched rows", 1, oper.batchedRows[0]);
+      oper.endWindow();
+
+      Assert.assertEquals("rows of the window", 3, sink.collectedTuples.size());
+      Map<String, Object> result = (Map<String, Object>) sink.collectedTuples.get(0);
+      Assert.assertEquals("symbol", "a", result.get("S0"));
+      Assert.assertEquals("float bound as double", 1.5, ((Number) result.get("L1")).doubleValue(), 0);
+      Assert.assertEquals("long bound as int", 1, ((Number) result.get("N0")).intValue());
+      result = (Map<String, Object>) sink.collectedTuples.get(1);
+      Assert.assertEquals("integer bound as double", 2.0, ((Number) result.get("L1")).doubleValue(), 0);
+      result = (Map<String, Object>) sink.collectedTuples.get(2);
+      Assert.assertTrue("missing column", result.containsKey("L1"));
+      Assert.assertNull("missing column bound as null", result.get("L1"));
+      Assert.assertEquals("count", 3, ((Number) result.get("N0")).intValue());
+      sink.clear();
+    }
+    oper.teardown();
+  }
+
+  @Test
+  public void testDerby()
+  {
+    testOperator(new DerbySqlStreamOperator());
+  }
+
+  @Test
+  public void testHsqldb()
+  {
+    testOperator(new HsqldbSqlStreamOperator());
+  }
+
+}
@@ -15,11 +15,25 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.Unifier;
+import com.datatorrent.api.Partitioner.Partition;
 import com.datatorrent.lib.streamquery.condition.EqualValueCondition;
+import com.datatorrent.lib.streamquery.condition.HavingCompareValue;
+import com.datatorrent.lib.streamquery.function.AverageFunction;
+import com.datatorrent.lib.streamquery.function.CountFunction;
+import com.datatorrent.lib.streamquery.function.MaxMinFunction;
 import com.datatorrent.lib.streamquery.function.SumFunction;
 import com.datatorrent.lib.streamquery.index.ColumnIndex;
 import com.datatorrent.lib.testbench.CollectorTestSink;
@@ -83,4 +97,129 @@ public class GroupByOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  private static GroupByHavingOperator newOperator() throws Exception
+  {
+    GroupByHavingOperator oper = new GroupByHavingOperator();
+    oper.addColumnGroupByIndex(new ColumnIndex("b", null));
+    oper.addAggregateIndex(new SumFunction("c", "sum"));
+    oper.addAggregateIndex(new CountFunction("*", "count"));
+    oper.addAggregateIndex(new AverageFunction("c", "avg"));
+    oper.addAggregateIndex(new MaxMinFunction("c", "max", false));
+    oper.addHavingCondition(new HavingCompareValue<Integer>(new CountFunction("*", null), 2, -1));
+    oper.setup(null);
+    return oper;
+  }
+
+  private static Map<String, Object> row(int b, int c)
+  {
+    Map<String, Object> row = new HashMap<String, Object>();
+    row.put("b", b);
+    row.put("c", c);
+    return row;
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testPartialAggregation() throws Exception
+  {
+    GroupByHavingOperator oper = newOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    GroupByHavingOperator[] partitions = new GroupByHavingOperator[] {newOperator(), newOperator()};
+    List<Partition<GroupByHavingOperator>> defined = new ArrayList<Partition<GroupByHavingOperator>>();
+    for (GroupByHavingOperator partition : partitions) {
+      defined.add(new DefaultPartition<GroupByHavingOperator>(partition));
+    }
+    Assert.assertSame("partitions", defined, partitions[0].definePartitions(defined, 0));
+    Assert.assertFalse("not partitioned", oper.isPartialAggregation());
+    for (GroupByHavingOperator partition : partitions) {
+      Assert.assertTrue("partitioned", partition.isPartialAggregation());
+    }
+    Unifier<Map<String, Object>> unifier = partitions[0].outport.getUnifier();
+    CollectorTestSink partialSink = new CollectorTestSink();
+    for (GroupByHavingOperator partition : partitions) {
+      partition.outport.setSink(partialSink);
+    }
+    CollectorTestSink unifiedSink = new CollectorTestSink();
+    ((GroupByHavingOperator) unifier).outport.setSink(unifiedSink);
+
+    for (int window = 0; window < 2; window++) {
+      oper.beginWindow(window);
+      unifier.beginWindow(window);
+      for (GroupByHavingOperator partition : partitions) {
+        partition.beginWindow(window);
+      }
+      for (int i = 0; i < 10; i++) {
+        Map<String, Object> row = row(i % 3, i + window);
+        oper.inport.process(row);
+        partitions[i % 2].inport.process(row);
+      }
+      oper.endWindow();
+      for (GroupByHavingOperator partition : partitions) {
+        partition.endWindow();
+      }
+      for (Object tuple : partialSink.collectedTuples) {
+        unifier.process((Map<String, Object>) tuple);
+      }
+      partialSink.clear();
+      unifier.endWindow();
+
+      // group 0 has 4 rows, groups 1 and 2 have 3 rows
+      Assert.assertEquals("groups having count > 2", 3, sink.collectedTuples.size());
+      Assert.assertEquals("unified groups", new HashSet(sink.collectedTuples), new HashSet(unifiedSink.collectedTuples));
+      for (Object tuple : sink.collectedTuples) {
+        Map<String, Object> result = (Map<String, Object>) tuple;
+        if (result.get("b").equals(0)) {
+          Assert.assertEquals("sum", 18.0 + 4 * window, result.get("sum"));
+          Assert.assertEquals("count", 4, result.get("count"));
+          Assert.assertEquals("avg", 4.5 + window, result.get("avg"));
+          Assert.assertEquals("max", 9.0 + window, result.get("max"));
+        }
+      }
+      sink.clear();
+      unifiedSink.clear();
+    }
+  }
+
+  @Test
+  public void testDefinePartitions() throws Exception
+  {
+    GroupByHavingOperator oper = newOperator();
+    List<Partition<GroupByHavingOperator>> partitions = new ArrayList<Partition<GroupByHavingOperator>>();
+    partitions.add(new DefaultPartition<GroupByHavingOperator>(oper));
+    Collection<Partition<GroupByHavingOperator>> newPartitions = oper.definePartitions(partitions, 1);
+    Assert.assertEquals("partitions", 2, newPartitions.size());
+    for (Partition<GroupByHavingOperator> partition : newPartitions) {
+      Assert.assertNotNull("partition keys", partition.getPartitionKeys().get(oper.inport));
+      Assert.assertTrue("partial aggregation", partition.getPartitionedInstance().isPartialAggregation());
+    }
+    Assert.assertTrue("unifier", oper.outport.getUnifier() instanceof GroupByHavingOperator);
+
+    newPartitions = oper.definePartitions(Collections.singletonList(newPartitions.iterator().next()), 0);
+    Assert.assertFalse("single partition", newPartitions.iterator().next().getPartitionedInstance().isPartialAggregation());
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testNullValues() throws Exception
+  {
+    GroupByHavingOperator oper = newOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.beginWindow(0);
+    for (int i = 1; i <= 3; i++) {
+      oper.inport.process(row(0, i));
+      Map<String, Object> row = row(0, 0);
+      row.put("c", null);
+      oper.inport.process(row);
+    }
+    oper.endWindow();
+
+    Assert.assertEquals("groups", 1, sink.collectedTuples.size());
+    Map<String, Object> result = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("sum", 6.0, result.get("sum"));
+    Assert.assertEquals("count", 6, result.get("count"));
+    Assert.assertEquals("max", 3.0, result.get("max"));
+  }
 }
@@ -15,14 +15,25 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
 import com.datatorrent.lib.streamquery.InnerJoinOperator;
 import com.datatorrent.lib.streamquery.condition.Condition;
 import com.datatorrent.lib.streamquery.condition.JoinColumnEqualCondition;
 import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.streamquery.schema.RowBatch;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.RowSchema.ColumnType;
 import com.datatorrent.lib.testbench.CollectorTestSink;
 
 /**
@@ -81,4 +92,128 @@ public class InnerJoinOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void testTypedRowsAfterSelect()
+  {
+    RowSchema schema = new RowSchema();
+    schema.addColumn("a", ColumnType.INTEGER);
+    schema.addColumn("b", ColumnType.INTEGER);
+    schema.addColumn("c", ColumnType.INTEGER);
+    schema.addColumn("d", ColumnType.INTEGER);
+    RowBatch batch = new RowBatch(schema, 4);
+    for (int i = 0; i < 4; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      row.put("a", i / 2);
+      row.put("b", 10 + i);
+      row.put("c", 20 + i);
+      row.put("d", 30 + i);
+      batch.add(row);
+    }
+
+    InnerJoinOperator oper = new InnerJoinOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setJoinCondition(new JoinColumnEqualCondition("a", "a"));
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("c", null));
+    oper.setup(null);
+
+    oper.beginWindow(1);
+    oper.inport1.process(batch.getRow(0));
+    oper.inport2.process(batch.getRow(1));
+    oper.endWindow();
+    Assert.assertEquals("joined", 1, sink.collectedTuples.size());
+    Map<String, Object> joined = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("columns", 2, joined.size());
+    sink.clear();
+
+    oper.selectTable2Column(new ColumnIndex("d", null));
+    oper.beginWindow(2);
+    oper.inport1.process(batch.getRow(2));
+    oper.inport2.process(batch.getRow(3));
+    oper.endWindow();
+    oper.teardown();
+    Assert.assertEquals("joined", 1, sink.collectedTuples.size());
+    joined = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("columns", 3, joined.size());
+    Assert.assertEquals("b", 12, joined.get("b"));
+    Assert.assertEquals("c", 23, joined.get("c"));
+    Assert.assertEquals("d", 33, joined.get("d"));
+  }
+
+  private static Map<String, Object> row(int a, String column, int value)
+  {
+    Map<String, Object> row = new HashMap<String, Object>();
+    row.put("a", a);
+    row.put(column, value);
+    return row;
+  }
+
+  @Test
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void testWindowedEquiJoin() throws Exception
+  {
+    File spillDirectory = new File("target/" + InnerJoinOperatorTest.class.getSimpleName());
+    spillDirectory.mkdirs();
+    OuterJoinOperator oper = new OuterJoinOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setJoinCondition(new JoinColumnEqualCondition("a", "a"));
+    oper.selectTable1Column(new ColumnIndex("b", null));
+    oper.selectTable2Column(new ColumnIndex("c", null));
+    oper.setWindowCount(2);
+    oper.setMaxRowsInMemory(1);
+    oper.setSpillDirectory(spillDirectory.getPath());
+    oper.setup(null);
+
+    oper.beginWindow(1);
+    oper.inport1.process(row(1, "b", 10));
+    oper.inport1.process(row(2, "b", 20));
+    oper.endWindow();
+    Assert.assertTrue("no unmatched rows before expiry", sink.collectedTuples.isEmpty());
+
+    oper.beginWindow(2);
+    oper.inport1.process(row(3, "b", 30));
+    oper.inport2.process(row(1, "c", 11));
+    Assert.assertEquals("rows of older windows spilled", 2, oper.table1.getRowsSpilled());
+    Assert.assertEquals("joined with previous window", 1, sink.collectedTuples.size());
+    Map<String, Object> joined = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("b", 10, joined.get("b"));
+    Assert.assertEquals("c", 11, joined.get("c"));
+    sink.clear();
+    oper.endWindow();
+    Assert.assertEquals("expired unmatched row", 1, sink.collectedTuples.size());
+    joined = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("b", 20, joined.get("b"));
+    Assert.assertNull("c", joined.get("c"));
+    sink.clear();
+
+    Kryo kryo = new Kryo();
+    Output output = new Output(4096, -1);
+    kryo.writeObject(output, oper);
+    oper.teardown();
+    oper = kryo.readObject(new Input(output.toBytes()), OuterJoinOperator.class);
+    oper.outport.setSink(sink);
+    oper.setup(null);
+
+    oper.beginWindow(3);
+    oper.inport1.process(row(1, "b", 12));
+    Assert.assertEquals("joined with restored window", 1, sink.collectedTuples.size());
+    joined = (Map<String, Object>) sink.collectedTuples.get(0);
+    Assert.assertEquals("b", 12, joined.get("b"));
+    Assert.assertEquals("c", 11, joined.get("c"));
+    sink.clear();
+    oper.endWindow();
+    Assert.assertEquals("expired unmatched row", 1, sink.collectedTuples.size());
+    sink.clear();
+    oper.beginWindow(4);
+    oper.inport2.process(row(2, "c", 21));
+    Assert.assertTrue("expired row not joined", sink.collectedTuples.isEmpty());
+    oper.endWindow();
+    oper.teardown();
+    Assert.assertEquals("spill files deleted", 0, spillDirectory.list().length);
+    FileUtils.deleteDirectory(spillDirectory);
+  }
 }
@@ -15,8 +15,15 @@
  */
 package com.datatorrent.lib.streamquery;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
 import org.junit.Test;
 
 import com.datatorrent.lib.testbench.CollectorTestSink;
@@ -82,4 +89,62 @@ public class OrderByOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static List<Object> orderBy(List<Map<String, Object>> rows, boolean descending, int limit, int maxRowsInMemory, String spillDirectory)
+  {
+    OrderByOperator oper = new OrderByOperator();
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.addOrderByRule(new OrderByRule<Integer>("b"));
+    oper.addOrderByRule(new OrderByRule<Integer>("a"));
+    oper.setDescending(descending);
+    oper.setLimit(limit);
+    oper.setMaxRowsInMemory(maxRowsInMemory);
+    oper.setSpillDirectory(spillDirectory);
+    oper.setup(null);
+    for (int window = 0; window < 2; window++) {
+      sink.clear();
+      oper.beginWindow(window);
+      for (Map<String, Object> row : rows) {
+        oper.inport.process(row);
+      }
+      oper.endWindow();
+    }
+    oper.teardown();
+    return sink.collectedTuples;
+  }
+
+  @Test
+  public void testTopKAndSpill() throws Exception
+  {
+    File spillDirectory = new File("target/" + OrderByOperatorTest.class.getSimpleName());
+    spillDirectory.mkdirs();
+    Random random = new Random(7);
+    ArrayList<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 100; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      row.put("a", random.nextInt(5));
+      if (i % 10 != 0) {
+        row.put("b", random.nextInt(10));
+      }
+      row.put("c", i);
+      rows.add(row);
+    }
+
+    for (boolean descending : new boolean[] {true, false}) {
+      // rules sorted one after the other like before
+      ArrayList<Map<String, Object>> sorted = new OrderByRule<Integer>("a").sort(new OrderByRule<Integer>("b").sort(rows));
+      ArrayList<Map<String, Object>> expected = new ArrayList<Map<String, Object>>();
+      for (int i = 0; i < sorted.size(); i++) {
+        expected.add(sorted.get(descending ? i : sorted.size() - 1 - i));
+      }
+      Assert.assertEquals("rows with values", 90, expected.size());
+      Assert.assertEquals("all rows", expected, orderBy(rows, descending, 0, 0, null));
+      Assert.assertEquals("top rows", expected.subList(0, 5), orderBy(rows, descending, 5, 0, null));
+      Assert.assertEquals("merged runs", expected, orderBy(rows, descending, 0, 7, spillDirectory.getPath()));
+    }
+    Assert.assertEquals("runs deleted", 0, spillDirectory.list().length);
+    FileUtils.deleteDirectory(spillDirectory);
+  }
 }
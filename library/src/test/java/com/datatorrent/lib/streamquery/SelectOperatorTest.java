@@ -16,12 +16,23 @@
 package com.datatorrent.lib.streamquery;
 
 import java.util.HashMap;
+import java.util.Map;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
 import com.datatorrent.lib.streamquery.SelectOperator;
+import com.datatorrent.lib.streamquery.condition.BetweenCondition;
 import com.datatorrent.lib.streamquery.condition.EqualValueCondition;
 import com.datatorrent.lib.streamquery.index.ColumnIndex;
+import com.datatorrent.lib.streamquery.schema.RowBatch;
+import com.datatorrent.lib.streamquery.schema.RowSchema;
+import com.datatorrent.lib.streamquery.schema.RowSchema.ColumnType;
+import com.datatorrent.lib.streamquery.schema.SchemaRow;
 import com.datatorrent.lib.testbench.CollectorTestSink;
 
 /**
@@ -71,4 +82,69 @@ public class SelectOperatorTest
   	
   	System.out.println(sink.collectedTuples.toString());
   }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testTypedRows()
+  {
+    RowSchema schema = new RowSchema();
+    schema.addColumn("a", ColumnType.INTEGER);
+    schema.addColumn("b", ColumnType.DOUBLE);
+    schema.addColumn("c", ColumnType.OBJECT);
+
+    RowBatch batch = new RowBatch(schema, 2);
+    for (int i = 0; i < 10; i++) {
+      Map<String, Object> row = new HashMap<String, Object>();
+      row.put("a", i % 2);
+      row.put("b", i * 1.5);
+      row.put("c", "c" + i);
+      batch.add(row);
+    }
+    Assert.assertEquals("batch size", 10, batch.size());
+
+    SelectOperator oper = new SelectOperator();
+    oper.addIndex(new ColumnIndex("b", null));
+    oper.addIndex(new ColumnIndex("c", null));
+    EqualValueCondition condition = new EqualValueCondition();
+    condition.addEqualValue("a", 1);
+    oper.setCondition(condition);
+    CollectorTestSink sink = new CollectorTestSink();
+    oper.outport.setSink(sink);
+    oper.setup(null);
+    oper.beginWindow(1);
+    oper.batchInport.process(batch);
+    for (int i = 0; i < batch.size(); i++) {
+      oper.inport.process(batch.getRow(i));
+    }
+    oper.endWindow();
+
+    Assert.assertEquals("selected rows", 10, sink.collectedTuples.size());
+    for (int i = 0; i < 5; i++) {
+      SchemaRow result = (SchemaRow) sink.collectedTuples.get(i);
+      Assert.assertEquals("same as row", sink.collectedTuples.get(i + 5), result);
+      Assert.assertEquals("columns", 2, result.size());
+      Assert.assertEquals("b", (2 * i + 1) * 1.5, result.getDouble(0), 0);
+      Assert.assertEquals("c", "c" + (2 * i + 1), result.get("c"));
+    }
+
+    BetweenCondition between = new BetweenCondition("b", 3.0, 9.0);
+    BetweenCondition mapBetween = new BetweenCondition("b", 3.0, 9.0);
+    RowBatch.Cursor cursor = batch.cursor();
+    for (int i = 0; i < batch.size(); i++) {
+      cursor.moveTo(i);
+      Assert.assertEquals("compiled between " + i, mapBetween.isValidRow(new HashMap<String, Object>(cursor)), between.compile(schema).isValid(cursor));
+    }
+
+    Kryo kryo = new Kryo();
+    Output output = new Output(1024, -1);
+    kryo.writeClassAndObject(output, batch.getRow(3));
+    Object copy = kryo.readClassAndObject(new Input(output.toBytes()));
+    Assert.assertEquals("serialized row", batch.getRow(3), copy);
+    Assert.assertEquals("a", 1, ((Map) copy).get("a"));
+
+    output.clear();
+    kryo.writeClassAndObject(output, batch.getRow(4));
+    Object next = kryo.readClassAndObject(new Input(output.toBytes()));
+    Assert.assertSame("interned schema", ((SchemaRow) copy).getSchema(), ((SchemaRow) next).getSchema());
+  }
 }